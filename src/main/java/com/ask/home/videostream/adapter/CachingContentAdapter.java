@@ -0,0 +1,283 @@
+package com.ask.home.videostream.adapter;
+
+import com.ask.home.videostream.cache.BlockCache;
+import com.ask.home.videostream.cache.BlockKey;
+import com.ask.home.videostream.catalog.CatalogListener;
+import com.ask.home.videostream.catalog.ContentCatalog;
+import com.ask.home.videostream.model.Content;
+import com.ask.home.videostream.model.ContentRequest;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.PooledByteBufAllocator;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.core.io.buffer.NettyDataBufferFactory;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.MonoSink;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Serves small ranges of any {@link ContentAdapter} from the {@link BlockCache}. A range is split in blocks, the missing
+ * ones are read from the delegate as whole blocks and cached, and the response is assembled from slices of the cached
+ * blocks without copying. Ranges larger than {@code maxCachedRangeSize} go straight to the delegate (and keep
+ * zero-copy delivery).
+ * <p>
+ * Concurrent misses on the same block are coalesced: the first one reads the block, the others wait for that read and
+ * each receive their own retained duplicate of the same buffer. A read started before the content changed is neither
+ * joined nor cached after the change.
+ * <p>
+ * {@link #prefetch(ContentRequest, long, long)} reads blocks ahead of the requests into the cache, bounded by
+ * {@code maxPrefetchBytes} of prefetched blocks not read yet.
+ */
+@Slf4j
+public class CachingContentAdapter implements ContentAdapter {
+
+    private static final NettyDataBufferFactory BUFFER_FACTORY = new NettyDataBufferFactory(PooledByteBufAllocator.DEFAULT);
+
+    private final ContentAdapter delegate;
+    private final BlockCache blockCache;
+    private final long maxCachedRangeSize;
+    private final long maxPrefetchBytes;
+    private final AtomicLong prefetchingBytes = new AtomicLong();
+    private final Map<Flight, List<MonoSink<ByteBuf>>> inFlight = new ConcurrentHashMap<>();
+
+    /**
+     * Read of a block of a generation of its content.
+     */
+    private record Flight(BlockKey blockKey, long generation) {
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param delegate           ContentAdapter reading the blocks.
+     * @param blockCache         BlockCache.
+     * @param maxCachedRangeSize largest range served from the cache.
+     */
+    public CachingContentAdapter(final ContentAdapter delegate, final BlockCache blockCache, final long maxCachedRangeSize) {
+        this(delegate, blockCache, maxCachedRangeSize, 0);
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param delegate           ContentAdapter reading the blocks.
+     * @param blockCache         BlockCache.
+     * @param maxCachedRangeSize largest range served from the cache.
+     * @param maxPrefetchBytes   bound of the prefetched bytes not read yet, 0 to disable the read-ahead.
+     */
+    public CachingContentAdapter(final ContentAdapter delegate, final BlockCache blockCache, final long maxCachedRangeSize, final long maxPrefetchBytes) {
+        this.delegate = delegate;
+        this.blockCache = blockCache;
+        this.maxCachedRangeSize = maxCachedRangeSize;
+        this.maxPrefetchBytes = maxPrefetchBytes;
+        final ContentCatalog contentCatalog = delegate.getContentCatalog();
+        if (contentCatalog != null) {
+            contentCatalog.addListener(new CatalogListener() {
+                @Override
+                public void contentRegistered(final Content content) {
+                    blockCache.invalidate(content.getObjectKey());
+                }
+
+                @Override
+                public void contentRemoved(final Content content) {
+                    blockCache.invalidate(content.getObjectKey());
+                }
+            });
+        }
+    }
+
+    @Override
+    public Mono<Content> getContent(final ContentRequest contentRequest) {
+        if (contentRequest == null || contentRequest.getObjectKey() == null || contentRequest.getRangeEnd() - contentRequest.getRangeStart() + 1 > maxCachedRangeSize) {
+            return delegate.getContent(contentRequest);
+        }
+        return delegate.getContentSize(contentRequest).flatMap(fileSize -> {
+            final long start = contentRequest.getRangeStart();
+            if (fileSize == 0 || start >= fileSize || start > contentRequest.getRangeEnd()) {
+                return delegate.getContent(contentRequest);
+            }
+            final long end = Math.min(contentRequest.getRangeEnd(), fileSize - 1);
+            final int blockSize = blockCache.getBlockSize();
+            final long firstBlock = start / blockSize;
+            final long lastBlock = end / blockSize;
+            final Flux<DataBuffer> data = Flux.range(0, (int) (lastBlock - firstBlock + 1)).map(index -> firstBlock + index)
+                    .concatMap(blockIndex -> block(contentRequest, blockIndex, fileSize).map(block -> {
+                        final long blockStart = blockIndex * blockSize;
+                        final int from = (int) (Math.max(start, blockStart) - blockStart);
+                        final int to = (int) (Math.min(end, blockStart + block.readableBytes() - 1) - blockStart);
+                        // the slice shares the reference acquired for this reader.
+                        return (DataBuffer) BUFFER_FACTORY.wrap(block.slice(block.readerIndex() + from, to - from + 1));
+                    }))
+                    .doOnDiscard(ByteBuf.class, ByteBuf::release)
+                    .doOnDiscard(DataBuffer.class, DataBufferUtils::release);
+            return Mono.just(Content.builder().data(data).contentLength(end - start + 1).rangeStart(start).rangeEnd(end).build());
+        });
+    }
+
+    /**
+     * Get a block from the cache, join the read already in flight for it, or read it from the delegate.
+     *
+     * @return Mono of a retained block, released by the consumer.
+     */
+    private Mono<ByteBuf> block(final ContentRequest contentRequest, final long blockIndex, final long fileSize) {
+        return Mono.defer(() -> {
+            final BlockKey blockKey = new BlockKey(contentRequest.getObjectKey(), blockIndex);
+            final ByteBuf cached = blockCache.acquire(blockKey);
+            if (cached != null) {
+                return Mono.just(cached);
+            }
+            final Flight flight = new Flight(blockKey, blockCache.generation(blockKey.getObjectKey()));
+            return Mono.create(sink -> {
+                if (join(flight, sink)) {
+                    read(contentRequest, flight, fileSize, false);
+                }
+            });
+        });
+    }
+
+    @Override
+    public void prefetch(final ContentRequest contentRequest, final long rangeStart, final long rangeEnd) {
+        if (maxPrefetchBytes <= 0 || contentRequest == null || contentRequest.getObjectKey() == null) {
+            return;
+        }
+        delegate.getContentSize(contentRequest).subscribe(fileSize -> {
+            final long end = Math.min(rangeEnd, fileSize - 1);
+            final int blockSize = blockCache.getBlockSize();
+            for (long blockIndex = rangeStart / blockSize; rangeStart <= end && blockIndex <= end / blockSize; blockIndex++) {
+                if (blockCache.getUnreadPrefetchedBytes() + prefetchingBytes.get() >= maxPrefetchBytes) {
+                    return;
+                }
+                final BlockKey blockKey = new BlockKey(contentRequest.getObjectKey(), blockIndex);
+                final Flight flight = new Flight(blockKey, blockCache.generation(blockKey.getObjectKey()));
+                if (!blockCache.contains(blockKey) && join(flight, null)) {
+                    read(contentRequest, flight, fileSize, true);
+                }
+            }
+        }, error -> log.debug("Read-ahead of {} failed {}", contentRequest.getObjectKey(), error.getMessage()));
+    }
+
+    /**
+     * Join the read in flight for the block, or start one.
+     *
+     * @param flight Flight of the block.
+     * @param sink   waiter of the block, null for a read-ahead.
+     * @return true when the caller has to read the block.
+     */
+    private boolean join(final Flight flight, final MonoSink<ByteBuf> sink) {
+        final AtomicBoolean leader = new AtomicBoolean();
+        inFlight.compute(flight, (_, waiters) -> {
+            if (waiters == null) {
+                leader.set(true);
+                waiters = new ArrayList<>();
+            }
+            if (sink != null) {
+                waiters.add(sink);
+            }
+            return waiters;
+        });
+        return leader.get();
+    }
+
+    /**
+     * Read the block for the waiters of the flight. The read is not tied to any subscription, the other waiters depend
+     * on it.
+     */
+    private void read(final ContentRequest contentRequest, final Flight flight, final long fileSize, final boolean prefetch) {
+        final BlockKey blockKey = flight.blockKey();
+        final long blockLength = Math.min(fileSize, (blockKey.getBlockIndex() + 1) * blockCache.getBlockSize()) - blockKey.getBlockIndex() * blockCache.getBlockSize();
+        Mono<ByteBuf> read = readBlock(contentRequest, blockKey, fileSize);
+        if (prefetch) {
+            prefetchingBytes.addAndGet(blockLength);
+            read = read.doFinally(_ -> prefetchingBytes.addAndGet(-blockLength));
+        }
+        read.subscribe(block -> complete(flight, block, prefetch), error -> fail(flight, error));
+    }
+
+    /**
+     * Hand the block read to every waiter, then to the cache.
+     *
+     * @param flight   Flight of the block.
+     * @param block    ByteBuf owned by the caller.
+     * @param prefetch true when the read was started by the read-ahead.
+     */
+    private void complete(final Flight flight, final ByteBuf block, final boolean prefetch) {
+        final BlockKey blockKey = flight.blockKey();
+        block.retain();
+        // not cached when the content changed during the read.
+        blockCache.put(blockKey, block, prefetch, flight.generation());
+        // no waiter can join once the flight is removed, later requests find the block in the cache.
+        final List<MonoSink<ByteBuf>> waiters = inFlight.remove(flight);
+        try {
+            if (waiters != null && !waiters.isEmpty()) {
+                if (prefetch) {
+                    blockCache.markRead(blockKey);
+                }
+                for (MonoSink<ByteBuf> waiter : waiters) {
+                    waiter.success(block.retainedDuplicate());
+                }
+            }
+        } finally {
+            block.release();
+        }
+    }
+
+    private void fail(final Flight flight, final Throwable error) {
+        final List<MonoSink<ByteBuf>> waiters = inFlight.remove(flight);
+        if (waiters == null || waiters.isEmpty()) {
+            log.debug("Read-ahead of block {} failed {}", flight.blockKey(), error.getMessage());
+            return;
+        }
+        waiters.forEach(waiter -> waiter.error(error));
+    }
+
+    /**
+     * Read the whole block from the delegate into a direct buffer.
+     *
+     * @return Mono of the block, owned by the subscriber.
+     */
+    private Mono<ByteBuf> readBlock(final ContentRequest contentRequest, final BlockKey blockKey, final long fileSize) {
+        final long blockStart = blockKey.getBlockIndex() * blockCache.getBlockSize();
+        final long blockEnd = Math.min(fileSize, blockStart + blockCache.getBlockSize()) - 1;
+        final ContentRequest blockRequest = ContentRequest.builder().fileName(contentRequest.getFileName()).fileType(contentRequest.getFileType()).filePath(contentRequest.getFilePath())
+                .objectKey(contentRequest.getObjectKey()).clientId(contentRequest.getClientId()).rangeStart(blockStart).rangeEnd(blockEnd).build();
+        return ContentBuffers.readDirect(delegate.getContent(blockRequest).flatMapMany(Content::getData), (int) (blockEnd - blockStart + 1), "block " + blockKey);
+    }
+
+    @Override
+    public Mono<Long> getContentSize(final ContentRequest contentRequest) {
+        return delegate.getContentSize(contentRequest);
+    }
+
+    @Override
+    public Flux<Content> findAllContents() {
+        return delegate.findAllContents();
+    }
+
+    @Override
+    public Mono<Content> findFileByKey(final String fileKey) {
+        return delegate.findFileByKey(fileKey);
+    }
+
+    @Override
+    public Mono<Content> findFileByPath(final String relativePath) {
+        return delegate.findFileByPath(relativePath);
+    }
+
+    @Override
+    public Mono<String> getContentVersion(final ContentRequest contentRequest) {
+        return delegate.getContentVersion(contentRequest);
+    }
+
+    @Override
+    public ContentCatalog getContentCatalog() {
+        return delegate.getContentCatalog();
+    }
+}
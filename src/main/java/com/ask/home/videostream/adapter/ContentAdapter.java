@@ -1,16 +1,46 @@
 package com.ask.home.videostream.adapter;
 
+import com.ask.home.videostream.catalog.ContentCatalog;
 import com.ask.home.videostream.model.Content;
 import com.ask.home.videostream.model.ContentRequest;
-
-import java.util.List;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
 
 /**
- * ContentAdapter
+ * ContentAdapter, reactive: implementations doing blocking I/O run it on their own scheduler, never on the subscribing
+ * (event loop) thread.
  */
 public interface ContentAdapter {
-    Content getContent(ContentRequest contentRequest);
-    Long getContentSize(ContentRequest contentRequest);
-    List<Content> findAllContents();
-    Content findFileByKey(final String fileKey);
+    Mono<Content> getContent(ContentRequest contentRequest);
+    Mono<Long> getContentSize(ContentRequest contentRequest);
+    Flux<Content> findAllContents();
+    Mono<Content> findFileByKey(final String fileKey);
+    Mono<Content> findFileByPath(final String relativePath);
+    ContentCatalog getContentCatalog();
+
+    /**
+     * Read a range ahead of the requests, in the background. Adapters without a cache ignore it.
+     *
+     * @param contentRequest ContentRequest of the file.
+     * @param rangeStart     first byte.
+     * @param rangeEnd       last byte.
+     */
+    default void prefetch(final ContentRequest contentRequest, final long rangeStart, final long rangeEnd) {
+    }
+
+    /**
+     * Current version of a content, the ETag it is catalogued with while unchanged. Adapters that can't check the
+     * storage cheaply answer from their catalog.
+     *
+     * @param contentRequest ContentRequest of the file.
+     * @return Mono of the ETag, empty when the content is unknown or has none.
+     */
+    default Mono<String> getContentVersion(final ContentRequest contentRequest) {
+        final ContentCatalog contentCatalog = getContentCatalog();
+        if (contentCatalog == null || contentRequest == null || contentRequest.getFileName() == null) {
+            return Mono.empty();
+        }
+        final Content content = contentCatalog.findByPath(ContentCatalog.relativePath(contentRequest.getFilePath(), contentRequest.getFileName()));
+        return Mono.justOrEmpty(content == null ? null : content.getEtag());
+    }
 }
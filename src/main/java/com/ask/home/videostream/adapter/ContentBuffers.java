@@ -0,0 +1,58 @@
+package com.ask.home.videostream.adapter;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.PooledByteBufAllocator;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Copies streamed content into off-heap buffers kept by the caches.
+ */
+final class ContentBuffers {
+
+    private ContentBuffers() {
+    }
+
+    /**
+     * Read the data into a direct buffer of exactly {@code length} bytes.
+     *
+     * @param data        Flux of the data, released as it is copied.
+     * @param length      expected number of bytes.
+     * @param description what is read, for the error message.
+     * @return Mono of the buffer, owned by the subscriber.
+     */
+    static Mono<ByteBuf> readDirect(final Flux<DataBuffer> data, final int length, final Object description) {
+        return Mono.defer(() -> {
+            final ByteBuf buffer = PooledByteBufAllocator.DEFAULT.directBuffer(length, length);
+            final AtomicBoolean handedOver = new AtomicBoolean();
+            return data
+                    .doOnNext(dataBuffer -> {
+                        try (DataBuffer.ByteBufferIterator byteBuffers = dataBuffer.readableByteBuffers()) {
+                            while (byteBuffers.hasNext()) {
+                                final ByteBuffer byteBuffer = byteBuffers.next();
+                                buffer.writeBytes(byteBuffer);
+                            }
+                        } finally {
+                            DataBufferUtils.release(dataBuffer);
+                        }
+                    })
+                    .then(Mono.fromCallable(() -> {
+                        if (buffer.readableBytes() != length) {
+                            throw new IllegalStateException("Short read of " + description);
+                        }
+                        handedOver.set(true);
+                        return buffer;
+                    }))
+                    .doFinally(_ -> {
+                        if (!handedOver.get()) {
+                            buffer.release();
+                        }
+                    });
+        });
+    }
+}
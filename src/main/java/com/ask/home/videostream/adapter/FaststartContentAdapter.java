@@ -0,0 +1,272 @@
+package com.ask.home.videostream.adapter;
+
+import com.ask.home.videostream.catalog.CatalogListener;
+import com.ask.home.videostream.catalog.ContentCatalog;
+import com.ask.home.videostream.model.Content;
+import com.ask.home.videostream.model.ContentRequest;
+import com.ask.home.videostream.mp4.FaststartLayout;
+import com.ask.home.videostream.mp4.Mp4BoxParser;
+import com.ask.home.videostream.mp4.Mp4Boxes;
+import com.ask.home.videostream.util.VideoContainer;
+import io.netty.buffer.PooledByteBufAllocator;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.NettyDataBufferFactory;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Presents the MP4 files whose moov box follows the media data as if they were muxed for fast start: ranges address a
+ * {@link FaststartLayout} with the moov box, its chunk offsets relocated, moved in front of the first mdat box. The
+ * relocated moov boxes are built once on the first requests of a content and kept in memory, bounded by
+ * {@code maxBytes} together with the entries of the contents served as they are; every other byte is read from the
+ * delegate at its place in the file, nothing is written to disk.
+ * <p>
+ * The layout has the size of the file, a range falling in a single part of the file keeps its zero-copy delivery.
+ */
+@Slf4j
+public class FaststartContentAdapter implements ContentAdapter {
+
+    private static final NettyDataBufferFactory BUFFER_FACTORY = new NettyDataBufferFactory(PooledByteBufAllocator.DEFAULT);
+    // memory of an entry and its key, counted against maxBytes so the contents served as they are stay bounded too.
+    static final long ENTRY_BYTES = 128;
+
+    private final ContentAdapter delegate;
+    private final long maxBytes;
+    private final Map<String, Entry> layouts = new LinkedHashMap<>(64, 0.75f, true);
+    // layouts being built, by object key.
+    private final Map<String, Building> building = new HashMap<>();
+    private long usedBytes;
+
+    /**
+     * Layout of a content, null when it is served as it is.
+     */
+    private record Entry(long fileSize, FaststartLayout layout) {
+
+        long bytes() {
+            return ENTRY_BYTES + (layout == null ? 0 : layout.getMoovSize());
+        }
+    }
+
+    /**
+     * Layout of a content version being built.
+     */
+    private record Building(long fileSize, Mono<Entry> entry) {
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param delegate ContentAdapter reading the files.
+     * @param maxBytes bytes of relocated moov boxes kept in memory.
+     */
+    public FaststartContentAdapter(final ContentAdapter delegate, final long maxBytes) {
+        this.delegate = delegate;
+        this.maxBytes = maxBytes;
+        final ContentCatalog contentCatalog = delegate.getContentCatalog();
+        if (contentCatalog != null) {
+            contentCatalog.addListener(new CatalogListener() {
+                @Override
+                public void contentRegistered(final Content content) {
+                    remove(content.getObjectKey());
+                }
+
+                @Override
+                public void contentRemoved(final Content content) {
+                    remove(content.getObjectKey());
+                }
+            });
+        }
+    }
+
+    @Override
+    public Mono<Content> getContent(final ContentRequest contentRequest) {
+        if (!relocatable(contentRequest)) {
+            return delegate.getContent(contentRequest);
+        }
+        return layout(contentRequest).flatMap(entry -> entry.layout() == null ? delegate.getContent(contentRequest) : read(entry.layout(), contentRequest));
+    }
+
+    @Override
+    public void prefetch(final ContentRequest contentRequest, final long rangeStart, final long rangeEnd) {
+        final Entry entry = relocatable(contentRequest) ? cached(contentRequest.getObjectKey()) : null;
+        if (entry == null || entry.layout() == null) {
+            delegate.prefetch(contentRequest, rangeStart, rangeEnd);
+            return;
+        }
+        for (FaststartLayout.Part part : entry.layout().parts(rangeStart, rangeEnd)) {
+            if (!part.isMoov()) {
+                delegate.prefetch(contentRequest, part.fileOffset(), part.fileOffset() + part.length() - 1);
+            }
+        }
+    }
+
+    /**
+     * Bytes of relocated moov boxes in memory.
+     *
+     * @return long.
+     */
+    public long getUsedBytes() {
+        synchronized (layouts) {
+            return usedBytes;
+        }
+    }
+
+    /**
+     * Read a virtual range: the parts in the file from the delegate, the moov box from memory.
+     */
+    private Mono<Content> read(final FaststartLayout layout, final ContentRequest contentRequest) {
+        final long start = contentRequest.getRangeStart();
+        final long end = Math.min(contentRequest.getRangeEnd(), layout.getFileSize() - 1);
+        final List<FaststartLayout.Part> parts = layout.parts(start, end);
+        if (parts.size() == 1 && !parts.getFirst().isMoov()) {
+            final FaststartLayout.Part part = parts.getFirst();
+            return delegate.getContent(fileRequest(contentRequest, part)).map(content -> {
+                content.setFilePosition(content.getLocalFile() == null ? null : part.fileOffset());
+                content.setRangeStart(start);
+                content.setRangeEnd(end);
+                return content;
+            });
+        }
+        final List<Flux<DataBuffer>> data = new ArrayList<>(parts.size());
+        for (FaststartLayout.Part part : parts) {
+            if (part.isMoov()) {
+                data.add(Flux.defer(() -> Flux.just(BUFFER_FACTORY.wrap(layout.moovBytes(layout.moovOffsetOf(part), part.length())))));
+            } else {
+                data.add(Mono.defer(() -> delegate.getContent(fileRequest(contentRequest, part))).flatMapMany(Content::getData));
+            }
+        }
+        return Mono.just(Content.builder().data(Flux.concat(data)).contentLength(end - start + 1).rangeStart(start).rangeEnd(end).build());
+    }
+
+    private static ContentRequest fileRequest(final ContentRequest contentRequest, final FaststartLayout.Part part) {
+        return contentRequest.toBuilder().rangeStart(part.fileOffset()).rangeEnd(part.fileOffset() + part.length() - 1).build();
+    }
+
+    /**
+     * Layout of the content, from memory or built from its top level boxes.
+     */
+    private Mono<Entry> layout(final ContentRequest contentRequest) {
+        return delegate.getContentSize(contentRequest).flatMap(fileSize -> {
+            final String objectKey = contentRequest.getObjectKey();
+            synchronized (layouts) {
+                final Entry entry = layouts.get(objectKey);
+                if (entry != null && entry.fileSize() == fileSize) {
+                    return Mono.just(entry);
+                }
+                final Building inFlight = building.get(objectKey);
+                if (inFlight != null && inFlight.fileSize() == fileSize) {
+                    return inFlight.entry();
+                }
+                final Building started = new Building(fileSize, buildLayout(contentRequest, fileSize)
+                        .doFinally(_ -> {
+                            synchronized (layouts) {
+                                final Building finished = building.get(objectKey);
+                                if (finished != null && finished.fileSize() == fileSize) {
+                                    building.remove(objectKey);
+                                }
+                            }
+                        })
+                        .cache());
+                building.put(objectKey, started);
+                return started.entry();
+            }
+        });
+    }
+
+    /**
+     * Build the layout of the content from its top level boxes.
+     */
+    private Mono<Entry> buildLayout(final ContentRequest contentRequest, final long fileSize) {
+        return Mono.defer(() -> Mp4Boxes.topLevelBoxes(delegate, contentRequest, fileSize))
+                .flatMap(boxes -> {
+                    final Mp4BoxParser.BoxHeader mdat = Mp4Boxes.find(boxes, "mdat");
+                    final Mp4BoxParser.BoxHeader moov = Mp4Boxes.find(boxes, "moov");
+                    if (mdat == null || moov == null || moov.offset() < mdat.offset() || moov.size() > Math.min(maxBytes, Mp4Boxes.MAX_MOOV_SIZE)) {
+                        return Mono.just(new Entry(fileSize, null));
+                    }
+                    // the media data between the first mdat and moov moves down by the size of moov.
+                    return Mp4Boxes.read(delegate, contentRequest, moov.offset(), moov.size())
+                            .map(bytes -> Mp4BoxParser.relocateChunkOffsets(bytes, mdat.offset(), moov.offset(), moov.size()))
+                            .map(relocated -> new Entry(fileSize, new FaststartLayout(fileSize, mdat.offset(), moov.offset(), relocated)))
+                            .doOnNext(_ -> log.info("Serving {} with its moov box moved in front of the media data", contentRequest.getFileName()));
+                })
+                .onErrorResume(IllegalArgumentException.class, exception -> {
+                    log.warn("Serving {} as it is: {}", contentRequest.getFileName(), exception.getMessage());
+                    return Mono.just(new Entry(fileSize, null));
+                })
+                .doOnNext(built -> put(contentRequest.getObjectKey(), built));
+    }
+
+    private static boolean relocatable(final ContentRequest contentRequest) {
+        return contentRequest != null && contentRequest.getObjectKey() != null
+                && VideoContainer.fromExtension(contentRequest.getFileType()).map(VideoContainer::isIsoBaseMedia).orElse(false);
+    }
+
+    private Entry cached(final String objectKey) {
+        synchronized (layouts) {
+            return layouts.get(objectKey);
+        }
+    }
+
+    private void put(final String objectKey, final Entry entry) {
+        synchronized (layouts) {
+            final Entry previous = layouts.put(objectKey, entry);
+            usedBytes += entry.bytes() - (previous == null ? 0 : previous.bytes());
+            final Iterator<Entry> eldest = layouts.values().iterator();
+            while (usedBytes > maxBytes && eldest.hasNext()) {
+                final Entry evicted = eldest.next();
+                if (evicted != entry) {
+                    usedBytes -= evicted.bytes();
+                    eldest.remove();
+                }
+            }
+        }
+    }
+
+    private void remove(final String objectKey) {
+        synchronized (layouts) {
+            final Entry removed = layouts.remove(objectKey);
+            if (removed != null) {
+                usedBytes -= removed.bytes();
+            }
+        }
+    }
+
+    @Override
+    public Mono<Long> getContentSize(final ContentRequest contentRequest) {
+        return delegate.getContentSize(contentRequest);
+    }
+
+    @Override
+    public Flux<Content> findAllContents() {
+        return delegate.findAllContents();
+    }
+
+    @Override
+    public Mono<Content> findFileByKey(final String fileKey) {
+        return delegate.findFileByKey(fileKey);
+    }
+
+    @Override
+    public Mono<Content> findFileByPath(final String relativePath) {
+        return delegate.findFileByPath(relativePath);
+    }
+
+    @Override
+    public Mono<String> getContentVersion(final ContentRequest contentRequest) {
+        return delegate.getContentVersion(contentRequest);
+    }
+
+    @Override
+    public ContentCatalog getContentCatalog() {
+        return delegate.getContentCatalog();
+    }
+}
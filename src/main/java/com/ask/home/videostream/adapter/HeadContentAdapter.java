@@ -0,0 +1,213 @@
+package com.ask.home.videostream.adapter;
+
+import com.ask.home.videostream.cache.HeadCache;
+import com.ask.home.videostream.catalog.CatalogListener;
+import com.ask.home.videostream.catalog.ContentCatalog;
+import com.ask.home.videostream.model.Content;
+import com.ask.home.videostream.model.ContentRequest;
+import io.netty.buffer.PooledByteBufAllocator;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.core.io.buffer.NettyDataBufferFactory;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.Objects;
+import java.util.Optional;
+
+/**
+ * Serves the opening bytes of every catalogued video from the {@link HeadCache}, so the first request of a playback
+ * does not wait for the storage. The heads are loaded in the background by {@link #start()} and reloaded when the
+ * catalog reports a change.
+ * <p>
+ * A head keeps the version of the file it was read from and is served only while the delegate reports that version,
+ * so a change the catalog never hears of (another host writing to a network mount) isn't served from the old head.
+ */
+@Slf4j
+public class HeadContentAdapter implements ContentAdapter {
+
+    private static final NettyDataBufferFactory BUFFER_FACTORY = new NettyDataBufferFactory(PooledByteBufAllocator.DEFAULT);
+    private static final int LOAD_CONCURRENCY = 4;
+
+    private final ContentAdapter delegate;
+    private final HeadCache headCache;
+
+    /**
+     * Constructor.
+     *
+     * @param delegate  ContentAdapter reading the content.
+     * @param headCache HeadCache.
+     */
+    public HeadContentAdapter(final ContentAdapter delegate, final HeadCache headCache) {
+        this.delegate = delegate;
+        this.headCache = headCache;
+        final ContentCatalog contentCatalog = delegate.getContentCatalog();
+        if (contentCatalog != null) {
+            contentCatalog.addListener(new CatalogListener() {
+                @Override
+                public void contentRegistered(final Content content) {
+                    // stale until reloaded.
+                    headCache.remove(content.getObjectKey());
+                    loadHead(content).subscribe();
+                }
+
+                @Override
+                public void contentRemoved(final Content content) {
+                    headCache.remove(content.getObjectKey());
+                }
+            });
+        }
+    }
+
+    /**
+     * Load the heads of the catalogued contents in the background.
+     */
+    public void start() {
+        final ContentCatalog contentCatalog = delegate.getContentCatalog();
+        if (contentCatalog == null) {
+            return;
+        }
+        Flux.fromIterable(contentCatalog.contents())
+                .flatMap(this::loadHead, LOAD_CONCURRENCY)
+                .subscribe(null, error -> log.error("Loading the content heads failed {}", error.getMessage()),
+                        () -> log.info("Loaded {} content heads, {} bytes", headCache.getHeadCount(), headCache.getUsedBytes()));
+    }
+
+    /**
+     * Read the head of a content into the cache.
+     *
+     * @param content catalogued Content.
+     * @return Mono completing once the head is cached.
+     */
+    private Mono<Void> loadHead(final Content content) {
+        // no object key, the head is not read through the block cache.
+        final ContentRequest contentRequest = ContentRequest.builder().fileName(content.getContentName()).fileType(content.getContentType()).filePath(content.getContentPath()).build();
+        // the version is taken before the bytes are read, a change while reading leaves a head of an older version.
+        return version(contentRequest).zipWith(delegate.getContentSize(contentRequest)).flatMap(loaded -> {
+            final String etag = loaded.getT1().orElse(null);
+            final long fileSize = loaded.getT2();
+            if (fileSize < 1) {
+                headCache.remove(content.getObjectKey());
+                return Mono.empty();
+            }
+            final int headLength = (int) Math.min(fileSize, headCache.getHeadSize());
+            final ContentRequest headRequest = ContentRequest.builder().fileName(content.getContentName()).fileType(content.getContentType()).filePath(content.getContentPath())
+                    .rangeStart(0L).rangeEnd(headLength - 1L).build();
+            return ContentBuffers.readDirect(delegate.getContent(headRequest).flatMapMany(Content::getData), headLength, "head of " + content.getObjectKey())
+                    .flatMap(head -> version(contentRequest)
+                            .doOnNext(current -> {
+                                final Content catalogued = delegate.getContentCatalog().findByObjectKey(content.getObjectKey());
+                                if (catalogued == null || !Objects.equals(catalogued.getEtag(), content.getEtag()) || !Objects.equals(current.orElse(null), etag)) {
+                                    // removed or changed while loading, the reload of the change caches the new head.
+                                    head.release();
+                                } else if (!headCache.put(content.getObjectKey(), head, fileSize, etag)) {
+                                    log.debug("Head of {} does not fit the head cache", content.getObjectKey());
+                                }
+                            })
+                            .doOnError(_ -> head.release()))
+                    .then();
+        }).onErrorResume(error -> {
+            log.warn("Failed to load the head of {} {}", content.getObjectKey(), error.getMessage());
+            return Mono.empty();
+        });
+    }
+
+    @Override
+    public Mono<Content> getContent(final ContentRequest contentRequest) {
+        if (contentRequest == null || contentRequest.getObjectKey() == null) {
+            return delegate.getContent(contentRequest);
+        }
+        final String objectKey = contentRequest.getObjectKey();
+        final Long fileSize = headCache.covering(objectKey, contentRequest.getRangeStart(), contentRequest.getRangeEnd());
+        if (fileSize == null || contentRequest.getRangeStart() > contentRequest.getRangeEnd()) {
+            return delegate.getContent(contentRequest);
+        }
+        return version(contentRequest).flatMap(version -> {
+            final String etag = version.orElse(null);
+            if (!headCache.isCurrent(objectKey, etag)) {
+                if (headCache.removeStale(objectKey, etag)) {
+                    log.debug("Head of {} is stale, reloading it", objectKey);
+                    reload(objectKey);
+                }
+                return delegate.getContent(contentRequest);
+            }
+            return Mono.just(fromHead(contentRequest, fileSize, etag));
+        });
+    }
+
+    /**
+     * Content of a range held by the head, read from the storage if the head is replaced before the data is read.
+     */
+    private Content fromHead(final ContentRequest contentRequest, final long fileSize, final String etag) {
+        final String objectKey = contentRequest.getObjectKey();
+        final long start = contentRequest.getRangeStart();
+        final long end = Math.min(contentRequest.getRangeEnd(), fileSize - 1);
+        final Flux<DataBuffer> data = Flux.defer(() -> {
+            final HeadCache.Head head = headCache.acquire(objectKey);
+            if (head == null || head.fileSize() != fileSize || !Objects.equals(head.etag(), etag)) {
+                // reloaded or dropped since, read the range from the storage.
+                if (head != null) {
+                    head.data().release();
+                }
+                final ContentRequest rangeRequest = ContentRequest.builder().fileName(contentRequest.getFileName()).fileType(contentRequest.getFileType()).filePath(contentRequest.getFilePath())
+                        .objectKey(objectKey).clientId(contentRequest.getClientId()).rangeStart(start).rangeEnd(end).build();
+                return delegate.getContent(rangeRequest).flatMapMany(Content::getData);
+            }
+            return Flux.just((DataBuffer) BUFFER_FACTORY.wrap(head.data().slice(head.data().readerIndex() + (int) start, (int) (end - start + 1))));
+        }).doOnDiscard(DataBuffer.class, DataBufferUtils::release);
+        return Content.builder().data(data).contentLength(end - start + 1).rangeStart(start).rangeEnd(end).build();
+    }
+
+    private void reload(final String objectKey) {
+        final Content content = delegate.getContentCatalog().findByObjectKey(objectKey);
+        if (content != null) {
+            loadHead(content).subscribe();
+        }
+    }
+
+    /**
+     * Version of the file from the delegate, empty when it has none.
+     */
+    private Mono<Optional<String>> version(final ContentRequest contentRequest) {
+        return delegate.getContentVersion(contentRequest).map(Optional::of).defaultIfEmpty(Optional.empty());
+    }
+
+    /**
+     * Size from the delegate, the head's may be of an older version of the file.
+     */
+    @Override
+    public Mono<Long> getContentSize(final ContentRequest contentRequest) {
+        return delegate.getContentSize(contentRequest);
+    }
+
+    @Override
+    public Mono<String> getContentVersion(final ContentRequest contentRequest) {
+        return delegate.getContentVersion(contentRequest);
+    }
+
+    @Override
+    public Flux<Content> findAllContents() {
+        return delegate.findAllContents();
+    }
+
+    @Override
+    public Mono<Content> findFileByKey(final String fileKey) {
+        return delegate.findFileByKey(fileKey);
+    }
+
+    @Override
+    public Mono<Content> findFileByPath(final String relativePath) {
+        return delegate.findFileByPath(relativePath);
+    }
+
+    @Override
+    public ContentCatalog getContentCatalog() {
+        return delegate.getContentCatalog();
+    }
+
+    @Override
+    public void prefetch(final ContentRequest contentRequest, final long rangeStart, final long rangeEnd) {
+        delegate.prefetch(contentRequest, rangeStart, rangeEnd);
+    }
+}
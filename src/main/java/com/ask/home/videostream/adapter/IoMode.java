@@ -0,0 +1,62 @@
+package com.ask.home.videostream.adapter;
+
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+
+import java.util.Arrays;
+import java.util.concurrent.Executors;
+
+/**
+ * How the {@link LocalFileContentAdapter} runs its blocking file system calls.
+ */
+public enum IoMode {
+
+    /**
+     * Reads, stats and opens on the bounded elastic pool of platform threads, directory walks on a fixed pool.
+     */
+    PLATFORM_THREADS("platform-threads"),
+
+    /**
+     * Reads, stats, opens and directory walks on virtual threads.
+     */
+    VIRTUAL_THREADS("virtual-threads"),
+
+    /**
+     * Reads with an {@link java.nio.channels.AsynchronousFileChannel}, completed by its own pool; stats and opens on
+     * virtual threads.
+     */
+    ASYNC_CHANNEL("async-channel");
+
+    private final String value;
+
+    IoMode(final String value) {
+        this.value = value;
+    }
+
+    public String getValue() {
+        return value;
+    }
+
+    /**
+     * New scheduler of the blocking calls of this mode.
+     *
+     * @return Scheduler.
+     */
+    public Scheduler newScheduler() {
+        return switch (this) {
+            case PLATFORM_THREADS -> Schedulers.newBoundedElastic(Schedulers.DEFAULT_BOUNDED_ELASTIC_SIZE, Schedulers.DEFAULT_BOUNDED_ELASTIC_QUEUESIZE, "video-io");
+            case VIRTUAL_THREADS, ASYNC_CHANNEL -> Schedulers.fromExecutorService(Executors.newVirtualThreadPerTaskExecutor(), "video-io");
+        };
+    }
+
+    /**
+     * IoMode by its configuration value.
+     *
+     * @param value String.
+     * @return IoMode.
+     */
+    public static IoMode of(final String value) {
+        return Arrays.stream(values()).filter(mode -> mode.value.equals(value)).findFirst()
+                .orElseThrow(() -> new IllegalArgumentException("Unknown video.io.mode " + value));
+    }
+}
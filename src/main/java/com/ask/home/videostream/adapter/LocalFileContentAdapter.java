@@ -1,31 +1,85 @@
 package com.ask.home.videostream.adapter;
 
+import com.ask.home.videostream.cache.FileHandleCache;
+import com.ask.home.videostream.catalog.CatalogSnapshot;
+import com.ask.home.videostream.catalog.ContentCatalog;
+import com.ask.home.videostream.catalog.FileSystemWatcher;
+import com.ask.home.videostream.catalog.ParallelDirectoryScanner;
 import com.ask.home.videostream.model.Content;
 import com.ask.home.videostream.model.ContentRequest;
 import com.ask.home.videostream.util.FileUtil;
+import com.ask.home.videostream.util.HttpValidators;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.PooledByteBufAllocator;
+import lombok.Getter;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.core.io.buffer.NettyDataBufferFactory;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
 
+import java.io.Closeable;
 import java.io.File;
 import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.channels.AsynchronousFileChannel;
+import java.nio.file.FileAlreadyExistsException;
 import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
 import java.nio.file.attribute.BasicFileAttributes;
+import java.time.Duration;
 import java.util.*;
-import java.util.stream.Collectors;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.stream.Stream;
 
+import static com.ask.home.videostream.constants.ApplicationConstants.SINGLE_READ_SIZE;
 import static com.ask.home.videostream.util.FileUtil.getFilePath;
 
 /**
  * Extract the content from local to the device(volume/drive).
+ * The contents are indexed once in the {@link ContentCatalog} and kept up to date by a {@link FileSystemWatcher}.
+ * When a {@link CatalogSnapshot} is configured the catalog is loaded from it and verified in the background.
+ * The files are read with positional reads on the channels kept open by the {@link FileHandleCache}, which also caches
+ * their attributes. Every blocking file system call runs on the I/O scheduler, never on the caller's thread; with
+ * {@link IoMode#ASYNC_CHANNEL} the reads go through an {@link AsynchronousFileChannel} instead.
  */
 @Slf4j
-public class LocalFileContentAdapter implements ContentAdapter {
+public class LocalFileContentAdapter implements ContentAdapter, Closeable {
 
     final public static String FILE_PATH_FORMAT = "%s/%s";
-    final private Map<String, Content> localFileMap;
+    /**
+     * Folder of the files being uploaded, inside the content root so that publishing one is a rename.
+     */
+    final public static String UPLOAD_FOLDER = ".uploads";
+    final private static int MAX_DEPTH = 10;
+    // a file being copied in is catalogued once its size and modification time stop changing.
+    final private static Duration FILE_SETTLE_TIME = Duration.ofSeconds(1);
+    final private static int DEFAULT_SCAN_PARALLELISM = 16;
+    final private static int DEFAULT_MAX_OPEN_FILES = 256;
+    final private static Duration DEFAULT_REVALIDATE_AFTER = Duration.ofSeconds(2);
+    final private static NettyDataBufferFactory BUFFER_FACTORY = new NettyDataBufferFactory(PooledByteBufAllocator.DEFAULT);
+    @Getter
+    final private ContentCatalog contentCatalog;
     final private String localFilePath;
+    final private Path rootPath;
+    @Getter
+    final private Path uploadFolder;
+    final private FileSystemWatcher fileSystemWatcher;
+    final private ParallelDirectoryScanner directoryScanner;
+    final private Path snapshotPath;
+    final private FileHandleCache fileHandleCache;
+    final private Scheduler ioScheduler;
+    final private IoMode ioMode;
+    // relative paths of the folders seen, their mtimes go into the snapshot.
+    final private Set<String> knownFolders = ConcurrentHashMap.newKeySet();
+    private volatile boolean catalogLoaded;
 
     /**
      * Constructor injection for the root content path.
@@ -33,81 +87,534 @@ public class LocalFileContentAdapter implements ContentAdapter {
      * @param localFilePath String.
      */
     public LocalFileContentAdapter(String localFilePath) {
+        this(localFilePath, null, DEFAULT_SCAN_PARALLELISM);
+    }
+
+    /**
+     * Constructor injection for the root content path and the catalog settings.
+     *
+     * @param localFilePath   String.
+     * @param snapshotPath    catalog snapshot file, null to disable.
+     * @param scanParallelism concurrent file system calls while scanning the content root.
+     */
+    public LocalFileContentAdapter(String localFilePath, Path snapshotPath, int scanParallelism) {
+        this(localFilePath, snapshotPath, scanParallelism, new FileHandleCache(DEFAULT_MAX_OPEN_FILES, DEFAULT_REVALIDATE_AFTER));
+    }
+
+    /**
+     * Constructor injection for the root content path, the catalog settings and the open files.
+     *
+     * @param localFilePath   String.
+     * @param snapshotPath    catalog snapshot file, null to disable.
+     * @param scanParallelism concurrent file system calls while scanning the content root.
+     * @param fileHandleCache FileHandleCache of the served files.
+     */
+    public LocalFileContentAdapter(String localFilePath, Path snapshotPath, int scanParallelism, FileHandleCache fileHandleCache) {
+        this(localFilePath, snapshotPath, scanParallelism, fileHandleCache, Schedulers.boundedElastic());
+    }
+
+    /**
+     * Constructor injection for the root content path, the catalog settings, the open files and the I/O scheduler.
+     *
+     * @param localFilePath   String.
+     * @param snapshotPath    catalog snapshot file, null to disable.
+     * @param scanParallelism concurrent file system calls while scanning the content root.
+     * @param fileHandleCache FileHandleCache of the served files.
+     * @param ioScheduler     Scheduler running the blocking file system calls.
+     */
+    public LocalFileContentAdapter(String localFilePath, Path snapshotPath, int scanParallelism, FileHandleCache fileHandleCache, Scheduler ioScheduler) {
+        this(localFilePath, snapshotPath, scanParallelism, fileHandleCache, ioScheduler, IoMode.PLATFORM_THREADS);
+    }
+
+    /**
+     * Constructor injection for the root content path, the catalog settings, the open files and the I/O execution.
+     *
+     * @param localFilePath   String.
+     * @param snapshotPath    catalog snapshot file, null to disable.
+     * @param scanParallelism concurrent file system calls while scanning the content root.
+     * @param fileHandleCache FileHandleCache of the served files.
+     * @param ioScheduler     Scheduler running the blocking file system calls.
+     * @param ioMode          IoMode of the reads and the directory walks.
+     */
+    public LocalFileContentAdapter(String localFilePath, Path snapshotPath, int scanParallelism, FileHandleCache fileHandleCache, Scheduler ioScheduler, IoMode ioMode) {
         this.localFilePath = localFilePath;
-        localFileMap = new HashMap<>();
+        this.snapshotPath = snapshotPath;
+        this.fileHandleCache = fileHandleCache;
+        this.ioScheduler = ioScheduler;
+        this.ioMode = ioMode;
+        this.directoryScanner = new ParallelDirectoryScanner(scanParallelism, ioMode != IoMode.PLATFORM_THREADS);
+        this.rootPath = Paths.get(new File(localFilePath).getAbsolutePath()).normalize();
+        this.uploadFolder = rootPath.resolve(UPLOAD_FOLDER);
+        this.contentCatalog = new ContentCatalog();
+        this.fileSystemWatcher = new FileSystemWatcher(rootPath, MAX_DEPTH, FILE_SETTLE_TIME, new CatalogUpdater());
+    }
+
+    /**
+     * Start watching the content root and load the catalog, from the snapshot when there is one.
+     */
+    public void start() {
+        if (!Files.isDirectory(rootPath)) {
+            log.warn("Content path {} doesn't exist, nothing to watch", rootPath);
+            return;
+        }
+        final CatalogSnapshot snapshot = readSnapshot();
+        if (snapshot == null) {
+            // watch first so that nothing created during the scan is missed.
+            fileSystemWatcher.start();
+            loadCatalog();
+            writeSnapshot();
+            return;
+        }
+        snapshot.getContents().forEach(contentCatalog::register);
+        catalogLoaded = true;
+        log.info("Loaded {} contents from the catalog snapshot {}", snapshot.getContents().size(), snapshotPath);
+        Thread.ofPlatform().name("content-catalog-verifier").daemon().start(() -> {
+            try {
+                fileSystemWatcher.start();
+                verifyFolders(snapshot.getFolderModifiedTimes());
+                writeSnapshot();
+            } catch (RuntimeException exception) {
+                log.error("Error while verifying the catalog snapshot", exception);
+            }
+        });
+    }
+
+    @Override
+    public void close() {
+        fileSystemWatcher.close();
+        writeSnapshot();
+        fileHandleCache.close();
     }
 
     /**
      * find Object By key.
      *
      * @param fileKey String
-     * @return Content.
+     * @return Mono of the Content, empty when not catalogued.
      */
-    public Content findFileByKey(final String fileKey) {
+    @Override
+    public Mono<Content> findFileByKey(final String fileKey) {
         if (fileKey == null) {
-            throw new RuntimeException("FileKey can't be null");
+            return Mono.error(new RuntimeException("FileKey can't be null"));
         }
-        if (localFileMap.isEmpty()) {
-            findAllContents();
-        }
-        return localFileMap.get(fileKey);
+        return fromCatalog(() -> contentCatalog.findByObjectKey(fileKey));
     }
 
+    /**
+     * find Object By the path relative to the content root.
+     *
+     * @param relativePath String
+     * @return Mono of the Content, empty when not catalogued.
+     */
+    @Override
+    public Mono<Content> findFileByPath(final String relativePath) {
+        return fromCatalog(() -> contentCatalog.findByPath(relativePath));
+    }
 
     @Override
-    public Content getContent(final ContentRequest contentRequest) {
+    public Mono<Content> getContent(final ContentRequest contentRequest) {
+        return onIoScheduler(() -> readContent(contentRequest));
+    }
+
+    /**
+     * Prepare the Content of the requested range, its data is read when subscribed.
+     *
+     * @param contentRequest ContentRequest.
+     * @return Content.
+     */
+    private Content readContent(final ContentRequest contentRequest) {
         boolean isValid = validateRequest(contentRequest);
         if (!isValid) {
             throw new RuntimeException("Not a valid content request");
         }
-        try {
-            byte[] content = readByBytesRange(contentRequest);
-            return Content.builder().content(content).contentLength((long) content.length).rangeStart(contentRequest.getRangeStart()).rangeEnd(contentRequest.getRangeEnd()).build();
-        } catch (IOException e) {
-            throw new RuntimeException(e);
+        Path path = Paths.get(getFilePath(localFilePath, contentRequest.getFilePath(), contentRequest.getFileName()));
+        long fileSize = sizeFromFile(path);
+        long start = contentRequest.getRangeStart();
+        if (fileSize == 0) {
+            return Content.builder().data(Flux.empty()).contentLength(0L).rangeStart(start).rangeEnd(contentRequest.getRangeEnd()).build();
+        }
+        if (start >= fileSize) {
+            throw new RuntimeException("Range start is beyond the content size");
         }
+        long end = Math.min(contentRequest.getRangeEnd(), fileSize - 1);
+        long contentLength = end - start + 1;
+        return Content.builder().data(readByBytesRange(path, start, contentLength)).localFile(path).contentLength(contentLength).rangeStart(start).rangeEnd(end).build();
     }
 
 
     /**
-     * read the bytes of the file by the range.
+     * read the bytes of the file by the range, with positional reads of up to {@link com.ask.home.videostream.constants.ApplicationConstants#SINGLE_READ_SIZE}
+     * bytes on the cached channel, off the event loop.
      *
-     * @param contentRequest ContentRequest.
-     * @return byte[]
-     * @throws IOException ioException.
+     * @param path          Path.
+     * @param start         first byte to read.
+     * @param contentLength number of bytes to read.
+     * @return Flux of DataBuffer, released by the consumer once written.
      */
-    private byte[] readByBytesRange(final ContentRequest contentRequest) throws IOException {
-        Path path = Paths.get(getFilePath(localFilePath, contentRequest.getFilePath(), contentRequest.getFileName()));
-        byte[] data = Files.readAllBytes(path);
-        if (data.length == 0) {
-            return data;
+    private Flux<DataBuffer> readByBytesRange(final Path path, final long start, final long contentLength) {
+        if (ioMode == IoMode.ASYNC_CHANNEL) {
+            return readByBytesRangeAsync(path, start, contentLength);
         }
-        long end = contentRequest.getRangeEnd();
-        long start = contentRequest.getRangeStart();
-        byte[] result = new byte[(int) (end - start) + 1];
-        System.arraycopy(data, (int) start, result, 0, (int) (end - start) + 1);
-        return result;
+        return Flux.using(() -> fileHandleCache.acquire(path),
+                handle -> Flux.<DataBuffer, Long>generate(() -> start, (position, sink) -> {
+                    final long remaining = start + contentLength - position;
+                    if (remaining <= 0) {
+                        sink.complete();
+                        return position;
+                    }
+                    final int length = (int) Math.min(remaining, SINGLE_READ_SIZE);
+                    final ByteBuf buffer = PooledByteBufAllocator.DEFAULT.directBuffer(length, length);
+                    try {
+                        while (buffer.isWritable()) {
+                            if (buffer.writeBytes(handle.channel(), position + buffer.readableBytes(), buffer.writableBytes()) < 0) {
+                                throw new IOException("Unexpected end of " + path);
+                            }
+                        }
+                    } catch (IOException ioException) {
+                        buffer.release();
+                        sink.error(new UncheckedIOException(ioException));
+                        return position;
+                    }
+                    sink.next(BUFFER_FACTORY.wrap(buffer));
+                    return position + length;
+                }),
+                FileHandleCache.Handle::close)
+                .doOnDiscard(DataBuffer.class, DataBufferUtils::release)
+                .subscribeOn(ioScheduler);
+    }
+
+    /**
+     * read the bytes of the file by the range with an {@link AsynchronousFileChannel}, only the open runs on the I/O
+     * scheduler and the reads complete on the pool of the channel.
+     *
+     * @param path          Path.
+     * @param start         first byte to read.
+     * @param contentLength number of bytes to read.
+     * @return Flux of DataBuffer, released by the consumer once written.
+     */
+    private Flux<DataBuffer> readByBytesRangeAsync(final Path path, final long start, final long contentLength) {
+        final int bufferSize = (int) Math.min(contentLength, SINGLE_READ_SIZE);
+        return DataBufferUtils.takeUntilByteCount(
+                        DataBufferUtils.readAsynchronousFileChannel(() -> AsynchronousFileChannel.open(path, StandardOpenOption.READ), start, BUFFER_FACTORY, bufferSize),
+                        contentLength)
+                .subscribeOn(ioScheduler);
     }
 
     /**
      * Content length.
      *
      * @param contentRequest ContentRequest.
-     * @return Long.
+     * @return Mono of the size, 0 when the file can't be read.
+     */
+    @Override
+    public Mono<Long> getContentSize(ContentRequest contentRequest) {
+        return onIoScheduler(() -> Optional.ofNullable(contentRequest).map(_ -> Paths.get(getFilePath(localFilePath, contentRequest.getFilePath(), contentRequest.getFileName()))).map(this::sizeFromFile).orElse(0L));
+    }
+
+    /**
+     * ETag of the file from its cached attributes, checked again every revalidate-after: a file changed where the
+     * watcher doesn't see it (another host of a network mount) gets a new version without an event.
+     *
+     * @param contentRequest ContentRequest.
+     * @return Mono of the ETag, empty when the file can't be read or the file system has no file keys.
      */
     @Override
-    public Long getContentSize(ContentRequest contentRequest) {
-        return Optional.ofNullable(contentRequest).map(_ -> Paths.get(getFilePath(localFilePath, contentRequest.getFilePath(), contentRequest.getFileName()))).map(this::sizeFromFile).orElse(0L);
+    public Mono<String> getContentVersion(final ContentRequest contentRequest) {
+        if (contentRequest == null) {
+            return Mono.empty();
+        }
+        return onIoScheduler(() -> {
+            final FileHandleCache.FileAttributes attributes = fileHandleCache.attributes(Paths.get(getFilePath(localFilePath, contentRequest.getFilePath(), contentRequest.getFileName())));
+            return attributes.fileKey() == null ? null : HttpValidators.etag(attributes.fileKey().toString(), attributes.size(), attributes.lastModified());
+        }).onErrorResume(IOException.class, _ -> Mono.empty());
     }
 
     @Override
-    public List<Content> findAllContents() {
-        Path path = Paths.get(new File(localFilePath).getAbsolutePath());
-        try (Stream<Path> stream = Files.walk(path, 10)) {
-            return stream.filter(file -> !Files.isDirectory(file)).map(this::prepareContent).filter(Objects::nonNull).collect(Collectors.toList());
+    public Flux<Content> findAllContents() {
+        return fromCatalog(() -> new ArrayList<>(contentCatalog.contents())).flatMapIterable(contents -> contents);
+    }
+
+    /**
+     * Move an uploaded file to its path in the content root, never over an existing file, and catalog it without waiting
+     * for the watcher.
+     *
+     * @param uploadedFile complete file in the upload folder.
+     * @param relativePath path of the content inside the content root.
+     * @return Mono of the catalogued Content, IllegalArgumentException when the path is invalid or the file isn't a
+     * video, IllegalStateException when a file already has the path.
+     */
+    public Mono<Content> publish(final Path uploadedFile, final String relativePath) {
+        return onIoScheduler(() -> {
+            final Path target = resolveContentPath(relativePath);
+            if (!FileUtil.isVideoFile(uploadedFile)) {
+                throw new IllegalArgumentException("Uploaded file is not a video");
+            }
+            Files.createDirectories(target.getParent());
+            // a link fails atomically when the target exists where a rename would replace it.
+            try {
+                Files.createLink(target, uploadedFile);
+                Files.delete(uploadedFile);
+            } catch (FileAlreadyExistsException fileAlreadyExistsException) {
+                throw new IllegalStateException("A file already exists at " + relativePath);
+            } catch (UnsupportedOperationException unsupportedOperationException) {
+                moveWithoutReplacing(uploadedFile, target, relativePath);
+            }
+            fileHandleCache.invalidate(target);
+            final Content content = prepareContent(target);
+            if (content == null) {
+                throw new IllegalStateException("Published file vanished " + relativePath);
+            }
+            contentCatalog.register(content);
+            log.info("Published the upload {}", relativePath);
+            return content;
+        });
+    }
+
+    /**
+     * Move a file where hard links aren't supported, failing when the target exists.
+     *
+     * @param source       file to move.
+     * @param target       Path it's moved to.
+     * @param relativePath path of the content inside the content root.
+     * @throws IOException when the move fails.
+     */
+    private static void moveWithoutReplacing(final Path source, final Path target, final String relativePath) throws IOException {
+        try {
+            Files.move(source, target);
+        } catch (FileAlreadyExistsException fileAlreadyExistsException) {
+            throw new IllegalStateException("A file already exists at " + relativePath);
+        }
+    }
+
+    /**
+     * Absolute path of a content in the content root.
+     *
+     * @param relativePath path inside the content root, '/' separated.
+     * @return Path.
+     * @throws IllegalArgumentException when the path is blank, leaves the content root or is in the upload folder.
+     */
+    public Path resolveContentPath(final String relativePath) {
+        if (relativePath == null || relativePath.isBlank()) {
+            throw new IllegalArgumentException("Content path is blank");
+        }
+        String trimmed = relativePath.replace('\\', '/');
+        while (trimmed.startsWith("/")) {
+            trimmed = trimmed.substring(1);
+        }
+        final Path path = rootPath.resolve(trimmed).normalize();
+        if (!path.startsWith(rootPath) || path.equals(rootPath) || isUpload(path)) {
+            throw new IllegalArgumentException("Content path outside of the content root " + relativePath);
+        }
+        return path;
+    }
+
+    /**
+     * Forget the open channel and the attributes of a file replaced behind the watcher's back.
+     *
+     * @param relativePath path inside the content root.
+     */
+    public void invalidate(final String relativePath) {
+        fileHandleCache.invalidate(resolveContentPath(relativePath));
+    }
+
+    /**
+     * Look up the catalog, on the I/O scheduler when it still has to be scanned.
+     *
+     * @param lookup catalog lookup, may return null.
+     * @return Mono of the lookup result.
+     */
+    private <T> Mono<T> fromCatalog(final Callable<T> lookup) {
+        if (catalogLoaded) {
+            return Mono.fromCallable(lookup);
+        }
+        return onIoScheduler(() -> {
+            loadCatalog();
+            return lookup.call();
+        });
+    }
+
+    /**
+     * Run a blocking call on the I/O scheduler.
+     *
+     * @param call blocking call, may return null.
+     * @return Mono of the call result.
+     */
+    private <T> Mono<T> onIoScheduler(final Callable<T> call) {
+        return Mono.fromCallable(call).subscribeOn(ioScheduler);
+    }
+
+    /**
+     * Scan the content root once, later changes come from the watcher.
+     */
+    private void loadCatalog() {
+        if (catalogLoaded) {
+            return;
+        }
+        synchronized (contentCatalog) {
+            if (!catalogLoaded && Files.isDirectory(rootPath)) {
+                scanContents(false);
+            }
+            catalogLoaded = true;
+        }
+    }
+
+    /**
+     * Walk the content root and register every video.
+     *
+     * @param pruneMissing remove the catalogued contents that are not found anymore.
+     */
+    private void scanContents(final boolean pruneMissing) {
+        final Set<String> scannedPaths = scanFolderTree(rootPath);
+        if (pruneMissing) {
+            contentCatalog.retainPaths(scannedPaths);
+        }
+    }
+
+    /**
+     * Walk the folder and register every video in it and its sub folders, as the scanner finds them.
+     *
+     * @param folder Path.
+     * @return relative paths of the registered contents.
+     */
+    private Set<String> scanFolderTree(final Path folder) {
+        final Set<String> scannedPaths = ConcurrentHashMap.newKeySet();
+        final int depth = folder.equals(rootPath) ? 0 : rootPath.relativize(folder).getNameCount();
+        directoryScanner.scan(folder, MAX_DEPTH - depth, new ParallelDirectoryScanner.Visitor() {
+            @Override
+            public void folder(final Path path) {
+                knownFolders.add(relativePath(path));
+            }
+
+            @Override
+            public void file(final Path path, final BasicFileAttributes attributes) {
+                final Content content = prepareContent(path, attributes);
+                if (content != null) {
+                    contentCatalog.register(content);
+                    scannedPaths.add(ContentCatalog.relativePath(content));
+                }
+            }
+        });
+        return scannedPaths;
+    }
+
+    /**
+     * Compare the folder mtimes of the snapshot with the file system and rescan the folders that changed.
+     *
+     * @param snapshotFolders folder mtimes from the snapshot.
+     */
+    private void verifyFolders(final Map<String, Long> snapshotFolders) {
+        int changedFolders = 0;
+        for (Map.Entry<String, Long> snapshotFolder : snapshotFolders.entrySet()) {
+            final Long modifiedTime = lastModified(rootPath.resolve(snapshotFolder.getKey()));
+            if (modifiedTime == null) {
+                removeFolder(snapshotFolder.getKey());
+                changedFolders++;
+            } else if (!modifiedTime.equals(snapshotFolder.getValue())) {
+                knownFolders.add(snapshotFolder.getKey());
+                rescanFolder(snapshotFolder.getKey(), snapshotFolders);
+                changedFolders++;
+            } else {
+                knownFolders.add(snapshotFolder.getKey());
+            }
+        }
+        log.info("Catalog snapshot verified, {} of {} folders changed", changedFolders, snapshotFolders.size());
+    }
+
+    /**
+     * Register the files directly inside the folder, drop the ones that are gone and scan the new sub folders.
+     *
+     * @param folder          relative folder path.
+     * @param snapshotFolders folders known by the snapshot.
+     */
+    private void rescanFolder(final String folder, final Map<String, Long> snapshotFolders) {
+        final Set<String> presentPaths = new HashSet<>();
+        try (Stream<Path> children = Files.list(rootPath.resolve(folder))) {
+            children.forEach(child -> {
+                final String childPath = relativePath(child);
+                if (Files.isDirectory(child)) {
+                    if (!snapshotFolders.containsKey(childPath)) {
+                        scanFolderTree(child);
+                    }
+                } else {
+                    final Content content = prepareContent(child);
+                    if (content != null) {
+                        contentCatalog.register(content);
+                        presentPaths.add(childPath);
+                    }
+                }
+            });
         } catch (IOException e) {
             throw new RuntimeException(e);
         }
+        contentCatalog.findByFolder(folder).stream().map(ContentCatalog::relativePath).filter(path -> !presentPaths.contains(path)).forEach(contentCatalog::unregister);
+    }
+
+    /**
+     * Forget a folder that doesn't exist anymore.
+     *
+     * @param folder relative folder path.
+     */
+    private void removeFolder(final String folder) {
+        contentCatalog.unregisterFolder(folder);
+        knownFolders.removeIf(knownFolder -> knownFolder.equals(folder) || knownFolder.startsWith(folder + "/"));
+    }
+
+    /**
+     * Read the snapshot, if configured and made for this content root.
+     *
+     * @return CatalogSnapshot or null.
+     */
+    private CatalogSnapshot readSnapshot() {
+        if (snapshotPath == null || !Files.isRegularFile(snapshotPath)) {
+            return null;
+        }
+        try {
+            final CatalogSnapshot snapshot = CatalogSnapshot.read(snapshotPath);
+            if (!rootPath.toString().equals(snapshot.getRootPath())) {
+                log.warn("Catalog snapshot {} belongs to {}, ignoring it", snapshotPath, snapshot.getRootPath());
+                return null;
+            }
+            return snapshot;
+        } catch (IOException ioException) {
+            log.warn("Can't read the catalog snapshot {} {}", snapshotPath, ioException.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Write the snapshot of the current catalog.
+     */
+    private void writeSnapshot() {
+        if (snapshotPath == null || !catalogLoaded) {
+            return;
+        }
+        // folder mtimes first, a change racing with the copy then shows up as a changed folder on the next start.
+        final Map<String, Long> folderModifiedTimes = new HashMap<>();
+        for (String folder : knownFolders) {
+            final Long modifiedTime = lastModified(rootPath.resolve(folder));
+            if (modifiedTime != null) {
+                folderModifiedTimes.put(folder, modifiedTime);
+            }
+        }
+        try {
+            CatalogSnapshot.write(snapshotPath, rootPath.toString(), folderModifiedTimes, contentCatalog.contents());
+        } catch (IOException ioException) {
+            log.error("Error while writing the catalog snapshot {}", snapshotPath, ioException);
+        }
+    }
+
+    /**
+     * Last modified time of the path.
+     *
+     * @param path Path.
+     * @return epoch millis, null when the path doesn't exist.
+     */
+    private Long lastModified(final Path path) {
+        try {
+            return Files.getLastModifiedTime(path).toMillis();
+        } catch (IOException ioException) {
+            return null;
+        }
     }
 
     /**
@@ -117,33 +624,61 @@ public class LocalFileContentAdapter implements ContentAdapter {
      * @return Content
      */
     private Content prepareContent(final Path path) {
-        if (FileUtil.isVideoFile(path)) {
+        return isUpload(path) ? null : prepareContent(path, getFileAttribute(path));
+    }
+
+    /**
+     * prepareContent from the attributes already read.
+     *
+     * @param path                Path
+     * @param basicFileAttributes BasicFileAttributes
+     * @return Content
+     */
+    private Content prepareContent(final Path path, final BasicFileAttributes basicFileAttributes) {
+        // a partial upload can already look like a video.
+        if (!isUpload(path) && FileUtil.isVideoFile(path, basicFileAttributes)) {
             final String fileName = path.getFileName().toString();
             String extension = "";
             int index = fileName.lastIndexOf('.');
             if (index > 0) {
                 extension = fileName.substring(index + 1);
             }
-            BasicFileAttributes basicFileAttributes = getFileAttribute(path);
 
             // prepare content path - remove root file path
-            String contentPath = path.getParent().toFile().toString();
-            int localFilePathIndex = contentPath.indexOf(localFilePath);
-            if (localFilePathIndex > -1) {
-                contentPath = contentPath.substring(localFilePathIndex);
-                contentPath = contentPath.replace(localFilePath, "");
+            String contentPath = relativePath(path.getParent());
+            if (!contentPath.isEmpty()) {
+                contentPath = "/" + contentPath;
             }
             Base64.Encoder encoder = Base64.getEncoder();
             byte[] encodedByte = encoder.encode(basicFileAttributes.fileKey().toString().getBytes());
             UUID uuid = UUID.nameUUIDFromBytes(encodedByte);
 
-            Content content = Content.builder().contentName(fileName).objectKey(uuid.toString()).contentPath(contentPath).contentType(extension).totalContentSize(basicFileAttributes.size()).build();
-            localFileMap.put(uuid.toString(), content);
-            return content;
+            return Content.builder().contentName(fileName).objectKey(uuid.toString()).contentPath(contentPath).contentType(extension).totalContentSize(basicFileAttributes.size())
+                    .lastModified(basicFileAttributes.lastModifiedTime().toMillis()).fileKey(basicFileAttributes.fileKey().toString()).build();
         }
         return null;
     }
 
+    /**
+     * Whether the path is in the upload folder.
+     *
+     * @param path Path.
+     * @return boolean.
+     */
+    private boolean isUpload(final Path path) {
+        return path.toAbsolutePath().normalize().startsWith(uploadFolder);
+    }
+
+    /**
+     * Path relative to the content root, with '/' separators.
+     *
+     * @param path absolute Path.
+     * @return String.
+     */
+    private String relativePath(final Path path) {
+        return rootPath.relativize(path.toAbsolutePath().normalize()).toString().replace(File.separatorChar, '/');
+    }
+
     /**
      * Read basic file Attributes
      *
@@ -166,7 +701,9 @@ public class LocalFileContentAdapter implements ContentAdapter {
      */
     private Long sizeFromFile(Path path) {
         try {
-            return Files.size(path);
+            return fileHandleCache.attributes(path).size();
+        } catch (NoSuchFileException noSuchFileException) {
+            log.error("File not found {}", path);
         } catch (IOException ioException) {
             log.error("Error while getting the file size", ioException);
         }
@@ -190,4 +727,41 @@ public class LocalFileContentAdapter implements ContentAdapter {
 
         return contentRequest.getFileName() != null && contentRequest.getFileType() != null;
     }
+
+    /**
+     * Apply the file system changes to the catalog.
+     */
+    private class CatalogUpdater implements FileSystemWatcher.Listener {
+
+        @Override
+        public void fileChanged(final Path file) {
+            fileHandleCache.invalidate(file);
+            final Content content = prepareContent(file);
+            if (content != null) {
+                contentCatalog.register(content);
+            } else {
+                contentCatalog.unregister(relativePath(file));
+            }
+        }
+
+        @Override
+        public void pathDeleted(final Path path) {
+            fileHandleCache.invalidate(path);
+            final String relativePath = relativePath(path);
+            contentCatalog.unregister(relativePath);
+            removeFolder(relativePath);
+        }
+
+        @Override
+        public void folderRegistered(final Path folder) {
+            knownFolders.add(relativePath(folder));
+        }
+
+        @Override
+        public void overflow() {
+            log.warn("File events were lost, scanning {} again", rootPath);
+            fileHandleCache.invalidateAll();
+            scanContents(true);
+        }
+    }
 }
@@ -0,0 +1,400 @@
+package com.ask.home.videostream.adapter;
+
+import com.ask.home.videostream.catalog.ContentCatalog;
+import com.ask.home.videostream.model.Content;
+import com.ask.home.videostream.model.ContentRequest;
+import com.ask.home.videostream.util.AwsV4Signer;
+import com.ask.home.videostream.util.VideoContainer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.client.reactive.ReactorClientHttpConnector;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.netty.http.client.HttpClient;
+import reactor.netty.resources.ConnectionProvider;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import java.io.ByteArrayInputStream;
+import java.io.Closeable;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.Callable;
+
+/**
+ * Serves the contents of an S3 compatible object store bucket.
+ * <p>
+ * The bucket is listed (ListObjectsV2) into the {@link ContentCatalog} on start and every {@code refreshInterval}, so
+ * the sizes and validators come from memory. Objects outside of the catalog are sized with a HEAD, cached. A range is
+ * read with ranged GETs of {@code partSize} bytes, {@code parallelism} of them in flight, on a pooled non-blocking
+ * HTTP client; their bodies are streamed in order, each GET read as the previous ones are consumed.
+ */
+@Slf4j
+public class S3ContentAdapter implements ContentAdapter, Closeable {
+
+    private static final String SERVICE = "s3";
+    // listing pages hold at most 1000 keys.
+    private static final int MAX_LISTING_BYTES = 16 * 1024 * 1024;
+    private static final int MAX_CACHED_SIZES = 10_000;
+    private static final XMLInputFactory XML_INPUT_FACTORY = XMLInputFactory.newFactory();
+
+    static {
+        XML_INPUT_FACTORY.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+        XML_INPUT_FACTORY.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+    }
+
+    private final S3Settings settings;
+    private final URI bucketUri;
+    private final String prefix;
+    private final ConnectionProvider connectionProvider;
+    private final WebClient webClient;
+    private final ContentCatalog contentCatalog = new ContentCatalog();
+    // HEAD sizes of the objects not catalogued, by relative path.
+    private final Map<String, Long> sizes = new LinkedHashMap<>(256, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(final Map.Entry<String, Long> eldest) {
+            return size() > MAX_CACHED_SIZES;
+        }
+    };
+    private final Mono<Void> initialListing;
+    private volatile boolean catalogLoaded;
+    private Disposable refresher;
+
+    /**
+     * Listing page.
+     */
+    private record ListingPage(List<Content> contents, String nextContinuationToken) {
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param settings S3Settings of the bucket.
+     */
+    public S3ContentAdapter(final S3Settings settings) {
+        if (settings.getEndpoint() == null || settings.getBucket() == null || settings.getPartSize() < 1 || settings.getParallelism() < 1) {
+            throw new IllegalArgumentException("S3 endpoint, bucket, part size and parallelism are required");
+        }
+        this.settings = settings;
+        final String endpoint = settings.getEndpoint().endsWith("/") ? settings.getEndpoint().substring(0, settings.getEndpoint().length() - 1) : settings.getEndpoint();
+        this.bucketUri = URI.create(endpoint + "/" + AwsV4Signer.encode(settings.getBucket(), false));
+        final String configuredPrefix = settings.getPrefix() == null ? "" : settings.getPrefix();
+        this.prefix = configuredPrefix.isEmpty() || configuredPrefix.endsWith("/") ? configuredPrefix : configuredPrefix + "/";
+        this.connectionProvider = ConnectionProvider.builder("s3-content").maxConnections(settings.getMaxConnections()).maxIdleTime(Duration.ofSeconds(30)).build();
+        this.webClient = WebClient.builder()
+                .clientConnector(new ReactorClientHttpConnector(HttpClient.create(connectionProvider)))
+                .codecs(codecs -> codecs.defaultCodecs().maxInMemorySize(MAX_LISTING_BYTES))
+                .build();
+        // a failed first listing is tried again by the next lookup.
+        this.initialListing = Mono.defer(this::refresh).cache(_ -> Duration.ofMillis(Long.MAX_VALUE), _ -> Duration.ZERO, () -> Duration.ofMillis(Long.MAX_VALUE));
+    }
+
+    /**
+     * List the bucket, then again every refresh interval.
+     */
+    public void start() {
+        initialListing.onErrorResume(exception -> {
+            log.error("Can't list the bucket {} {}", settings.getBucket(), exception.getMessage());
+            return Mono.empty();
+        }).subscribe();
+        if (!settings.getRefreshInterval().isZero()) {
+            refresher = Flux.interval(settings.getRefreshInterval(), settings.getRefreshInterval())
+                    .concatMap(_ -> refresh().onErrorResume(exception -> {
+                        log.warn("Can't refresh the listing of the bucket {} {}", settings.getBucket(), exception.getMessage());
+                        return Mono.empty();
+                    }))
+                    .subscribe();
+        }
+    }
+
+    @Override
+    public void close() {
+        if (refresher != null) {
+            refresher.dispose();
+        }
+        connectionProvider.dispose();
+    }
+
+    /**
+     * List the bucket into the catalog, dropping the contents not found anymore.
+     *
+     * @return Mono completing once listed.
+     */
+    public Mono<Void> refresh() {
+        final Set<String> listedPaths = new HashSet<>();
+        return listPage(null)
+                .expand(page -> page.nextContinuationToken() == null ? Mono.empty() : listPage(page.nextContinuationToken()))
+                .doOnNext(page -> page.contents().forEach(content -> {
+                    contentCatalog.register(content);
+                    listedPaths.add(ContentCatalog.relativePath(content));
+                }))
+                .then(Mono.fromRunnable(() -> {
+                    contentCatalog.retainPaths(listedPaths);
+                    synchronized (sizes) {
+                        sizes.clear();
+                    }
+                    catalogLoaded = true;
+                    log.info("Listed {} contents in the bucket {}", listedPaths.size(), settings.getBucket());
+                }));
+    }
+
+    @Override
+    public Mono<Content> findFileByKey(final String fileKey) {
+        if (fileKey == null) {
+            return Mono.error(new RuntimeException("FileKey can't be null"));
+        }
+        return fromCatalog(() -> contentCatalog.findByObjectKey(fileKey));
+    }
+
+    @Override
+    public Mono<Content> findFileByPath(final String relativePath) {
+        return fromCatalog(() -> contentCatalog.findByPath(relativePath));
+    }
+
+    @Override
+    public Flux<Content> findAllContents() {
+        return fromCatalog(() -> new ArrayList<>(contentCatalog.contents())).flatMapIterable(contents -> contents);
+    }
+
+    @Override
+    public ContentCatalog getContentCatalog() {
+        return contentCatalog;
+    }
+
+    /**
+     * Content length, from the catalog or a cached HEAD.
+     *
+     * @param contentRequest ContentRequest.
+     * @return Mono of the size, 0 when the object can't be found.
+     */
+    @Override
+    public Mono<Long> getContentSize(final ContentRequest contentRequest) {
+        if (contentRequest == null || contentRequest.getFileName() == null) {
+            return Mono.just(0L);
+        }
+        final String path = ContentCatalog.relativePath(contentRequest.getFilePath(), contentRequest.getFileName());
+        return fromCatalog(() -> {
+            final Content catalogued = contentCatalog.findByPath(path);
+            if (catalogued != null && catalogued.getTotalContentSize() != null) {
+                return catalogued.getTotalContentSize();
+            }
+            synchronized (sizes) {
+                return sizes.get(path);
+            }
+        }).switchIfEmpty(Mono.defer(() -> head(path)));
+    }
+
+    @Override
+    public Mono<Content> getContent(final ContentRequest contentRequest) {
+        if (contentRequest == null) {
+            return Mono.error(new RuntimeException("video request object is empty"));
+        }
+        if (contentRequest.getRangeStart() > contentRequest.getRangeEnd() || contentRequest.getFileName() == null || contentRequest.getFileType() == null) {
+            return Mono.error(new RuntimeException("Not a valid content request"));
+        }
+        final String key = prefix + ContentCatalog.relativePath(contentRequest.getFilePath(), contentRequest.getFileName());
+        return getContentSize(contentRequest).flatMap(fileSize -> {
+            final long start = contentRequest.getRangeStart();
+            if (fileSize == 0) {
+                return Mono.just(Content.builder().data(Flux.empty()).contentLength(0L).rangeStart(start).rangeEnd(contentRequest.getRangeEnd()).build());
+            }
+            if (start >= fileSize) {
+                return Mono.error(new RuntimeException("Range start is beyond the content size"));
+            }
+            final long end = Math.min(contentRequest.getRangeEnd(), fileSize - 1);
+            return Mono.just(Content.builder().data(readRange(key, start, end)).contentLength(end - start + 1).rangeStart(start).rangeEnd(end).build());
+        });
+    }
+
+    /**
+     * Read a range with ranged GETs of the part size, stitched in order.
+     *
+     * @param key   object key.
+     * @param start first byte.
+     * @param end   last byte.
+     * @return Flux of DataBuffer, released by the consumer once written.
+     */
+    private Flux<DataBuffer> readRange(final String key, final long start, final long end) {
+        final long partSize = settings.getPartSize();
+        final int parts = (int) ((end - start) / partSize + 1);
+        return Flux.range(0, parts)
+                .flatMapSequential(part -> {
+                    final long partStart = start + part * partSize;
+                    return get(key, partStart, Math.min(end, partStart + partSize - 1));
+                }, settings.getParallelism())
+                .doOnDiscard(DataBuffer.class, DataBufferUtils::release);
+    }
+
+    /**
+     * Ranged GET of an object.
+     */
+    private Flux<DataBuffer> get(final String key, final long start, final long end) {
+        final URI uri = objectUri(key);
+        final String range = "bytes=" + start + "-" + end;
+        return webClient.get().uri(uri)
+                .headers(headers -> {
+                    headers.set(HttpHeaders.RANGE, range);
+                    sign(headers, HttpMethod.GET, uri, Map.of("range", range));
+                })
+                .exchangeToFlux(response -> response.statusCode().value() == HttpStatus.PARTIAL_CONTENT.value()
+                        ? response.bodyToFlux(DataBuffer.class)
+                        : response.createException().flatMapMany(Mono::error));
+    }
+
+    /**
+     * Size of an object outside of the catalog.
+     */
+    private Mono<Long> head(final String path) {
+        final URI uri = objectUri(prefix + path);
+        return webClient.head().uri(uri)
+                .headers(headers -> sign(headers, HttpMethod.HEAD, uri, Map.of()))
+                .exchangeToMono(response -> {
+                    if (response.statusCode().is2xxSuccessful()) {
+                        final long size = response.headers().contentLength().orElse(0L);
+                        synchronized (sizes) {
+                            sizes.put(path, size);
+                        }
+                        return response.releaseBody().thenReturn(size);
+                    }
+                    if (response.statusCode().value() != HttpStatus.NOT_FOUND.value()) {
+                        log.error("HEAD of {} answered {}", path, response.statusCode());
+                    }
+                    return response.releaseBody().thenReturn(0L);
+                })
+                .onErrorResume(exception -> {
+                    log.error("Error while getting the size of {} {}", path, exception.getMessage());
+                    return Mono.just(0L);
+                });
+    }
+
+    private Mono<ListingPage> listPage(final String continuationToken) {
+        final StringBuilder query = new StringBuilder("list-type=2");
+        if (continuationToken != null) {
+            query.insert(0, "continuation-token=" + AwsV4Signer.encode(continuationToken, false) + "&");
+        }
+        if (!prefix.isEmpty()) {
+            query.append("&prefix=").append(AwsV4Signer.encode(prefix, false));
+        }
+        final URI uri = URI.create(bucketUri + "?" + query);
+        return webClient.get().uri(uri)
+                .headers(headers -> sign(headers, HttpMethod.GET, uri, Map.of()))
+                .retrieve()
+                .bodyToMono(byte[].class)
+                .map(this::parseListing);
+    }
+
+    /**
+     * Parse a ListObjectsV2 result, keeping the videos.
+     *
+     * @param xml ListBucketResult.
+     * @return ListingPage.
+     */
+    private ListingPage parseListing(final byte[] xml) {
+        final List<Content> contents = new ArrayList<>();
+        String nextContinuationToken = null;
+        boolean truncated = false;
+        try {
+            final XMLStreamReader reader = XML_INPUT_FACTORY.createXMLStreamReader(new ByteArrayInputStream(xml));
+            final Map<String, String> object = new LinkedHashMap<>();
+            boolean inObject = false;
+            while (reader.hasNext()) {
+                final int event = reader.next();
+                if (event == XMLStreamConstants.START_ELEMENT) {
+                    final String name = reader.getLocalName();
+                    if ("Contents".equals(name)) {
+                        inObject = true;
+                        object.clear();
+                    } else if (inObject) {
+                        object.put(name, reader.getElementText());
+                    } else if ("NextContinuationToken".equals(name)) {
+                        nextContinuationToken = reader.getElementText();
+                    } else if ("IsTruncated".equals(name)) {
+                        truncated = Boolean.parseBoolean(reader.getElementText());
+                    }
+                } else if (event == XMLStreamConstants.END_ELEMENT && "Contents".equals(reader.getLocalName())) {
+                    inObject = false;
+                    final Content content = prepareContent(object);
+                    if (content != null) {
+                        contents.add(content);
+                    }
+                }
+            }
+            reader.close();
+        } catch (XMLStreamException xmlStreamException) {
+            throw new IllegalStateException("Invalid listing of the bucket " + settings.getBucket(), xmlStreamException);
+        }
+        return new ListingPage(contents, truncated ? nextContinuationToken : null);
+    }
+
+    /**
+     * Content of a listed object, null when not a video.
+     *
+     * @param object elements of the Contents entry.
+     * @return Content.
+     */
+    private Content prepareContent(final Map<String, String> object) {
+        final String key = object.get("Key");
+        if (key == null || !key.startsWith(prefix) || key.endsWith("/")) {
+            return null;
+        }
+        final String relativePath = key.substring(prefix.length());
+        final int slash = relativePath.lastIndexOf('/');
+        final String fileName = relativePath.substring(slash + 1);
+        final int dot = fileName.lastIndexOf('.');
+        final String extension = dot > 0 ? fileName.substring(dot + 1) : "";
+        if (VideoContainer.fromExtension(extension).isEmpty()) {
+            return null;
+        }
+        final String etag = object.get("ETag");
+        return Content.builder().contentName(fileName).contentPath(slash < 0 ? "" : "/" + relativePath.substring(0, slash)).contentType(extension)
+                .objectKey(UUID.nameUUIDFromBytes((settings.getBucket() + "/" + key).getBytes(StandardCharsets.UTF_8)).toString())
+                .totalContentSize(Long.parseLong(object.getOrDefault("Size", "0")))
+                .lastModified(object.containsKey("LastModified") ? Instant.parse(object.get("LastModified")).toEpochMilli() : null)
+                .fileKey(key).etag(etag == null || etag.startsWith("\"") ? etag : "\"" + etag + "\"").build();
+    }
+
+    private URI objectUri(final String key) {
+        return URI.create(bucketUri + "/" + AwsV4Signer.encode(key, true));
+    }
+
+    /**
+     * Add the host and, with credentials, the signature headers.
+     */
+    private void sign(final HttpHeaders headers, final HttpMethod method, final URI uri, final Map<String, String> signedHeaders) {
+        headers.set(HttpHeaders.HOST, AwsV4Signer.host(uri));
+        if (settings.getAccessKey() == null || settings.getAccessKey().isBlank()) {
+            return;
+        }
+        AwsV4Signer.sign(method.name(), uri, signedHeaders, settings.getRegion(), SERVICE, settings.getAccessKey(), settings.getSecretKey(), Instant.now()).forEach(headers::set);
+    }
+
+    /**
+     * Look up the catalog, once the bucket has been listed.
+     *
+     * @param lookup catalog lookup, may return null.
+     * @return Mono of the lookup result.
+     */
+    private <T> Mono<T> fromCatalog(final Callable<T> lookup) {
+        if (catalogLoaded) {
+            return Mono.fromCallable(lookup);
+        }
+        return initialListing.then(Mono.fromCallable(lookup));
+    }
+}
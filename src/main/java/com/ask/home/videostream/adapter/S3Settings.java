@@ -0,0 +1,49 @@
+package com.ask.home.videostream.adapter;
+
+import lombok.Builder;
+import lombok.Data;
+
+import java.time.Duration;
+
+/**
+ * Bucket of an S3 compatible object store and how the {@link S3ContentAdapter} reads it.
+ */
+@Data
+@Builder
+public class S3Settings {
+
+    /**
+     * Endpoint of the store, the bucket is addressed path style: {@code http://localhost:9000}.
+     */
+    private String endpoint;
+    private String bucket;
+    /**
+     * Key prefix of the contents, the keys below it are their relative paths.
+     */
+    @Builder.Default
+    private String prefix = "";
+    @Builder.Default
+    private String region = "us-east-1";
+    /**
+     * Credentials, requests are sent unsigned without an access key.
+     */
+    private String accessKey;
+    private String secretKey;
+    /**
+     * Size of the ranged GETs a large range is split in.
+     */
+    @Builder.Default
+    private long partSize = 8 * 1024 * 1024;
+    /**
+     * Ranged GETs of a range in flight at once.
+     */
+    @Builder.Default
+    private int parallelism = 4;
+    @Builder.Default
+    private int maxConnections = 64;
+    /**
+     * Period of the listing refreshing the catalog, zero to list only on start.
+     */
+    @Builder.Default
+    private Duration refreshInterval = Duration.ofMinutes(5);
+}
@@ -0,0 +1,435 @@
+package com.ask.home.videostream.adapter;
+
+import com.ask.home.videostream.catalog.CatalogListener;
+import com.ask.home.videostream.catalog.ContentCatalog;
+import com.ask.home.videostream.model.Content;
+import com.ask.home.videostream.model.ContentRequest;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Duration;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+/**
+ * Two storage tiers behind one {@link ContentAdapter}: a slow cold adapter holding every content, a network mount in
+ * production, and a hot {@link LocalFileContentAdapter} on a fast local disk holding copies of the contents read most.
+ * <p>
+ * A range is read from the hot copy when the content has one of the same size, from the cold adapter otherwise. The
+ * clients reading a content from the cold adapter are counted, one player reads a content as many ranges, and once
+ * {@code promoteAfter} distinct clients read it within {@code promoteWindow} the whole file is copied to the hot tier
+ * in the background, through a temporary file renamed into place. Hot copies are evicted least recently read first to
+ * stay within {@code maxBytes} of disk, and dropped when the catalog of the cold adapter reports their content changed
+ * or the hot file can't be read. A path evicted gets no new copy before its file is deleted. The hot directory belongs
+ * to the adapter, {@link #start()} empties it.
+ */
+@Slf4j
+public class TieredContentAdapter implements ContentAdapter, CatalogListener, Closeable {
+
+    private static final String PROMOTING_SUFFIX = ".promoting";
+    // contents whose cold readers are counted, the least recently read are forgotten.
+    private static final int MAX_TRACKED_CONTENTS = 10_000;
+    // size of a hot file that can't be read.
+    private static final long UNREADABLE = -1;
+
+    private final ContentAdapter cold;
+    private final LocalFileContentAdapter hot;
+    private final Path hotRoot;
+    private final long maxBytes;
+    private final int promoteAfter;
+    private final long promoteWindowNanos;
+    private final Scheduler ioScheduler;
+    // by relative path, least recently read first.
+    private final Map<String, HotCopy> hotCopies = new LinkedHashMap<>(256, 0.75f, true);
+    // last cold read of every client, by relative path.
+    private final Map<String, Map<String, Long>> coldReaders = new LinkedHashMap<>(256, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(final Map.Entry<String, Map<String, Long>> eldest) {
+            return size() > MAX_TRACKED_CONTENTS;
+        }
+    };
+    // paths whose evicted copy is still on disk or being written, they get no new copy until it's deleted.
+    private final Set<String> deleting = new HashSet<>();
+    private long usedBytes;
+    private final AtomicLong hotReads = new AtomicLong();
+    private final AtomicLong coldReads = new AtomicLong();
+    private final AtomicLong promotions = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+
+    /**
+     * Copy of a content on the hot tier, served once ready.
+     */
+    private static final class HotCopy {
+        private final long size;
+        private final String etag;
+        private volatile boolean ready;
+
+        private HotCopy(final long size, final String etag) {
+            this.size = size;
+            this.etag = etag;
+        }
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param cold         ContentAdapter holding every content.
+     * @param hot          LocalFileContentAdapter of the hot directory, not started.
+     * @param hotRoot      hot directory.
+     * @param maxBytes     disk space of the hot copies.
+     * @param promoteAfter  distinct clients reading a content from the cold adapter that copy it to the hot tier.
+     * @param promoteWindow time the clients are counted within.
+     * @param ioScheduler   Scheduler running the blocking file system calls.
+     */
+    public TieredContentAdapter(final ContentAdapter cold, final LocalFileContentAdapter hot, final Path hotRoot, final long maxBytes, final int promoteAfter,
+                                final Duration promoteWindow, final Scheduler ioScheduler) {
+        if (maxBytes < 1 || promoteAfter < 1 || promoteWindow.isNegative() || promoteWindow.isZero()) {
+            throw new IllegalArgumentException("tier max-bytes, promote-after and promote-window must be positive");
+        }
+        this.cold = cold;
+        this.hot = hot;
+        this.hotRoot = hotRoot.toAbsolutePath().normalize();
+        this.maxBytes = maxBytes;
+        this.promoteAfter = promoteAfter;
+        this.promoteWindowNanos = promoteWindow.toNanos();
+        this.ioScheduler = ioScheduler;
+        final ContentCatalog contentCatalog = cold.getContentCatalog();
+        if (contentCatalog != null) {
+            contentCatalog.addListener(this);
+        }
+    }
+
+    /**
+     * Empty the hot directory, the copies of a previous run aren't accounted for.
+     */
+    public void start() {
+        if (!Files.isDirectory(hotRoot)) {
+            return;
+        }
+        try (Stream<Path> paths = Files.walk(hotRoot)) {
+            paths.filter(path -> !path.equals(hotRoot)).sorted(Comparator.reverseOrder()).forEach(TieredContentAdapter::delete);
+        } catch (IOException ioException) {
+            log.warn("Can't empty the hot directory {} {}", hotRoot, ioException.getMessage());
+        }
+    }
+
+    @Override
+    public void close() {
+        hot.close();
+    }
+
+    @Override
+    public Mono<Content> getContent(final ContentRequest contentRequest) {
+        if (contentRequest == null || contentRequest.getFileName() == null) {
+            return cold.getContent(contentRequest);
+        }
+        final String path = ContentCatalog.relativePath(contentRequest.getFilePath(), contentRequest.getFileName());
+        final HotCopy hotCopy = readyCopy(path);
+        if (hotCopy == null) {
+            coldRead(contentRequest, path);
+            return cold.getContent(contentRequest);
+        }
+        // the cold size is a cached attribute, a changed or vanished file falls back to the cold tier.
+        return Mono.zip(cold.getContentSize(contentRequest), hot.getContentSize(contentRequest).onErrorReturn(UNREADABLE)).flatMap(sizes -> {
+            if (sizes.getT1() != hotCopy.size || sizes.getT2() != hotCopy.size) {
+                return fallBack(contentRequest, path, hotCopy);
+            }
+            return hot.getContent(contentRequest)
+                    .doOnNext(_ -> hotReads.incrementAndGet())
+                    .onErrorResume(exception -> {
+                        log.warn("Can't read the hot copy of {} {}", path, exception.getMessage());
+                        return fallBack(contentRequest, path, hotCopy);
+                    });
+        });
+    }
+
+    @Override
+    public Mono<Long> getContentSize(final ContentRequest contentRequest) {
+        return cold.getContentSize(contentRequest);
+    }
+
+    @Override
+    public Flux<Content> findAllContents() {
+        return cold.findAllContents();
+    }
+
+    @Override
+    public Mono<Content> findFileByKey(final String fileKey) {
+        return cold.findFileByKey(fileKey);
+    }
+
+    @Override
+    public Mono<Content> findFileByPath(final String relativePath) {
+        return cold.findFileByPath(relativePath);
+    }
+
+    @Override
+    public Mono<String> getContentVersion(final ContentRequest contentRequest) {
+        return cold.getContentVersion(contentRequest);
+    }
+
+    @Override
+    public ContentCatalog getContentCatalog() {
+        return cold.getContentCatalog();
+    }
+
+    @Override
+    public void prefetch(final ContentRequest contentRequest, final long rangeStart, final long rangeEnd) {
+        cold.prefetch(contentRequest, rangeStart, rangeEnd);
+    }
+
+    @Override
+    public void contentRegistered(final Content content) {
+        final String path = ContentCatalog.relativePath(content);
+        final HotCopy hotCopy;
+        synchronized (hotCopies) {
+            hotCopy = hotCopies.get(path);
+        }
+        if (hotCopy != null && !Objects.equals(hotCopy.etag, content.getEtag())) {
+            evict(path, hotCopy);
+        }
+    }
+
+    @Override
+    public void contentRemoved(final Content content) {
+        final String path = ContentCatalog.relativePath(content);
+        final HotCopy hotCopy;
+        synchronized (hotCopies) {
+            hotCopy = hotCopies.get(path);
+        }
+        if (hotCopy != null) {
+            evict(path, hotCopy);
+        }
+    }
+
+    /**
+     * Ranges read from the hot copies.
+     *
+     * @return long.
+     */
+    public long getHotReads() {
+        return hotReads.get();
+    }
+
+    /**
+     * Ranges read from the cold adapter.
+     *
+     * @return long.
+     */
+    public long getColdReads() {
+        return coldReads.get();
+    }
+
+    /**
+     * Contents copied to the hot tier.
+     *
+     * @return long.
+     */
+    public long getPromotions() {
+        return promotions.get();
+    }
+
+    /**
+     * Hot copies dropped, to make room or because their content changed.
+     *
+     * @return long.
+     */
+    public long getEvictions() {
+        return evictions.get();
+    }
+
+    /**
+     * Disk space of the hot copies, including those being copied.
+     *
+     * @return bytes.
+     */
+    public long getUsedBytes() {
+        synchronized (hotCopies) {
+            return usedBytes;
+        }
+    }
+
+    private HotCopy readyCopy(final String path) {
+        synchronized (hotCopies) {
+            final HotCopy hotCopy = hotCopies.get(path);
+            return hotCopy != null && hotCopy.ready ? hotCopy : null;
+        }
+    }
+
+    /**
+     * Drop a hot copy that doesn't match its content and read the range from the cold adapter.
+     */
+    private Mono<Content> fallBack(final ContentRequest contentRequest, final String path, final HotCopy hotCopy) {
+        evict(path, hotCopy);
+        coldReads.incrementAndGet();
+        return cold.getContent(contentRequest);
+    }
+
+    /**
+     * Count the client of a cold read and promote the content once enough clients read it within the window. The
+     * reads of the server itself, without a client, aren't counted.
+     */
+    private void coldRead(final ContentRequest contentRequest, final String path) {
+        coldReads.incrementAndGet();
+        final String clientId = contentRequest.getClientId();
+        if (clientId == null) {
+            return;
+        }
+        final boolean promote;
+        synchronized (hotCopies) {
+            if (hotCopies.containsKey(path) || deleting.contains(path)) {
+                return;
+            }
+            final long now = System.nanoTime();
+            final Map<String, Long> readers = coldReaders.computeIfAbsent(path, _ -> new HashMap<>());
+            readers.values().removeIf(lastRead -> now - lastRead > promoteWindowNanos);
+            readers.put(clientId, now);
+            promote = readers.size() >= promoteAfter;
+            if (promote) {
+                coldReaders.remove(path);
+            }
+        }
+        if (promote) {
+            promote(contentRequest, path).subscribe(null, exception -> log.warn("Can't copy {} to the hot tier {}", path, exception.getMessage()));
+        }
+    }
+
+    /**
+     * Copy the whole content to the hot tier, evicting the least recently read copies to make room.
+     *
+     * @param contentRequest ContentRequest of the content.
+     * @param path           relative path of the content.
+     * @return Mono completing once the copy is served.
+     */
+    private Mono<Void> promote(final ContentRequest contentRequest, final String path) {
+        return cold.getContentSize(contentRequest).flatMap(size -> {
+            // resolved before reserving, a path the hot tier can't hold mustn't keep its space.
+            final Path target = hot.resolveContentPath(path);
+            final Content catalogued = cold.getContentCatalog() == null ? null : cold.getContentCatalog().findByPath(path);
+            final HotCopy hotCopy = reserve(path, size, catalogued == null ? null : catalogued.getEtag());
+            if (hotCopy == null) {
+                return Mono.empty();
+            }
+            final Path promoting = target.resolveSibling(target.getFileName() + PROMOTING_SUFFIX);
+            final ContentRequest wholeFile = contentRequest.toBuilder().rangeStart(0).rangeEnd(size - 1).build();
+            return Mono.fromCallable(() -> Files.createDirectories(target.getParent())).subscribeOn(ioScheduler)
+                    .then(DataBufferUtils.write(cold.getContent(wholeFile).flatMapMany(Content::getData), promoting))
+                    .then(Mono.fromCallable(() -> Files.move(promoting, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING)).subscribeOn(ioScheduler))
+                    .doOnSuccess(_ -> published(path, hotCopy))
+                    .doOnError(_ -> {
+                        delete(promoting);
+                        evict(path, hotCopy);
+                        release(path);
+                    })
+                    .then();
+        });
+    }
+
+    /**
+     * Reserve the disk space of a copy, evicting the least recently read ready copies.
+     *
+     * @return HotCopy not ready yet, null when the content has one, its evicted copy isn't deleted yet or it doesn't fit.
+     */
+    private HotCopy reserve(final String path, final long size, final String etag) {
+        if (size < 1 || size > maxBytes) {
+            return null;
+        }
+        synchronized (hotCopies) {
+            if (hotCopies.containsKey(path) || deleting.contains(path)) {
+                return null;
+            }
+            final Iterator<Map.Entry<String, HotCopy>> eldest = hotCopies.entrySet().iterator();
+            while (usedBytes + size > maxBytes && eldest.hasNext()) {
+                final Map.Entry<String, HotCopy> entry = eldest.next();
+                if (entry.getValue().ready) {
+                    eldest.remove();
+                    usedBytes -= entry.getValue().size;
+                    evictions.incrementAndGet();
+                    deleting.add(entry.getKey());
+                    deleteCopy(entry.getKey());
+                }
+            }
+            if (usedBytes + size > maxBytes) {
+                return null;
+            }
+            final HotCopy hotCopy = new HotCopy(size, etag);
+            hotCopies.put(path, hotCopy);
+            usedBytes += size;
+            return hotCopy;
+        }
+    }
+
+    private void published(final String path, final HotCopy hotCopy) {
+        hot.invalidate(path);
+        synchronized (hotCopies) {
+            // evicted while being copied, the path stays marked until the file is deleted.
+            if (hotCopies.get(path) != hotCopy) {
+                deleteCopy(path);
+                return;
+            }
+            hotCopy.ready = true;
+        }
+        promotions.incrementAndGet();
+        log.debug("Copied {} to the hot tier", path);
+    }
+
+    /**
+     * Drop a copy unless it was replaced, marking its path until the file is deleted: right away when the copy is
+     * ready, by the promotion writing it otherwise.
+     */
+    private void evict(final String path, final HotCopy hotCopy) {
+        synchronized (hotCopies) {
+            if (!hotCopies.remove(path, hotCopy)) {
+                return;
+            }
+            usedBytes -= hotCopy.size;
+            deleting.add(path);
+        }
+        evictions.incrementAndGet();
+        if (hotCopy.ready) {
+            deleteCopy(path);
+        }
+    }
+
+    /**
+     * Delete the file of an evicted copy, then let the path be copied again.
+     */
+    private void deleteCopy(final String path) {
+        final Path target = hot.resolveContentPath(path);
+        ioScheduler.schedule(() -> {
+            delete(target);
+            hot.invalidate(path);
+            release(path);
+        });
+    }
+
+    private void release(final String path) {
+        synchronized (hotCopies) {
+            deleting.remove(path);
+        }
+    }
+
+    private static void delete(final Path path) {
+        try {
+            Files.deleteIfExists(path);
+        } catch (IOException ioException) {
+            log.warn("Can't delete {} {}", path, ioException.getMessage());
+        }
+    }
+}
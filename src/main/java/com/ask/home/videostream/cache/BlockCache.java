@@ -0,0 +1,237 @@
+package com.ask.home.videostream.cache;
+
+import io.netty.buffer.ByteBuf;
+import lombok.Getter;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * LRU cache of content blocks held in off-heap (direct) buffers, bounded by a byte budget.
+ * <p>
+ * Blocks are reference counted: the cache owns one reference and every reader gets its own, so a block evicted while
+ * it is being written to a client is freed only once the last reader released it.
+ * <p>
+ * Blocks put by the read-ahead are tracked until their first read, the ones dropped before that are counted as unused
+ * prefetched bytes.
+ * <p>
+ * Every invalidation of a content bumps its generation: a block read before it is of the old file and is not cached.
+ */
+public class BlockCache {
+
+    @Getter
+    private final long maxBytes;
+    @Getter
+    private final int blockSize;
+    private final LinkedHashMap<BlockKey, ByteBuf> blocks = new LinkedHashMap<>(256, 0.75f, true);
+    private final Set<BlockKey> unreadPrefetched = new HashSet<>();
+    // by object key, only the invalidated contents have one.
+    private final Map<String, Long> generations = new HashMap<>();
+    private long usedBytes;
+    private long unreadPrefetchedBytes;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private final LongAdder prefetchedBytes = new LongAdder();
+    private final LongAdder prefetchUnusedBytes = new LongAdder();
+
+    /**
+     * Constructor.
+     *
+     * @param maxBytes  byte budget of the cached blocks.
+     * @param blockSize size of a block.
+     */
+    public BlockCache(final long maxBytes, final int blockSize) {
+        if (blockSize < 1) {
+            throw new IllegalArgumentException("blockSize must be positive");
+        }
+        this.maxBytes = maxBytes;
+        this.blockSize = blockSize;
+    }
+
+    /**
+     * Get a cached block.
+     *
+     * @param blockKey BlockKey.
+     * @return retained duplicate of the block that the caller must release, null when not cached.
+     */
+    public synchronized ByteBuf acquire(final BlockKey blockKey) {
+        final ByteBuf block = blocks.get(blockKey);
+        if (block == null) {
+            misses.increment();
+            return null;
+        }
+        hits.increment();
+        read(blockKey, block);
+        return block.retainedDuplicate();
+    }
+
+    /**
+     * Check whether a block is cached, without counting a hit or refreshing its recency.
+     *
+     * @param blockKey BlockKey.
+     * @return true when cached.
+     */
+    public synchronized boolean contains(final BlockKey blockKey) {
+        return blocks.containsKey(blockKey);
+    }
+
+    /**
+     * Record that a prefetched block was handed to a reader outside {@link #acquire(BlockKey)}.
+     *
+     * @param blockKey BlockKey.
+     */
+    public synchronized void markRead(final BlockKey blockKey) {
+        final ByteBuf block = blocks.get(blockKey);
+        if (block != null) {
+            read(blockKey, block);
+        }
+    }
+
+    /**
+     * Add a block read for a request, see {@link #put(BlockKey, ByteBuf, boolean)}.
+     *
+     * @param blockKey BlockKey.
+     * @param block    ByteBuf.
+     */
+    public void put(final BlockKey blockKey, final ByteBuf block) {
+        put(blockKey, block, false);
+    }
+
+    /**
+     * Add a block of the current generation of its content, see {@link #put(BlockKey, ByteBuf, boolean, long)}.
+     *
+     * @param blockKey   BlockKey.
+     * @param block      ByteBuf.
+     * @param prefetched true when the block was read ahead of any request.
+     */
+    public synchronized void put(final BlockKey blockKey, final ByteBuf block, final boolean prefetched) {
+        put(blockKey, block, prefetched, generation(blockKey.getObjectKey()));
+    }
+
+    /**
+     * Add a block, evicting the least recently used ones to stay in budget. The cache takes over the reference passed
+     * in.
+     *
+     * @param blockKey   BlockKey.
+     * @param block      ByteBuf.
+     * @param prefetched true when the block was read ahead of any request.
+     * @param generation {@link #generation(String)} of the content when the read of the block started, the block is
+     *                   released when the content was invalidated since.
+     */
+    public synchronized void put(final BlockKey blockKey, final ByteBuf block, final boolean prefetched, final long generation) {
+        final int size = block.readableBytes();
+        if (size > maxBytes || generation != generation(blockKey.getObjectKey())) {
+            block.release();
+            return;
+        }
+        final ByteBuf previous = blocks.put(blockKey, block);
+        if (previous != null) {
+            removed(blockKey, previous);
+        }
+        usedBytes += size;
+        if (prefetched) {
+            unreadPrefetched.add(blockKey);
+            unreadPrefetchedBytes += size;
+            prefetchedBytes.add(size);
+        }
+        final Iterator<Map.Entry<BlockKey, ByteBuf>> iterator = blocks.entrySet().iterator();
+        while (usedBytes > maxBytes && iterator.hasNext()) {
+            final Map.Entry<BlockKey, ByteBuf> eldest = iterator.next();
+            if (eldest.getKey().equals(blockKey)) {
+                continue;
+            }
+            iterator.remove();
+            removed(eldest.getKey(), eldest.getValue());
+            evictions.increment();
+        }
+    }
+
+    /**
+     * Generation of a content, to get before reading one of its blocks.
+     *
+     * @param objectKey object key.
+     * @return long.
+     */
+    public synchronized long generation(final String objectKey) {
+        return generations.getOrDefault(objectKey, 0L);
+    }
+
+    /**
+     * Drop every block of the content, e.g. when the file changed. The blocks still being read won't be cached.
+     *
+     * @param objectKey object key.
+     */
+    public synchronized void invalidate(final String objectKey) {
+        generations.merge(objectKey, 1L, Long::sum);
+        final Iterator<Map.Entry<BlockKey, ByteBuf>> iterator = blocks.entrySet().iterator();
+        while (iterator.hasNext()) {
+            final Map.Entry<BlockKey, ByteBuf> entry = iterator.next();
+            if (entry.getKey().getObjectKey().equals(objectKey)) {
+                iterator.remove();
+                removed(entry.getKey(), entry.getValue());
+            }
+        }
+    }
+
+    /**
+     * Drop every block.
+     */
+    public synchronized void clear() {
+        blocks.forEach(this::removed);
+        blocks.clear();
+    }
+
+    private void read(final BlockKey blockKey, final ByteBuf block) {
+        if (unreadPrefetched.remove(blockKey)) {
+            unreadPrefetchedBytes -= block.readableBytes();
+        }
+    }
+
+    private void removed(final BlockKey blockKey, final ByteBuf block) {
+        usedBytes -= block.readableBytes();
+        if (unreadPrefetched.remove(blockKey)) {
+            unreadPrefetchedBytes -= block.readableBytes();
+            prefetchUnusedBytes.add(block.readableBytes());
+        }
+        block.release();
+    }
+
+    public synchronized long getUsedBytes() {
+        return usedBytes;
+    }
+
+    public synchronized int getBlockCount() {
+        return blocks.size();
+    }
+
+    public long getHits() {
+        return hits.sum();
+    }
+
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    public long getEvictions() {
+        return evictions.sum();
+    }
+
+    public synchronized long getUnreadPrefetchedBytes() {
+        return unreadPrefetchedBytes;
+    }
+
+    public long getPrefetchedBytes() {
+        return prefetchedBytes.sum();
+    }
+
+    public long getPrefetchUnusedBytes() {
+        return prefetchUnusedBytes.sum();
+    }
+}
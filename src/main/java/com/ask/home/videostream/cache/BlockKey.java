@@ -0,0 +1,13 @@
+package com.ask.home.videostream.cache;
+
+import lombok.Value;
+
+/**
+ * Identifies a fixed-size block of a content.
+ */
+@Value
+public class BlockKey {
+
+    String objectKey;
+    long blockIndex;
+}
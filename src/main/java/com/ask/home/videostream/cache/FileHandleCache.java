@@ -0,0 +1,363 @@
+package com.ask.home.videostream.cache;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+/**
+ * LRU cache of the attributes and the open read-only {@link FileChannel} of the served files, keyed by path.
+ * <p>
+ * The attributes are trusted for {@code revalidateAfter}, then checked again with one stat: a changed size, mtime or
+ * file key retires the entry, and the catalog invalidates the paths it sees change in between. A retired or evicted
+ * channel is closed once the last {@link Handle} using it is closed.
+ * <p>
+ * The stats and the channel closes run outside of the lock, a slow file system (NFS) only holds up the lookups of the
+ * path being checked: concurrent lookups of that path wait for the one stat in flight.
+ */
+public class FileHandleCache implements Closeable {
+
+    private final int maxEntries;
+    private final long revalidateNanos;
+    private final LongSupplier nanoClock;
+    private final LinkedHashMap<Path, Entry> entries = new LinkedHashMap<>(256, 0.75f, true);
+    private final Map<Path, CompletableFuture<Entry>> checks = new HashMap<>();
+    private boolean closed;
+
+    private final LongAdder stats = new LongAdder();
+    private final LongAdder opens = new LongAdder();
+
+    /**
+     * Attributes of a file.
+     *
+     * @param size         size in bytes.
+     * @param lastModified epoch millis.
+     * @param fileKey      file key, null when the file system has none.
+     */
+    public record FileAttributes(long size, long lastModified, Object fileKey) {
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param maxEntries      files kept, the least recently used are closed.
+     * @param revalidateAfter time the attributes are trusted without a stat.
+     */
+    public FileHandleCache(final int maxEntries, final Duration revalidateAfter) {
+        this(maxEntries, revalidateAfter, System::nanoTime);
+    }
+
+    FileHandleCache(final int maxEntries, final Duration revalidateAfter, final LongSupplier nanoClock) {
+        if (maxEntries < 1) {
+            throw new IllegalArgumentException("maxEntries must be positive");
+        }
+        this.maxEntries = maxEntries;
+        this.revalidateNanos = revalidateAfter.toNanos();
+        this.nanoClock = nanoClock;
+    }
+
+    /**
+     * Get the attributes of a file.
+     *
+     * @param path Path.
+     * @return FileAttributes.
+     * @throws IOException when the file can't be read.
+     */
+    public FileAttributes attributes(final Path path) throws IOException {
+        return entry(normalize(path)).attributes;
+    }
+
+    /**
+     * Get an open channel of a file, to be closed once the reads are done.
+     *
+     * @param path Path.
+     * @return Handle.
+     * @throws IOException when the file can't be opened.
+     */
+    public Handle acquire(final Path path) throws IOException {
+        final Path normalized = normalize(path);
+        Entry entry;
+        while (true) {
+            entry = entry(normalized);
+            synchronized (this) {
+                // retired since the lookup, look up the replacing entry.
+                if (!entry.retired) {
+                    entry.references++;
+                    break;
+                }
+            }
+        }
+        try {
+            return new Handle(entry, entry.channel());
+        } catch (IOException | RuntimeException exception) {
+            release(entry);
+            throw exception;
+        }
+    }
+
+    /**
+     * Forget a file, or every file under a folder.
+     *
+     * @param path Path.
+     */
+    public void invalidate(final Path path) {
+        final Path normalized = normalize(path);
+        final List<Entry> retired = new ArrayList<>();
+        synchronized (this) {
+            final Iterator<Map.Entry<Path, Entry>> iterator = entries.entrySet().iterator();
+            while (iterator.hasNext()) {
+                final Map.Entry<Path, Entry> entry = iterator.next();
+                if (entry.getKey().startsWith(normalized)) {
+                    iterator.remove();
+                    retired.add(entry.getValue());
+                }
+            }
+            checks.keySet().removeIf(checked -> checked.startsWith(normalized));
+        }
+        retired.forEach(this::retire);
+    }
+
+    /**
+     * Forget every file.
+     */
+    public void invalidateAll() {
+        final List<Entry> retired;
+        synchronized (this) {
+            retired = new ArrayList<>(entries.values());
+            entries.clear();
+            checks.clear();
+        }
+        retired.forEach(this::retire);
+    }
+
+    @Override
+    public void close() {
+        synchronized (this) {
+            closed = true;
+        }
+        invalidateAll();
+    }
+
+    public synchronized int getEntryCount() {
+        return entries.size();
+    }
+
+    public synchronized long getOpenChannels() {
+        return entries.values().stream().filter(entry -> entry.channel != null).count();
+    }
+
+    public long getStats() {
+        return stats.sum();
+    }
+
+    public long getOpens() {
+        return opens.sum();
+    }
+
+    /**
+     * Get the entry of a file, read or revalidate its attributes when needed.
+     */
+    private Entry entry(final Path path) throws IOException {
+        final Entry current;
+        final CompletableFuture<Entry> inFlight;
+        final CompletableFuture<Entry> check = new CompletableFuture<>();
+        synchronized (this) {
+            if (closed) {
+                throw new IOException("File handle cache is closed");
+            }
+            current = entries.get(path);
+            if (current != null && nanoClock.getAsLong() - current.checked < revalidateNanos) {
+                return current;
+            }
+            inFlight = checks.putIfAbsent(path, check);
+        }
+        return inFlight != null ? await(inFlight) : check(path, current, check);
+    }
+
+    /**
+     * Stat the file outside of the lock and install the result.
+     *
+     * @param path    Path.
+     * @param current entry being revalidated, null for a new path.
+     * @param check   future of the check, completed for the concurrent lookups.
+     * @return Entry.
+     * @throws IOException when the file can't be read.
+     */
+    private Entry check(final Path path, final Entry current, final CompletableFuture<Entry> check) throws IOException {
+        final List<Entry> retired = new ArrayList<>();
+        final Entry entry;
+        try {
+            final FileAttributes attributes = stat(path);
+            final long now = nanoClock.getAsLong();
+            synchronized (this) {
+                checks.remove(path, check);
+                if (entries.get(path) != current) {
+                    // invalidated while the stat ran, the next lookup checks again.
+                    entry = new Entry(path, attributes, now);
+                    entry.retired = true;
+                } else if (current != null && current.attributes.equals(attributes)) {
+                    current.checked = now;
+                    entry = current;
+                } else {
+                    if (current != null) {
+                        retired.add(current);
+                    }
+                    entry = new Entry(path, attributes, now);
+                    entries.put(path, entry);
+                    evict(retired);
+                }
+            }
+        } catch (IOException | RuntimeException exception) {
+            synchronized (this) {
+                checks.remove(path, check);
+                if (current != null && entries.remove(path, current)) {
+                    retired.add(current);
+                }
+            }
+            retired.forEach(this::retire);
+            check.completeExceptionally(exception);
+            throw exception;
+        }
+        retired.forEach(this::retire);
+        check.complete(entry);
+        return entry;
+    }
+
+    private static Entry await(final CompletableFuture<Entry> check) throws IOException {
+        try {
+            return check.join();
+        } catch (CompletionException completionException) {
+            if (completionException.getCause() instanceof IOException ioException) {
+                throw ioException;
+            }
+            throw completionException;
+        }
+    }
+
+    /**
+     * Read the attributes of a file, called out of the lock.
+     *
+     * @param path Path.
+     * @return FileAttributes.
+     * @throws IOException when the file can't be read.
+     */
+    FileAttributes stat(final Path path) throws IOException {
+        stats.increment();
+        final BasicFileAttributes attributes = Files.readAttributes(path, BasicFileAttributes.class);
+        return new FileAttributes(attributes.size(), attributes.lastModifiedTime().toMillis(), attributes.fileKey());
+    }
+
+    /**
+     * Drop the least recently used entries beyond the limit, to be retired once out of the lock.
+     */
+    private void evict(final List<Entry> evicted) {
+        final Iterator<Entry> iterator = entries.values().iterator();
+        while (entries.size() > maxEntries && iterator.hasNext()) {
+            evicted.add(iterator.next());
+            iterator.remove();
+        }
+    }
+
+    private void retire(final Entry entry) {
+        synchronized (this) {
+            entry.retired = true;
+            if (entry.references > 0) {
+                return;
+            }
+        }
+        entry.closeChannel();
+    }
+
+    private void release(final Entry entry) {
+        synchronized (this) {
+            entry.references--;
+            if (!entry.retired || entry.references > 0) {
+                return;
+            }
+        }
+        entry.closeChannel();
+    }
+
+    private static Path normalize(final Path path) {
+        return path.toAbsolutePath().normalize();
+    }
+
+    /**
+     * Open channel of a file, reads are positional so it is shared by the concurrent readers.
+     */
+    public final class Handle implements Closeable {
+
+        private final Entry entry;
+        private final FileChannel channel;
+        private boolean closed;
+
+        private Handle(final Entry entry, final FileChannel channel) {
+            this.entry = entry;
+            this.channel = channel;
+        }
+
+        public FileChannel channel() {
+            return channel;
+        }
+
+        public FileAttributes attributes() {
+            return entry.attributes;
+        }
+
+        @Override
+        public void close() {
+            if (!closed) {
+                closed = true;
+                release(entry);
+            }
+        }
+    }
+
+    private final class Entry {
+        private final Path path;
+        private final FileAttributes attributes;
+        private long checked;
+        private int references;
+        private boolean retired;
+        private FileChannel channel;
+
+        private Entry(final Path path, final FileAttributes attributes, final long checked) {
+            this.path = path;
+            this.attributes = attributes;
+            this.checked = checked;
+        }
+
+        private synchronized FileChannel channel() throws IOException {
+            if (channel == null) {
+                opens.increment();
+                channel = FileChannel.open(path, StandardOpenOption.READ);
+            }
+            return channel;
+        }
+
+        private synchronized void closeChannel() {
+            if (channel != null) {
+                try {
+                    channel.close();
+                } catch (IOException ignored) {
+                    // read-only channel, nothing to flush.
+                }
+                channel = null;
+            }
+        }
+    }
+}
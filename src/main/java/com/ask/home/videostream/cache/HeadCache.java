@@ -0,0 +1,182 @@
+package com.ask.home.videostream.cache;
+
+import io.netty.buffer.ByteBuf;
+import lombok.Getter;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Opening bytes of every video, held in off-heap (direct) buffers sized to the head, bounded by a byte budget.
+ * <p>
+ * Unlike the {@link BlockCache} nothing is evicted: a head that does not fit the budget is not kept. Heads are reference
+ * counted the same way, a replaced head is freed once its last reader released it.
+ */
+public class HeadCache {
+
+    @Getter
+    private final long maxBytes;
+    @Getter
+    private final int headSize;
+    private final Map<String, Head> heads = new HashMap<>();
+    private long usedBytes;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    /**
+     * Head of a content.
+     *
+     * @param data     ByteBuf of the opening bytes.
+     * @param fileSize size of the whole file when the head was read.
+     * @param etag     version of the file the head was read from, null when it has none.
+     */
+    public record Head(ByteBuf data, long fileSize, String etag) {
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param maxBytes byte budget of the heads.
+     * @param headSize bytes kept from the start of every content.
+     */
+    public HeadCache(final long maxBytes, final int headSize) {
+        if (headSize < 1) {
+            throw new IllegalArgumentException("headSize must be positive");
+        }
+        this.maxBytes = maxBytes;
+        this.headSize = headSize;
+    }
+
+    /**
+     * Get the head of a content.
+     *
+     * @param objectKey object key.
+     * @return Head with a retained duplicate of the data that the caller must release, null when not loaded.
+     */
+    public synchronized Head acquire(final String objectKey) {
+        final Head head = heads.get(objectKey);
+        return head == null ? null : new Head(head.data().retainedDuplicate(), head.fileSize(), head.etag());
+    }
+
+    /**
+     * Check whether the head of a content holds a range, counting a hit or a miss.
+     *
+     * @param objectKey  object key.
+     * @param rangeStart first byte.
+     * @param rangeEnd   last byte, clamped to the file size.
+     * @return file size when the head holds the range, null otherwise.
+     */
+    public synchronized Long covering(final String objectKey, final long rangeStart, final long rangeEnd) {
+        final Head head = heads.get(objectKey);
+        if (head == null || rangeStart >= head.fileSize() || Math.min(rangeEnd, head.fileSize() - 1) >= head.data().readableBytes()) {
+            misses.increment();
+            return null;
+        }
+        hits.increment();
+        return head.fileSize();
+    }
+
+    /**
+     * Get the file size recorded with the head.
+     *
+     * @param objectKey object key.
+     * @return file size, null when not loaded.
+     */
+    public synchronized Long fileSize(final String objectKey) {
+        final Head head = heads.get(objectKey);
+        return head == null ? null : head.fileSize();
+    }
+
+    /**
+     * Check whether the head of a content was read from a version of the file.
+     *
+     * @param objectKey object key.
+     * @param etag      current version of the file.
+     * @return boolean, false when not loaded.
+     */
+    public synchronized boolean isCurrent(final String objectKey, final String etag) {
+        final Head head = heads.get(objectKey);
+        return head != null && Objects.equals(head.etag(), etag);
+    }
+
+    /**
+     * Add or replace the head of a content. The cache takes over the reference passed in.
+     *
+     * @param objectKey object key.
+     * @param data      ByteBuf of the opening bytes.
+     * @param fileSize  size of the whole file.
+     * @param etag      version of the file the head was read from.
+     * @return false when the head did not fit the budget and was released.
+     */
+    public synchronized boolean put(final String objectKey, final ByteBuf data, final long fileSize, final String etag) {
+        final Head previous = heads.remove(objectKey);
+        if (previous != null) {
+            usedBytes -= previous.data().readableBytes();
+            previous.data().release();
+        }
+        if (usedBytes + data.readableBytes() > maxBytes) {
+            data.release();
+            return false;
+        }
+        heads.put(objectKey, new Head(data, fileSize, etag));
+        usedBytes += data.readableBytes();
+        return true;
+    }
+
+    /**
+     * Drop the head of a content.
+     *
+     * @param objectKey object key.
+     */
+    public synchronized void remove(final String objectKey) {
+        final Head head = heads.remove(objectKey);
+        if (head != null) {
+            usedBytes -= head.data().readableBytes();
+            head.data().release();
+        }
+    }
+
+    /**
+     * Drop the head of a content unless it was read from a version of the file.
+     *
+     * @param objectKey object key.
+     * @param etag      current version of the file.
+     * @return true when a head of another version was dropped.
+     */
+    public synchronized boolean removeStale(final String objectKey, final String etag) {
+        final Head head = heads.get(objectKey);
+        if (head == null || Objects.equals(head.etag(), etag)) {
+            return false;
+        }
+        remove(objectKey);
+        return true;
+    }
+
+    /**
+     * Drop every head.
+     */
+    public synchronized void clear() {
+        heads.values().forEach(head -> head.data().release());
+        heads.clear();
+        usedBytes = 0;
+    }
+
+    public synchronized long getUsedBytes() {
+        return usedBytes;
+    }
+
+    public synchronized int getHeadCount() {
+        return heads.size();
+    }
+
+    public long getHits() {
+        return hits.sum();
+    }
+
+    public long getMisses() {
+        return misses.sum();
+    }
+}
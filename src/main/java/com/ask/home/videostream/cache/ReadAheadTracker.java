@@ -0,0 +1,100 @@
+package com.ask.home.videostream.cache;
+
+import lombok.Getter;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.LongSupplier;
+
+/**
+ * Detects sequential playback per (client, object key) from the requested ranges and tells how many ranges to read
+ * ahead.
+ * <p>
+ * A request starting within or right after the previous one is sequential. From the second sequential request on, the
+ * read-ahead depth is the number of requests the client is expected to make within {@code window} at its observed
+ * rate, between 1 and {@code maxDepth}: a player filling its buffer gets a deep read-ahead, a steady playback a shallow
+ * one. A seek resets the session.
+ */
+public class ReadAheadTracker {
+
+    private static final double RATE_SMOOTHING = 0.3;
+    private static final long IDLE_NANOS = Duration.ofMinutes(1).toNanos();
+
+    @Getter
+    private final int maxDepth;
+    private final long windowNanos;
+    private final LongSupplier nanoClock;
+    private final Map<String, Session> sessions;
+
+    /**
+     * Constructor.
+     *
+     * @param maxDepth    largest number of ranges read ahead, 0 to disable.
+     * @param window      playback time covered by the read-ahead.
+     * @param maxSessions sessions tracked, the least recently active are dropped.
+     */
+    public ReadAheadTracker(final int maxDepth, final Duration window, final int maxSessions) {
+        this(maxDepth, window, maxSessions, System::nanoTime);
+    }
+
+    ReadAheadTracker(final int maxDepth, final Duration window, final int maxSessions, final LongSupplier nanoClock) {
+        this.maxDepth = maxDepth;
+        this.windowNanos = window.toNanos();
+        this.nanoClock = nanoClock;
+        this.sessions = new LinkedHashMap<>(256, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(final Map.Entry<String, Session> eldest) {
+                return size() > maxSessions;
+            }
+        };
+    }
+
+    /**
+     * Record a request.
+     *
+     * @param clientId   client making the request.
+     * @param objectKey  object key of the content.
+     * @param rangeStart first byte requested.
+     * @param rangeEnd   last byte requested.
+     * @return number of ranges of the same length to read ahead after this one, 0 when not sequential.
+     */
+    public int record(final String clientId, final String objectKey, final long rangeStart, final long rangeEnd) {
+        if (maxDepth <= 0 || clientId == null || objectKey == null) {
+            return 0;
+        }
+        final long now = nanoClock.getAsLong();
+        synchronized (sessions) {
+            final String sessionKey = clientId + "|" + objectKey;
+            final Session session = sessions.get(sessionKey);
+            if (session == null || now - session.lastRequest > IDLE_NANOS || rangeStart < session.rangeStart || rangeStart > session.rangeEnd + 1) {
+                sessions.put(sessionKey, new Session(rangeStart, rangeEnd, now));
+                return 0;
+            }
+            final long interval = Math.max(1, now - session.lastRequest);
+            session.interval = session.sequential == 0 ? interval : (long) (RATE_SMOOTHING * interval + (1 - RATE_SMOOTHING) * session.interval);
+            session.sequential++;
+            session.rangeStart = rangeStart;
+            session.rangeEnd = rangeEnd;
+            session.lastRequest = now;
+            if (session.sequential < 2) {
+                return 0;
+            }
+            return (int) Math.clamp((windowNanos + session.interval - 1) / session.interval, 1, maxDepth);
+        }
+    }
+
+    private static final class Session {
+        private long rangeStart;
+        private long rangeEnd;
+        private long lastRequest;
+        private long interval;
+        private int sequential;
+
+        private Session(final long rangeStart, final long rangeEnd, final long lastRequest) {
+            this.rangeStart = rangeStart;
+            this.rangeEnd = rangeEnd;
+            this.lastRequest = lastRequest;
+        }
+    }
+}
@@ -0,0 +1,25 @@
+package com.ask.home.videostream.catalog;
+
+import com.ask.home.videostream.model.Content;
+
+/**
+ * Callback for changes of the {@link ContentCatalog}.
+ */
+public interface CatalogListener {
+
+    /**
+     * Content was added to the catalog or its metadata changed.
+     *
+     * @param content Content.
+     */
+    default void contentRegistered(Content content) {
+    }
+
+    /**
+     * Content was removed from the catalog.
+     *
+     * @param content Content.
+     */
+    default void contentRemoved(Content content) {
+    }
+}
@@ -0,0 +1,156 @@
+package com.ask.home.videostream.catalog;
+
+import com.ask.home.videostream.model.Content;
+import com.ask.home.videostream.model.ContentPage;
+import com.ask.home.videostream.model.ContentQuery;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.function.Predicate;
+
+/**
+ * Filters, orders and pages the catalogued contents. Contents are sorted by name case-insensitively, by size or by
+ * modification time, the relative path breaking ties. Pages are cut by keyset: the cursor holds the sort value, the
+ * name and the relative path of the last content of a page, so a page never repeats or skips a content that was already listed
+ * when the catalog changes in between. A page keeps only its own contents while the catalog is walked.
+ */
+public final class CatalogPager {
+
+    /**
+     * Page size without a limit.
+     */
+    public static final int DEFAULT_LIMIT = 100;
+    /**
+     * Largest page size.
+     */
+    public static final int MAX_LIMIT = 1000;
+
+    private CatalogPager() {
+    }
+
+    /**
+     * Position of a content in an order, the name empty unless sorting by name.
+     */
+    private record SortKey(long value, String name, String path) {
+    }
+
+    /**
+     * Check the query before walking the catalog.
+     *
+     * @param query ContentQuery.
+     * @throws IllegalArgumentException on a limit out of range or a cursor of another order.
+     */
+    public static void validate(final ContentQuery query) {
+        if (query.getLimit() != null && (query.getLimit() < 1 || query.getLimit() > MAX_LIMIT)) {
+            throw new IllegalArgumentException("limit must be between 1 and " + MAX_LIMIT);
+        }
+        after(query);
+    }
+
+    /**
+     * Contents of the catalog matching the filters of the query, in catalog order.
+     *
+     * @param contents catalogued contents.
+     * @param query    ContentQuery.
+     * @return Flux of Content, at most limit when the query has one.
+     */
+    public static Flux<Content> filter(final Flux<Content> contents, final ContentQuery query) {
+        final Flux<Content> matching = contents.filter(matcher(query));
+        return query.getLimit() == null ? matching : matching.take(query.getLimit());
+    }
+
+    /**
+     * Page of the contents matching the query, after its cursor.
+     *
+     * @param contents catalogued contents, in any order.
+     * @param query    ContentQuery.
+     * @return Mono of the ContentPage.
+     */
+    public static Mono<ContentPage> page(final Flux<Content> contents, final ContentQuery query) {
+        final int limit = query.getLimit() == null ? DEFAULT_LIMIT : query.getLimit();
+        final Comparator<Content> order = order(query);
+        final SortKey after = after(query);
+        final Comparator<SortKey> keyOrder = keyOrder(query);
+        // the limit + 1 first contents, the head of the queue being the last of them.
+        return contents.filter(matcher(query))
+                .filter(content -> after == null || keyOrder.compare(sortKey(query, content), after) > 0)
+                .collect(() -> new PriorityQueue<>(limit + 2, order.reversed()), (PriorityQueue<Content> first, Content content) -> {
+                    first.add(content);
+                    if (first.size() > limit + 1) {
+                        first.poll();
+                    }
+                })
+                .map(first -> {
+                    final List<Content> page = new ArrayList<>(first);
+                    page.sort(order);
+                    if (page.size() <= limit) {
+                        return ContentPage.builder().contents(page).build();
+                    }
+                    final List<Content> contentsOfPage = page.subList(0, limit);
+                    return ContentPage.builder().contents(new ArrayList<>(contentsOfPage)).nextCursor(cursor(query, contentsOfPage.getLast())).build();
+                });
+    }
+
+    private static Predicate<Content> matcher(final ContentQuery query) {
+        final String pathPrefix = query.getPathPrefix() == null ? null : ContentCatalog.relativePath(query.getPathPrefix(), "");
+        return content -> (pathPrefix == null || ContentCatalog.relativePath(content).startsWith(pathPrefix))
+                && (query.getType() == null || query.getType().equalsIgnoreCase(content.getContentType()))
+                && (query.getMinSize() == null || size(content) >= query.getMinSize())
+                && (query.getMaxSize() == null || size(content) <= query.getMaxSize());
+    }
+
+    private static Comparator<Content> order(final ContentQuery query) {
+        final Comparator<SortKey> keyOrder = keyOrder(query);
+        return (left, right) -> keyOrder.compare(sortKey(query, left), sortKey(query, right));
+    }
+
+    private static Comparator<SortKey> keyOrder(final ContentQuery query) {
+        final Comparator<SortKey> order = Comparator.comparingLong(SortKey::value).thenComparing(SortKey::name, String.CASE_INSENSITIVE_ORDER).thenComparing(SortKey::path);
+        return query.isDescending() ? order.reversed() : order;
+    }
+
+    private static SortKey sortKey(final ContentQuery query, final Content content) {
+        final long value = switch (query.getSort()) {
+            case NAME -> 0;
+            case SIZE -> size(content);
+            case LAST_MODIFIED -> content.getLastModified() == null ? 0 : content.getLastModified();
+        };
+        final String name = query.getSort() == ContentQuery.Sort.NAME && content.getContentName() != null ? content.getContentName() : "";
+        return new SortKey(value, name, ContentCatalog.relativePath(content));
+    }
+
+    private static long size(final Content content) {
+        return content.getTotalContentSize() == null ? 0 : content.getTotalContentSize();
+    }
+
+    private static String cursor(final ContentQuery query, final Content last) {
+        final SortKey sortKey = sortKey(query, last);
+        // names and paths may hold line breaks, the length of the name splits them.
+        final String position = query.getSort().getValue() + (query.isDescending() ? "-" : "+") + "\n" + sortKey.value() + "\n" + sortKey.name().length() + "\n"
+                + sortKey.name() + sortKey.path();
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(position.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static SortKey after(final ContentQuery query) {
+        if (query.getCursor() == null || query.getCursor().isEmpty()) {
+            return null;
+        }
+        try {
+            final String[] position = new String(Base64.getUrlDecoder().decode(query.getCursor()), StandardCharsets.UTF_8).split("\n", 4);
+            if (position.length != 4 || !position[0].equals(query.getSort().getValue() + (query.isDescending() ? "-" : "+"))) {
+                throw new IllegalArgumentException("cursor belongs to another order");
+            }
+            final int nameLength = Integer.parseInt(position[2]);
+            return new SortKey(Long.parseLong(position[1]), position[3].substring(0, nameLength), position[3].substring(nameLength));
+        } catch (IllegalArgumentException | IndexOutOfBoundsException exception) {
+            // NumberFormatException, invalid Base64 and a name longer than the cursor included.
+            throw new IllegalArgumentException("Invalid cursor", exception);
+        }
+    }
+}
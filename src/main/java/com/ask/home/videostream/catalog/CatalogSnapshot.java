@@ -0,0 +1,137 @@
+package com.ask.home.videostream.catalog;
+
+import com.ask.home.videostream.model.Content;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Compact binary copy of the catalog, written on shutdown and memory-mapped on startup so the service can answer
+ * before the content root has been walked.
+ * <p>
+ * Layout: magic, version, root path, folder count, (folder path, folder mtime)*, content count,
+ * (object key, content path, content name, content type, size, mtime, file key)*. Strings are a length followed by
+ * UTF-8 bytes, -1 for null.
+ */
+@Getter
+@AllArgsConstructor
+public class CatalogSnapshot {
+
+    private static final int MAGIC = 0x56434154;
+    private static final int VERSION = 1;
+
+    private final String rootPath;
+    /**
+     * Last modified time of every folder, keyed by the relative folder path.
+     */
+    private final Map<String, Long> folderModifiedTimes;
+    private final List<Content> contents;
+
+    /**
+     * Write the snapshot, replacing the previous one atomically.
+     *
+     * @param file                snapshot file.
+     * @param rootPath            content root the catalog belongs to.
+     * @param folderModifiedTimes folder mtimes, collected before the contents.
+     * @param contents            catalogued contents.
+     * @throws IOException ioException.
+     */
+    public static void write(final Path file, final String rootPath, final Map<String, Long> folderModifiedTimes, final Collection<Content> contents) throws IOException {
+        final Path parent = file.toAbsolutePath().getParent();
+        Files.createDirectories(parent);
+        final Path tempFile = Files.createTempFile(parent, file.getFileName().toString(), ".tmp");
+        try {
+            try (DataOutputStream output = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tempFile)))) {
+                output.writeInt(MAGIC);
+                output.writeInt(VERSION);
+                writeString(output, rootPath);
+                output.writeInt(folderModifiedTimes.size());
+                for (Map.Entry<String, Long> folder : folderModifiedTimes.entrySet()) {
+                    writeString(output, folder.getKey());
+                    output.writeLong(folder.getValue());
+                }
+                final List<Content> snapshotContents = new ArrayList<>(contents);
+                output.writeInt(snapshotContents.size());
+                for (Content content : snapshotContents) {
+                    writeString(output, content.getObjectKey());
+                    writeString(output, content.getContentPath());
+                    writeString(output, content.getContentName());
+                    writeString(output, content.getContentType());
+                    output.writeLong(content.getTotalContentSize() == null ? 0 : content.getTotalContentSize());
+                    output.writeLong(content.getLastModified() == null ? 0 : content.getLastModified());
+                    writeString(output, content.getFileKey());
+                }
+            }
+            Files.move(tempFile, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(tempFile);
+        }
+    }
+
+    /**
+     * Read a snapshot.
+     *
+     * @param file snapshot file.
+     * @return CatalogSnapshot.
+     * @throws IOException when the file can't be read or isn't a snapshot.
+     */
+    public static CatalogSnapshot read(final Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            final MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if (buffer.remaining() < 8 || buffer.getInt() != MAGIC || buffer.getInt() != VERSION) {
+                throw new IOException("Not a catalog snapshot " + file);
+            }
+            final String rootPath = readString(buffer);
+            final int folderCount = buffer.getInt();
+            final Map<String, Long> folderModifiedTimes = HashMap.newHashMap(folderCount);
+            for (int i = 0; i < folderCount; i++) {
+                folderModifiedTimes.put(readString(buffer), buffer.getLong());
+            }
+            final int contentCount = buffer.getInt();
+            final List<Content> contents = new ArrayList<>(contentCount);
+            for (int i = 0; i < contentCount; i++) {
+                contents.add(Content.builder().objectKey(readString(buffer)).contentPath(readString(buffer)).contentName(readString(buffer)).contentType(readString(buffer))
+                        .totalContentSize(buffer.getLong()).lastModified(buffer.getLong()).fileKey(readString(buffer)).build());
+            }
+            return new CatalogSnapshot(rootPath, folderModifiedTimes, contents);
+        } catch (RuntimeException e) {
+            // truncated or corrupted file
+            throw new IOException("Invalid catalog snapshot " + file, e);
+        }
+    }
+
+    private static void writeString(final DataOutputStream output, final String value) throws IOException {
+        if (value == null) {
+            output.writeInt(-1);
+            return;
+        }
+        final byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        output.writeInt(bytes.length);
+        output.write(bytes);
+    }
+
+    private static String readString(final MappedByteBuffer buffer) {
+        final int length = buffer.getInt();
+        if (length < 0) {
+            return null;
+        }
+        final byte[] bytes = new byte[length];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,163 @@
+package com.ask.home.videostream.catalog;
+
+import com.ask.home.videostream.model.Content;
+import com.ask.home.videostream.util.HttpValidators;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * In-memory index of the catalogued contents, keyed by object key and by relative path. Lookups are lock-free reads of
+ * concurrent maps, updates come from the initial scan and from the file system watcher.
+ */
+@Slf4j
+public class ContentCatalog {
+
+    private final Map<String, Content> contentByObjectKey = new ConcurrentHashMap<>();
+    private final Map<String, Content> contentByPath = new ConcurrentHashMap<>();
+    private final List<CatalogListener> listeners = new CopyOnWriteArrayList<>();
+
+    /**
+     * Relative path of a content inside the content root, without leading slash.
+     *
+     * @param contentPath content path, "" or "/folder".
+     * @param contentName file name.
+     * @return String.
+     */
+    public static String relativePath(final String contentPath, final String contentName) {
+        String folder = contentPath == null ? "" : contentPath.replace('\\', '/');
+        while (folder.startsWith("/")) {
+            folder = folder.substring(1);
+        }
+        while (folder.endsWith("/")) {
+            folder = folder.substring(0, folder.length() - 1);
+        }
+        return folder.isEmpty() ? contentName : folder + "/" + contentName;
+    }
+
+    /**
+     * Relative path of the content.
+     *
+     * @param content Content.
+     * @return String.
+     */
+    public static String relativePath(final Content content) {
+        return relativePath(content.getContentPath(), content.getContentName());
+    }
+
+    /**
+     * Add or replace a content, computing its ETag.
+     *
+     * @param content Content.
+     */
+    public void register(final Content content) {
+        if (content.getEtag() == null) {
+            content.setEtag(HttpValidators.etag(content.getFileKey(), content.getTotalContentSize() == null ? 0 : content.getTotalContentSize(),
+                    content.getLastModified() == null ? 0 : content.getLastModified()));
+        }
+        final String path = relativePath(content);
+        if (content.equals(contentByPath.get(path))) {
+            return;
+        }
+        final Content previousByKey = contentByObjectKey.put(content.getObjectKey(), content);
+        // same file moved to another path, drop the old path.
+        if (previousByKey != null && !relativePath(previousByKey).equals(path)) {
+            contentByPath.remove(relativePath(previousByKey), previousByKey);
+        }
+        final Content previousByPath = contentByPath.put(path, content);
+        // another file replaced the one at this path, drop the old key.
+        if (previousByPath != null && !previousByPath.getObjectKey().equals(content.getObjectKey())) {
+            contentByObjectKey.remove(previousByPath.getObjectKey(), previousByPath);
+        }
+        listeners.forEach(listener -> notify(() -> listener.contentRegistered(content)));
+    }
+
+    /**
+     * Remove the content at the path.
+     *
+     * @param relativePath relative path.
+     * @return removed Content or null.
+     */
+    public Content unregister(final String relativePath) {
+        final Content content = contentByPath.remove(relativePath);
+        if (content != null) {
+            contentByObjectKey.remove(content.getObjectKey(), content);
+            listeners.forEach(listener -> notify(() -> listener.contentRemoved(content)));
+        }
+        return content;
+    }
+
+    /**
+     * Remove every content in the folder and its sub folders.
+     *
+     * @param folder relative folder path.
+     */
+    public void unregisterFolder(final String folder) {
+        final String prefix = folder.endsWith("/") ? folder : folder + "/";
+        new ArrayList<>(contentByPath.keySet()).stream().filter(path -> path.startsWith(prefix)).forEach(this::unregister);
+    }
+
+    /**
+     * Remove every content whose path is not in the given set.
+     *
+     * @param relativePaths paths to keep.
+     */
+    public void retainPaths(final Set<String> relativePaths) {
+        new ArrayList<>(contentByPath.keySet()).stream().filter(path -> !relativePaths.contains(path)).forEach(this::unregister);
+    }
+
+    /**
+     * Contents directly inside the folder.
+     *
+     * @param folder relative folder path, "" for the root.
+     * @return List of Content.
+     */
+    public List<Content> findByFolder(final String folder) {
+        final String prefix = folder.isEmpty() ? "" : folder + "/";
+        return contentByPath.entrySet().stream().filter(entry -> entry.getKey().startsWith(prefix) && entry.getKey().indexOf('/', prefix.length()) < 0).map(Map.Entry::getValue).toList();
+    }
+
+    public Content findByObjectKey(final String objectKey) {
+        return contentByObjectKey.get(objectKey);
+    }
+
+    public Content findByPath(final String relativePath) {
+        return contentByPath.get(relativePath);
+    }
+
+    /**
+     * Unmodifiable live view of the catalogued contents.
+     *
+     * @return Collection of Content.
+     */
+    public Collection<Content> contents() {
+        return Collections.unmodifiableCollection(contentByObjectKey.values());
+    }
+
+    public int size() {
+        return contentByObjectKey.size();
+    }
+
+    public void addListener(final CatalogListener listener) {
+        listeners.add(listener);
+    }
+
+    public void removeListener(final CatalogListener listener) {
+        listeners.remove(listener);
+    }
+
+    private void notify(final Runnable notification) {
+        try {
+            notification.run();
+        } catch (RuntimeException exception) {
+            log.error("Catalog listener failed", exception);
+        }
+    }
+}
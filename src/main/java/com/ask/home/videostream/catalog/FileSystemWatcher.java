@@ -0,0 +1,283 @@
+package com.ask.home.videostream.catalog;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileVisitOption;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.time.Duration;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+import static java.nio.file.StandardWatchEventKinds.*;
+
+/**
+ * Watches the content root recursively and reports file changes, so the catalog is kept up to date without walking
+ * the tree again.
+ * <p>
+ * A changed file is reported once its size and modification time stayed the same for the settle time: a file being
+ * copied in fires a modification per write, reporting each of them would reload everything cached for it.
+ */
+@Slf4j
+public class FileSystemWatcher implements Closeable {
+
+    /**
+     * Receiver of the file system changes.
+     */
+    public interface Listener {
+
+        /**
+         * A file was created or modified.
+         *
+         * @param file Path.
+         */
+        void fileChanged(Path file);
+
+        /**
+         * A file or folder was deleted or moved away.
+         *
+         * @param path Path.
+         */
+        void pathDeleted(Path path);
+
+        /**
+         * Events were lost, the whole tree needs to be checked again.
+         */
+        void overflow();
+
+        /**
+         * A folder is being watched.
+         *
+         * @param folder Path.
+         */
+        default void folderRegistered(Path folder) {
+        }
+    }
+
+    private final Path root;
+    private final int maxDepth;
+    private final Listener listener;
+    private final long settleNanos;
+    private final Map<WatchKey, Path> watchedFolders = new ConcurrentHashMap<>();
+    // changed files waiting to settle, only touched by the watcher thread.
+    private final Map<Path, PendingChange> pendingChanges = new HashMap<>();
+    private WatchService watchService;
+    private Thread watcherThread;
+    private boolean closed;
+
+    /**
+     * Changed file, reported when due if its attributes haven't changed since.
+     */
+    private record PendingChange(long dueNanos, long size, long lastModified) {
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param root     content root.
+     * @param maxDepth folder depth to watch.
+     * @param listener Listener.
+     */
+    public FileSystemWatcher(final Path root, final int maxDepth, final Listener listener) {
+        this(root, maxDepth, Duration.ZERO, listener);
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param root       content root.
+     * @param maxDepth   folder depth to watch.
+     * @param settleTime time a changed file has to stay unchanged before it is reported, zero to report every change.
+     * @param listener   Listener.
+     */
+    public FileSystemWatcher(final Path root, final int maxDepth, final Duration settleTime, final Listener listener) {
+        this.root = root;
+        this.maxDepth = maxDepth;
+        this.settleNanos = settleTime.toNanos();
+        this.listener = listener;
+    }
+
+    /**
+     * Register the folders and start the watcher thread.
+     */
+    public synchronized void start() {
+        if (watchService != null || closed) {
+            return;
+        }
+        try {
+            watchService = root.getFileSystem().newWatchService();
+            registerFolders(root, false);
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+        watcherThread = Thread.ofPlatform().name("content-catalog-watcher").daemon().start(this::processEvents);
+    }
+
+    @Override
+    public synchronized void close() {
+        closed = true;
+        if (watchService == null) {
+            return;
+        }
+        try {
+            watchService.close();
+        } catch (IOException e) {
+            log.error("Error while closing the watch service", e);
+        }
+        watcherThread.interrupt();
+        watchService = null;
+    }
+
+    private void processEvents() {
+        final WatchService service = watchService;
+        while (!Thread.currentThread().isInterrupted()) {
+            WatchKey watchKey;
+            try {
+                watchKey = pendingChanges.isEmpty() ? service.take() : service.poll(nanosUntilDue(), TimeUnit.NANOSECONDS);
+            } catch (InterruptedException | ClosedWatchServiceException e) {
+                return;
+            }
+            if (watchKey != null) {
+                final Path folder = watchedFolders.get(watchKey);
+                for (WatchEvent<?> event : watchKey.pollEvents()) {
+                    try {
+                        processEvent(folder, event);
+                    } catch (RuntimeException exception) {
+                        log.error("Error while processing the file event {} {}", event.kind(), event.context(), exception);
+                    }
+                }
+                if (!watchKey.reset()) {
+                    watchedFolders.remove(watchKey);
+                }
+            }
+            reportSettledChanges();
+        }
+    }
+
+    /**
+     * Hold the change until the file settles.
+     *
+     * @param file Path.
+     */
+    private void fileChanged(final Path file) {
+        if (settleNanos == 0) {
+            listener.fileChanged(file);
+            return;
+        }
+        pendingChanges.put(file, pendingChange(file));
+    }
+
+    private PendingChange pendingChange(final Path file) {
+        try {
+            final BasicFileAttributes attributes = Files.readAttributes(file, BasicFileAttributes.class);
+            return new PendingChange(System.nanoTime() + settleNanos, attributes.size(), attributes.lastModifiedTime().toMillis());
+        } catch (IOException ioException) {
+            // gone already, reported as is once due.
+            return new PendingChange(System.nanoTime() + settleNanos, -1, -1);
+        }
+    }
+
+    private long nanosUntilDue() {
+        final long now = System.nanoTime();
+        long nanos = Long.MAX_VALUE;
+        for (PendingChange pendingChange : pendingChanges.values()) {
+            nanos = Math.min(nanos, pendingChange.dueNanos() - now);
+        }
+        return Math.max(0, nanos);
+    }
+
+    /**
+     * Report the due changes of the files whose size and modification time stayed the same, wait again for the others.
+     */
+    private void reportSettledChanges() {
+        final long now = System.nanoTime();
+        final Iterator<Map.Entry<Path, PendingChange>> iterator = pendingChanges.entrySet().iterator();
+        final Map<Path, PendingChange> stillChanging = new HashMap<>();
+        while (iterator.hasNext()) {
+            final Map.Entry<Path, PendingChange> entry = iterator.next();
+            if (entry.getValue().dueNanos() - now > 0) {
+                continue;
+            }
+            iterator.remove();
+            final PendingChange current = pendingChange(entry.getKey());
+            if (current.size() != entry.getValue().size() || current.lastModified() != entry.getValue().lastModified()) {
+                stillChanging.put(entry.getKey(), current);
+                continue;
+            }
+            try {
+                listener.fileChanged(entry.getKey());
+            } catch (RuntimeException exception) {
+                log.error("Error while processing the change of {}", entry.getKey(), exception);
+            }
+        }
+        pendingChanges.putAll(stillChanging);
+    }
+
+    private void processEvent(final Path folder, final WatchEvent<?> event) {
+        if (event.kind() == OVERFLOW || folder == null) {
+            listener.overflow();
+            return;
+        }
+        final Path path = folder.resolve((Path) event.context());
+        if (event.kind() == ENTRY_DELETE) {
+            pendingChanges.keySet().removeIf(pending -> pending.startsWith(path));
+            listener.pathDeleted(path);
+        } else if (Files.isDirectory(path)) {
+            if (event.kind() == ENTRY_CREATE) {
+                // files may have landed before the folder got registered, report them too.
+                registerFolders(path, true);
+            }
+        } else {
+            fileChanged(path);
+        }
+    }
+
+    /**
+     * Register the folder and its sub folders.
+     *
+     * @param folder      Path.
+     * @param reportFiles whether the files found are reported as changed.
+     */
+    private void registerFolders(final Path folder, final boolean reportFiles) {
+        final int depth = folder.equals(root) ? 0 : root.relativize(folder).getNameCount();
+        try {
+            Files.walkFileTree(folder, EnumSet.noneOf(FileVisitOption.class), Math.max(0, maxDepth - depth), new SimpleFileVisitor<>() {
+                @Override
+                public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) throws IOException {
+                    watchedFolders.put(dir.register(watchService, ENTRY_CREATE, ENTRY_DELETE, ENTRY_MODIFY), dir);
+                    listener.folderRegistered(dir);
+                    return FileVisitResult.CONTINUE;
+                }
+
+                @Override
+                public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+                    if (reportFiles && attrs.isRegularFile()) {
+                        fileChanged(file);
+                    }
+                    return FileVisitResult.CONTINUE;
+                }
+
+                @Override
+                public FileVisitResult visitFileFailed(Path file, IOException exc) {
+                    log.warn("Can't watch {} {}", file, exc.getMessage());
+                    return FileVisitResult.CONTINUE;
+                }
+            });
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+}
@@ -0,0 +1,208 @@
+package com.ask.home.videostream.catalog;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Walks a folder tree with one virtual thread per folder listing and per batch of attribute reads, at most
+ * {@code parallelism} of them doing I/O at the same time, or with a fixed pool of {@code parallelism} platform threads. On network file systems the walk is bound by round trips,
+ * not bandwidth, so overlapping them is what makes large libraries fast to scan.
+ */
+@Slf4j
+public class ParallelDirectoryScanner {
+
+    // attribute reads of a folder are split in batches of this many entries.
+    private static final int BATCH_SIZE = 64;
+
+    /**
+     * Receives the scanned entries, called concurrently from the scanning threads.
+     */
+    public interface Visitor {
+
+        /**
+         * A folder is about to be listed.
+         *
+         * @param folder Path.
+         */
+        default void folder(Path folder) {
+        }
+
+        /**
+         * A file was found.
+         *
+         * @param file       Path.
+         * @param attributes BasicFileAttributes of the file.
+         */
+        void file(Path file, BasicFileAttributes attributes);
+    }
+
+    private final int parallelism;
+    private final boolean virtualThreads;
+
+    /**
+     * Constructor.
+     *
+     * @param parallelism maximum number of concurrent file system calls.
+     */
+    public ParallelDirectoryScanner(final int parallelism) {
+        this(parallelism, true);
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param parallelism    maximum number of concurrent file system calls.
+     * @param virtualThreads scan on virtual threads, else on a pool of platform threads.
+     */
+    public ParallelDirectoryScanner(final int parallelism, final boolean virtualThreads) {
+        if (parallelism < 1) {
+            throw new IllegalArgumentException("parallelism must be at least 1");
+        }
+        this.parallelism = parallelism;
+        this.virtualThreads = virtualThreads;
+    }
+
+    /**
+     * Scan the folder tree and wait until every entry was visited.
+     *
+     * @param root     folder to scan.
+     * @param maxDepth maximum depth of the files, relative to the root.
+     * @param visitor  Visitor.
+     */
+    public void scan(final Path root, final int maxDepth, final Visitor visitor) {
+        if (!Files.isDirectory(root)) {
+            throw new RuntimeException("Not a folder " + root);
+        }
+        try (ExecutorService executor = virtualThreads ? Executors.newVirtualThreadPerTaskExecutor()
+                : Executors.newFixedThreadPool(parallelism, Thread.ofPlatform().name("catalog-scan-", 0).daemon().factory())) {
+            final Scan scan = new Scan(executor, maxDepth, visitor);
+            scan.submit(() -> scan.listFolder(root, 0));
+            scan.await();
+        }
+    }
+
+    /**
+     * State of a single scan.
+     */
+    private class Scan {
+
+        private final ExecutorService executor;
+        private final int maxDepth;
+        private final Visitor visitor;
+        private final Semaphore permits = new Semaphore(parallelism);
+        private final AtomicInteger pendingTasks = new AtomicInteger();
+        private final Object completion = new Object();
+
+        Scan(final ExecutorService executor, final int maxDepth, final Visitor visitor) {
+            this.executor = executor;
+            this.maxDepth = maxDepth;
+            this.visitor = visitor;
+        }
+
+        void submit(final Runnable task) {
+            pendingTasks.incrementAndGet();
+            executor.execute(() -> {
+                try {
+                    permits.acquireUninterruptibly();
+                    try {
+                        task.run();
+                    } finally {
+                        permits.release();
+                    }
+                } catch (RuntimeException exception) {
+                    log.error("Error while scanning", exception);
+                } finally {
+                    if (pendingTasks.decrementAndGet() == 0) {
+                        synchronized (completion) {
+                            completion.notifyAll();
+                        }
+                    }
+                }
+            });
+        }
+
+        void await() {
+            synchronized (completion) {
+                while (pendingTasks.get() > 0) {
+                    try {
+                        completion.wait();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        throw new RuntimeException("Scan interrupted", e);
+                    }
+                }
+            }
+        }
+
+        /**
+         * List the folder and hand its entries over in batches.
+         */
+        void listFolder(final Path folder, final int depth) {
+            visitor.folder(folder);
+            List<Path> batch = new ArrayList<>(BATCH_SIZE);
+            try (DirectoryStream<Path> entries = Files.newDirectoryStream(folder)) {
+                for (Path entry : entries) {
+                    batch.add(entry);
+                    if (batch.size() == BATCH_SIZE) {
+                        submitBatch(batch, depth + 1);
+                        batch = new ArrayList<>(BATCH_SIZE);
+                    }
+                }
+            } catch (IOException ioException) {
+                log.warn("Can't list {} {}", folder, ioException.getMessage());
+            }
+            if (!batch.isEmpty()) {
+                submitBatch(batch, depth + 1);
+            }
+        }
+
+        private void submitBatch(final List<Path> batch, final int depth) {
+            submit(() -> readAttributes(batch, depth));
+        }
+
+        /**
+         * Read the attributes of the entries, visit the files and schedule the sub folders.
+         */
+        private void readAttributes(final List<Path> batch, final int depth) {
+            for (Path entry : batch) {
+                BasicFileAttributes attributes;
+                try {
+                    attributes = Files.readAttributes(entry, BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS);
+                    // linked files are listed like Files.walk does, linked folders are not followed.
+                    if (attributes.isSymbolicLink()) {
+                        attributes = Files.readAttributes(entry, BasicFileAttributes.class);
+                        if (attributes.isDirectory()) {
+                            continue;
+                        }
+                    }
+                } catch (IOException ioException) {
+                    // removed while scanning or dangling link
+                    continue;
+                }
+                if (attributes.isDirectory()) {
+                    if (depth < maxDepth) {
+                        submit(() -> listFolder(entry, depth));
+                    }
+                } else if (attributes.isRegularFile()) {
+                    try {
+                        visitor.file(entry, attributes);
+                    } catch (RuntimeException exception) {
+                        log.error("Error while visiting {}", entry, exception);
+                    }
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,138 @@
+package com.ask.home.videostream.catalog;
+
+import com.ask.home.videostream.model.Content;
+import com.ask.home.videostream.model.Title;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Groups the catalogued encodes of a title into renditions by a naming convention: a pattern matched against the
+ * content name without its extension, its {@code title} group naming the title and its {@code rendition} group the
+ * rendition ({@code movie_1080p.mp4} and {@code movie_720p.mp4} are two renditions of {@code movie}). Renditions of a
+ * title share a folder. The groups follow the catalog.
+ */
+public class RenditionGroups implements CatalogListener {
+
+    /**
+     * Rendition label after the title: {@code movie_1080p}, {@code movie.720p}, {@code movie 480p}.
+     */
+    public static final String DEFAULT_PATTERN = "(?<title>.+)[_. -](?<rendition>\\d{3,4}p)";
+
+    private static final Comparator<Title.Rendition> BY_LABEL = Comparator.comparing(Title.Rendition::label);
+
+    private final ContentCatalog contentCatalog;
+    private final Pattern pattern;
+    private final Map<String, Group> groups = new HashMap<>();
+    private final Map<String, String> titleIdByObjectKey = new HashMap<>();
+
+    /**
+     * Title being grouped: its renditions by object key.
+     */
+    private record Group(String titleName, String contentPath, Map<String, String> labelByObjectKey) {
+    }
+
+    /**
+     * Constructor, groups the catalogued contents and listens to the catalog.
+     *
+     * @param contentCatalog ContentCatalog.
+     * @param pattern        naming convention, with the named groups title and rendition.
+     */
+    public RenditionGroups(final ContentCatalog contentCatalog, final Pattern pattern) {
+        if (!pattern.pattern().contains("?<title>") || !pattern.pattern().contains("?<rendition>")) {
+            throw new IllegalArgumentException("rendition pattern needs the named groups title and rendition");
+        }
+        this.contentCatalog = contentCatalog;
+        this.pattern = pattern;
+        contentCatalog.addListener(this);
+        contentCatalog.contents().forEach(this::contentRegistered);
+    }
+
+    /**
+     * Titles with their renditions.
+     *
+     * @return List of Title.
+     */
+    public List<Title> titles() {
+        final List<String> titleIds;
+        synchronized (groups) {
+            titleIds = new ArrayList<>(groups.keySet());
+        }
+        return titleIds.stream().map(this::findByTitleId).filter(title -> title != null && !title.getRenditions().isEmpty())
+                .sorted(Comparator.comparing(Title::getContentPath).thenComparing(Title::getTitleName)).toList();
+    }
+
+    /**
+     * Title with its renditions.
+     *
+     * @param titleId title id.
+     * @return Title, null when unknown.
+     */
+    public Title findByTitleId(final String titleId) {
+        final Group group;
+        final Map<String, String> labels;
+        synchronized (groups) {
+            group = groups.get(titleId);
+            if (group == null) {
+                return null;
+            }
+            labels = new HashMap<>(group.labelByObjectKey());
+        }
+        final List<Title.Rendition> renditions = new ArrayList<>(labels.size());
+        labels.forEach((objectKey, label) -> {
+            final Content content = contentCatalog.findByObjectKey(objectKey);
+            if (content != null) {
+                renditions.add(new Title.Rendition(label, content));
+            }
+        });
+        renditions.sort(BY_LABEL);
+        return Title.builder().titleId(titleId).titleName(group.titleName()).contentPath(group.contentPath()).renditions(renditions).build();
+    }
+
+    @Override
+    public void contentRegistered(final Content content) {
+        final Matcher matcher = pattern.matcher(baseName(content.getContentName()));
+        synchronized (groups) {
+            remove(content.getObjectKey());
+            if (!matcher.matches()) {
+                return;
+            }
+            final String contentPath = content.getContentPath() == null ? "" : content.getContentPath();
+            final String titleName = matcher.group("title");
+            final String titleId = UUID.nameUUIDFromBytes(ContentCatalog.relativePath(contentPath, titleName).getBytes(StandardCharsets.UTF_8)).toString();
+            groups.computeIfAbsent(titleId, _ -> new Group(titleName, contentPath, new HashMap<>())).labelByObjectKey().put(content.getObjectKey(), matcher.group("rendition"));
+            titleIdByObjectKey.put(content.getObjectKey(), titleId);
+        }
+    }
+
+    @Override
+    public void contentRemoved(final Content content) {
+        synchronized (groups) {
+            remove(content.getObjectKey());
+        }
+    }
+
+    private void remove(final String objectKey) {
+        final String titleId = titleIdByObjectKey.remove(objectKey);
+        if (titleId == null) {
+            return;
+        }
+        final Group group = groups.get(titleId);
+        group.labelByObjectKey().remove(objectKey);
+        if (group.labelByObjectKey().isEmpty()) {
+            groups.remove(titleId);
+        }
+    }
+
+    private static String baseName(final String contentName) {
+        final int extension = contentName.lastIndexOf('.');
+        return extension > 0 ? contentName.substring(0, extension) : contentName;
+    }
+}
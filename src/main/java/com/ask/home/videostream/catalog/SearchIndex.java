@@ -0,0 +1,308 @@
+package com.ask.home.videostream.catalog;
+
+import com.ask.home.videostream.model.Content;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.PriorityQueue;
+import java.util.TreeMap;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.regex.Pattern;
+
+/**
+ * Inverted index of the tokens of the catalogued contents' names and paths, kept in step with the catalog.
+ * <p>
+ * Every content gets a document id; a token maps to the sorted ids of the documents holding it, in a primitive posting
+ * list per field. The token dictionaries are sorted, so a query token matches every token it prefixes. A search turns
+ * the postings of each query token into bit sets, intersects them and ranks the remaining documents from the bit sets
+ * alone: a whole token of the name first, then a prefix in the name, then a token of the path; short names first.
+ */
+public class SearchIndex implements CatalogListener {
+
+    private static final Pattern TOKEN_SEPARATOR = Pattern.compile("[^\\p{L}\\p{N}]+");
+    private static final String[] NO_TOKENS = new String[0];
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final NavigableMap<String, Postings> namePostings = new TreeMap<>();
+    private final NavigableMap<String, Postings> pathPostings = new TreeMap<>();
+    private final Map<String, Integer> docIdByObjectKey = new HashMap<>();
+    private Content[] docs = new Content[1024];
+    private String[][] nameTokens = new String[1024][];
+    private String[][] pathTokens = new String[1024][];
+    // sort keys of the ranking, computed once.
+    private int[] nameLengths = new int[1024];
+    private String[] paths = new String[1024];
+    private int[] freeDocIds = new int[16];
+    private int freeCount;
+    private int docCount;
+
+    /**
+     * Sorted document ids of a token.
+     */
+    private static final class Postings {
+        private int[] ids = new int[4];
+        private int size;
+
+        void add(final int id) {
+            int index = Arrays.binarySearch(ids, 0, size, id);
+            if (index >= 0) {
+                return;
+            }
+            index = -index - 1;
+            if (size == ids.length) {
+                ids = Arrays.copyOf(ids, size * 2);
+            }
+            System.arraycopy(ids, index, ids, index + 1, size - index);
+            ids[index] = id;
+            size++;
+        }
+
+        void remove(final int id) {
+            final int index = Arrays.binarySearch(ids, 0, size, id);
+            if (index >= 0) {
+                System.arraycopy(ids, index + 1, ids, index, size - index - 1);
+                size--;
+            }
+        }
+
+        void setAll(final long[] bits) {
+            for (int i = 0; i < size; i++) {
+                bits[ids[i] >>> 6] |= 1L << ids[i];
+            }
+        }
+    }
+
+    /**
+     * Ranked match of a search.
+     */
+    private record Match(int docId, int score, int nameLength, String path) {
+    }
+
+    private static final Comparator<Match> BEST_FIRST = Comparator.comparingInt(Match::score).reversed()
+            .thenComparingInt(Match::nameLength).thenComparing(Match::path);
+
+    /**
+     * Constructor, indexes the catalogued contents and listens to the catalog.
+     *
+     * @param contentCatalog ContentCatalog.
+     */
+    public SearchIndex(final ContentCatalog contentCatalog) {
+        contentCatalog.addListener(this);
+        contentCatalog.contents().forEach(this::contentRegistered);
+    }
+
+    /**
+     * Best contents whose name or path holds every token of the query, the last one possibly unfinished.
+     *
+     * @param query words, in any case.
+     * @param limit matches returned.
+     * @return List of Content, best first.
+     */
+    public List<Content> search(final String query, final int limit) {
+        final String[] tokens = tokenize(query);
+        if (tokens.length == 0 || limit < 1) {
+            return List.of();
+        }
+        lock.readLock().lock();
+        try {
+            // bit sets of document ids, one bit per document.
+            final int words = (docCount + 63) >>> 6;
+            final long[][] inName = new long[tokens.length][];
+            final long[][] nameToken = new long[tokens.length][];
+            final long[] matches = new long[words];
+            Arrays.fill(matches, -1L);
+            for (int t = 0; t < tokens.length; t++) {
+                inName[t] = prefixed(namePostings, tokens[t], words);
+                nameToken[t] = new long[words];
+                final Postings exact = namePostings.get(tokens[t]);
+                if (exact != null) {
+                    exact.setAll(nameToken[t]);
+                }
+                final long[] anywhere = prefixed(pathPostings, tokens[t], words);
+                boolean empty = true;
+                for (int w = 0; w < words; w++) {
+                    matches[w] &= anywhere[w] | inName[t][w];
+                    empty &= matches[w] == 0;
+                }
+                if (empty) {
+                    return List.of();
+                }
+            }
+
+            // every token a whole token of the name is the top score, enough of those leave the rest unranked.
+            final long[] topScored = matches.clone();
+            int topScoredCount = 0;
+            for (int w = 0; w < words; w++) {
+                for (long[] tokenInName : nameToken) {
+                    topScored[w] &= tokenInName[w];
+                }
+                topScoredCount += Long.bitCount(topScored[w]);
+            }
+            final long[] ranking = topScoredCount >= limit ? topScored : matches;
+
+            final PriorityQueue<Match> best = new PriorityQueue<>(limit + 1, BEST_FIRST.reversed());
+            for (int w = 0; w < words; w++) {
+                for (long bits = ranking[w]; bits != 0; bits &= bits - 1) {
+                    final int docId = (w << 6) + Long.numberOfTrailingZeros(bits);
+                    final long mask = 1L << docId;
+                    int score = 0;
+                    for (int t = 0; t < tokens.length; t++) {
+                        // path 1, prefix in the name 3, token of the name 4.
+                        score += 1 + ((inName[t][w] & mask) != 0 ? 2 : 0) + ((nameToken[t][w] & mask) != 0 ? 1 : 0);
+                    }
+                    if (best.size() == limit && !better(score, docId, best.peek())) {
+                        continue;
+                    }
+                    best.add(new Match(docId, score, nameLengths[docId], paths[docId]));
+                    if (best.size() > limit) {
+                        best.poll();
+                    }
+                }
+            }
+            final List<Match> ranked = new ArrayList<>(best);
+            ranked.sort(BEST_FIRST);
+            return ranked.stream().map(match -> docs[match.docId()]).toList();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Number of indexed contents.
+     *
+     * @return int.
+     */
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return docIdByObjectKey.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public void contentRegistered(final Content content) {
+        final String[] name = tokenize(baseName(content.getContentName()));
+        final String[] path = tokenize(content.getContentPath());
+        final String relativePath = ContentCatalog.relativePath(content);
+        lock.writeLock().lock();
+        try {
+            remove(content.getObjectKey());
+            final int docId = newDocId();
+            docIdByObjectKey.put(content.getObjectKey(), docId);
+            docs[docId] = content;
+            nameTokens[docId] = name;
+            pathTokens[docId] = path;
+            nameLengths[docId] = content.getContentName() == null ? 0 : content.getContentName().length();
+            paths[docId] = relativePath;
+            addPostings(namePostings, name, docId);
+            addPostings(pathPostings, path, docId);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void contentRemoved(final Content content) {
+        lock.writeLock().lock();
+        try {
+            remove(content.getObjectKey());
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Whether the document ranks before the match, without building its Match.
+     */
+    private boolean better(final int score, final int docId, final Match match) {
+        if (score != match.score()) {
+            return score > match.score();
+        }
+        if (nameLengths[docId] != match.nameLength()) {
+            return nameLengths[docId] < match.nameLength();
+        }
+        return paths[docId].compareTo(match.path()) < 0;
+    }
+
+    /**
+     * Documents holding a token the query token prefixes.
+     */
+    private static long[] prefixed(final NavigableMap<String, Postings> postings, final String token, final int words) {
+        final long[] bits = new long[words];
+        for (Postings tokenPostings : postings.subMap(token, true, token + Character.MAX_VALUE, false).values()) {
+            tokenPostings.setAll(bits);
+        }
+        return bits;
+    }
+
+    private int newDocId() {
+        if (freeCount > 0) {
+            return freeDocIds[--freeCount];
+        }
+        if (docCount == docs.length) {
+            final int capacity = docCount * 2;
+            docs = Arrays.copyOf(docs, capacity);
+            nameTokens = Arrays.copyOf(nameTokens, capacity);
+            pathTokens = Arrays.copyOf(pathTokens, capacity);
+            nameLengths = Arrays.copyOf(nameLengths, capacity);
+            paths = Arrays.copyOf(paths, capacity);
+        }
+        return docCount++;
+    }
+
+    private void remove(final String objectKey) {
+        final Integer docId = docIdByObjectKey.remove(objectKey);
+        if (docId == null) {
+            return;
+        }
+        removePostings(namePostings, nameTokens[docId], docId);
+        removePostings(pathPostings, pathTokens[docId], docId);
+        docs[docId] = null;
+        nameTokens[docId] = null;
+        pathTokens[docId] = null;
+        paths[docId] = null;
+        if (freeCount == freeDocIds.length) {
+            freeDocIds = Arrays.copyOf(freeDocIds, freeCount * 2);
+        }
+        freeDocIds[freeCount++] = docId;
+    }
+
+    private static void addPostings(final NavigableMap<String, Postings> postings, final String[] tokens, final int docId) {
+        for (String token : tokens) {
+            postings.computeIfAbsent(token, _ -> new Postings()).add(docId);
+        }
+    }
+
+    private static void removePostings(final NavigableMap<String, Postings> postings, final String[] tokens, final int docId) {
+        for (String token : tokens) {
+            final Postings tokenPostings = postings.get(token);
+            if (tokenPostings != null) {
+                tokenPostings.remove(docId);
+                if (tokenPostings.size == 0) {
+                    postings.remove(token);
+                }
+            }
+        }
+    }
+
+    private static String[] tokenize(final String text) {
+        if (text == null || text.isBlank()) {
+            return NO_TOKENS;
+        }
+        return Arrays.stream(TOKEN_SEPARATOR.split(text.toLowerCase(Locale.ROOT))).filter(token -> !token.isEmpty()).distinct().toArray(String[]::new);
+    }
+
+    private static String baseName(final String contentName) {
+        final int extension = contentName == null ? -1 : contentName.lastIndexOf('.');
+        return extension > 0 ? contentName.substring(0, extension) : contentName;
+    }
+}
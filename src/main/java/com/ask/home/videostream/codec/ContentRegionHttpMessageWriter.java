@@ -0,0 +1,103 @@
+package com.ask.home.videostream.codec;
+
+import com.ask.home.videostream.delivery.ChunkSizer;
+import com.ask.home.videostream.model.ContentRegion;
+import org.reactivestreams.Publisher;
+import org.springframework.core.ResolvableType;
+import org.springframework.http.MediaType;
+import org.springframework.http.ReactiveHttpOutputMessage;
+import org.springframework.http.ZeroCopyHttpOutputMessage;
+import org.springframework.http.codec.HttpMessageWriter;
+import org.springframework.http.server.reactive.ServerHttpRequest;
+import org.springframework.http.server.reactive.ServerHttpResponse;
+import reactor.core.publisher.Mono;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Writes a {@link ContentRegion}. Regions backed by a local file and at least {@code zeroCopyMinSize} bytes long are
+ * handed to the server as a file region (sendfile), everything else falls back to the buffered data. The time every
+ * write takes is reported to the {@link ChunkSizer}.
+ */
+public class ContentRegionHttpMessageWriter implements HttpMessageWriter<ContentRegion> {
+
+    private final long zeroCopyMinSize;
+    private final ChunkSizer chunkSizer;
+
+    /**
+     * Constructor.
+     *
+     * @param zeroCopyMinSize smallest region, in bytes, worth sending with zero-copy.
+     */
+    public ContentRegionHttpMessageWriter(final long zeroCopyMinSize) {
+        this(zeroCopyMinSize, null);
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param zeroCopyMinSize smallest region, in bytes, worth sending with zero-copy.
+     * @param chunkSizer      ChunkSizer measuring the delivery throughput, null to skip the measurement.
+     */
+    public ContentRegionHttpMessageWriter(final long zeroCopyMinSize, final ChunkSizer chunkSizer) {
+        this.zeroCopyMinSize = zeroCopyMinSize;
+        this.chunkSizer = chunkSizer;
+    }
+
+    @Override
+    public List<MediaType> getWritableMediaTypes() {
+        return List.of(MediaType.ALL);
+    }
+
+    @Override
+    public boolean canWrite(final ResolvableType elementType, final MediaType mediaType) {
+        return ContentRegion.class.isAssignableFrom(elementType.toClass());
+    }
+
+    @Override
+    public Mono<Void> write(final Publisher<? extends ContentRegion> inputStream, final ResolvableType elementType, final MediaType mediaType, final ReactiveHttpOutputMessage message, final Map<String, Object> hints) {
+        return Mono.from(inputStream).flatMap(region -> writeRegion(region, message, false));
+    }
+
+    @Override
+    public Mono<Void> write(final Publisher<? extends ContentRegion> inputStream, final ResolvableType actualType, final ResolvableType elementType, final MediaType mediaType, final ServerHttpRequest request, final ServerHttpResponse response, final Map<String, Object> hints) {
+        // sendfile can't go through TLS, the data has to be encrypted in user space.
+        final boolean zeroCopyAllowed = request.getSslInfo() == null;
+        return Mono.from(inputStream).flatMap(region -> writeRegion(region, response, zeroCopyAllowed));
+    }
+
+    /**
+     * Write the region and measure the delivery.
+     *
+     * @param region          ContentRegion.
+     * @param message         ReactiveHttpOutputMessage.
+     * @param zeroCopyAllowed whether the connection allows zero-copy.
+     * @return Mono of Void.
+     */
+    private Mono<Void> writeRegion(final ContentRegion region, final ReactiveHttpOutputMessage message, final boolean zeroCopyAllowed) {
+        if (chunkSizer == null) {
+            return writeBody(region, message, zeroCopyAllowed);
+        }
+        return Mono.defer(() -> {
+            final long start = System.nanoTime();
+            return writeBody(region, message, zeroCopyAllowed)
+                    .doOnSuccess(_ -> chunkSizer.recordDelivery(region.getClientId(), region.getCount(), System.nanoTime() - start));
+        });
+    }
+
+    /**
+     * Write the body either as a file region or as buffers.
+     *
+     * @param region          ContentRegion.
+     * @param message         ReactiveHttpOutputMessage.
+     * @param zeroCopyAllowed whether the connection allows zero-copy.
+     * @return Mono of Void.
+     */
+    private Mono<Void> writeBody(final ContentRegion region, final ReactiveHttpOutputMessage message, final boolean zeroCopyAllowed) {
+        if (zeroCopyAllowed && region.getFile() != null && region.getCount() >= zeroCopyMinSize && message instanceof ZeroCopyHttpOutputMessage zeroCopyMessage) {
+            return zeroCopyMessage.writeWith(region.getFile(), region.getPosition(), region.getCount());
+        }
+        return message.writeWith(region.getData());
+    }
+}
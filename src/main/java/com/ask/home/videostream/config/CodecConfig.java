@@ -0,0 +1,32 @@
+package com.ask.home.videostream.config;
+
+import com.ask.home.videostream.codec.ContentRegionHttpMessageWriter;
+import com.ask.home.videostream.delivery.ChunkSizer;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.codec.ServerCodecConfigurer;
+import org.springframework.web.reactive.config.WebFluxConfigurer;
+
+@Configuration
+public class CodecConfig implements WebFluxConfigurer {
+
+    private final long zeroCopyMinSize;
+    private final ChunkSizer chunkSizer;
+
+    public CodecConfig(@Value("${video.zero-copy.min-size:1048576}") final long zeroCopyMinSize, final ObjectProvider<ChunkSizer> chunkSizer) {
+        this.zeroCopyMinSize = zeroCopyMinSize;
+        // absent from the web slices of the tests.
+        this.chunkSizer = chunkSizer.getIfAvailable();
+    }
+
+    /**
+     * Register the writer for the streamed video regions.
+     *
+     * @param configurer ServerCodecConfigurer
+     */
+    @Override
+    public void configureHttpMessageCodecs(ServerCodecConfigurer configurer) {
+        configurer.customCodecs().register(new ContentRegionHttpMessageWriter(zeroCopyMinSize, chunkSizer));
+    }
+}
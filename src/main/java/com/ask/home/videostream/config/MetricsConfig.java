@@ -0,0 +1,137 @@
+package com.ask.home.videostream.config;
+
+import com.ask.home.videostream.adapter.TieredContentAdapter;
+import com.ask.home.videostream.cache.BlockCache;
+import com.ask.home.videostream.cache.FileHandleCache;
+import com.ask.home.videostream.cache.HeadCache;
+import com.ask.home.videostream.catalog.SearchIndex;
+import com.ask.home.videostream.delivery.ChunkSizer;
+import com.ask.home.videostream.mp4.Mp4IndexCache;
+import com.ask.home.videostream.upload.UploadManager;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+public class MetricsConfig {
+
+    /**
+     * Block cache hit, miss and eviction counts, its size and the read-ahead bytes.
+     *
+     * @param blockCache BlockCache
+     * @return MeterBinder.
+     */
+    @Bean
+    public MeterBinder blockCacheMetrics(final BlockCache blockCache) {
+        return registry -> {
+            FunctionCounter.builder("video.cache.hits", blockCache, BlockCache::getHits).description("Blocks served from the cache").register(registry);
+            FunctionCounter.builder("video.cache.misses", blockCache, BlockCache::getMisses).description("Blocks read from the content adapter").register(registry);
+            FunctionCounter.builder("video.cache.evictions", blockCache, BlockCache::getEvictions).description("Blocks evicted to stay in budget").register(registry);
+            Gauge.builder("video.cache.size", blockCache, BlockCache::getUsedBytes).baseUnit("bytes").description("Bytes held by the cached blocks").register(registry);
+            Gauge.builder("video.cache.blocks", blockCache, BlockCache::getBlockCount).description("Cached blocks").register(registry);
+            FunctionCounter.builder("video.prefetch.bytes", blockCache, BlockCache::getPrefetchedBytes).baseUnit("bytes").description("Bytes read ahead of the requests").register(registry);
+            FunctionCounter.builder("video.prefetch.unused", blockCache, BlockCache::getPrefetchUnusedBytes).baseUnit("bytes").description("Prefetched bytes dropped before being read").register(registry);
+            Gauge.builder("video.prefetch.pending", blockCache, BlockCache::getUnreadPrefetchedBytes).baseUnit("bytes").description("Prefetched bytes not read yet").register(registry);
+        };
+    }
+
+    /**
+     * Head cache hit and miss counts and its size.
+     *
+     * @param headCache HeadCache
+     * @return MeterBinder.
+     */
+    @Bean
+    public MeterBinder headCacheMetrics(final HeadCache headCache) {
+        return registry -> {
+            FunctionCounter.builder("video.head.hits", headCache, HeadCache::getHits).description("Ranges served from the content heads").register(registry);
+            FunctionCounter.builder("video.head.misses", headCache, HeadCache::getMisses).description("Ranges not held by the content heads").register(registry);
+            Gauge.builder("video.head.size", headCache, HeadCache::getUsedBytes).baseUnit("bytes").description("Bytes held by the content heads").register(registry);
+            Gauge.builder("video.head.contents", headCache, HeadCache::getHeadCount).description("Contents with their head in memory").register(registry);
+        };
+    }
+
+    /**
+     * Hot tier reads, copies and size, when configured.
+     *
+     * @param tieredContentAdapter TieredContentAdapter
+     * @return MeterBinder.
+     */
+    @Bean
+    public MeterBinder tierMetrics(final ObjectProvider<TieredContentAdapter> tieredContentAdapter) {
+        return registry -> tieredContentAdapter.ifAvailable(tiered -> {
+            FunctionCounter.builder("video.tier.hot.reads", tiered, TieredContentAdapter::getHotReads).description("Ranges read from the hot tier").register(registry);
+            FunctionCounter.builder("video.tier.cold.reads", tiered, TieredContentAdapter::getColdReads).description("Ranges read from the cold tier").register(registry);
+            FunctionCounter.builder("video.tier.promotions", tiered, TieredContentAdapter::getPromotions).description("Contents copied to the hot tier").register(registry);
+            FunctionCounter.builder("video.tier.evictions", tiered, TieredContentAdapter::getEvictions).description("Hot copies dropped").register(registry);
+            Gauge.builder("video.tier.hot.size", tiered, TieredContentAdapter::getUsedBytes).baseUnit("bytes").description("Bytes of the hot copies").register(registry);
+        });
+    }
+
+    /**
+     * Open files and the metadata calls and opens they save.
+     *
+     * @param fileHandleCache FileHandleCache
+     * @return MeterBinder.
+     */
+    @Bean
+    public MeterBinder fileHandleCacheMetrics(final FileHandleCache fileHandleCache) {
+        return registry -> {
+            FunctionCounter.builder("video.files.stats", fileHandleCache, FileHandleCache::getStats).description("File attribute reads").register(registry);
+            FunctionCounter.builder("video.files.opens", fileHandleCache, FileHandleCache::getOpens).description("File channels opened").register(registry);
+            Gauge.builder("video.files.open", fileHandleCache, FileHandleCache::getOpenChannels).description("File channels open").register(registry);
+        };
+    }
+
+    /**
+     * Sizes chosen for the open-ended ranges.
+     *
+     * @param chunkSizer ChunkSizer
+     * @return MeterBinder.
+     */
+    @Bean
+    public MeterBinder chunkSizeMetrics(final ChunkSizer chunkSizer) {
+        return registry -> {
+            final DistributionSummary chunkSizes = DistributionSummary.builder("video.chunk.size").baseUnit("bytes").description("Response sizes chosen for the open-ended ranges")
+                    .minimumExpectedValue((double) chunkSizer.getMinSize()).maximumExpectedValue((double) chunkSizer.getMaxSize()).publishPercentileHistogram().register(registry);
+            chunkSizer.setSizeListener(chunkSizes::record);
+        };
+    }
+
+    /**
+     * MP4 seek indexes in memory.
+     *
+     * @param mp4IndexCache Mp4IndexCache
+     * @return MeterBinder.
+     */
+    @Bean
+    public MeterBinder mp4IndexMetrics(final Mp4IndexCache mp4IndexCache) {
+        return registry -> Gauge.builder("video.mp4.indexes", mp4IndexCache, Mp4IndexCache::size).description("MP4 seek indexes cached").register(registry);
+    }
+
+    /**
+     * Contents in the search index.
+     *
+     * @param searchIndex SearchIndex
+     * @return MeterBinder.
+     */
+    @Bean
+    public MeterBinder searchIndexMetrics(final SearchIndex searchIndex) {
+        return registry -> Gauge.builder("video.search.contents", searchIndex, SearchIndex::size).description("Contents in the search index").register(registry);
+    }
+
+    /**
+     * Uploads in progress, when uploads are enabled.
+     *
+     * @param uploadManager UploadManager
+     * @return MeterBinder.
+     */
+    @Bean
+    public MeterBinder uploadMetrics(final ObjectProvider<UploadManager> uploadManager) {
+        return registry -> uploadManager.ifAvailable(uploads -> Gauge.builder("video.uploads", uploads, UploadManager::size).description("Uploads in progress").register(registry));
+    }
+}
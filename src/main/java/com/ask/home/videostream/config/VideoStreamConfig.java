@@ -1,20 +1,207 @@
 package com.ask.home.videostream.config;
 
 
+import com.ask.home.videostream.adapter.CachingContentAdapter;
 import com.ask.home.videostream.adapter.ContentAdapter;
+import com.ask.home.videostream.adapter.FaststartContentAdapter;
+import com.ask.home.videostream.adapter.HeadContentAdapter;
+import com.ask.home.videostream.adapter.IoMode;
 import com.ask.home.videostream.adapter.LocalFileContentAdapter;
+import com.ask.home.videostream.adapter.S3ContentAdapter;
+import com.ask.home.videostream.adapter.S3Settings;
+import com.ask.home.videostream.adapter.TieredContentAdapter;
+import com.ask.home.videostream.cache.BlockCache;
+import com.ask.home.videostream.cache.FileHandleCache;
+import com.ask.home.videostream.cache.HeadCache;
+import com.ask.home.videostream.cache.ReadAheadTracker;
+import com.ask.home.videostream.catalog.RenditionGroups;
+import com.ask.home.videostream.catalog.SearchIndex;
+import com.ask.home.videostream.delivery.ChunkSizer;
+import com.ask.home.videostream.hls.HlsPlaylistCache;
+import com.ask.home.videostream.mp4.Mp4IndexCache;
+import com.ask.home.videostream.upload.UploadManager;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import reactor.core.scheduler.Scheduler;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.regex.Pattern;
+
+import static com.ask.home.videostream.constants.ApplicationConstants.CHUNK_SIZE;
 
 @Configuration
 @Slf4j
 public class VideoStreamConfig {
 
-    @Bean
-    public ContentAdapter videoContentAdapter(@Value("${video.content.path}") final String videoContentRootPath) {
+    /**
+     * Contents of the content path, when no bucket is configured.
+     */
+    @Bean(initMethod = "start", destroyMethod = "close")
+    @ConditionalOnExpression("'${video.s3.bucket:}'.isBlank()")
+    public LocalFileContentAdapter localFileContentAdapter(@Value("${video.content.path}") final String videoContentRootPath, @Value("${video.catalog.snapshot-path:}") final String snapshotPath,
+                                                           @Value("${video.catalog.scan-parallelism:16}") final int scanParallelism, final FileHandleCache fileHandleCache,
+                                                           final Scheduler ioScheduler, final IoMode ioMode) {
         log.info("video Content Path {}", videoContentRootPath);
-        return new LocalFileContentAdapter(videoContentRootPath);
+        return new LocalFileContentAdapter(videoContentRootPath, snapshotPath.isBlank() ? null : Paths.get(snapshotPath), scanParallelism, fileHandleCache, ioScheduler, ioMode);
+    }
+
+    /**
+     * Execution of the blocking file system calls.
+     *
+     * @param mode platform-threads, virtual-threads or async-channel.
+     * @return IoMode.
+     */
+    @Bean
+    public IoMode ioMode(@Value("${video.io.mode:platform-threads}") final String mode) {
+        log.info("video I/O mode {}", mode);
+        return IoMode.of(mode);
+    }
+
+    /**
+     * Scheduler of the blocking file system calls, keeping them off the event loop.
+     *
+     * @param ioMode IoMode.
+     * @return Scheduler.
+     */
+    @Bean(destroyMethod = "dispose")
+    public Scheduler ioScheduler(final IoMode ioMode) {
+        return ioMode.newScheduler();
+    }
+
+    @Bean(destroyMethod = "close")
+    public FileHandleCache fileHandleCache(@Value("${video.files.max-open:256}") final int maxOpen, @Value("${video.files.revalidate-after:2s}") final Duration revalidateAfter) {
+        return new FileHandleCache(maxOpen, revalidateAfter);
+    }
+
+    @Bean(destroyMethod = "clear")
+    public BlockCache blockCache(@Value("${video.cache.max-bytes:268435456}") final long maxBytes, @Value("${video.cache.block-size:314700}") final int blockSize) {
+        return new BlockCache(maxBytes, blockSize);
+    }
+
+    @Bean(destroyMethod = "clear")
+    public HeadCache headCache(@Value("${video.head.max-bytes:268435456}") final long maxBytes, @Value("${video.head.size:524288}") final int headSize) {
+        return new HeadCache(maxBytes, headSize);
+    }
+
+    /**
+     * Contents of an S3 compatible bucket, served instead of the content path when a bucket is configured.
+     */
+    @Bean(initMethod = "start", destroyMethod = "close")
+    @ConditionalOnExpression("!'${video.s3.bucket:}'.isBlank()")
+    public S3ContentAdapter s3ContentAdapter(@Value("${video.s3.endpoint}") final String endpoint, @Value("${video.s3.bucket}") final String bucket,
+                                             @Value("${video.s3.prefix:}") final String prefix, @Value("${video.s3.region:us-east-1}") final String region,
+                                             @Value("${video.s3.access-key:}") final String accessKey, @Value("${video.s3.secret-key:}") final String secretKey,
+                                             @Value("${video.s3.part-size:8388608}") final long partSize, @Value("${video.s3.parallelism:4}") final int parallelism,
+                                             @Value("${video.s3.max-connections:64}") final int maxConnections, @Value("${video.s3.refresh-interval:5m}") final Duration refreshInterval) {
+        log.info("video S3 bucket {} at {}, ranges read in parts of {} bytes, {} at once", bucket, endpoint, partSize, parallelism);
+        return new S3ContentAdapter(S3Settings.builder().endpoint(endpoint).bucket(bucket).prefix(prefix).region(region).accessKey(accessKey).secretKey(secretKey)
+                .partSize(partSize).parallelism(parallelism).maxConnections(maxConnections).refreshInterval(refreshInterval).build());
+    }
+
+    /**
+     * Hot tier on a local disk in front of the content path or the bucket, when a hot path is configured.
+     */
+    @Bean(initMethod = "start", destroyMethod = "close")
+    @ConditionalOnExpression("!'${video.tier.hot-path:}'.isBlank()")
+    public TieredContentAdapter tieredContentAdapter(final ObjectProvider<LocalFileContentAdapter> localFileContentAdapter, final ObjectProvider<S3ContentAdapter> s3ContentAdapter,
+                                                     @Value("${video.content.path}") final String videoContentRootPath,
+                                                     @Value("${video.tier.hot-path}") final String hotPath, @Value("${video.tier.max-bytes:10737418240}") final long maxBytes,
+                                                     @Value("${video.tier.promote-after:3}") final int promoteAfter, @Value("${video.tier.promote-window:10m}") final Duration promoteWindow,
+                                                     @Value("${video.files.max-open:256}") final int maxOpen,
+                                                     @Value("${video.files.revalidate-after:2s}") final Duration revalidateAfter, final Scheduler ioScheduler, final IoMode ioMode) {
+        final Path hotRoot = Paths.get(hotPath).toAbsolutePath().normalize();
+        final S3ContentAdapter s3 = s3ContentAdapter.getIfAvailable();
+        final Path contentRoot = Paths.get(videoContentRootPath).toAbsolutePath().normalize();
+        // the hot directory is emptied on start.
+        if (s3 == null && (hotRoot.startsWith(contentRoot) || contentRoot.startsWith(hotRoot))) {
+            throw new IllegalArgumentException("video.tier.hot-path must be outside of video.content.path");
+        }
+        log.info("video hot tier {} of {} bytes, promoted after {} clients within {}", hotRoot, maxBytes, promoteAfter, promoteWindow);
+        final LocalFileContentAdapter hot = new LocalFileContentAdapter(hotRoot.toString(), null, 1, new FileHandleCache(maxOpen, revalidateAfter), ioScheduler, ioMode);
+        return new TieredContentAdapter(s3 != null ? s3 : localFileContentAdapter.getObject(), hot, hotRoot, maxBytes, promoteAfter, promoteWindow, ioScheduler);
+    }
+
+    /**
+     * Content adapter used by the service: the local files or the bucket, behind the hot tier, the block cache, the head cache and
+     * the faststart layouts when they are configured.
+     */
+    @Bean(destroyMethod = "")
+    @Primary
+    public ContentAdapter videoContentAdapter(final ObjectProvider<LocalFileContentAdapter> localFileContentAdapter, final ObjectProvider<S3ContentAdapter> s3ContentAdapter,
+                                              final ObjectProvider<TieredContentAdapter> tieredContentAdapter,
+                                              final BlockCache blockCache, final HeadCache headCache,
+                                              @Value("${video.cache.max-range-size:1048576}") final long maxCachedRangeSize,
+                                              @Value("${video.prefetch.max-bytes:67108864}") final long maxPrefetchBytes,
+                                              @Value("${video.faststart.max-bytes:67108864}") final long maxFaststartBytes) {
+        final TieredContentAdapter tiered = tieredContentAdapter.getIfAvailable();
+        final S3ContentAdapter s3 = s3ContentAdapter.getIfAvailable();
+        ContentAdapter contentAdapter = tiered != null ? tiered : s3 != null ? s3 : localFileContentAdapter.getObject();
+        if (blockCache.getMaxBytes() > 0) {
+            log.info("video block cache {} bytes in blocks of {}", blockCache.getMaxBytes(), blockCache.getBlockSize());
+            contentAdapter = new CachingContentAdapter(contentAdapter, blockCache, maxCachedRangeSize, maxPrefetchBytes);
+        }
+        if (headCache.getMaxBytes() > 0) {
+            log.info("video head cache {} bytes, {} bytes per content", headCache.getMaxBytes(), headCache.getHeadSize());
+            final HeadContentAdapter headContentAdapter = new HeadContentAdapter(contentAdapter, headCache);
+            headContentAdapter.start();
+            contentAdapter = headContentAdapter;
+        }
+        if (maxFaststartBytes > 0) {
+            log.info("video faststart layouts {} bytes", maxFaststartBytes);
+            contentAdapter = new FaststartContentAdapter(contentAdapter, maxFaststartBytes);
+        }
+        return contentAdapter;
+    }
+
+    @Bean
+    public ReadAheadTracker readAheadTracker(@Value("${video.prefetch.max-depth:4}") final int maxDepth, @Value("${video.prefetch.window:2s}") final Duration window,
+                                             @Value("${video.prefetch.max-sessions:10000}") final int maxSessions) {
+        return new ReadAheadTracker(maxDepth, window, maxSessions);
+    }
+
+    @Bean
+    public ChunkSizer chunkSizer(@Value("${video.chunk.min-size:262144}") final long minSize, @Value("${video.chunk.max-size:8388608}") final long maxSize,
+                                 @Value("${video.chunk.transfer-target:1s}") final Duration transferTarget, @Value("${video.chunk.max-clients:10000}") final int maxClients) {
+        return new ChunkSizer(minSize, maxSize, CHUNK_SIZE, transferTarget, maxClients);
+    }
+
+    @Bean
+    public Mp4IndexCache mp4IndexCache(final ContentAdapter videoContentAdapter, @Value("${video.mp4.index.max-entries:1000}") final int maxEntries) {
+        return new Mp4IndexCache(videoContentAdapter, maxEntries);
+    }
+
+    @Bean
+    public HlsPlaylistCache hlsPlaylistCache(final ContentAdapter videoContentAdapter, @Value("${video.hls.target-duration:6s}") final Duration targetDuration,
+                                             @Value("${video.hls.max-bytes:268435456}") final long maxBytes) {
+        return new HlsPlaylistCache(videoContentAdapter, targetDuration, maxBytes);
+    }
+
+    @Bean
+    public RenditionGroups renditionGroups(final ContentAdapter videoContentAdapter,
+                                           @Value("${video.renditions.pattern:}") final String pattern) {
+        return new RenditionGroups(videoContentAdapter.getContentCatalog(), Pattern.compile(pattern.isBlank() ? RenditionGroups.DEFAULT_PATTERN : pattern));
+    }
+
+    @Bean
+    public SearchIndex searchIndex(final ContentAdapter videoContentAdapter) {
+        return new SearchIndex(videoContentAdapter.getContentCatalog());
+    }
+
+    /**
+     * Resumable uploads, written to the upload folder of the content root and moved into place once complete. Only when
+     * enabled, and never with a bucket, the content path isn't served then.
+     */
+    @Bean(initMethod = "start", destroyMethod = "close")
+    @ConditionalOnExpression("${video.upload.enabled:false} and '${video.s3.bucket:}'.isBlank()")
+    public UploadManager uploadManager(final LocalFileContentAdapter localFileContentAdapter, @Value("${video.upload.max-size:10737418240}") final long maxSize,
+                                       @Value("${video.upload.expire-after:24h}") final Duration expireAfter, final Scheduler ioScheduler) {
+        return new UploadManager(localFileContentAdapter, maxSize, expireAfter, ioScheduler);
     }
 }
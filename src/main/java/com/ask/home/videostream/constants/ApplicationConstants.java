@@ -11,6 +11,7 @@ public class ApplicationConstants {
     public static final String BYTES = "bytes";
     public static final int CHUNK_SIZE = 314700;
     public static final int BYTE_RANGE = 1024;
+    public static final int SINGLE_READ_SIZE = 1024 * 1024;
 
     private ApplicationConstants() {
     }
@@ -1,11 +1,22 @@
 package com.ask.home.videostream.controller;
 
 import com.ask.home.videostream.model.Content;
+import com.ask.home.videostream.model.ContentPage;
+import com.ask.home.videostream.model.ContentQuery;
+import com.ask.home.videostream.model.ContentRegion;
+import com.ask.home.videostream.model.SeekPosition;
+import com.ask.home.videostream.model.Title;
+import com.ask.home.videostream.model.Upload;
 import com.ask.home.videostream.service.VideoService;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.http.server.reactive.ServerHttpRequest;
 import org.springframework.web.bind.annotation.*;
+import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
+import java.net.InetSocketAddress;
 import java.util.List;
 
 @RestController
@@ -19,18 +30,114 @@ public class VideoController {
     }
 
     @GetMapping("/stream/{fileType}/{filePathAndName}")
-    public Mono<ResponseEntity<byte[]>> streamVideoByPath(@RequestHeader(value = "Range", required = false) String httpRangeList, @PathVariable("fileType") String fileType, @PathVariable("filePathAndName") String filePathAndName) {
-        return Mono.just(videoService.prepareContentByFilePath(httpRangeList, filePathAndName, fileType));
+    public Mono<ResponseEntity<ContentRegion>> streamVideoByPath(@RequestHeader(value = "Range", required = false) String httpRangeList, @PathVariable("fileType") String fileType, @PathVariable("filePathAndName") String filePathAndName, ServerHttpRequest request) {
+        return videoService.prepareContentByFilePath(httpRangeList, filePathAndName, fileType, clientId(request), request.getHeaders());
     }
 
     @GetMapping("/stream/object-key/{objectKey}")
-    public Mono<ResponseEntity<byte[]>> streamVideoByObjectKey(@RequestHeader(value = "Range", required = false) String httpRangeList, @PathVariable("objectKey") String objectKey) {
-        return Mono.just(videoService.prepareContentByObjectKey(httpRangeList, objectKey));
+    public Mono<ResponseEntity<ContentRegion>> streamVideoByObjectKey(@RequestHeader(value = "Range", required = false) String httpRangeList, @PathVariable("objectKey") String objectKey, ServerHttpRequest request) {
+        return videoService.prepareContentByObjectKey(httpRangeList, objectKey, clientId(request), request.getHeaders());
+    }
+
+    @GetMapping("/seek/object-key/{objectKey}")
+    public Mono<ResponseEntity<SeekPosition>> seekByObjectKey(@PathVariable("objectKey") String objectKey, @RequestParam("t") double seconds) {
+        return videoService.seekByObjectKey(objectKey, seconds);
+    }
+
+    @GetMapping("/hls/object-key/{objectKey}/playlist.m3u8")
+    public Mono<ResponseEntity<String>> hlsPlaylistByObjectKey(@PathVariable("objectKey") String objectKey) {
+        return videoService.hlsPlaylistByObjectKey(objectKey);
+    }
+
+    @GetMapping("/hls/object-key/{objectKey}/init.mp4")
+    public Mono<ResponseEntity<ContentRegion>> hlsInitByObjectKey(@PathVariable("objectKey") String objectKey) {
+        return videoService.hlsInitByObjectKey(objectKey);
+    }
+
+    @GetMapping("/hls/object-key/{objectKey}/{segment:\\d+}.m4s")
+    public Mono<ResponseEntity<ContentRegion>> hlsSegmentByObjectKey(@PathVariable("objectKey") String objectKey, @PathVariable("segment") int segment, ServerHttpRequest request) {
+        return videoService.hlsSegmentByObjectKey(objectKey, segment, clientId(request));
+    }
+
+    @GetMapping("/hls/title/{titleId}/master.m3u8")
+    public Mono<ResponseEntity<String>> hlsMasterPlaylistByTitleId(@PathVariable("titleId") String titleId) {
+        return videoService.hlsMasterPlaylistByTitleId(titleId);
+    }
+
+    @GetMapping("/titles")
+    public Mono<ResponseEntity<List<Title>>> getAllTitles() {
+        return videoService.getAllTitles();
     }
 
     @GetMapping
     public Mono<ResponseEntity<List<Content>>> getAllContents() {
 
-        return Mono.just(videoService.getAllContents());
+        return videoService.getAllContents();
+    }
+
+    @GetMapping(value = "/catalog", produces = MediaType.APPLICATION_JSON_VALUE)
+    public Mono<ResponseEntity<ContentPage>> getContentPage(@RequestParam(value = "path", required = false) String path, @RequestParam(value = "type", required = false) String type,
+                                                           @RequestParam(value = "minSize", required = false) Long minSize, @RequestParam(value = "maxSize", required = false) Long maxSize,
+                                                           @RequestParam(value = "sort", defaultValue = "name") String sort, @RequestParam(value = "order", defaultValue = "asc") String order,
+                                                           @RequestParam(value = "limit", required = false) Integer limit, @RequestParam(value = "cursor", required = false) String cursor) {
+        final ContentQuery query;
+        try {
+            query = ContentQuery.builder().pathPrefix(path).type(type).minSize(minSize).maxSize(maxSize).sort(ContentQuery.Sort.of(sort)).descending(descending(order))
+                    .limit(limit).cursor(cursor).build();
+        } catch (IllegalArgumentException illegalArgumentException) {
+            return Mono.just(ResponseEntity.badRequest().build());
+        }
+        return videoService.getContentPage(query);
+    }
+
+    @GetMapping(value = "/catalog", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public Mono<ResponseEntity<Flux<Content>>> streamContents(@RequestParam(value = "path", required = false) String path, @RequestParam(value = "type", required = false) String type,
+                                                             @RequestParam(value = "minSize", required = false) Long minSize, @RequestParam(value = "maxSize", required = false) Long maxSize,
+                                                             @RequestParam(value = "limit", required = false) Integer limit) {
+        return videoService.streamContents(ContentQuery.builder().pathPrefix(path).type(type).minSize(minSize).maxSize(maxSize).limit(limit).build());
+    }
+
+    @GetMapping("/search")
+    public Mono<ResponseEntity<List<Content>>> search(@RequestParam("q") String query, @RequestParam(value = "limit", defaultValue = "20") int limit) {
+        return videoService.search(query, limit);
+    }
+
+    @PostMapping("/uploads")
+    public Mono<ResponseEntity<Upload>> createUpload(@RequestParam("path") String path, @RequestParam("size") long size) {
+        return videoService.createUpload(path, size);
+    }
+
+    @PutMapping("/uploads/{uploadId}")
+    public Mono<ResponseEntity<Upload>> uploadPart(@PathVariable("uploadId") String uploadId, @RequestParam(value = "offset", defaultValue = "0") long offset,
+                                                   @RequestBody(required = false) Flux<DataBuffer> data) {
+        return videoService.uploadPart(uploadId, offset, data == null ? Flux.empty() : data);
+    }
+
+    @GetMapping("/uploads/{uploadId}")
+    public Mono<ResponseEntity<Upload>> getUpload(@PathVariable("uploadId") String uploadId) {
+        return videoService.getUpload(uploadId);
+    }
+
+    @PostMapping("/uploads/{uploadId}/complete")
+    public Mono<ResponseEntity<Content>> completeUpload(@PathVariable("uploadId") String uploadId) {
+        return videoService.completeUpload(uploadId);
+    }
+
+    @DeleteMapping("/uploads/{uploadId}")
+    public Mono<ResponseEntity<Void>> abortUpload(@PathVariable("uploadId") String uploadId) {
+        return videoService.abortUpload(uploadId);
+    }
+
+    private static boolean descending(String order) {
+        return switch (order) {
+            case "asc" -> false;
+            case "desc" -> true;
+            default -> throw new IllegalArgumentException("Unknown order " + order);
+        };
+    }
+
+    private static String clientId(ServerHttpRequest request) {
+        InetSocketAddress remoteAddress = request.getRemoteAddress();
+        return remoteAddress == null ? null : remoteAddress.getHostString();
     }
 }
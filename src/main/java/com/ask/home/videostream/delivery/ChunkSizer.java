@@ -0,0 +1,98 @@
+package com.ask.home.videostream.delivery;
+
+import lombok.Getter;
+import lombok.Setter;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.LongConsumer;
+
+/**
+ * Chooses the size of the response to an open-ended range ({@code bytes=N-}) per client, from the delivery throughput
+ * measured on its previous responses.
+ * <p>
+ * The size is what the client's link carries in {@code transferTarget}, between {@code minSize} and {@code maxSize}: a
+ * fast link gets large responses and few round trips, a slow one small responses that a seek doesn't waste. A client
+ * without a measurement gets {@code defaultSize}.
+ */
+public class ChunkSizer {
+
+    private static final double THROUGHPUT_SMOOTHING = 0.3;
+    // smaller responses mostly measure the socket buffers, not the link.
+    private static final long MIN_MEASURED_BYTES = 64 * 1024;
+
+    @Getter
+    private final long minSize;
+    @Getter
+    private final long maxSize;
+    private final long defaultSize;
+    private final double transferTargetSeconds;
+    private final Map<String, Double> throughputs;
+    /**
+     * Receives every chosen size, for the metrics.
+     */
+    @Setter
+    private LongConsumer sizeListener = _ -> {
+    };
+
+    /**
+     * Constructor.
+     *
+     * @param minSize        smallest response, in bytes.
+     * @param maxSize        largest response, in bytes.
+     * @param defaultSize    response size of a client without a measurement.
+     * @param transferTarget time a response should take on the client's link.
+     * @param maxClients     clients tracked, the least recently active are dropped.
+     */
+    public ChunkSizer(final long minSize, final long maxSize, final long defaultSize, final Duration transferTarget, final int maxClients) {
+        if (minSize < 1 || maxSize < minSize) {
+            throw new IllegalArgumentException("chunk sizes must satisfy 0 < min-size <= max-size");
+        }
+        this.minSize = minSize;
+        this.maxSize = maxSize;
+        this.defaultSize = Math.clamp(defaultSize, minSize, maxSize);
+        this.transferTargetSeconds = transferTarget.toNanos() / 1e9;
+        this.throughputs = new LinkedHashMap<>(256, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(final Map.Entry<String, Double> eldest) {
+                return size() > maxClients;
+            }
+        };
+    }
+
+    /**
+     * Size of the next open-ended response to the client.
+     *
+     * @param clientId client making the request, may be null.
+     * @return size in bytes.
+     */
+    public long chunkSize(final String clientId) {
+        Double throughput = null;
+        if (clientId != null) {
+            synchronized (throughputs) {
+                throughput = throughputs.get(clientId);
+            }
+        }
+        final long size = throughput == null ? defaultSize : Math.clamp((long) (throughput * transferTargetSeconds), minSize, maxSize);
+        sizeListener.accept(size);
+        return size;
+    }
+
+    /**
+     * Record a delivered response.
+     *
+     * @param clientId client that received the response, may be null.
+     * @param bytes    bytes written.
+     * @param nanos    time the write took.
+     */
+    public void recordDelivery(final String clientId, final long bytes, final long nanos) {
+        if (clientId == null || bytes < MIN_MEASURED_BYTES || nanos <= 0) {
+            return;
+        }
+        final double throughput = bytes * 1e9 / nanos;
+        synchronized (throughputs) {
+            throughputs.merge(clientId, throughput, (previous, current) -> THROUGHPUT_SMOOTHING * current + (1 - THROUGHPUT_SMOOTHING) * previous);
+        }
+    }
+}
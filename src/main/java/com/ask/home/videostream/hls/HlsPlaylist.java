@@ -0,0 +1,107 @@
+package com.ask.home.videostream.hls;
+
+import com.ask.home.videostream.mp4.FragmentedLayout;
+
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * HLS media playlist of a single MP4 file, over its {@link FragmentedLayout}: the initialization section
+ * ({@code EXT-X-MAP}) and one fragmented MP4 segment per keyframe-aligned cut of the media data. The master playlist of
+ * a title lists the media playlists of its renditions with the bandwidth measured on their segments.
+ */
+public final class HlsPlaylist {
+
+    /**
+     * Content type of the playlists.
+     */
+    public static final String CONTENT_TYPE = "application/vnd.apple.mpegurl";
+    // fragmented MP4 segments.
+    private static final int VERSION = 7;
+
+    private HlsPlaylist() {
+    }
+
+    /**
+     * Variant stream of a master playlist.
+     *
+     * @param uri              URI of the media playlist, relative to the master playlist.
+     * @param bandwidth        peak segment bit rate.
+     * @param averageBandwidth average bit rate.
+     * @param width            display width, 0 when unknown.
+     * @param height           display height, 0 when unknown.
+     * @param codecs           RFC 6381 codecs of the tracks, comma separated, null when unknown.
+     */
+    public record Variant(String uri, long bandwidth, long averageBandwidth, int width, int height, String codecs) {
+    }
+
+    /**
+     * Render the playlist.
+     *
+     * @param layout           FragmentedLayout of the file.
+     * @param initUri          URI of the initialization section, relative to the playlist.
+     * @param segmentUriFormat format of the segment URIs with the segment index, relative to the playlist.
+     * @return playlist text.
+     */
+    public static String render(final FragmentedLayout layout, final String initUri, final String segmentUriFormat) {
+        final List<FragmentedLayout.Segment> segments = layout.getSegments();
+        final long maxDurationMillis = segments.stream().mapToLong(FragmentedLayout.Segment::durationMillis).max().orElse(0);
+        final StringBuilder playlist = new StringBuilder(128 + segments.size() * (32 + segmentUriFormat.length()))
+                .append("#EXTM3U\n")
+                .append("#EXT-X-VERSION:").append(VERSION).append('\n')
+                .append("#EXT-X-TARGETDURATION:").append(Math.max(1, (maxDurationMillis + 999) / 1000)).append('\n')
+                .append("#EXT-X-MEDIA-SEQUENCE:0\n")
+                .append("#EXT-X-PLAYLIST-TYPE:VOD\n")
+                .append("#EXT-X-INDEPENDENT-SEGMENTS\n")
+                .append("#EXT-X-MAP:URI=\"").append(initUri).append("\"\n");
+        for (int i = 0; i < segments.size(); i++) {
+            playlist.append("#EXTINF:").append(String.format(Locale.ROOT, "%.3f", segments.get(i).durationMillis() / 1000.0)).append(",\n")
+                    .append(String.format(segmentUriFormat, i)).append('\n');
+        }
+        return playlist.append("#EXT-X-ENDLIST\n").toString();
+    }
+
+    /**
+     * Variant of a rendition, its bit rates taken from the segments of its media playlist.
+     *
+     * @param layout FragmentedLayout of the file.
+     * @param uri    URI of the media playlist, relative to the master playlist.
+     * @return Variant.
+     */
+    public static Variant variant(final FragmentedLayout layout, final String uri) {
+        final List<FragmentedLayout.Segment> segments = layout.getSegments();
+        final long bandwidth = segments.stream().filter(segment -> segment.durationMillis() > 0).mapToLong(segment -> bitRate(segment.length(), segment.durationMillis())).max().orElse(0);
+        final long mediaSize = segments.stream().mapToLong(FragmentedLayout.Segment::length).sum();
+        final long averageBandwidth = layout.getDurationMillis() > 0 ? bitRate(mediaSize, layout.getDurationMillis()) : bandwidth;
+        return new Variant(uri, Math.max(bandwidth, averageBandwidth), averageBandwidth, layout.getWidth(), layout.getHeight(), layout.getCodecs());
+    }
+
+    /**
+     * Render the master playlist.
+     *
+     * @param variants renditions of the title.
+     * @return playlist text, the variants by ascending bandwidth.
+     */
+    public static String renderMaster(final List<Variant> variants) {
+        final StringBuilder playlist = new StringBuilder(64 + variants.size() * 160)
+                .append("#EXTM3U\n")
+                .append("#EXT-X-VERSION:").append(VERSION).append('\n')
+                .append("#EXT-X-INDEPENDENT-SEGMENTS\n");
+        variants.stream().sorted(Comparator.comparingLong(Variant::bandwidth)).forEach(variant -> {
+            playlist.append("#EXT-X-STREAM-INF:BANDWIDTH=").append(variant.bandwidth()).append(",AVERAGE-BANDWIDTH=").append(variant.averageBandwidth());
+            if (variant.codecs() != null) {
+                playlist.append(",CODECS=\"").append(variant.codecs()).append('"');
+            }
+            if (variant.width() > 0 && variant.height() > 0) {
+                playlist.append(",RESOLUTION=").append(variant.width()).append('x').append(variant.height());
+            }
+            playlist.append('\n').append(variant.uri()).append('\n');
+        });
+        return playlist.toString();
+    }
+
+    private static long bitRate(final long bytes, final long millis) {
+        return (long) Math.ceil(bytes * 8000.0 / millis);
+    }
+}
@@ -0,0 +1,183 @@
+package com.ask.home.videostream.hls;
+
+import com.ask.home.videostream.adapter.ContentAdapter;
+import com.ask.home.videostream.catalog.CatalogListener;
+import com.ask.home.videostream.model.Content;
+import com.ask.home.videostream.model.ContentRequest;
+import com.ask.home.videostream.mp4.FragmentedLayout;
+import com.ask.home.videostream.mp4.Mp4BoxParser;
+import com.ask.home.videostream.mp4.Mp4Boxes;
+import lombok.extern.slf4j.Slf4j;
+import reactor.core.publisher.Mono;
+
+import java.nio.ByteBuffer;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * {@link FragmentedLayout} of the catalogued MP4 contents for their HLS playlists and segments, built from the ftyp and
+ * moov boxes read through the content adapter on the first request and dropped when the content is registered again
+ * or removed. The layouts are kept within {@code maxBytes}, the least recently used dropped first; concurrent first
+ * requests share one read of the boxes.
+ */
+@Slf4j
+public class HlsPlaylistCache implements CatalogListener {
+
+    // a brand list of a thousand entries.
+    private static final long MAX_FTYP_SIZE = 4096;
+
+    private final ContentAdapter contentAdapter;
+    private final Duration targetDuration;
+    private final long maxBytes;
+    private final Map<String, Entry> entries = new LinkedHashMap<>(64, 0.75f, true);
+    // layouts being built, by object key.
+    private final Map<String, Entry> building = new HashMap<>();
+    private long usedBytes;
+
+    /**
+     * Layout of a content version, a Mono of it while being built.
+     */
+    private record Entry(String etag, long fileSize, FragmentedLayout layout, Mono<FragmentedLayout> pending) {
+
+        private boolean isOf(final Content content, final long size) {
+            return fileSize == size && Objects.equals(etag, content.getEtag());
+        }
+    }
+
+    /**
+     * Constructor, listens to the catalog of the adapter.
+     *
+     * @param contentAdapter ContentAdapter reading the boxes.
+     * @param targetDuration shortest segment but the last.
+     * @param maxBytes       memory of the layouts kept, the least recently used are dropped.
+     */
+    public HlsPlaylistCache(final ContentAdapter contentAdapter, final Duration targetDuration, final long maxBytes) {
+        this.contentAdapter = contentAdapter;
+        this.targetDuration = targetDuration;
+        this.maxBytes = maxBytes;
+        contentAdapter.getContentCatalog().addListener(this);
+    }
+
+    /**
+     * Layout of the content, from the cache or built from its boxes.
+     *
+     * @param content        catalogued Content.
+     * @param contentRequest ContentRequest of the content, its range is ignored.
+     * @param fileSize       current size of the content.
+     * @return Mono of the FragmentedLayout, IllegalArgumentException when the content can't be segmented.
+     */
+    public Mono<FragmentedLayout> layout(final Content content, final ContentRequest contentRequest, final long fileSize) {
+        final String objectKey = content.getObjectKey();
+        synchronized (entries) {
+            final Entry entry = entries.get(objectKey);
+            if (entry != null && entry.isOf(content, fileSize)) {
+                return Mono.just(entry.layout());
+            }
+            final Entry inFlight = building.get(objectKey);
+            if (inFlight != null && inFlight.isOf(content, fileSize)) {
+                return inFlight.pending();
+            }
+            final Mono<FragmentedLayout> pending = Mono.defer(() -> readLayout(contentRequest, fileSize))
+                    .doOnNext(layout -> {
+                        log.info("Segmented {} into {} fragments", content.getContentName(), layout.getSegments().size());
+                        put(objectKey, new Entry(content.getEtag(), fileSize, layout, null));
+                    })
+                    .doFinally(_ -> {
+                        synchronized (entries) {
+                            final Entry finished = building.get(objectKey);
+                            if (finished != null && finished.isOf(content, fileSize)) {
+                                building.remove(objectKey);
+                            }
+                        }
+                    })
+                    .cache();
+            building.put(objectKey, new Entry(content.getEtag(), fileSize, null, pending));
+            return pending;
+        }
+    }
+
+    /**
+     * Number of cached layouts.
+     *
+     * @return int.
+     */
+    public int size() {
+        synchronized (entries) {
+            return entries.size();
+        }
+    }
+
+    /**
+     * Memory held by the cached layouts.
+     *
+     * @return bytes.
+     */
+    public long getUsedBytes() {
+        synchronized (entries) {
+            return usedBytes;
+        }
+    }
+
+    @Override
+    public void contentRegistered(final Content content) {
+        remove(content);
+    }
+
+    @Override
+    public void contentRemoved(final Content content) {
+        remove(content);
+    }
+
+    private void put(final String objectKey, final Entry entry) {
+        synchronized (entries) {
+            final Entry previous = entries.put(objectKey, entry);
+            usedBytes += entry.layout().bytes() - (previous == null ? 0 : previous.layout().bytes());
+            final Iterator<Entry> eldest = entries.values().iterator();
+            while (usedBytes > maxBytes && eldest.hasNext()) {
+                final Entry evicted = eldest.next();
+                if (evicted != entry) {
+                    usedBytes -= evicted.layout().bytes();
+                    eldest.remove();
+                }
+            }
+        }
+    }
+
+    private void remove(final Content content) {
+        synchronized (entries) {
+            final Entry removed = entries.remove(content.getObjectKey());
+            if (removed != null) {
+                usedBytes -= removed.layout().bytes();
+            }
+        }
+    }
+
+    /**
+     * Find ftyp and moov among the top level boxes, then read them and lay the fragments out.
+     */
+    private Mono<FragmentedLayout> readLayout(final ContentRequest contentRequest, final long fileSize) {
+        return Mp4Boxes.topLevelBoxes(contentAdapter, contentRequest, fileSize).flatMap(boxes -> {
+            final Mp4BoxParser.BoxHeader ftyp = Mp4Boxes.find(boxes, "ftyp");
+            final Mp4BoxParser.BoxHeader moov = Mp4Boxes.find(boxes, "moov");
+            if (ftyp == null || moov == null) {
+                return Mono.error(new IllegalArgumentException("No ftyp or moov box in " + contentRequest.getFileName()));
+            }
+            if (moov.size() > Mp4Boxes.MAX_MOOV_SIZE || ftyp.size() > MAX_FTYP_SIZE) {
+                return Mono.error(new IllegalArgumentException("Boxes of " + contentRequest.getFileName() + " are too large"));
+            }
+            return Mp4Boxes.read(contentAdapter, contentRequest, ftyp.offset(), ftyp.size())
+                    .zipWith(Mp4Boxes.read(contentAdapter, contentRequest, moov.offset(), moov.size()))
+                    .map(read -> new FragmentedLayout(bytes(read.getT1()), read.getT2(), targetDuration));
+        });
+    }
+
+    private static byte[] bytes(final ByteBuffer buffer) {
+        final byte[] bytes = new byte[buffer.remaining()];
+        buffer.get(bytes);
+        return bytes;
+    }
+}
@@ -0,0 +1,17 @@
+package com.ask.home.videostream.model;
+
+import lombok.Value;
+
+/**
+ * Satisfiable byte range of a content, both ends inclusive.
+ */
+@Value
+public class ByteRange {
+
+    long start;
+    long end;
+
+    public long length() {
+        return end - start + 1;
+    }
+}
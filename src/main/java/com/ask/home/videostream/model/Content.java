@@ -1,9 +1,14 @@
 package com.ask.home.videostream.model;
 
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonInclude;
 import lombok.Builder;
 import lombok.Data;
+import org.springframework.core.io.buffer.DataBuffer;
+import reactor.core.publisher.Flux;
+
+import java.nio.file.Path;
 
 
 /**
@@ -14,7 +19,21 @@ import lombok.Data;
 @JsonInclude(JsonInclude.Include.NON_NULL)
 public class Content {
 
-    private byte[] content;
+    /**
+     * Lazily read bytes of the requested range, never part of the listing.
+     */
+    @JsonIgnore
+    private Flux<DataBuffer> data;
+    /**
+     * File backing the data when it comes from the local disk, used for zero-copy delivery.
+     */
+    @JsonIgnore
+    private Path localFile;
+    /**
+     * Position of the data in the local file when it differs from the range start.
+     */
+    @JsonIgnore
+    private Long filePosition;
     private Long rangeStart;
     private Long rangeEnd;
     private Long contentLength;
@@ -23,4 +42,15 @@ public class Content {
     private String contentName;
     private Long totalContentSize;
     private String objectKey;
+    private Long lastModified;
+    /**
+     * File system identity of the file (inode), the object key is derived from it.
+     */
+    @JsonIgnore
+    private String fileKey;
+    /**
+     * Strong ETag of the file, set once when the content is catalogued.
+     */
+    @JsonIgnore
+    private String etag;
 }
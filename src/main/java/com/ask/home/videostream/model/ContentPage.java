@@ -0,0 +1,22 @@
+package com.ask.home.videostream.model;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.Builder;
+import lombok.Data;
+
+import java.util.List;
+
+/**
+ * Page of a catalog listing.
+ */
+@Data
+@Builder
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class ContentPage {
+
+    private List<Content> contents;
+    /**
+     * Cursor of the next page, null on the last page.
+     */
+    private String nextCursor;
+}
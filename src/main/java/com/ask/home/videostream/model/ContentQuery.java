@@ -0,0 +1,66 @@
+package com.ask.home.videostream.model;
+
+import lombok.Builder;
+import lombok.Data;
+
+import java.util.Arrays;
+
+/**
+ * Filter, order and page of a catalog listing.
+ */
+@Data
+@Builder
+public class ContentQuery {
+
+    /**
+     * Order of a listing, ties broken by the relative path.
+     */
+    public enum Sort {
+        NAME("name"),
+        SIZE("size"),
+        LAST_MODIFIED("lastModified");
+
+        private final String value;
+
+        Sort(final String value) {
+            this.value = value;
+        }
+
+        public String getValue() {
+            return value;
+        }
+
+        /**
+         * Sort by its request value.
+         *
+         * @param value String.
+         * @return Sort.
+         */
+        public static Sort of(final String value) {
+            return Arrays.stream(values()).filter(sort -> sort.value.equals(value)).findFirst()
+                    .orElseThrow(() -> new IllegalArgumentException("Unknown sort " + value));
+        }
+    }
+
+    /**
+     * Relative path the contents start with, null for all.
+     */
+    private String pathPrefix;
+    /**
+     * Extension of the contents, null for all.
+     */
+    private String type;
+    private Long minSize;
+    private Long maxSize;
+    @Builder.Default
+    private Sort sort = Sort.NAME;
+    private boolean descending;
+    /**
+     * Contents per page, null for the default page size (or the whole stream).
+     */
+    private Integer limit;
+    /**
+     * Opaque position after the last content of the previous page, null for the first page.
+     */
+    private String cursor;
+}
@@ -0,0 +1,26 @@
+package com.ask.home.videostream.model;
+
+import lombok.Builder;
+import lombok.Data;
+import org.springframework.core.io.buffer.DataBuffer;
+import reactor.core.publisher.Flux;
+
+import java.nio.file.Path;
+
+/**
+ * Response body of a streamed range: the buffered data and, when the adapter serves a local file, the file region
+ * backing it so the bytes can be sent with sendfile instead.
+ */
+@Data
+@Builder
+public class ContentRegion {
+
+    private Flux<DataBuffer> data;
+    private Path file;
+    private long position;
+    private long count;
+    /**
+     * Client receiving the region, its delivery throughput sizes the next responses.
+     */
+    private String clientId;
+}
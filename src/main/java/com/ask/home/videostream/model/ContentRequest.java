@@ -4,7 +4,7 @@ import lombok.Builder;
 import lombok.Data;
 
 @Data
-@Builder
+@Builder(toBuilder = true)
 public class ContentRequest {
 
     private String fileType;
@@ -12,4 +12,9 @@ public class ContentRequest {
     private long rangeStart;
     private long rangeEnd;
     private String filePath;
+    private String objectKey;
+    /**
+     * Client the range is read for, null for the reads of the server itself.
+     */
+    private String clientId;
 }
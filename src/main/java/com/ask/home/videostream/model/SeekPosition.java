@@ -0,0 +1,33 @@
+package com.ask.home.videostream.model;
+
+import lombok.Builder;
+import lombok.Data;
+
+/**
+ * Where to start streaming to play a content from a time: the keyframe at or before it.
+ */
+@Data
+@Builder
+public class SeekPosition {
+
+    private String objectKey;
+    /**
+     * Requested time, in millis.
+     */
+    private long time;
+    /**
+     * Decode time of the keyframe, in millis.
+     */
+    private long keyframeTime;
+    /**
+     * File offset of the keyframe.
+     */
+    private long offset;
+    /**
+     * Range header that streams from the keyframe.
+     */
+    private String range;
+    private long duration;
+    private long moovOffset;
+    private long moovSize;
+}
@@ -0,0 +1,31 @@
+package com.ask.home.videostream.model;
+
+import lombok.Builder;
+import lombok.Data;
+
+import java.util.List;
+
+/**
+ * Encodes of the same title stored side by side, grouped by their names.
+ */
+@Data
+@Builder
+public class Title {
+
+    private String titleId;
+    private String titleName;
+    private String contentPath;
+    /**
+     * Renditions, by label: 1080p, 720p...
+     */
+    private List<Rendition> renditions;
+
+    /**
+     * Rendition of the title.
+     *
+     * @param label   label taken from the name.
+     * @param content catalogued Content.
+     */
+    public record Rendition(String label, Content content) {
+    }
+}
@@ -0,0 +1,29 @@
+package com.ask.home.videostream.model;
+
+import lombok.Builder;
+import lombok.Data;
+
+import java.util.List;
+
+/**
+ * State of a resumable upload: what was received and what still has to be sent.
+ */
+@Data
+@Builder
+public class Upload {
+
+    private String uploadId;
+    /**
+     * Path of the content inside the content root, once complete.
+     */
+    private String path;
+    private long size;
+    /**
+     * Bytes written to disk.
+     */
+    private long received;
+    /**
+     * Ranges not received yet, in order.
+     */
+    private List<ByteRange> missing;
+}
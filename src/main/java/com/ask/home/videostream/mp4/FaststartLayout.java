@@ -0,0 +1,125 @@
+package com.ask.home.videostream.mp4;
+
+import lombok.Getter;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Virtual byte layout of an MP4 file whose moov box follows its media data: the boxes before the first mdat, the moov
+ * box with its chunk offsets relocated, then the rest of the file without the original moov. The layout has the size
+ * of the file and every byte but those of the moov box is read from the file.
+ */
+public class FaststartLayout {
+
+    @Getter
+    private final long fileSize;
+    private final long mdatOffset;
+    private final byte[] moov;
+    private final List<Segment> segments;
+
+    /**
+     * Bytes of the layout, from the file or from the relocated moov box when the file offset is -1.
+     */
+    private record Segment(long start, long length, long fileOffset) {
+
+        long end() {
+            return start + length;
+        }
+    }
+
+    /**
+     * Part of a virtual range.
+     *
+     * @param start      first virtual offset.
+     * @param length     bytes.
+     * @param fileOffset file offset of the first byte, -1 for bytes of the moov box.
+     */
+    public record Part(long start, long length, long fileOffset) {
+
+        public boolean isMoov() {
+            return fileOffset < 0;
+        }
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param fileSize   size of the file.
+     * @param mdatOffset offset of the first mdat box, where the moov box is moved.
+     * @param moovOffset offset of the moov box in the file.
+     * @param moov       relocated moov box, same size as the original.
+     */
+    public FaststartLayout(final long fileSize, final long mdatOffset, final long moovOffset, final byte[] moov) {
+        if (mdatOffset >= moovOffset || moovOffset + moov.length > fileSize) {
+            throw new IllegalArgumentException("moov box must follow the media data");
+        }
+        this.fileSize = fileSize;
+        this.mdatOffset = mdatOffset;
+        this.moov = moov;
+        this.segments = new ArrayList<>(4);
+        add(0, mdatOffset, 0);
+        add(mdatOffset, moov.length, -1);
+        add(mdatOffset + moov.length, moovOffset - mdatOffset, mdatOffset);
+        add(moovOffset + moov.length, fileSize - moovOffset - moov.length, moovOffset + moov.length);
+    }
+
+    /**
+     * Size of the moov box kept in memory.
+     *
+     * @return int.
+     */
+    public int getMoovSize() {
+        return moov.length;
+    }
+
+    /**
+     * Bytes of the moov box.
+     *
+     * @param offset offset inside the moov box.
+     * @param length bytes.
+     * @return copy of the bytes.
+     */
+    public byte[] moovBytes(final long offset, final long length) {
+        final byte[] bytes = new byte[(int) length];
+        System.arraycopy(moov, (int) offset, bytes, 0, bytes.length);
+        return bytes;
+    }
+
+    /**
+     * Parts of the file and of the moov box holding a virtual range, in order.
+     *
+     * @param start first virtual offset.
+     * @param end   last virtual offset, inclusive.
+     * @return parts, empty when the range is outside the layout.
+     */
+    public List<Part> parts(final long start, final long end) {
+        final List<Part> parts = new ArrayList<>(2);
+        final long last = Math.min(end, fileSize - 1);
+        for (Segment segment : segments) {
+            final long partStart = Math.max(start, segment.start());
+            final long partEnd = Math.min(last + 1, segment.end());
+            if (partStart < partEnd) {
+                final long shift = partStart - segment.start();
+                parts.add(new Part(partStart, partEnd - partStart, segment.fileOffset() < 0 ? -1 : segment.fileOffset() + shift));
+            }
+        }
+        return parts;
+    }
+
+    /**
+     * Offset of a part inside the moov box.
+     *
+     * @param part part of the moov box.
+     * @return offset.
+     */
+    public long moovOffsetOf(final Part part) {
+        return part.start() - mdatOffset;
+    }
+
+    private void add(final long start, final long length, final long fileOffset) {
+        if (length > 0) {
+            segments.add(new Segment(start, length, fileOffset));
+        }
+    }
+}
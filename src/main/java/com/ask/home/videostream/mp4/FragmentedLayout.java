@@ -0,0 +1,261 @@
+package com.ask.home.videostream.mp4;
+
+import lombok.Getter;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * Virtual fragmented layout of a progressive MP4 file: an initialization section of the ftyp box and the moov box with
+ * its sample tables emptied and an mvex box, then one fragment per segment, a moof box describing the samples of a byte
+ * range of the file followed by those bytes as an mdat box. Segments are cut at the first video keyframe reaching the
+ * target duration, the samples of the other tracks go with the segment their bytes are in.
+ * <p>
+ * Only the moof and mdat headers are held in memory (rendered from the samples on request), every sample is read from
+ * the file at its place, nothing is copied or transcoded.
+ */
+public class FragmentedLayout {
+
+    // moof: mfhd; traf: tfhd with default-base-is-moof, tfdt version 1; trun: data offset, duration, size, flags.
+    private static final int MFHD_SIZE = 16;
+    private static final int TFHD_SIZE = 16;
+    private static final int TFDT_SIZE = 20;
+    private static final int TRUN_HEADER_SIZE = 20;
+    private static final int TFHD_DEFAULT_BASE_IS_MOOF = 0x020000;
+    private static final int TRUN_FLAGS = 0x000001 | 0x000100 | 0x000200 | 0x000400;
+    private static final int TRUN_COMPOSITION_OFFSETS = 0x000800;
+    // sample_depends_on 2 for sync samples, 1 and sample_is_non_sync_sample for the others.
+    private static final int SYNC_SAMPLE_FLAGS = 0x02000000;
+    private static final int NON_SYNC_SAMPLE_FLAGS = 0x01010000;
+    private static final int MDAT_HEADER_SIZE = 8;
+
+    @Getter
+    private final byte[] initSection;
+    @Getter
+    private final List<Segment> segments;
+    @Getter
+    private final long durationMillis;
+    private final List<Mp4Track> tracks;
+    private final Mp4Track video;
+    // first sample and its decode time of every track in every segment, a last row for the end.
+    private final int[][] firstSamples;
+    private final long[][] decodeTimes;
+
+    /**
+     * Segment of the layout.
+     *
+     * @param offset         file offset of its media data.
+     * @param length         bytes of media data.
+     * @param durationMillis play time.
+     */
+    public record Segment(long offset, long length, long durationMillis) {
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param ftyp           bytes of the ftyp box.
+     * @param moov           bytes of the whole moov box, header included, from its position.
+     * @param targetDuration shortest segment but the last.
+     * @throws IllegalArgumentException when the moov box is malformed, has no video keyframe or the samples of a track
+     *                                  are not in file order.
+     */
+    public FragmentedLayout(final byte[] ftyp, final ByteBuffer moov, final Duration targetDuration) {
+        this.tracks = Mp4BoxParser.parseTracks(moov);
+        this.video = tracks.stream().filter(Mp4Track::isVideo).findFirst().orElseThrow(() -> new IllegalArgumentException("No video track"));
+        long mediaStart = Long.MAX_VALUE;
+        long mediaEnd = 0;
+        for (Mp4Track track : tracks) {
+            final long[] offsets = track.getOffsets();
+            for (int i = 1; i < offsets.length; i++) {
+                if (offsets[i] < offsets[i - 1]) {
+                    throw new IllegalArgumentException("Samples of track " + track.getTrackId() + " are not in file order");
+                }
+            }
+            if (offsets.length > 0) {
+                mediaStart = Math.min(mediaStart, offsets[0]);
+                mediaEnd = Math.max(mediaEnd, offsets[offsets.length - 1] + track.getSizes()[offsets.length - 1]);
+            }
+        }
+
+        // cut the video track at the keyframes reaching the target duration.
+        final List<Integer> cuts = new ArrayList<>();
+        final List<Long> cutTimes = new ArrayList<>();
+        long decodeTime = 0;
+        for (int sample = 0; sample < video.getSampleCount(); sample++) {
+            final long time = toMillis(decodeTime, video.getTimescale());
+            if (video.isSync(sample) && (cuts.isEmpty() || time - cutTimes.getLast() >= targetDuration.toMillis())) {
+                cuts.add(sample);
+                cutTimes.add(time);
+            }
+            decodeTime += Integer.toUnsignedLong(video.getDurations()[sample]);
+        }
+        if (cuts.isEmpty()) {
+            throw new IllegalArgumentException("No keyframes");
+        }
+        this.durationMillis = toMillis(decodeTime, video.getTimescale());
+        final long[] starts = new long[cuts.size() + 1];
+        for (int i = 0; i < cuts.size(); i++) {
+            // the first segment starts with the first sample of any track.
+            starts[i] = i == 0 ? mediaStart : video.getOffsets()[cuts.get(i)];
+        }
+        starts[cuts.size()] = mediaEnd;
+        this.segments = new ArrayList<>(cuts.size());
+        for (int i = 0; i < cuts.size(); i++) {
+            final boolean last = i == cuts.size() - 1;
+            final long startTime = i == 0 ? 0 : cutTimes.get(i);
+            final long endTime = last ? Math.max(durationMillis, startTime) : cutTimes.get(i + 1);
+            segments.add(new Segment(starts[i], starts[i + 1] - starts[i], endTime - startTime));
+        }
+
+        // every track goes with the segments by the file offsets of its samples.
+        this.firstSamples = new int[tracks.size()][cuts.size() + 1];
+        this.decodeTimes = new long[tracks.size()][cuts.size() + 1];
+        for (int t = 0; t < tracks.size(); t++) {
+            final Mp4Track track = tracks.get(t);
+            int sample = 0;
+            long time = 0;
+            for (int i = 0; i <= cuts.size(); i++) {
+                while (sample < track.getSampleCount() && track.getOffsets()[sample] < starts[i]) {
+                    time += Integer.toUnsignedLong(track.getDurations()[sample]);
+                    sample++;
+                }
+                firstSamples[t][i] = i == cuts.size() ? track.getSampleCount() : sample;
+                decodeTimes[t][i] = time;
+            }
+        }
+        this.initSection = concat(ftyp, Mp4BoxParser.fragmentedMoov(moov, tracks));
+    }
+
+    /**
+     * Display width of the video track.
+     *
+     * @return int, 0 when unknown.
+     */
+    public int getWidth() {
+        return video.getWidth();
+    }
+
+    /**
+     * Display height of the video track.
+     *
+     * @return int, 0 when unknown.
+     */
+    public int getHeight() {
+        return video.getHeight();
+    }
+
+    /**
+     * Codecs of the video and audio tracks, for the CODECS attribute of a variant.
+     *
+     * @return comma separated codecs, null when one of them is unknown: a partial list would hide a track from players.
+     */
+    public String getCodecs() {
+        final List<Mp4Track> media = tracks.stream().filter(track -> track.isVideo() || track.isAudio()).toList();
+        if (media.stream().anyMatch(track -> track.getCodec() == null)) {
+            return null;
+        }
+        return media.stream().map(Mp4Track::getCodec).distinct().collect(Collectors.joining(","));
+    }
+
+    /**
+     * moof box and mdat header of a segment, to send in front of its bytes of the file.
+     *
+     * @param segment index of the segment.
+     * @return bytes.
+     * @throws IllegalArgumentException when the segment is too large for the 32-bit data offsets.
+     */
+    public byte[] fragmentHeader(final int segment) {
+        final Segment range = segments.get(segment);
+        int moofSize = 8 + MFHD_SIZE;
+        final int[] trafSizes = new int[tracks.size()];
+        for (int t = 0; t < tracks.size(); t++) {
+            final int first = firstSamples[t][segment];
+            final int end = firstSamples[t][segment + 1];
+            if (first < end) {
+                final Mp4Track track = tracks.get(t);
+                final int sampleSize = track.getCompositionOffsets() == null ? 12 : 16;
+                trafSizes[t] = 8 + TFHD_SIZE + TFDT_SIZE + runs(track, first, end) * TRUN_HEADER_SIZE + (end - first) * sampleSize;
+                moofSize += trafSizes[t];
+            }
+        }
+        if (range.length() > Integer.MAX_VALUE - moofSize - MDAT_HEADER_SIZE) {
+            throw new IllegalArgumentException("Segment " + segment + " is too large");
+        }
+        final int dataStart = moofSize + MDAT_HEADER_SIZE;
+        final ByteBuffer header = ByteBuffer.allocate(dataStart);
+        header.putInt(moofSize).put(type("moof"));
+        header.putInt(MFHD_SIZE).put(type("mfhd")).putInt(0).putInt(segment + 1);
+        for (int t = 0; t < tracks.size(); t++) {
+            final int first = firstSamples[t][segment];
+            final int end = firstSamples[t][segment + 1];
+            if (first == end) {
+                continue;
+            }
+            final Mp4Track track = tracks.get(t);
+            final int[] compositionOffsets = track.getCompositionOffsets();
+            header.putInt(trafSizes[t]).put(type("traf"));
+            header.putInt(TFHD_SIZE).put(type("tfhd")).putInt(TFHD_DEFAULT_BASE_IS_MOOF).putInt(track.getTrackId());
+            header.putInt(TFDT_SIZE).put(type("tfdt")).putInt(1 << 24).putLong(decodeTimes[t][segment]);
+            // a trun per run of adjacent samples, the samples of the other tracks sit between the runs.
+            int runStart = first;
+            while (runStart < end) {
+                int runEnd = runStart + 1;
+                while (runEnd < end && track.getOffsets()[runEnd] == track.getOffsets()[runEnd - 1] + track.getSizes()[runEnd - 1]) {
+                    runEnd++;
+                }
+                final int sampleSize = compositionOffsets == null ? 12 : 16;
+                // version 1 for signed composition offsets.
+                header.putInt(TRUN_HEADER_SIZE + (runEnd - runStart) * sampleSize).put(type("trun"))
+                        .putInt(compositionOffsets == null ? TRUN_FLAGS : 1 << 24 | TRUN_FLAGS | TRUN_COMPOSITION_OFFSETS)
+                        .putInt(runEnd - runStart)
+                        .putInt((int) (dataStart + track.getOffsets()[runStart] - range.offset()));
+                for (int sample = runStart; sample < runEnd; sample++) {
+                    header.putInt(track.getDurations()[sample]).putInt(track.getSizes()[sample]).putInt(track.isSync(sample) ? SYNC_SAMPLE_FLAGS : NON_SYNC_SAMPLE_FLAGS);
+                    if (compositionOffsets != null) {
+                        header.putInt(compositionOffsets[sample]);
+                    }
+                }
+                runStart = runEnd;
+            }
+        }
+        header.putInt((int) (MDAT_HEADER_SIZE + range.length())).put(type("mdat"));
+        return header.array();
+    }
+
+    /**
+     * Memory held by the layout.
+     *
+     * @return bytes.
+     */
+    public long bytes() {
+        return initSection.length + tracks.stream().mapToLong(Mp4Track::bytes).sum() + (long) tracks.size() * (segments.size() + 1) * (Integer.BYTES + Long.BYTES)
+                + segments.size() * 32L;
+    }
+
+    private static int runs(final Mp4Track track, final int first, final int end) {
+        int runs = 1;
+        for (int sample = first + 1; sample < end; sample++) {
+            if (track.getOffsets()[sample] != track.getOffsets()[sample - 1] + track.getSizes()[sample - 1]) {
+                runs++;
+            }
+        }
+        return runs;
+    }
+
+    private static byte[] type(final String type) {
+        return type.getBytes(StandardCharsets.ISO_8859_1);
+    }
+
+    private static byte[] concat(final byte[] first, final byte[] second) {
+        return ByteBuffer.allocate(first.length + second.length).put(first).put(second).array();
+    }
+
+    private static long toMillis(final long time, final long timescale) {
+        return time < Long.MAX_VALUE / 1000 ? time * 1000 / timescale : time / timescale * 1000;
+    }
+}
@@ -0,0 +1,723 @@
+package com.ask.home.videostream.mp4;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Parses the ISO-BMFF (MP4, MOV, 3GP) boxes needed for seeking: the top level box headers, to find {@code moov}, and
+ * the {@code moov} box itself, for the duration ({@code mvhd}), the display size ({@code tkhd}) and the sync samples of
+ * the first video track, placed in time with {@code stts} and in the file with {@code stsc}, {@code stsz} and
+ * {@code stco}/{@code co64}. The samples of every track are expanded the same way for a fragmented view of the file,
+ * whose initialization section is the moov box with its sample tables emptied, and the codec of each track is read
+ * from its sample description ({@code stsd}) for the {@code CODECS} attribute of the HLS playlists.
+ * <p>
+ * Decode times are used as they are: edit lists and composition offsets shift the presentation by a few frames at most,
+ * the keyframe stays the right place to start a range.
+ */
+public final class Mp4BoxParser {
+
+    /**
+     * Bytes to read for a box header: size, type and the 64-bit size.
+     */
+    public static final int BOX_HEADER_SIZE = 16;
+    /**
+     * Samples of a track with a default sample size, whose count no table bounds; a 64 MB moov holds no more samples
+     * with a size table.
+     */
+    static final int MAX_SAMPLES = 1 << 24;
+    // boxes holding the sample tables, rebuilt for a fragmented view.
+    private static final Set<String> SAMPLE_TABLE_CONTAINERS = Set.of("moov", "trak", "mdia", "minf", "stbl");
+    // per-sample boxes of a sample table without an empty form, the fragments describe their samples.
+    private static final Set<String> PER_SAMPLE_BOXES = Set.of("stss", "ctts", "cslg", "stps", "sdtp", "sbgp", "subs", "saiz", "saio", "stsh", "padb");
+    // fields of a visual and of an audio sample entry before their child boxes; QuickTime sound versions 1 and 2 add more.
+    private static final int VISUAL_SAMPLE_ENTRY_SIZE = 78;
+    private static final int AUDIO_SAMPLE_ENTRY_SIZE = 28;
+    private static final int[] SOUND_VERSION_EXTRA_SIZES = {0, 16, 36};
+    // ES_Descriptor, DecoderConfigDescriptor and DecoderSpecificInfo tags of an esds box.
+    private static final int ES_DESCRIPTOR_TAG = 3;
+    private static final int DECODER_CONFIG_TAG = 4;
+    private static final int DECODER_SPECIFIC_INFO_TAG = 5;
+
+    /**
+     * Header of a box.
+     *
+     * @param type       four character type.
+     * @param offset     offset of the box.
+     * @param size       size of the box, header included.
+     * @param headerSize size of the header.
+     */
+    public record BoxHeader(String type, long offset, long size, int headerSize) {
+
+        public long end() {
+            return offset + size;
+        }
+    }
+
+    private Mp4BoxParser() {
+    }
+
+    /**
+     * Read a box header.
+     *
+     * @param buffer    bytes of the header, from its position.
+     * @param offset    offset of the box in its container.
+     * @param parentEnd end of the container, a size of 0 extends the box to it.
+     * @return BoxHeader, null when the bytes don't hold a valid header.
+     */
+    public static BoxHeader readBoxHeader(final ByteBuffer buffer, final long offset, final long parentEnd) {
+        if (buffer.remaining() < 8) {
+            return null;
+        }
+        final int start = buffer.position();
+        long size = Integer.toUnsignedLong(buffer.getInt(start));
+        final String type = type(buffer, start + 4);
+        int headerSize = 8;
+        if (size == 1) {
+            if (buffer.remaining() < 16) {
+                return null;
+            }
+            size = buffer.getLong(start + 8);
+            headerSize = 16;
+        } else if (size == 0) {
+            size = parentEnd - offset;
+        }
+        if (size < headerSize || offset + size > parentEnd) {
+            return null;
+        }
+        return new BoxHeader(type, offset, size, headerSize);
+    }
+
+    /**
+     * Index the moov box.
+     *
+     * @param moov       bytes of the whole moov box, header included, from its position.
+     * @param moovOffset file offset of the moov box.
+     * @return Mp4Index.
+     * @throws IllegalArgumentException when the box is malformed or has no video track.
+     */
+    public static Mp4Index parseMoov(final ByteBuffer moov, final long moovOffset) {
+        try {
+            final ByteBuffer box = moov.slice();
+            final BoxHeader moovHeader = readBoxHeader(box, 0, box.limit());
+            if (moovHeader == null || !"moov".equals(moovHeader.type())) {
+                throw new IllegalArgumentException("Not a moov box");
+            }
+            long durationMillis = 0;
+            SampleTables video = null;
+            for (BoxHeader child : children(box, moovHeader)) {
+                if ("mvhd".equals(child.type())) {
+                    durationMillis = durationMillis(box, child);
+                } else if ("trak".equals(child.type()) && video == null) {
+                    video = videoTrack(box, child);
+                }
+            }
+            if (video == null) {
+                throw new IllegalArgumentException("No video track");
+            }
+            if (durationMillis == 0) {
+                durationMillis = video.durationMillis;
+            }
+            return video.index(moovOffset, moovHeader.size(), durationMillis);
+        } catch (BufferUnderflowException | IndexOutOfBoundsException exception) {
+            throw new IllegalArgumentException("Truncated moov box", exception);
+        }
+    }
+
+    /**
+     * Copy of the moov box with the chunk offsets of every track that fall in {@code [from, to)} moved by
+     * {@code delta}, for a moov box placed elsewhere in the file.
+     *
+     * @param moov  bytes of the whole moov box, header included, from its position.
+     * @param from  first file offset to move.
+     * @param to    end of the file offsets to move.
+     * @param delta bytes to add to the moved offsets.
+     * @return patched moov bytes.
+     * @throws IllegalArgumentException when the box is malformed or a 32-bit offset would overflow.
+     */
+    public static byte[] relocateChunkOffsets(final ByteBuffer moov, final long from, final long to, final long delta) {
+        try {
+            final ByteBuffer box = ByteBuffer.allocate(moov.remaining()).put(moov.duplicate()).flip();
+            final BoxHeader moovHeader = readBoxHeader(box, 0, box.limit());
+            if (moovHeader == null || !"moov".equals(moovHeader.type())) {
+                throw new IllegalArgumentException("Not a moov box");
+            }
+            for (BoxHeader trak : children(box, moovHeader)) {
+                if (!"trak".equals(trak.type())) {
+                    continue;
+                }
+                final BoxHeader stbl = child(box, child(box, child(box, trak, "mdia"), "minf"), "stbl");
+                if (stbl == null) {
+                    continue;
+                }
+                for (BoxHeader table : children(box, stbl)) {
+                    final int content = (int) (table.offset() + table.headerSize());
+                    if ("stco".equals(table.type())) {
+                        for (int i = 0, count = box.getInt(content + 4); i < count; i++) {
+                            final int entry = content + 8 + i * 4;
+                            final long offset = Integer.toUnsignedLong(box.getInt(entry));
+                            if (offset >= from && offset < to) {
+                                if (offset + delta > 0xFFFFFFFFL) {
+                                    throw new IllegalArgumentException("Relocated chunk offset does not fit stco");
+                                }
+                                box.putInt(entry, (int) (offset + delta));
+                            }
+                        }
+                    } else if ("co64".equals(table.type())) {
+                        for (int i = 0, count = box.getInt(content + 4); i < count; i++) {
+                            final int entry = content + 8 + i * 8;
+                            final long offset = box.getLong(entry);
+                            if (offset >= from && offset < to) {
+                                box.putLong(entry, offset + delta);
+                            }
+                        }
+                    }
+                }
+            }
+            return box.array();
+        } catch (BufferUnderflowException | IndexOutOfBoundsException exception) {
+            throw new IllegalArgumentException("Truncated moov box", exception);
+        }
+    }
+
+    /**
+     * Samples of every track of the moov box.
+     *
+     * @param moov bytes of the whole moov box, header included, from its position.
+     * @return Mp4Track of every track, in box order.
+     * @throws IllegalArgumentException when the box is malformed, a track has incomplete sample tables or more than one
+     *                                  sample description, or there is no track.
+     */
+    public static List<Mp4Track> parseTracks(final ByteBuffer moov) {
+        try {
+            final ByteBuffer box = moov.slice();
+            final BoxHeader moovHeader = readBoxHeader(box, 0, box.limit());
+            if (moovHeader == null || !"moov".equals(moovHeader.type())) {
+                throw new IllegalArgumentException("Not a moov box");
+            }
+            final List<Mp4Track> tracks = new ArrayList<>();
+            for (BoxHeader child : children(box, moovHeader)) {
+                if ("trak".equals(child.type())) {
+                    final SampleTables tables = sampleTables(box, child);
+                    if (tables == null) {
+                        throw new IllegalArgumentException("Track without sample tables");
+                    }
+                    tracks.add(tables.track());
+                }
+            }
+            if (tracks.isEmpty()) {
+                throw new IllegalArgumentException("No track");
+            }
+            return tracks;
+        } catch (BufferUnderflowException | IndexOutOfBoundsException exception) {
+            throw new IllegalArgumentException("Truncated moov box", exception);
+        }
+    }
+
+    /**
+     * Copy of the moov box for the initialization section of a fragmented view of the file: the sample tables of every
+     * track emptied, the movie fragments describing the samples, and an mvex box with a trex box per track.
+     *
+     * @param moov   bytes of the whole moov box, header included, from its position.
+     * @param tracks tracks of the moov box.
+     * @return moov bytes.
+     * @throws IllegalArgumentException when the box is malformed.
+     */
+    public static byte[] fragmentedMoov(final ByteBuffer moov, final List<Mp4Track> tracks) {
+        try {
+            final ByteBuffer box = moov.slice();
+            final BoxHeader moovHeader = readBoxHeader(box, 0, box.limit());
+            if (moovHeader == null || !"moov".equals(moovHeader.type())) {
+                throw new IllegalArgumentException("Not a moov box");
+            }
+            final ByteArrayOutputStream trex = new ByteArrayOutputStream();
+            // default sample description index 1, no default duration, size or flags: every trun carries them.
+            tracks.forEach(track -> trex.writeBytes(fullBox("trex", ByteBuffer.allocate(20).putInt(track.getTrackId()).putInt(1).array())));
+            return withoutSamples(box, moovHeader, box("mvex", trex.toByteArray()));
+        } catch (BufferUnderflowException | IndexOutOfBoundsException exception) {
+            throw new IllegalArgumentException("Truncated moov box", exception);
+        }
+    }
+
+    /**
+     * Copy of a box with its sample tables emptied and the per-sample boxes dropped.
+     */
+    private static byte[] withoutSamples(final ByteBuffer box, final BoxHeader header, final byte[] appended) {
+        if (SAMPLE_TABLE_CONTAINERS.contains(header.type())) {
+            final ByteArrayOutputStream content = new ByteArrayOutputStream();
+            for (BoxHeader child : children(box, header)) {
+                content.writeBytes(withoutSamples(box, child, new byte[0]));
+            }
+            content.writeBytes(appended);
+            return box(header.type(), content.toByteArray());
+        }
+        return switch (header.type()) {
+            // entry_count 0.
+            case "stts", "stsc", "stco", "co64" -> fullBox("co64".equals(header.type()) ? "stco" : header.type(), new byte[4]);
+            // sample_size and sample_count 0.
+            case "stsz", "stz2" -> fullBox("stsz", new byte[8]);
+            default -> {
+                if (PER_SAMPLE_BOXES.contains(header.type())) {
+                    yield new byte[0];
+                }
+                final byte[] bytes = new byte[(int) header.size()];
+                box.get((int) header.offset(), bytes);
+                yield bytes;
+            }
+        };
+    }
+
+    private static byte[] box(final String type, final byte[] content) {
+        return ByteBuffer.allocate(8 + content.length).putInt(8 + content.length).put(type.getBytes(StandardCharsets.ISO_8859_1)).put(content).array();
+    }
+
+    /**
+     * Box with version 0 and no flags.
+     */
+    private static byte[] fullBox(final String type, final byte[] content) {
+        return box(type, ByteBuffer.allocate(4 + content.length).putInt(0).put(content).array());
+    }
+
+    /**
+     * Sample tables of the track when it is a video track.
+     */
+    private static SampleTables videoTrack(final ByteBuffer box, final BoxHeader trak) {
+        final SampleTables tables = sampleTables(box, trak);
+        return tables != null && "vide".equals(tables.handlerType) ? tables : null;
+    }
+
+    /**
+     * Sample tables of the track, null when it has none.
+     */
+    private static SampleTables sampleTables(final ByteBuffer box, final BoxHeader trak) {
+        final BoxHeader mdia = child(box, trak, "mdia");
+        if (mdia == null) {
+            return null;
+        }
+        final BoxHeader hdlr = child(box, mdia, "hdlr");
+        final BoxHeader mdhd = child(box, mdia, "mdhd");
+        final BoxHeader stbl = child(box, child(box, mdia, "minf"), "stbl");
+        if (hdlr == null || mdhd == null || stbl == null) {
+            return null;
+        }
+        final SampleTables tables = new SampleTables();
+        // version and flags, pre_defined, then the handler type.
+        tables.handlerType = type(box, (int) (hdlr.offset() + hdlr.headerSize() + 8));
+        final BoxHeader tkhd = child(box, trak, "tkhd");
+        if (tkhd != null) {
+            final int content = (int) (tkhd.offset() + tkhd.headerSize());
+            final boolean version1 = box.get(content) == 1;
+            // track_ID follows the creation and modification times, 16.16 fixed point width and height close the box.
+            tables.trackId = box.getInt(content + (version1 ? 20 : 12));
+            final int dimensions = content + (version1 ? 88 : 76);
+            tables.width = box.getInt(dimensions) >>> 16;
+            tables.height = box.getInt(dimensions + 4) >>> 16;
+        }
+        tables.timescale = timescale(box, mdhd);
+        tables.durationMillis = durationMillis(box, mdhd);
+        for (BoxHeader table : children(box, stbl)) {
+            final int content = (int) (table.offset() + table.headerSize());
+            final int end = (int) table.end();
+            switch (table.type()) {
+                case "stts" -> {
+                    tables.stts = content;
+                    tables.sttsEnd = end;
+                }
+                case "stss" -> {
+                    tables.stss = content;
+                    tables.stssEnd = end;
+                }
+                case "ctts" -> {
+                    tables.ctts = content;
+                    tables.cttsEnd = end;
+                }
+                case "stsc" -> {
+                    tables.stsc = content;
+                    tables.stscEnd = end;
+                }
+                case "stsz" -> {
+                    tables.stsz = content;
+                    tables.stszEnd = end;
+                }
+                case "stco", "co64" -> {
+                    tables.chunkOffsets = content;
+                    tables.chunkOffsetsEnd = end;
+                    tables.largeOffsets = "co64".equals(table.type());
+                }
+                case "stsd" -> tables.codec = codec(box, table);
+                default -> {
+                    // not needed for seeking or fragments
+                }
+            }
+        }
+        tables.box = box;
+        return tables;
+    }
+
+    /**
+     * Duration of an mvhd or mdhd box, in millis.
+     */
+    private static long durationMillis(final ByteBuffer box, final BoxHeader header) {
+        final int content = (int) (header.offset() + header.headerSize());
+        final long timescale = timescale(box, header);
+        final long duration = box.get(content) == 1 ? box.getLong(content + 24) : Integer.toUnsignedLong(box.getInt(content + 16));
+        return timescale == 0 ? 0 : toMillis(duration, timescale);
+    }
+
+    /**
+     * Timescale of an mvhd or mdhd box: after version, flags and the creation and modification times.
+     */
+    private static long timescale(final ByteBuffer box, final BoxHeader header) {
+        final int content = (int) (header.offset() + header.headerSize());
+        return Integer.toUnsignedLong(box.getInt(content + (box.get(content) == 1 ? 20 : 12)));
+    }
+
+    /**
+     * RFC 6381 codec of the first sample description, the one every sample points at: avc1/avc3 and hvc1/hev1 with the
+     * profile and level of their decoder configuration, mp4a with its object type.
+     *
+     * @return codec, null for other formats or a malformed description.
+     */
+    private static String codec(final ByteBuffer box, final BoxHeader stsd) {
+        // version and flags, entry_count, then the sample entries.
+        final long first = stsd.offset() + stsd.headerSize() + 8;
+        if (first + 8 > stsd.end()) {
+            return null;
+        }
+        final BoxHeader entry = readBoxHeader(box.duplicate().position((int) first), first, stsd.end());
+        if (entry == null) {
+            return null;
+        }
+        final long fields = entry.offset() + entry.headerSize();
+        try {
+            return switch (entry.type()) {
+                case "avc1", "avc3" -> {
+                    final BoxHeader avcC = child(box, fields + VISUAL_SAMPLE_ENTRY_SIZE, entry.end(), "avcC");
+                    // configurationVersion, then the profile, its compatibility flags and the level.
+                    yield avcC == null ? null : String.format("%s.%06x", entry.type(), box.getInt((int) (avcC.offset() + avcC.headerSize())) & 0xffffff);
+                }
+                case "hvc1", "hev1" -> {
+                    final BoxHeader hvcC = child(box, fields + VISUAL_SAMPLE_ENTRY_SIZE, entry.end(), "hvcC");
+                    yield hvcC == null ? null : entry.type() + '.' + hevcProfileLevel(box, (int) (hvcC.offset() + hvcC.headerSize()));
+                }
+                case "mp4a" -> {
+                    final int version = box.getShort((int) fields + 8);
+                    if (version < 0 || version >= SOUND_VERSION_EXTRA_SIZES.length) {
+                        yield null;
+                    }
+                    final BoxHeader esds = child(box, fields + AUDIO_SAMPLE_ENTRY_SIZE + SOUND_VERSION_EXTRA_SIZES[version], entry.end(), "esds");
+                    yield esds == null ? null : mpeg4AudioType(box, (int) (esds.offset() + esds.headerSize()) + 4, (int) esds.end());
+                }
+                case "ac-3", "ec-3" -> entry.type();
+                default -> null;
+            };
+        } catch (BufferUnderflowException | IndexOutOfBoundsException exception) {
+            return null;
+        }
+    }
+
+    /**
+     * Profile, compatibility flags, tier and level and constraint flags of an hvcC box, as ISO/IEC 14496-15 writes them.
+     */
+    private static String hevcProfileLevel(final ByteBuffer box, final int hvcC) {
+        final int profile = box.get(hvcC + 1);
+        final StringBuilder codec = new StringBuilder();
+        final int profileSpace = (profile >> 6) & 0x3;
+        if (profileSpace > 0) {
+            codec.append((char) ('A' + profileSpace - 1));
+        }
+        codec.append(profile & 0x1f).append('.').append(Integer.toHexString(Integer.reverse(box.getInt(hvcC + 2))))
+                .append('.').append((profile & 0x20) != 0 ? 'H' : 'L').append(box.get(hvcC + 12) & 0xff);
+        // six bytes of constraint flags, the trailing zero bytes left out.
+        int constraints = 6;
+        while (constraints > 0 && box.get(hvcC + 5 + constraints) == 0) {
+            constraints--;
+        }
+        for (int i = 0; i < constraints; i++) {
+            codec.append('.').append(Integer.toHexString(box.get(hvcC + 6 + i) & 0xff));
+        }
+        return codec.toString();
+    }
+
+    /**
+     * mp4a codec of the descriptors of an esds box: the object type indication of the DecoderConfigDescriptor, then the
+     * audio object type of its AudioSpecificConfig when there is one.
+     */
+    private static String mpeg4AudioType(final ByteBuffer box, final int descriptors, final int end) {
+        int position = descriptors;
+        if (box.get(position) != ES_DESCRIPTOR_TAG) {
+            return null;
+        }
+        position = skipDescriptorSize(box, position + 1);
+        final int flags = box.get(position + 2);
+        // ES_ID and the flags, then dependsOn_ES_ID, a URL and OCR_ES_Id when flagged.
+        position += 3 + ((flags & 0x80) != 0 ? 2 : 0);
+        if ((flags & 0x40) != 0) {
+            position += 1 + (box.get(position) & 0xff);
+        }
+        position += (flags & 0x20) != 0 ? 2 : 0;
+        if (position >= end || box.get(position) != DECODER_CONFIG_TAG) {
+            return null;
+        }
+        position = skipDescriptorSize(box, position + 1);
+        final String codec = "mp4a." + String.format("%02x", box.get(position) & 0xff);
+        // objectTypeIndication, streamType, bufferSizeDB, maxBitrate and avgBitrate.
+        position += 13;
+        if (position >= end || box.get(position) != DECODER_SPECIFIC_INFO_TAG) {
+            return codec;
+        }
+        position = skipDescriptorSize(box, position + 1);
+        // 5 bits of audio object type, 31 escapes to 32 plus the next 6 bits.
+        final int audioObjectType = (box.get(position) & 0xff) >> 3;
+        return codec + '.' + (audioObjectType == 31 ? 32 + (((box.get(position) & 0x7) << 3) | ((box.get(position + 1) & 0xff) >> 5)) : audioObjectType);
+    }
+
+    /**
+     * Position after the size of a descriptor, up to four bytes of 7 bits.
+     */
+    private static int skipDescriptorSize(final ByteBuffer box, final int position) {
+        int next = position;
+        while (next < position + 3 && (box.get(next) & 0x80) != 0) {
+            next++;
+        }
+        return next + 1;
+    }
+
+    private static BoxHeader child(final ByteBuffer box, final BoxHeader parent, final String type) {
+        if (parent == null) {
+            return null;
+        }
+        return child(box, parent.offset() + parent.headerSize(), parent.end(), type);
+    }
+
+    /**
+     * First box of the type between two offsets.
+     */
+    private static BoxHeader child(final ByteBuffer box, final long start, final long end, final String type) {
+        for (BoxHeader child : children(box, start, end)) {
+            if (type.equals(child.type())) {
+                return child;
+            }
+        }
+        return null;
+    }
+
+    private static List<BoxHeader> children(final ByteBuffer box, final BoxHeader parent) {
+        return children(box, parent.offset() + parent.headerSize(), parent.end());
+    }
+
+    private static List<BoxHeader> children(final ByteBuffer box, final long start, final long end) {
+        final List<BoxHeader> children = new ArrayList<>();
+        long offset = start;
+        while (offset + 8 <= end) {
+            final BoxHeader child = readBoxHeader(box.duplicate().position((int) offset), offset, end);
+            if (child == null) {
+                break;
+            }
+            children.add(child);
+            offset = child.end();
+        }
+        return children;
+    }
+
+    private static String type(final ByteBuffer buffer, final int index) {
+        final byte[] type = new byte[4];
+        buffer.get(index, type);
+        return new String(type, StandardCharsets.ISO_8859_1);
+    }
+
+    /**
+     * Entry count of a sample table, checked against the entries its box holds: the counts come from the file and
+     * size the arrays of the index.
+     *
+     * @param box           moov bytes.
+     * @param countPosition position of the entry count.
+     * @param end           end of the table box, the entries follow the count.
+     * @param entrySize     bytes of an entry.
+     * @return count.
+     * @throws IllegalArgumentException when the box can't hold the entries.
+     */
+    private static int entryCount(final ByteBuffer box, final int countPosition, final int end, final int entrySize) {
+        final int count = box.getInt(countPosition);
+        if (count < 0 || count > (end - countPosition - 4) / entrySize) {
+            throw new IllegalArgumentException("Sample table entry count " + Integer.toUnsignedString(count) + " exceeds its box");
+        }
+        return count;
+    }
+
+    private static long toMillis(final long time, final long timescale) {
+        return time < Long.MAX_VALUE / 1000 ? time * 1000 / timescale : time / timescale * 1000;
+    }
+
+    /**
+     * Positions of the sample tables of a video track inside the moov bytes, each after its version and flags.
+     */
+    private static final class SampleTables {
+        private ByteBuffer box;
+        private String handlerType;
+        private int trackId;
+        private long timescale;
+        private long durationMillis;
+        private int width;
+        private int height;
+        private String codec;
+        private int stts = -1;
+        private int stss = -1;
+        private int ctts = -1;
+        private int stsc = -1;
+        private int stsz = -1;
+        private int chunkOffsets = -1;
+        private int sttsEnd;
+        private int stssEnd;
+        private int cttsEnd;
+        private int stscEnd;
+        private int stszEnd;
+        private int chunkOffsetsEnd;
+        private boolean largeOffsets;
+
+        /**
+         * Number of samples, once the tables are known to be there.
+         */
+        private int sampleCount() {
+            if (timescale == 0 || stts < 0 || stsc < 0 || stsz < 0 || chunkOffsets < 0) {
+                throw new IllegalArgumentException("Incomplete sample tables");
+            }
+            final int defaultSampleSize = box.getInt(stsz + 4);
+            // sample_size, sample_count, then a size per sample without a default size.
+            final int sampleCount = defaultSampleSize != 0 ? box.getInt(stsz + 8) : entryCount(box, stsz + 8, stszEnd, 4);
+            if (sampleCount < 0 || sampleCount > MAX_SAMPLES) {
+                throw new IllegalArgumentException("Sample count " + Integer.toUnsignedString(sampleCount) + " out of range");
+            }
+            return sampleCount;
+        }
+
+        /**
+         * Expand the tables into the offset, size, duration, composition offset and sync flag of every sample.
+         */
+        Mp4Track track() {
+            final int sampleCount = sampleCount();
+            if (trackId == 0) {
+                throw new IllegalArgumentException("Track without tkhd");
+            }
+            final int defaultSampleSize = box.getInt(stsz + 4);
+            final long[] offsets = new long[sampleCount];
+            final int[] sizes = new int[sampleCount];
+            final int chunkCount = entryCount(box, chunkOffsets + 4, chunkOffsetsEnd, largeOffsets ? 8 : 4);
+            final int stscEntries = entryCount(box, stsc + 4, stscEnd, 12);
+            int stscEntry = 0;
+            int sample = 0;
+            for (int chunk = 1; chunk <= chunkCount && sample < sampleCount; chunk++) {
+                while (stscEntry + 1 < stscEntries && box.getInt(stsc + 8 + (stscEntry + 1) * 12) <= chunk) {
+                    stscEntry++;
+                }
+                final int samplesPerChunk = box.getInt(stsc + 8 + stscEntry * 12 + 4);
+                // the fragments all point at the first sample description.
+                if (box.getInt(stsc + 8 + stscEntry * 12 + 8) != 1) {
+                    throw new IllegalArgumentException("More than one sample description");
+                }
+                long offset = largeOffsets ? box.getLong(chunkOffsets + 8 + (chunk - 1) * 8) : Integer.toUnsignedLong(box.getInt(chunkOffsets + 8 + (chunk - 1) * 4));
+                for (int i = 0; i < samplesPerChunk && sample < sampleCount; i++, sample++) {
+                    sizes[sample] = defaultSampleSize != 0 ? defaultSampleSize : box.getInt(stsz + 12 + sample * 4);
+                    if (sizes[sample] < 0) {
+                        throw new IllegalArgumentException("Sample size " + Integer.toUnsignedString(sizes[sample]) + " out of range");
+                    }
+                    offsets[sample] = offset;
+                    offset += sizes[sample];
+                }
+            }
+            if (sample < sampleCount) {
+                throw new IllegalArgumentException("Chunks hold " + sample + " of " + sampleCount + " samples");
+            }
+            final int[] durations = expand(stts, sttsEnd, sampleCount);
+            final int[] compositionOffsets = ctts < 0 ? null : expand(ctts, cttsEnd, sampleCount);
+            BitSet syncSamples = null;
+            if (stss >= 0) {
+                syncSamples = new BitSet(sampleCount);
+                for (int i = 0, count = entryCount(box, stss + 4, stssEnd, 4); i < count; i++) {
+                    final int number = box.getInt(stss + 8 + i * 4);
+                    if (number >= 1 && number <= sampleCount) {
+                        syncSamples.set(number - 1);
+                    }
+                }
+            }
+            return new Mp4Track(trackId, handlerType, timescale, width, height, codec, offsets, sizes, durations, compositionOffsets, syncSamples);
+        }
+
+        /**
+         * Values of a run-length table of sample_count and value entries (stts, ctts), one per sample, 0 past its end.
+         */
+        private int[] expand(final int table, final int tableEnd, final int sampleCount) {
+            final int[] values = new int[sampleCount];
+            int sample = 0;
+            for (int entry = 0, entries = entryCount(box, table + 4, tableEnd, 8); entry < entries && sample < sampleCount; entry++) {
+                final long count = Integer.toUnsignedLong(box.getInt(table + 8 + entry * 8));
+                final int value = box.getInt(table + 8 + entry * 8 + 4);
+                final int end = (int) Math.min(sampleCount, sample + count);
+                Arrays.fill(values, sample, end, value);
+                sample = end;
+            }
+            return values;
+        }
+
+        /**
+         * Walk the samples chunk by chunk and keep the time and offset of the sync samples.
+         */
+        Mp4Index index(final long moovOffset, final long moovSize, final long durationMillis) {
+            final int sampleCount = sampleCount();
+            final int defaultSampleSize = box.getInt(stsz + 4);
+            // without stss every sample is a sync sample.
+            final int syncCount = stss < 0 ? sampleCount : entryCount(box, stss + 4, stssEnd, 4);
+            long[] times = new long[Math.min(syncCount, 1024)];
+            long[] offsets = new long[times.length];
+            int found = 0;
+
+            final int chunkCount = entryCount(box, chunkOffsets + 4, chunkOffsetsEnd, largeOffsets ? 8 : 4);
+            final int stscEntries = entryCount(box, stsc + 4, stscEnd, 12);
+            final int sttsEntries = entryCount(box, stts + 4, sttsEnd, 8);
+            int stscEntry = 0;
+            int sttsEntry = 0;
+            long sttsRemaining = sttsEntries > 0 ? Integer.toUnsignedLong(box.getInt(stts + 8)) : 0;
+            long decodeTime = 0;
+            int sample = 0;
+            for (int chunk = 1; chunk <= chunkCount && sample < sampleCount && found < syncCount; chunk++) {
+                while (stscEntry + 1 < stscEntries && box.getInt(stsc + 8 + (stscEntry + 1) * 12) <= chunk) {
+                    stscEntry++;
+                }
+                final int samplesPerChunk = box.getInt(stsc + 8 + stscEntry * 12 + 4);
+                long offset = largeOffsets ? box.getLong(chunkOffsets + 8 + (chunk - 1) * 8) : Integer.toUnsignedLong(box.getInt(chunkOffsets + 8 + (chunk - 1) * 4));
+                for (int i = 0; i < samplesPerChunk && sample < sampleCount; i++, sample++) {
+                    if (stss < 0 || box.getInt(stss + 8 + found * 4) == sample + 1) {
+                        if (found == times.length) {
+                            times = Arrays.copyOf(times, Math.min(syncCount, times.length * 2));
+                            offsets = Arrays.copyOf(offsets, times.length);
+                        }
+                        times[found] = toMillis(decodeTime, timescale);
+                        offsets[found] = offset;
+                        found++;
+                        if (found == syncCount) {
+                            break;
+                        }
+                    }
+                    offset += defaultSampleSize != 0 ? defaultSampleSize : Integer.toUnsignedLong(box.getInt(stsz + 12 + sample * 4));
+                    // advance the decode time by the delta of this sample.
+                    while (sttsRemaining == 0 && sttsEntry + 1 < sttsEntries) {
+                        sttsEntry++;
+                        sttsRemaining = Integer.toUnsignedLong(box.getInt(stts + 8 + sttsEntry * 8));
+                    }
+                    if (sttsRemaining > 0) {
+                        decodeTime += Integer.toUnsignedLong(box.getInt(stts + 8 + sttsEntry * 8 + 4));
+                        sttsRemaining--;
+                    }
+                }
+            }
+            return new Mp4Index(moovOffset, moovSize, durationMillis,
+                    found == times.length ? times : Arrays.copyOf(times, found), found == offsets.length ? offsets : Arrays.copyOf(offsets, found), width, height);
+        }
+    }
+}
@@ -0,0 +1,85 @@
+package com.ask.home.videostream.mp4;
+
+import com.ask.home.videostream.adapter.ContentAdapter;
+import com.ask.home.videostream.model.ContentRequest;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import reactor.core.publisher.Mono;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Reads the boxes of an MP4 content through a {@link ContentAdapter}.
+ */
+public final class Mp4Boxes {
+
+    /**
+     * Largest moov box read into memory.
+     */
+    public static final long MAX_MOOV_SIZE = 64L * 1024 * 1024;
+    // top level boxes walked, fragmented files have moov first anyway.
+    private static final int MAX_TOP_LEVEL_BOXES = 64;
+
+    private Mp4Boxes() {
+    }
+
+    /**
+     * Headers of the top level boxes, up to the first invalid header or the end of the content.
+     *
+     * @param contentAdapter ContentAdapter reading the content.
+     * @param contentRequest ContentRequest of the content, its range is ignored.
+     * @param fileSize       size of the content.
+     * @return Mono of the headers in file order.
+     */
+    public static Mono<List<Mp4BoxParser.BoxHeader>> topLevelBoxes(final ContentAdapter contentAdapter, final ContentRequest contentRequest, final long fileSize) {
+        return topLevelBoxes(contentAdapter, contentRequest, fileSize, 0, new ArrayList<>());
+    }
+
+    /**
+     * Find a top level box.
+     *
+     * @param boxes headers of the top level boxes.
+     * @param type  four character type.
+     * @return the first BoxHeader of the type, null when there is none.
+     */
+    public static Mp4BoxParser.BoxHeader find(final List<Mp4BoxParser.BoxHeader> boxes, final String type) {
+        return boxes.stream().filter(box -> type.equals(box.type())).findFirst().orElse(null);
+    }
+
+    /**
+     * Read the bytes of a range.
+     *
+     * @param contentAdapter ContentAdapter reading the content.
+     * @param contentRequest ContentRequest of the content, its range is ignored.
+     * @param position       first byte.
+     * @param length         bytes to read.
+     * @return Mono of the bytes.
+     */
+    public static Mono<ByteBuffer> read(final ContentAdapter contentAdapter, final ContentRequest contentRequest, final long position, final long length) {
+        final ContentRequest rangeRequest = contentRequest.toBuilder().rangeStart(position).rangeEnd(position + length - 1).build();
+        return contentAdapter.getContent(rangeRequest)
+                .flatMap(content -> DataBufferUtils.join(content.getData()))
+                .map(buffer -> {
+                    final byte[] bytes = new byte[buffer.readableByteCount()];
+                    buffer.read(bytes);
+                    DataBufferUtils.release(buffer);
+                    return ByteBuffer.wrap(bytes);
+                });
+    }
+
+    private static Mono<List<Mp4BoxParser.BoxHeader>> topLevelBoxes(final ContentAdapter contentAdapter, final ContentRequest contentRequest, final long fileSize,
+                                                                     final long position, final List<Mp4BoxParser.BoxHeader> boxes) {
+        if (position + 8 > fileSize || boxes.size() >= MAX_TOP_LEVEL_BOXES) {
+            return Mono.just(boxes);
+        }
+        return read(contentAdapter, contentRequest, position, Math.min(Mp4BoxParser.BOX_HEADER_SIZE, fileSize - position)).flatMap(bytes -> {
+            final Mp4BoxParser.BoxHeader header = Mp4BoxParser.readBoxHeader(bytes, position, fileSize);
+            if (header == null) {
+                return Mono.just(boxes);
+            }
+            boxes.add(header);
+            return topLevelBoxes(contentAdapter, contentRequest, fileSize, header.end(), boxes);
+        });
+    }
+}
@@ -0,0 +1,102 @@
+package com.ask.home.videostream.mp4;
+
+import lombok.Getter;
+
+import java.util.Arrays;
+
+/**
+ * Seek index of an MP4 (ISO-BMFF) file: where its {@code moov} box is, how long it plays and the decode time and file
+ * offset of every sync sample (keyframe) of its video track.
+ */
+@Getter
+public class Mp4Index {
+
+    private final long moovOffset;
+    private final long moovSize;
+    private final long durationMillis;
+    private final long[] keyframeTimesMillis;
+    private final long[] keyframeOffsets;
+    /**
+     * Display size of the video track, 0 when unknown.
+     */
+    private final int width;
+    private final int height;
+
+    /**
+     * Keyframe of the video track.
+     *
+     * @param timeMillis decode time.
+     * @param offset     file offset of the first byte of the sample.
+     */
+    public record Keyframe(long timeMillis, long offset) {
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param moovOffset          file offset of the moov box.
+     * @param moovSize            size of the moov box.
+     * @param durationMillis      presentation duration.
+     * @param keyframeTimesMillis decode times of the keyframes, ascending.
+     * @param keyframeOffsets     file offsets of the keyframes, same order.
+     */
+    public Mp4Index(final long moovOffset, final long moovSize, final long durationMillis, final long[] keyframeTimesMillis, final long[] keyframeOffsets) {
+        this(moovOffset, moovSize, durationMillis, keyframeTimesMillis, keyframeOffsets, 0, 0);
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param moovOffset          file offset of the moov box.
+     * @param moovSize            size of the moov box.
+     * @param durationMillis      presentation duration.
+     * @param keyframeTimesMillis decode times of the keyframes, ascending.
+     * @param keyframeOffsets     file offsets of the keyframes, same order.
+     * @param width               display width of the video track.
+     * @param height              display height of the video track.
+     */
+    public Mp4Index(final long moovOffset, final long moovSize, final long durationMillis, final long[] keyframeTimesMillis, final long[] keyframeOffsets,
+                    final int width, final int height) {
+        if (keyframeTimesMillis.length != keyframeOffsets.length) {
+            throw new IllegalArgumentException("keyframe times and offsets differ in length");
+        }
+        this.moovOffset = moovOffset;
+        this.moovSize = moovSize;
+        this.durationMillis = durationMillis;
+        this.keyframeTimesMillis = keyframeTimesMillis;
+        this.keyframeOffsets = keyframeOffsets;
+        this.width = width;
+        this.height = height;
+    }
+
+    /**
+     * Number of keyframes.
+     *
+     * @return int.
+     */
+    public int getKeyframeCount() {
+        return keyframeTimesMillis.length;
+    }
+
+    /**
+     * Nearest keyframe at or before the time, the first keyframe for earlier times.
+     *
+     * @param timeMillis playback time.
+     * @return Keyframe, null when the track has no keyframe.
+     */
+    public Keyframe keyframeAt(final long timeMillis) {
+        if (keyframeTimesMillis.length == 0) {
+            return null;
+        }
+        int index = Arrays.binarySearch(keyframeTimesMillis, timeMillis);
+        if (index < 0) {
+            // insertion point - 1 is the last keyframe before the time.
+            index = Math.max(0, -index - 2);
+        }
+        // the first of equal times.
+        while (index > 0 && keyframeTimesMillis[index - 1] == keyframeTimesMillis[index]) {
+            index--;
+        }
+        return new Keyframe(keyframeTimesMillis[index], keyframeOffsets[index]);
+    }
+}
@@ -0,0 +1,137 @@
+package com.ask.home.videostream.mp4;
+
+import com.ask.home.videostream.adapter.ContentAdapter;
+import com.ask.home.videostream.catalog.CatalogListener;
+import com.ask.home.videostream.model.Content;
+import com.ask.home.videostream.model.ContentRequest;
+import lombok.extern.slf4j.Slf4j;
+import reactor.core.publisher.Mono;
+
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * {@link Mp4Index} of the catalogued contents, built on the first seek from the bytes read through the content adapter
+ * and kept next to the catalog: an entry is dropped when its content is registered again or removed, and is only
+ * reused while the ETag and the size of the content are unchanged. Concurrent first seeks share one read of the moov.
+ */
+@Slf4j
+public class Mp4IndexCache implements CatalogListener {
+
+    private final ContentAdapter contentAdapter;
+    private final Map<String, Entry> entries;
+    // indexes being read, by object key.
+    private final Map<String, Entry> reading = new HashMap<>();
+
+    /**
+     * Index of a content version, a Mono of it while being read.
+     */
+    private record Entry(String etag, long fileSize, Mp4Index index, Mono<Mp4Index> pending) {
+
+        private boolean isOf(final Content content, final long size) {
+            return fileSize == size && Objects.equals(etag, content.getEtag());
+        }
+    }
+
+    /**
+     * Constructor, listens to the catalog of the adapter.
+     *
+     * @param contentAdapter ContentAdapter reading the boxes.
+     * @param maxEntries     indexes kept, the least recently used are dropped.
+     */
+    public Mp4IndexCache(final ContentAdapter contentAdapter, final int maxEntries) {
+        this.contentAdapter = contentAdapter;
+        this.entries = new LinkedHashMap<>(64, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(final Map.Entry<String, Entry> eldest) {
+                return size() > maxEntries;
+            }
+        };
+        contentAdapter.getContentCatalog().addListener(this);
+    }
+
+    /**
+     * Index of the content, from the cache or read from its boxes.
+     *
+     * @param content        catalogued Content.
+     * @param contentRequest ContentRequest of the content, its range is ignored.
+     * @param fileSize       current size of the content.
+     * @return Mono of the Mp4Index, IllegalArgumentException when the content can't be indexed.
+     */
+    public Mono<Mp4Index> index(final Content content, final ContentRequest contentRequest, final long fileSize) {
+        final String objectKey = content.getObjectKey();
+        synchronized (entries) {
+            final Entry entry = entries.get(objectKey);
+            if (entry != null && entry.isOf(content, fileSize)) {
+                return Mono.just(entry.index());
+            }
+            final Entry inFlight = reading.get(objectKey);
+            if (inFlight != null && inFlight.isOf(content, fileSize)) {
+                return inFlight.pending();
+            }
+            final Mono<Mp4Index> pending = Mono.defer(() -> readIndex(contentRequest, fileSize))
+                    .doOnNext(index -> {
+                        log.info("Indexed {} keyframes of {}", index.getKeyframeCount(), content.getContentName());
+                        synchronized (entries) {
+                            entries.put(objectKey, new Entry(content.getEtag(), fileSize, index, null));
+                        }
+                    })
+                    .doFinally(_ -> {
+                        synchronized (entries) {
+                            final Entry finished = reading.get(objectKey);
+                            if (finished != null && finished.isOf(content, fileSize)) {
+                                reading.remove(objectKey);
+                            }
+                        }
+                    })
+                    .cache();
+            reading.put(objectKey, new Entry(content.getEtag(), fileSize, null, pending));
+            return pending;
+        }
+    }
+
+    /**
+     * Number of cached indexes.
+     *
+     * @return int.
+     */
+    public int size() {
+        synchronized (entries) {
+            return entries.size();
+        }
+    }
+
+    @Override
+    public void contentRegistered(final Content content) {
+        remove(content);
+    }
+
+    @Override
+    public void contentRemoved(final Content content) {
+        remove(content);
+    }
+
+    private void remove(final Content content) {
+        synchronized (entries) {
+            entries.remove(content.getObjectKey());
+        }
+    }
+
+    /**
+     * Find moov among the top level boxes, then read and parse it.
+     */
+    private Mono<Mp4Index> readIndex(final ContentRequest contentRequest, final long fileSize) {
+        return Mp4Boxes.topLevelBoxes(contentAdapter, contentRequest, fileSize).flatMap(boxes -> {
+            final Mp4BoxParser.BoxHeader moov = Mp4Boxes.find(boxes, "moov");
+            if (moov == null) {
+                return Mono.error(new IllegalArgumentException("No moov box in " + contentRequest.getFileName()));
+            }
+            if (moov.size() > Mp4Boxes.MAX_MOOV_SIZE) {
+                return Mono.error(new IllegalArgumentException("moov box of " + contentRequest.getFileName() + " is too large"));
+            }
+            return Mp4Boxes.read(contentAdapter, contentRequest, moov.offset(), moov.size()).map(bytes -> Mp4BoxParser.parseMoov(bytes, moov.offset()));
+        });
+    }
+}
@@ -0,0 +1,117 @@
+package com.ask.home.videostream.mp4;
+
+import lombok.Getter;
+
+import java.util.BitSet;
+
+/**
+ * Samples of a track of an MP4 file in decode order, expanded from its sample tables: where each one is in the file,
+ * its size, its duration, its composition offset and whether it is a sync sample.
+ */
+@Getter
+public class Mp4Track {
+
+    private final int trackId;
+    private final String handlerType;
+    private final long timescale;
+    /**
+     * Display size of the track, 0 when unknown.
+     */
+    private final int width;
+    private final int height;
+    /**
+     * RFC 6381 codec of the sample description, null when unknown.
+     */
+    private final String codec;
+    private final long[] offsets;
+    private final int[] sizes;
+    private final int[] durations;
+    /**
+     * Composition time offsets, null when the track has no ctts box.
+     */
+    private final int[] compositionOffsets;
+    /**
+     * Sync samples, null when every sample is one.
+     */
+    private final BitSet syncSamples;
+
+    /**
+     * Constructor.
+     *
+     * @param trackId            track_ID of the tkhd box.
+     * @param handlerType        handler type of the hdlr box.
+     * @param timescale          timescale of the mdhd box.
+     * @param width              display width of the tkhd box.
+     * @param height             display height of the tkhd box.
+     * @param codec              codec of the stsd box, null when unknown.
+     * @param offsets            file offset of every sample.
+     * @param sizes              size of every sample.
+     * @param durations          decode duration of every sample, in the timescale.
+     * @param compositionOffsets composition offset of every sample, null without ctts.
+     * @param syncSamples        sync samples, null when every sample is one.
+     */
+    public Mp4Track(final int trackId, final String handlerType, final long timescale, final int width, final int height, final String codec, final long[] offsets, final int[] sizes,
+                    final int[] durations, final int[] compositionOffsets, final BitSet syncSamples) {
+        if (offsets.length != sizes.length || durations.length != sizes.length || compositionOffsets != null && compositionOffsets.length != sizes.length) {
+            throw new IllegalArgumentException("sample offsets, sizes and durations differ in length");
+        }
+        this.trackId = trackId;
+        this.handlerType = handlerType;
+        this.timescale = timescale;
+        this.width = width;
+        this.height = height;
+        this.codec = codec;
+        this.offsets = offsets;
+        this.sizes = sizes;
+        this.durations = durations;
+        this.compositionOffsets = compositionOffsets;
+        this.syncSamples = syncSamples;
+    }
+
+    /**
+     * Number of samples.
+     *
+     * @return int.
+     */
+    public int getSampleCount() {
+        return sizes.length;
+    }
+
+    /**
+     * Whether a sample is a sync sample.
+     *
+     * @param sample index of the sample.
+     * @return boolean.
+     */
+    public boolean isSync(final int sample) {
+        return syncSamples == null || syncSamples.get(sample);
+    }
+
+    /**
+     * Whether the track is a video track.
+     *
+     * @return boolean.
+     */
+    public boolean isVideo() {
+        return "vide".equals(handlerType);
+    }
+
+    /**
+     * Whether the track is an audio track.
+     *
+     * @return boolean.
+     */
+    public boolean isAudio() {
+        return "soun".equals(handlerType);
+    }
+
+    /**
+     * Memory held by the samples.
+     *
+     * @return bytes.
+     */
+    public long bytes() {
+        return (long) sizes.length * (Long.BYTES + 2 * Integer.BYTES + (compositionOffsets == null ? 0 : Integer.BYTES))
+                + (syncSamples == null ? 0 : syncSamples.size() / 8);
+    }
+}
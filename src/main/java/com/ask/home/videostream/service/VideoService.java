@@ -1,15 +1,49 @@
 package com.ask.home.videostream.service;
 
 import com.ask.home.videostream.adapter.ContentAdapter;
+import com.ask.home.videostream.cache.ReadAheadTracker;
+import com.ask.home.videostream.catalog.CatalogPager;
+import com.ask.home.videostream.catalog.ContentCatalog;
+import com.ask.home.videostream.catalog.RenditionGroups;
+import com.ask.home.videostream.catalog.SearchIndex;
+import com.ask.home.videostream.delivery.ChunkSizer;
+import com.ask.home.videostream.hls.HlsPlaylist;
+import com.ask.home.videostream.hls.HlsPlaylistCache;
+import com.ask.home.videostream.model.ByteRange;
 import com.ask.home.videostream.model.Content;
+import com.ask.home.videostream.model.ContentPage;
+import com.ask.home.videostream.model.ContentQuery;
+import com.ask.home.videostream.model.ContentRegion;
 import com.ask.home.videostream.model.ContentRequest;
+import com.ask.home.videostream.model.SeekPosition;
+import com.ask.home.videostream.model.Title;
+import com.ask.home.videostream.model.Upload;
+import com.ask.home.videostream.mp4.FragmentedLayout;
+import com.ask.home.videostream.mp4.Mp4Index;
+import com.ask.home.videostream.mp4.Mp4IndexCache;
+import com.ask.home.videostream.upload.UploadManager;
+import com.ask.home.videostream.util.ByteRanges;
+import com.ask.home.videostream.util.HttpValidators;
+import com.ask.home.videostream.util.VideoContainer;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DefaultDataBufferFactory;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
+import org.springframework.lang.Nullable;
 import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
 
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.function.BiFunction;
 import java.util.stream.Collectors;
 
 import static com.ask.home.videostream.constants.ApplicationConstants.*;
@@ -22,11 +56,41 @@ import static com.ask.home.videostream.constants.ApplicationConstants.*;
 @Slf4j
 public class VideoService {
 
+    private static final int MAX_SEARCH_RESULTS = 100;
     private static final String CONTENT_RANGE_FORMAT = "%s %s-%s/%s";
+    private static final String UNSATISFIED_RANGE_FORMAT = "%s */%s";
+    private static final String MULTIPART_BYTERANGES = "multipart/byteranges; boundary=";
+    private static final String PART_HEADER_FORMAT = "\r\n--%s\r\n%s: %s\r\n%s: %s\r\n\r\n";
+    private static final String CLOSE_DELIMITER_FORMAT = "\r\n--%s--\r\n";
+    // the playlist is served from hls/object-key/{objectKey}/playlist.m3u8, next to its initialization section and segments.
+    private static final String HLS_INIT_URI = "init.mp4";
+    private static final String HLS_SEGMENT_URI_FORMAT = "%d.m4s";
+    private static final String HLS_SEGMENT_CONTENT_TYPE = VIDEO_CONTENT + "mp4";
+    // the master playlist is served from hls/title/{titleId}/master.m3u8.
+    private static final String HLS_VARIANT_URI_FORMAT = "../../object-key/%s/playlist.m3u8";
     private final ContentAdapter videoContentAdapter;
+    private final ReadAheadTracker readAheadTracker;
+    private final ChunkSizer chunkSizer;
+    private final Mp4IndexCache mp4IndexCache;
+    private final HlsPlaylistCache hlsPlaylistCache;
+    private final RenditionGroups renditionGroups;
+    private final SearchIndex searchIndex;
+    // null when the contents are served from a bucket, the uploads would never be served.
+    private final UploadManager uploadManager;
+    private final String cacheControl;
 
-    public VideoService(final ContentAdapter videoContentAdapter) {
+    public VideoService(final ContentAdapter videoContentAdapter, final ReadAheadTracker readAheadTracker, final ChunkSizer chunkSizer,
+                        final Mp4IndexCache mp4IndexCache, final HlsPlaylistCache hlsPlaylistCache, final RenditionGroups renditionGroups,
+                        final SearchIndex searchIndex, @Nullable final UploadManager uploadManager, @Value("${video.http.cache-control:}") final String cacheControl) {
         this.videoContentAdapter = videoContentAdapter;
+        this.readAheadTracker = readAheadTracker;
+        this.chunkSizer = chunkSizer;
+        this.mp4IndexCache = mp4IndexCache;
+        this.hlsPlaylistCache = hlsPlaylistCache;
+        this.renditionGroups = renditionGroups;
+        this.searchIndex = searchIndex;
+        this.uploadManager = uploadManager;
+        this.cacheControl = cacheControl;
     }
 
     /**
@@ -34,15 +98,26 @@ public class VideoService {
      *
      * @param range     Range of the content size.
      * @param objectKey Object Key
-     * @return byte array of video with ResponseEntity.
+     * @param clientId  client making the request, for the read-ahead.
+     * @return streamed video bytes with ResponseEntity.
      */
-    public ResponseEntity<byte[]> prepareContentByObjectKey(final String range, final String objectKey) {
-        final Content content = videoContentAdapter.findFileByKey(objectKey);
-        if (content == null) {
-            return ResponseEntity.notFound().build();
-        }
-        final ContentRequest contentRequest = ContentRequest.builder().fileName(content.getContentName()).fileType(content.getContentType()).filePath(content.getContentPath()).build();
-        return prepareContent(range, contentRequest);
+    public Mono<ResponseEntity<ContentRegion>> prepareContentByObjectKey(final String range, final String objectKey, final String clientId) {
+        return prepareContentByObjectKey(range, objectKey, clientId, HttpHeaders.EMPTY);
+    }
+
+    /**
+     * Method to get the video data by the Object Key, honouring the conditional headers of the request.
+     *
+     * @param range          Range of the content size.
+     * @param objectKey      Object Key
+     * @param clientId       client making the request, for the read-ahead.
+     * @param requestHeaders headers of the request, for If-None-Match, If-Modified-Since and If-Range.
+     * @return streamed video bytes with ResponseEntity.
+     */
+    public Mono<ResponseEntity<ContentRegion>> prepareContentByObjectKey(final String range, final String objectKey, final String clientId, final HttpHeaders requestHeaders) {
+        return videoContentAdapter.findFileByKey(objectKey)
+                .flatMap(content -> prepareContent(range, requestHeaders, contentRequest(content), content, clientId))
+                .defaultIfEmpty(ResponseEntity.notFound().build());
     }
 
     /**
@@ -51,101 +126,522 @@ public class VideoService {
      * @param range           Range of the content size.
      * @param filePathAndName relative path of the file and file name
      * @param fileType        File Type
-     * @return byte array of video with ResponseEntity.
+     * @param clientId        client making the request, for the read-ahead.
+     * @return streamed video bytes with ResponseEntity.
+     */
+    public Mono<ResponseEntity<ContentRegion>> prepareContentByFilePath(final String range, final String filePathAndName, final String fileType, final String clientId) {
+        return prepareContentByFilePath(range, filePathAndName, fileType, clientId, HttpHeaders.EMPTY);
+    }
+
+    /**
+     * Get the Content by the path, honouring the conditional headers of the request.
+     *
+     * @param range           Range of the content size.
+     * @param filePathAndName relative path of the file and file name
+     * @param fileType        File Type
+     * @param clientId        client making the request, for the read-ahead.
+     * @param requestHeaders  headers of the request, for If-None-Match, If-Modified-Since and If-Range.
+     * @return streamed video bytes with ResponseEntity.
      */
-    public ResponseEntity<byte[]> prepareContentByFilePath(final String range, final String filePathAndName, final String fileType) {
+    public Mono<ResponseEntity<ContentRegion>> prepareContentByFilePath(final String range, final String filePathAndName, final String fileType, final String clientId, final HttpHeaders requestHeaders) {
         final String[] filePathAndNameSplit = filePathAndName.split("\\+");
         final String fileName = filePathAndNameSplit[filePathAndNameSplit.length - 1];
         final String filePath = Arrays.stream(filePathAndNameSplit).limit(filePathAndNameSplit.length - 1).collect(Collectors.joining("/"));
         final String fileNameAndType = String.format("%s.%s", fileName, fileType);
 
         final ContentRequest contentRequest = ContentRequest.builder().fileName(fileNameAndType).fileType(fileType).filePath(filePath).build();
-        return prepareContent(range, contentRequest);
+        // catalogued files get their object key and validators, so they are cached like the object key requests.
+        return videoContentAdapter.findFileByPath(ContentCatalog.relativePath(filePath, fileNameAndType))
+                .doOnNext(content -> contentRequest.setObjectKey(content.getObjectKey()))
+                .map(Optional::of)
+                .defaultIfEmpty(Optional.empty())
+                .flatMap(catalogued -> prepareContent(range, requestHeaders, contentRequest, catalogued.orElse(null), clientId));
     }
 
     /**
      * Get the content based on the request Object(ContentRequest)
      *
      * @param range          Range of the content size.
+     * @param requestHeaders headers of the request.
      * @param contentRequest Content Data.
-     * @return byte array of video with ResponseEntity.
+     * @param catalogued     catalogued Content giving the validators, null when not catalogued.
+     * @param clientId       client making the request.
+     * @return streamed video bytes with ResponseEntity.
      */
-    private ResponseEntity<byte[]> prepareContent(final String range, final ContentRequest contentRequest) {
+    private Mono<ResponseEntity<ContentRegion>> prepareContent(final String range, final HttpHeaders requestHeaders, final ContentRequest contentRequest, final Content catalogued, final String clientId) {
+        contentRequest.setClientId(clientId);
+        return videoContentAdapter.getContentSize(contentRequest)
+                .flatMap(fileSize -> {
+                    if (fileSize < 1) {
+                        return Mono.error(new RuntimeException("Not a valid file size"));
+                    }
 
-        try {
+                    // a catalog entry lagging behind the file would validate the old bytes.
+                    final Content validated = catalogued != null && catalogued.getEtag() != null && fileSize.equals(catalogued.getTotalContentSize()) ? catalogued : null;
+                    final String etag = validated == null ? null : validated.getEtag();
+                    final Long lastModified = validated == null ? null : validated.getLastModified();
+                    if (validated != null && HttpValidators.notModified(requestHeaders, etag, lastModified)) {
+                        return Mono.just(validators(ResponseEntity.status(HttpStatus.NOT_MODIFIED), validated).<ContentRegion>build());
+                    }
 
-            final Long fileSize = videoContentAdapter.getContentSize(contentRequest);
-            if (fileSize < 1) {
-                throw new RuntimeException("Not a valid file size");
-            }
+                    // a failed If-Range gets the whole new representation with a 200, a partial one would be spliced into the old copy.
+                    final boolean wholeContent = !HttpValidators.rangeApplies(requestHeaders, etag, lastModified);
+                    final List<ByteRange> ranges = wholeContent ? List.of(new ByteRange(0, fileSize - 1))
+                            : ByteRanges.parse(range, fileSize, () -> chunkSizer.chunkSize(clientId));
+                    if (ranges.isEmpty()) {
+                        return Mono.just(ResponseEntity.status(HttpStatus.REQUESTED_RANGE_NOT_SATISFIABLE).header(CONTENT_RANGE, String.format(UNSATISFIED_RANGE_FORMAT, BYTES, fileSize)).<ContentRegion>build());
+                    }
+                    if (ranges.size() > 1) {
+                        return Mono.just(prepareMultipartResponseEntity(ranges, contentRequest, fileSize, validated, clientId));
+                    }
 
-            prepareContentRange(range, contentRequest);
+                    prepareContentRange(ranges.getFirst(), contentRequest, clientId);
 
-            final Content content = videoContentAdapter.getContent(contentRequest);
-            content.setContentType(contentRequest.getFileType());
-            content.setTotalContentSize(fileSize);
-            return prepareResponseEntity(content);
-        } catch (Exception exception) {
-            log.error("Exception while reading the file {}", exception.getMessage());
-            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build();
-        }
+                    return videoContentAdapter.getContent(contentRequest).map(content -> {
+                        content.setContentType(contentRequest.getFileType());
+                        content.setTotalContentSize(fileSize);
+                        return prepareResponseEntity(content, validated, clientId, wholeContent);
+                    });
+                })
+                .onErrorResume(exception -> {
+                    log.error("Exception while reading the file {}", exception.getMessage());
+                    return Mono.just(ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build());
+                });
     }
 
     /**
      * Prepare the response Entity
      *
-     * @param content Content
+     * @param content   Content
+     * @param validated catalogued Content giving the validators, may be null.
+     * @param clientId     client receiving the content.
+     * @param wholeContent whether the whole content is sent as a 200, without Content-Range.
      * @return ResponseEntity
      */
-    private ResponseEntity<byte[]> prepareResponseEntity(final Content content) {
+    private ResponseEntity<ContentRegion> prepareResponseEntity(final Content content, final Content validated, final String clientId, final boolean wholeContent) {
         HttpStatus httpStatus = HttpStatus.PARTIAL_CONTENT;
-        if (content.getRangeEnd() != null && content.getRangeEnd() >= content.getTotalContentSize()) {
+        if (wholeContent || content.getRangeEnd() != null && content.getRangeEnd() >= content.getTotalContentSize()) {
             httpStatus = HttpStatus.OK;
         }
 
-        return ResponseEntity.status(httpStatus).header(CONTENT_TYPE, VIDEO_CONTENT + content.getContentType()).header(ACCEPT_RANGES, BYTES).header(CONTENT_LENGTH, String.valueOf(content.getContentLength())).header(CONTENT_RANGE, String.format(CONTENT_RANGE_FORMAT, BYTES, content.getRangeStart(), content.getRangeEnd(), content.getTotalContentSize())).body(content.getContent());
+        final ContentRegion contentRegion = ContentRegion.builder().data(content.getData()).file(content.getLocalFile()).position(content.getFilePosition() != null ? content.getFilePosition() : content.getRangeStart()).count(content.getContentLength()).clientId(clientId).build();
+        final ResponseEntity.BodyBuilder builder = validators(ResponseEntity.status(httpStatus), validated).header(CONTENT_TYPE, VIDEO_CONTENT + content.getContentType()).header(ACCEPT_RANGES, BYTES).header(CONTENT_LENGTH, String.valueOf(content.getContentLength()));
+        if (!wholeContent) {
+            builder.header(CONTENT_RANGE, String.format(CONTENT_RANGE_FORMAT, BYTES, content.getRangeStart(), content.getRangeEnd(), content.getTotalContentSize()));
+        }
+        return builder.body(contentRegion);
+    }
+
+    /**
+     * Prepare the multipart/byteranges response, every part read from the adapter when the previous one is written.
+     *
+     * @param ranges         coalesced ranges, at least two.
+     * @param contentRequest ContentRequest.
+     * @param fileSize       size of the content.
+     * @param validated      catalogued Content giving the validators, may be null.
+     * @param clientId       client receiving the content.
+     * @return ResponseEntity
+     */
+    private ResponseEntity<ContentRegion> prepareMultipartResponseEntity(final List<ByteRange> ranges, final ContentRequest contentRequest, final long fileSize, final Content validated, final String clientId) {
+        final String boundary = UUID.randomUUID().toString().replace("-", "");
+        final String contentType = VIDEO_CONTENT + contentRequest.getFileType();
+        final List<Flux<DataBuffer>> parts = new ArrayList<>(ranges.size() + 1);
+        long contentLength = 0;
+        for (ByteRange range : ranges) {
+            final byte[] partHeader = String.format(PART_HEADER_FORMAT, boundary, CONTENT_TYPE, contentType, CONTENT_RANGE, String.format(CONTENT_RANGE_FORMAT, BYTES, range.getStart(), range.getEnd(), fileSize))
+                    .getBytes(StandardCharsets.US_ASCII);
+            final ContentRequest partRequest = contentRequest.toBuilder().rangeStart(range.getStart()).rangeEnd(range.getEnd()).build();
+            parts.add(Flux.concat(Mono.fromSupplier(() -> DefaultDataBufferFactory.sharedInstance.wrap(partHeader)),
+                    Mono.defer(() -> videoContentAdapter.getContent(partRequest)).flatMapMany(Content::getData)));
+            contentLength += partHeader.length + range.length();
+        }
+        final byte[] closeDelimiter = String.format(CLOSE_DELIMITER_FORMAT, boundary).getBytes(StandardCharsets.US_ASCII);
+        parts.add(Flux.defer(() -> Flux.just(DefaultDataBufferFactory.sharedInstance.wrap(closeDelimiter))));
+        contentLength += closeDelimiter.length;
+
+        final ContentRegion contentRegion = ContentRegion.builder().data(Flux.concat(parts)).count(contentLength).clientId(clientId).build();
+        return validators(ResponseEntity.status(HttpStatus.PARTIAL_CONTENT), validated).header(CONTENT_TYPE, MULTIPART_BYTERANGES + boundary).header(ACCEPT_RANGES, BYTES).header(CONTENT_LENGTH, String.valueOf(contentLength)).body(contentRegion);
+    }
+
+    /**
+     * Add the cache policy and the validators of the content.
+     *
+     * @param builder   BodyBuilder.
+     * @param validated catalogued Content giving the ETag and Last-Modified, may be null.
+     * @return the builder.
+     */
+    private ResponseEntity.BodyBuilder validators(final ResponseEntity.BodyBuilder builder, final Content validated) {
+        if (cacheControl != null && !cacheControl.isBlank()) {
+            builder.header(HttpHeaders.CACHE_CONTROL, cacheControl);
+        }
+        if (validated != null) {
+            builder.eTag(validated.getEtag());
+            if (validated.getLastModified() != null) {
+                builder.lastModified(validated.getLastModified());
+            }
+        }
+        return builder;
     }
 
     /**
      * Prepare the request
      *
-     * @param range          String.
+     * @param range          resolved ByteRange.
      * @param contentRequest ContentRequest.
+     * @param clientId       client making the request.
      */
-    private void prepareContentRange(final String range, final ContentRequest contentRequest) {
-        // if range doesn't present default to chunk size.
-        if (range == null) {
-            contentRequest.setRangeStart(0L);
-            contentRequest.setRangeEnd(CHUNK_SIZE);
-        } else {
-            //format Range: bytes=0-499
-            String[] ranges = range.split("-");
-            long rangeStart = Long.parseLong(ranges[0].substring(6));
-            // default rangeEnd with chunk size
-            long rangeEnd = rangeStart + CHUNK_SIZE;
-
-            // if range end present in the request then pick from there
-            if (ranges.length > 1) {
-                rangeEnd = Long.parseLong(ranges[1]);
+    private void prepareContentRange(final ByteRange range, final ContentRequest contentRequest, final String clientId) {
+        contentRequest.setRangeStart(range.getStart());
+        contentRequest.setRangeEnd(range.getEnd());
+        readAhead(contentRequest, clientId);
+    }
+
+    /**
+     * Prefetch the next ranges when the client plays the content sequentially.
+     *
+     * @param contentRequest ContentRequest with the requested range.
+     * @param clientId       client making the request.
+     */
+    private void readAhead(final ContentRequest contentRequest, final String clientId) {
+        final int depth = readAheadTracker.record(clientId, contentRequest.getObjectKey(), contentRequest.getRangeStart(), contentRequest.getRangeEnd());
+        if (depth > 0) {
+            final long rangeLength = contentRequest.getRangeEnd() - contentRequest.getRangeStart() + 1;
+            videoContentAdapter.prefetch(contentRequest, contentRequest.getRangeEnd() + 1, contentRequest.getRangeEnd() + depth * rangeLength);
+        }
+    }
+
+    /**
+     * Byte offset to stream from to play the content from a time: the keyframe at or before it, found in the index of
+     * the MP4 boxes.
+     *
+     * @param objectKey Object Key
+     * @param seconds   playback time in seconds.
+     * @return SeekPosition with ResponseEntity, 422 when the content can't be indexed.
+     */
+    public Mono<ResponseEntity<SeekPosition>> seekByObjectKey(final String objectKey, final double seconds) {
+        if (!(seconds >= 0) || Double.isInfinite(seconds)) {
+            return Mono.just(ResponseEntity.badRequest().build());
+        }
+        final long timeMillis = (long) (seconds * 1000);
+        return videoContentAdapter.findFileByKey(objectKey)
+                .flatMap(content -> {
+                    if (!isIsoBaseMedia(content)) {
+                        return Mono.just(ResponseEntity.unprocessableEntity().<SeekPosition>build());
+                    }
+                    final ContentRequest contentRequest = contentRequest(content);
+                    return videoContentAdapter.getContentSize(contentRequest)
+                            .flatMap(fileSize -> mp4IndexCache.index(content, contentRequest, fileSize))
+                            .map(index -> seekPosition(objectKey, timeMillis, index))
+                            .onErrorResume(IllegalArgumentException.class, exception -> {
+                                log.warn("Can't seek in {}: {}", content.getContentName(), exception.getMessage());
+                                return Mono.just(ResponseEntity.unprocessableEntity().build());
+                            });
+                })
+                .defaultIfEmpty(ResponseEntity.notFound().build())
+                .onErrorResume(exception -> {
+                    log.error("Exception while indexing the file {}", exception.getMessage());
+                    return Mono.just(ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build());
+                });
+    }
+
+    /**
+     * HLS media playlist of the content: fragmented MP4 segments cut at its keyframes, served by
+     * {@link #hlsSegmentByObjectKey(String, int, String)} after the initialization section of {@link #hlsInitByObjectKey(String)}.
+     *
+     * @param objectKey Object Key
+     * @return playlist text with ResponseEntity, 422 when the content can't be segmented.
+     */
+    public Mono<ResponseEntity<String>> hlsPlaylistByObjectKey(final String objectKey) {
+        return hlsLayout(objectKey, (content, layout) -> Mono.just(validators(ResponseEntity.ok(), null).header(CONTENT_TYPE, HlsPlaylist.CONTENT_TYPE)
+                .body(HlsPlaylist.render(layout, HLS_INIT_URI, HLS_SEGMENT_URI_FORMAT))));
+    }
+
+    /**
+     * HLS initialization section of the content: its ftyp box and its moov box with the sample tables emptied.
+     *
+     * @param objectKey Object Key
+     * @return init section bytes with ResponseEntity, 422 when the content can't be segmented.
+     */
+    public Mono<ResponseEntity<ContentRegion>> hlsInitByObjectKey(final String objectKey) {
+        return hlsLayout(objectKey, (content, layout) -> {
+            final byte[] initSection = layout.getInitSection();
+            final ContentRegion contentRegion = ContentRegion.builder().data(Flux.defer(() -> Flux.just(DefaultDataBufferFactory.sharedInstance.wrap(initSection))))
+                    .count(initSection.length).build();
+            return Mono.just(validators(ResponseEntity.ok(), content).header(CONTENT_TYPE, HLS_SEGMENT_CONTENT_TYPE).header(CONTENT_LENGTH, String.valueOf(initSection.length))
+                    .body(contentRegion));
+        });
+    }
+
+    /**
+     * HLS segment of the content: the moof box describing its samples, then its bytes of the content as an mdat box.
+     *
+     * @param objectKey Object Key
+     * @param segment   index of the segment in the playlist.
+     * @param clientId  client making the request.
+     * @return segment bytes with ResponseEntity, 404 for a segment out of the playlist, 422 when the content can't be segmented.
+     */
+    public Mono<ResponseEntity<ContentRegion>> hlsSegmentByObjectKey(final String objectKey, final int segment, final String clientId) {
+        return hlsLayout(objectKey, (content, layout) -> {
+            if (segment < 0 || segment >= layout.getSegments().size()) {
+                return Mono.just(ResponseEntity.notFound().build());
             }
+            final FragmentedLayout.Segment range = layout.getSegments().get(segment);
+            final byte[] fragmentHeader = layout.fragmentHeader(segment);
+            final Flux<DataBuffer> media = range.length() == 0 ? Flux.empty()
+                    : Mono.defer(() -> videoContentAdapter.getContent(contentRequest(content).toBuilder().rangeStart(range.offset()).rangeEnd(range.offset() + range.length() - 1).clientId(clientId).build()))
+                    .flatMapMany(Content::getData);
+            final long contentLength = fragmentHeader.length + range.length();
+            final ContentRegion contentRegion = ContentRegion.builder().data(Flux.concat(Mono.fromSupplier(() -> DefaultDataBufferFactory.sharedInstance.wrap(fragmentHeader)), media))
+                    .count(contentLength).clientId(clientId).build();
+            return Mono.just(validators(ResponseEntity.ok(), content).header(CONTENT_TYPE, HLS_SEGMENT_CONTENT_TYPE).header(CONTENT_LENGTH, String.valueOf(contentLength))
+                    .body(contentRegion));
+        });
+    }
+
+    /**
+     * Respond with the fragmented layout of an MP4 content.
+     *
+     * @param objectKey Object Key
+     * @param response  response built from the catalogued content and its layout.
+     * @return ResponseEntity, 404 for an unknown content, 422 when the content can't be segmented.
+     */
+    private <T> Mono<ResponseEntity<T>> hlsLayout(final String objectKey, final BiFunction<Content, FragmentedLayout, Mono<ResponseEntity<T>>> response) {
+        return videoContentAdapter.findFileByKey(objectKey)
+                .flatMap(content -> {
+                    if (!isIsoBaseMedia(content)) {
+                        return Mono.just(ResponseEntity.unprocessableEntity().<T>build());
+                    }
+                    final ContentRequest contentRequest = contentRequest(content);
+                    return videoContentAdapter.getContentSize(contentRequest)
+                            .flatMap(fileSize -> hlsPlaylistCache.layout(content, contentRequest, fileSize))
+                            .flatMap(layout -> response.apply(content, layout))
+                            .onErrorResume(IllegalArgumentException.class, exception -> {
+                                log.warn("Can't segment {}: {}", content.getContentName(), exception.getMessage());
+                                return Mono.just(ResponseEntity.unprocessableEntity().build());
+                            });
+                })
+                .defaultIfEmpty(ResponseEntity.notFound().build())
+                .onErrorResume(exception -> {
+                    log.error("Exception while segmenting the file {}", exception.getMessage());
+                    return Mono.just(ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build());
+                });
+    }
+
+    /**
+     * HLS master playlist of a title, one variant per rendition that can be segmented.
+     *
+     * @param titleId title id.
+     * @return playlist text with ResponseEntity, 422 when no rendition can be segmented.
+     */
+    public Mono<ResponseEntity<String>> hlsMasterPlaylistByTitleId(final String titleId) {
+        final Title title = renditionGroups.findByTitleId(titleId);
+        if (title == null || title.getRenditions().isEmpty()) {
+            return Mono.just(ResponseEntity.notFound().build());
+        }
+        return Flux.fromIterable(title.getRenditions())
+                .map(Title.Rendition::content)
+                .filter(VideoService::isIsoBaseMedia)
+                .concatMap(content -> {
+                    final ContentRequest contentRequest = contentRequest(content);
+                    return videoContentAdapter.getContentSize(contentRequest)
+                            .flatMap(fileSize -> hlsPlaylistCache.layout(content, contentRequest, fileSize))
+                            .map(layout -> HlsPlaylist.variant(layout, String.format(HLS_VARIANT_URI_FORMAT, content.getObjectKey())))
+                            .onErrorResume(IllegalArgumentException.class, exception -> {
+                                log.warn("Leaving {} out of {}: {}", content.getContentName(), title.getTitleName(), exception.getMessage());
+                                return Mono.empty();
+                            });
+                })
+                .collectList()
+                .map(variants -> variants.isEmpty() ? ResponseEntity.unprocessableEntity().<String>build()
+                        : validators(ResponseEntity.ok(), null).header(CONTENT_TYPE, HlsPlaylist.CONTENT_TYPE).body(HlsPlaylist.renderMaster(variants)))
+                .onErrorResume(exception -> {
+                    log.error("Exception while segmenting the title {}", exception.getMessage());
+                    return Mono.just(ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build());
+                });
+    }
+
+    /**
+     * List the titles stored in several renditions.
+     *
+     * @return Mono of ResponseEntity<List < Title>>
+     */
+    public Mono<ResponseEntity<List<Title>>> getAllTitles() {
+        final List<Title> titles = renditionGroups.titles();
+        return Mono.just(titles.isEmpty() ? ResponseEntity.noContent().build() : ResponseEntity.ok(titles));
+    }
 
-            // Get the minimum of file size or rangeEnd.
-            rangeEnd = Math.min(rangeEnd, videoContentAdapter.getContentSize(contentRequest) - 1);
-            contentRequest.setRangeStart(rangeStart);
-            contentRequest.setRangeEnd(rangeEnd);
+    private static boolean isIsoBaseMedia(final Content content) {
+        return VideoContainer.fromExtension(content.getContentType()).map(VideoContainer::isIsoBaseMedia).orElse(false);
+    }
+
+    private static ContentRequest contentRequest(final Content content) {
+        return ContentRequest.builder().fileName(content.getContentName()).fileType(content.getContentType()).filePath(content.getContentPath()).objectKey(content.getObjectKey()).build();
+    }
+
+    private static ResponseEntity<SeekPosition> seekPosition(final String objectKey, final long timeMillis, final Mp4Index index) {
+        final Mp4Index.Keyframe keyframe = index.keyframeAt(timeMillis);
+        if (keyframe == null) {
+            return ResponseEntity.unprocessableEntity().build();
         }
+        return ResponseEntity.ok(SeekPosition.builder().objectKey(objectKey).time(timeMillis).keyframeTime(keyframe.timeMillis()).offset(keyframe.offset())
+                .range(String.format("%s=%s-", BYTES, keyframe.offset())).duration(index.getDurationMillis()).moovOffset(index.getMoovOffset()).moovSize(index.getMoovSize()).build());
     }
 
     /**
      * List Contents
      *
-     * @return ResponseEntity<List < Content>>
+     * @return Mono of ResponseEntity<List < Content>>
+     */
+    public Mono<ResponseEntity<List<Content>>> getAllContents() {
+        return videoContentAdapter.findAllContents().collectList().map(contentList -> {
+            if (contentList.isEmpty()) {
+                return ResponseEntity.noContent().<List<Content>>build();
+            }
+            return ResponseEntity.ok(contentList);
+        });
+    }
+
+    /**
+     * Page of the catalogued contents matching the query.
+     *
+     * @param query ContentQuery.
+     * @return Mono of ResponseEntity<ContentPage>, 400 on an invalid limit or cursor.
+     */
+    public Mono<ResponseEntity<ContentPage>> getContentPage(final ContentQuery query) {
+        try {
+            CatalogPager.validate(query);
+        } catch (IllegalArgumentException illegalArgumentException) {
+            log.debug("Invalid catalog query {}", illegalArgumentException.getMessage());
+            return Mono.just(ResponseEntity.badRequest().build());
+        }
+        return CatalogPager.page(videoContentAdapter.findAllContents(), query).map(ResponseEntity::ok);
+    }
+
+    /**
+     * Catalogued contents matching the filters of the query, streamed in catalog order.
+     *
+     * @param query ContentQuery, its order and cursor are ignored.
+     * @return Mono of ResponseEntity<Flux < Content>>, 400 on a limit below 1.
+     */
+    public Mono<ResponseEntity<Flux<Content>>> streamContents(final ContentQuery query) {
+        // no page size bound, the stream holds one content at a time.
+        if (query.getLimit() != null && query.getLimit() < 1) {
+            return Mono.just(ResponseEntity.badRequest().build());
+        }
+        return Mono.just(ResponseEntity.ok(CatalogPager.filter(videoContentAdapter.findAllContents(), query)));
+    }
+
+    /**
+     * Search the catalogued contents by the words of their names and paths.
+     *
+     * @param query words, the last one possibly unfinished.
+     * @param limit matches returned, at most 100.
+     * @return Mono of ResponseEntity<List < Content>>, best first, 400 on a blank query or a limit out of range.
      */
-    public ResponseEntity<List<Content>> getAllContents() {
-        List<Content> contentList = videoContentAdapter.findAllContents();
-        if (contentList.isEmpty()) {
-            return ResponseEntity.noContent().build();
+    public Mono<ResponseEntity<List<Content>>> search(final String query, final int limit) {
+        if (query == null || query.isBlank() || limit < 1 || limit > MAX_SEARCH_RESULTS) {
+            return Mono.just(ResponseEntity.badRequest().build());
+        }
+        return Mono.fromSupplier(() -> ResponseEntity.ok(searchIndex.search(query, limit)));
+    }
+
+    /**
+     * Start a resumable upload.
+     *
+     * @param path path of the content inside the content root.
+     * @param size size of the content in bytes.
+     * @return Mono of ResponseEntity<Upload>, 201, 400 on an invalid path or size, 409 when the path is taken, 501 when
+     * uploads are disabled.
+     */
+    public Mono<ResponseEntity<Upload>> createUpload(final String path, final long size) {
+        if (uploadManager == null) {
+            return uploadsDisabled();
+        }
+        return uploadManager.create(path, size)
+                .map(upload -> ResponseEntity.status(HttpStatus.CREATED).body(upload))
+                .onErrorResume(this::uploadError);
+    }
+
+    /**
+     * Write a part of an upload, streamed to disk as it arrives.
+     *
+     * @param uploadId upload id.
+     * @param offset   position of the part in the content.
+     * @param data     bytes of the part.
+     * @return Mono of ResponseEntity<Upload>, 400 when the part goes beyond the size, 404 for an unknown upload, 501 when
+     * uploads are disabled.
+     */
+    public Mono<ResponseEntity<Upload>> uploadPart(final String uploadId, final long offset, final Flux<DataBuffer> data) {
+        if (uploadManager == null) {
+            return uploadsDisabled();
+        }
+        return uploadManager.write(uploadId, offset, data)
+                .map(ResponseEntity::ok)
+                .defaultIfEmpty(ResponseEntity.notFound().build())
+                .onErrorResume(this::uploadError);
+    }
+
+    /**
+     * State of an upload, with the ranges still to send.
+     *
+     * @param uploadId upload id.
+     * @return Mono of ResponseEntity<Upload>, 404 for an unknown upload, 501 when uploads are disabled.
+     */
+    public Mono<ResponseEntity<Upload>> getUpload(final String uploadId) {
+        if (uploadManager == null) {
+            return uploadsDisabled();
+        }
+        return uploadManager.status(uploadId)
+                .map(ResponseEntity::ok)
+                .defaultIfEmpty(ResponseEntity.notFound().build());
+    }
+
+    /**
+     * Publish a complete upload, the content is catalogued at once.
+     *
+     * @param uploadId upload id.
+     * @return Mono of ResponseEntity<Content>, 201, 409 while parts are missing, 400 when the upload isn't a video, 501
+     * when uploads are disabled.
+     */
+    public Mono<ResponseEntity<Content>> completeUpload(final String uploadId) {
+        if (uploadManager == null) {
+            return uploadsDisabled();
+        }
+        return uploadManager.complete(uploadId)
+                .map(content -> ResponseEntity.status(HttpStatus.CREATED).body(content))
+                .defaultIfEmpty(ResponseEntity.notFound().build())
+                .onErrorResume(this::uploadError);
+    }
+
+    /**
+     * Drop an upload.
+     *
+     * @param uploadId upload id.
+     * @return Mono of ResponseEntity, 204, 404 for an unknown upload, 501 when uploads are disabled.
+     */
+    public Mono<ResponseEntity<Void>> abortUpload(final String uploadId) {
+        if (uploadManager == null) {
+            return uploadsDisabled();
+        }
+        return uploadManager.abort(uploadId)
+                .map(_ -> ResponseEntity.noContent().<Void>build())
+                .defaultIfEmpty(ResponseEntity.notFound().build());
+    }
+
+    private static <T> Mono<ResponseEntity<T>> uploadsDisabled() {
+        return Mono.just(ResponseEntity.status(HttpStatus.NOT_IMPLEMENTED).build());
+    }
+
+    private <T> Mono<ResponseEntity<T>> uploadError(final Throwable exception) {
+        if (exception instanceof IllegalArgumentException) {
+            log.debug("Invalid upload {}", exception.getMessage());
+            return Mono.just(ResponseEntity.badRequest().build());
+        }
+        if (exception instanceof IllegalStateException) {
+            log.debug("Conflicting upload {}", exception.getMessage());
+            return Mono.just(ResponseEntity.status(HttpStatus.CONFLICT).build());
         }
-        return ResponseEntity.ok(contentList);
+        log.error("Exception while uploading {}", exception.getMessage());
+        return Mono.just(ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build());
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,362 @@
+package com.ask.home.videostream.upload;
+
+import com.ask.home.videostream.adapter.LocalFileContentAdapter;
+import com.ask.home.videostream.model.ByteRange;
+import com.ask.home.videostream.model.Content;
+import com.ask.home.videostream.model.Upload;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
+
+import java.io.IOException;
+import java.nio.channels.AsynchronousFileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.TreeMap;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+/**
+ * Resumable uploads into the content root.
+ * <p>
+ * An upload is a file of a declared size in the upload folder of the {@link LocalFileContentAdapter}. Its parts are
+ * request bodies written straight to their offsets in the file with an {@link AsynchronousFileChannel}, in any order
+ * and in parallel, so only the buffers in flight are held in memory. The bytes that reached the disk are tracked as
+ * ranges, an interrupted part is resumed from where it stopped. A complete upload is moved into place and catalogued
+ * at once, never over an existing file. Uploads idle for longer than {@code expireAfter} are dropped, checked every
+ * minute at most.
+ */
+@Slf4j
+public class UploadManager {
+
+    private static final String PART_SUFFIX = ".part";
+    private static final Duration MAX_EXPIRE_INTERVAL = Duration.ofMinutes(1);
+    private static final Duration MIN_EXPIRE_INTERVAL = Duration.ofSeconds(1);
+
+    private final LocalFileContentAdapter localFileContentAdapter;
+    private final long maxSize;
+    private final Duration expireAfter;
+    private final Scheduler ioScheduler;
+    private final Map<String, Session> sessions = new ConcurrentHashMap<>();
+    private Disposable expirer;
+
+    /**
+     * Upload in progress, guarded by its own monitor.
+     */
+    private static final class Session {
+        private final String uploadId;
+        private final String path;
+        private final Path target;
+        private final long size;
+        private final Path file;
+        // start -> end exclusive of the received bytes, merged.
+        private final TreeMap<Long, Long> received = new TreeMap<>();
+        private int writing;
+        private boolean publishing;
+        private long lastActive = System.nanoTime();
+
+        private Session(final String uploadId, final String path, final Path target, final long size, final Path file) {
+            this.uploadId = uploadId;
+            this.path = path;
+            this.target = target;
+            this.size = size;
+            this.file = file;
+        }
+
+        private synchronized void receive(final long start, final long end) {
+            lastActive = System.nanoTime();
+            if (end <= start) {
+                return;
+            }
+            long mergedStart = start;
+            long mergedEnd = end;
+            Map.Entry<Long, Long> before = received.floorEntry(start);
+            if (before != null && before.getValue() >= start) {
+                mergedStart = before.getKey();
+                mergedEnd = Math.max(mergedEnd, before.getValue());
+            }
+            Map.Entry<Long, Long> next;
+            while ((next = received.ceilingEntry(mergedStart)) != null && next.getKey() <= mergedEnd) {
+                mergedEnd = Math.max(mergedEnd, next.getValue());
+                received.remove(next.getKey());
+            }
+            received.put(mergedStart, mergedEnd);
+        }
+
+        private synchronized List<ByteRange> missing() {
+            final List<ByteRange> missing = new ArrayList<>();
+            long position = 0;
+            for (Map.Entry<Long, Long> range : received.entrySet()) {
+                if (range.getKey() > position) {
+                    missing.add(new ByteRange(position, range.getKey() - 1));
+                }
+                position = range.getValue();
+            }
+            if (position < size) {
+                missing.add(new ByteRange(position, size - 1));
+            }
+            return missing;
+        }
+
+        private synchronized Upload status() {
+            final long receivedBytes = received.entrySet().stream().mapToLong(range -> range.getValue() - range.getKey()).sum();
+            return Upload.builder().uploadId(uploadId).path(path).size(size).received(receivedBytes).missing(missing()).build();
+        }
+
+        private synchronized boolean idleSince(final long nanos) {
+            return writing == 0 && !publishing && lastActive - nanos < 0;
+        }
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param localFileContentAdapter LocalFileContentAdapter receiving the contents.
+     * @param maxSize                 largest upload in bytes, 0 for no limit.
+     * @param expireAfter             idle time after which an upload is dropped.
+     * @param ioScheduler             Scheduler running the blocking file system calls.
+     */
+    public UploadManager(final LocalFileContentAdapter localFileContentAdapter, final long maxSize, final Duration expireAfter, final Scheduler ioScheduler) {
+        this.localFileContentAdapter = localFileContentAdapter;
+        this.maxSize = maxSize;
+        this.expireAfter = expireAfter;
+        this.ioScheduler = ioScheduler;
+    }
+
+    /**
+     * Delete the partial uploads left by a previous run, their sessions are gone, then expire the idle uploads in the
+     * background.
+     */
+    public void start() {
+        final Path uploadFolder = localFileContentAdapter.getUploadFolder();
+        if (Files.isDirectory(uploadFolder)) {
+            try (Stream<Path> files = Files.list(uploadFolder)) {
+                files.filter(file -> file.getFileName().toString().endsWith(PART_SUFFIX)).forEach(UploadManager::delete);
+            } catch (IOException ioException) {
+                log.warn("Can't clean the upload folder {} {}", uploadFolder, ioException.getMessage());
+            }
+        }
+        final Duration interval = expireAfter.compareTo(MAX_EXPIRE_INTERVAL) > 0 ? MAX_EXPIRE_INTERVAL
+                : expireAfter.compareTo(MIN_EXPIRE_INTERVAL) < 0 ? MIN_EXPIRE_INTERVAL : expireAfter;
+        expirer = Flux.interval(interval, interval)
+                .concatMap(_ -> Mono.fromRunnable(this::expire).subscribeOn(ioScheduler))
+                .subscribe();
+    }
+
+    /**
+     * Stop expiring the uploads.
+     */
+    public void close() {
+        if (expirer != null) {
+            expirer.dispose();
+        }
+    }
+
+    /**
+     * Start an upload.
+     *
+     * @param path path of the content inside the content root.
+     * @param size size of the content in bytes.
+     * @return Mono of the Upload, IllegalArgumentException on an invalid path or size, IllegalStateException when the
+     * path is taken.
+     */
+    public Mono<Upload> create(final String path, final long size) {
+        return Mono.fromCallable(() -> {
+            if (size < 0 || (maxSize > 0 && size > maxSize)) {
+                throw new IllegalArgumentException("Upload size out of range " + size);
+            }
+            final Path target = localFileContentAdapter.resolveContentPath(path);
+            expire();
+            final String uploadId = UUID.randomUUID().toString();
+            Files.createDirectories(localFileContentAdapter.getUploadFolder());
+            final Path file = localFileContentAdapter.getUploadFolder().resolve(uploadId + PART_SUFFIX);
+            final Session session = new Session(uploadId, path, target, size, file);
+            // spellings of the same path resolve to the same target.
+            synchronized (sessions) {
+                if (Files.exists(target) || sessions.values().stream().anyMatch(other -> other.target.equals(target))) {
+                    throw new IllegalStateException("Content path already used " + path);
+                }
+                sessions.put(uploadId, session);
+            }
+            try {
+                Files.createFile(file);
+            } catch (IOException | RuntimeException exception) {
+                sessions.remove(uploadId);
+                throw exception;
+            }
+            log.info("Upload {} of {} bytes to {}", uploadId, size, path);
+            return session.status();
+        }).subscribeOn(ioScheduler);
+    }
+
+    /**
+     * Write a part of an upload from its first byte, as the request body arrives.
+     *
+     * @param uploadId upload id.
+     * @param offset   position of the part in the content.
+     * @param data     bytes of the part, released once written.
+     * @return Mono of the Upload, empty when unknown, IllegalArgumentException when the part goes beyond the size,
+     * IllegalStateException when the upload is being published.
+     */
+    public Mono<Upload> write(final String uploadId, final long offset, final Flux<DataBuffer> data) {
+        final Session session = sessions.get(uploadId);
+        if (session == null) {
+            return Mono.empty();
+        }
+        if (offset < 0 || offset > session.size) {
+            return Mono.error(new IllegalArgumentException("Part offset out of range " + offset));
+        }
+        synchronized (session) {
+            if (session.publishing) {
+                return Mono.error(new IllegalStateException("Upload is being published " + uploadId));
+            }
+            session.writing++;
+        }
+        final AtomicBoolean finished = new AtomicBoolean();
+        final AtomicLong accepted = new AtomicLong();
+        final AtomicLong written = new AtomicLong();
+        // the write emits the buffers in order once on disk.
+        final Queue<Integer> pending = new ConcurrentLinkedQueue<>();
+        final Flux<DataBuffer> bounded = data.doOnNext(buffer -> {
+            if (offset + accepted.addAndGet(buffer.readableByteCount()) > session.size) {
+                DataBufferUtils.release(buffer);
+                throw new IllegalArgumentException("Part ends beyond the upload size " + session.size);
+            }
+            pending.add(buffer.readableByteCount());
+        });
+        return Mono.using(() -> AsynchronousFileChannel.open(session.file, StandardOpenOption.WRITE),
+                        channel -> DataBufferUtils.write(bounded, channel, offset)
+                                .doOnNext(buffer -> {
+                                    written.addAndGet(pending.remove());
+                                    DataBufferUtils.release(buffer);
+                                })
+                                .then(),
+                        UploadManager::closeQuietly)
+                .subscribeOn(ioScheduler)
+                // what reached the disk counts, even from an interrupted part.
+                .doOnTerminate(() -> finishWrite(session, offset, written.get(), finished))
+                .doOnCancel(() -> finishWrite(session, offset, written.get(), finished))
+                .then(Mono.fromCallable(session::status));
+    }
+
+    private static void finishWrite(final Session session, final long offset, final long written, final AtomicBoolean finished) {
+        if (finished.compareAndSet(false, true)) {
+            session.receive(offset, offset + written);
+            synchronized (session) {
+                session.writing--;
+            }
+        }
+    }
+
+    /**
+     * State of an upload, what a client resumes from.
+     *
+     * @param uploadId upload id.
+     * @return Mono of the Upload, empty when unknown.
+     */
+    public Mono<Upload> status(final String uploadId) {
+        return Mono.justOrEmpty(sessions.get(uploadId)).map(Session::status);
+    }
+
+    /**
+     * Publish a complete upload to its path and catalog it.
+     *
+     * @param uploadId upload id.
+     * @return Mono of the catalogued Content, empty when unknown, IllegalStateException while parts are missing or
+     * being written, IllegalArgumentException when the file isn't a video.
+     */
+    public Mono<Content> complete(final String uploadId) {
+        final Session session = sessions.get(uploadId);
+        if (session == null) {
+            return Mono.empty();
+        }
+        synchronized (session) {
+            if (session.writing > 0 || session.publishing) {
+                return Mono.error(new IllegalStateException("Parts of the upload are still being written " + uploadId));
+            }
+            if (!session.missing().isEmpty()) {
+                return Mono.error(new IllegalStateException("Parts of the upload are missing " + uploadId));
+            }
+            session.publishing = true;
+        }
+        return localFileContentAdapter.publish(session.file, session.path)
+                .doOnSuccess(_ -> sessions.remove(uploadId))
+                .doOnError(_ -> {
+                    synchronized (session) {
+                        session.publishing = false;
+                        session.lastActive = System.nanoTime();
+                    }
+                });
+    }
+
+    /**
+     * Drop an upload and its file.
+     *
+     * @param uploadId upload id.
+     * @return Mono of true, empty when unknown.
+     */
+    public Mono<Boolean> abort(final String uploadId) {
+        final Session session = sessions.remove(uploadId);
+        if (session == null) {
+            return Mono.empty();
+        }
+        return Mono.fromCallable(() -> {
+            delete(session.file);
+            return true;
+        }).subscribeOn(ioScheduler);
+    }
+
+    /**
+     * Number of uploads in progress.
+     *
+     * @return int.
+     */
+    public int size() {
+        return sessions.size();
+    }
+
+    /**
+     * Drop the uploads idle for longer than expireAfter.
+     */
+    private void expire() {
+        final long idleSince = System.nanoTime() - expireAfter.toNanos();
+        sessions.values().removeIf(session -> {
+            if (!session.idleSince(idleSince)) {
+                return false;
+            }
+            log.info("Upload {} to {} expired", session.uploadId, session.path);
+            delete(session.file);
+            return true;
+        });
+    }
+
+    private static void delete(final Path file) {
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException ioException) {
+            log.warn("Can't delete the upload {} {}", file, ioException.getMessage());
+        }
+    }
+
+    private static void closeQuietly(final AsynchronousFileChannel channel) {
+        try {
+            channel.close();
+        } catch (IOException ioException) {
+            log.warn("Error while closing the upload channel {}", ioException.getMessage());
+        }
+    }
+}
@@ -0,0 +1,132 @@
+package com.ask.home.videostream.util;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.Arrays;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.stream.Collectors;
+
+/**
+ * AWS Signature Version 4 of the requests without a body, as the S3 compatible object stores expect them.
+ */
+public final class AwsV4Signer {
+
+    /**
+     * SHA-256 of the empty payload.
+     */
+    public static final String EMPTY_PAYLOAD_HASH = "e3b0c44298fc1c149afbf4c8996fb92427ae41e4649b934ca495991b7852b855";
+    private static final String ALGORITHM = "AWS4-HMAC-SHA256";
+    private static final DateTimeFormatter AMZ_DATE = DateTimeFormatter.ofPattern("yyyyMMdd'T'HHmmss'Z'").withZone(ZoneOffset.UTC);
+    private static final HexFormat HEX = HexFormat.of();
+
+    private AwsV4Signer() {
+    }
+
+    /**
+     * Headers signing a request.
+     *
+     * @param method    HTTP method.
+     * @param uri       URI of the request, path and query already encoded as sent.
+     * @param headers   headers of the request to sign besides host, x-amz-date and x-amz-content-sha256.
+     * @param region    region of the service.
+     * @param service   service name, s3.
+     * @param accessKey access key id.
+     * @param secretKey secret access key.
+     * @param time      time of the request.
+     * @return x-amz-date, x-amz-content-sha256 and Authorization headers to add.
+     */
+    public static Map<String, String> sign(final String method, final URI uri, final Map<String, String> headers, final String region, final String service,
+                                           final String accessKey, final String secretKey, final Instant time) {
+        final String amzDate = AMZ_DATE.format(time);
+        final String date = amzDate.substring(0, 8);
+        final Map<String, String> canonicalHeaders = new TreeMap<>();
+        headers.forEach((name, value) -> canonicalHeaders.put(name.toLowerCase(Locale.ROOT), value.trim()));
+        canonicalHeaders.put("host", host(uri));
+        canonicalHeaders.put("x-amz-content-sha256", EMPTY_PAYLOAD_HASH);
+        canonicalHeaders.put("x-amz-date", amzDate);
+        final String signedHeaders = String.join(";", canonicalHeaders.keySet());
+
+        final String canonicalRequest = String.join("\n", method, uri.getRawPath() == null || uri.getRawPath().isEmpty() ? "/" : uri.getRawPath(), canonicalQuery(uri.getRawQuery()),
+                canonicalHeaders.entrySet().stream().map(header -> header.getKey() + ":" + header.getValue() + "\n").collect(Collectors.joining()), signedHeaders, EMPTY_PAYLOAD_HASH);
+        final String scope = String.join("/", date, region, service, "aws4_request");
+        final String stringToSign = String.join("\n", ALGORITHM, amzDate, scope, HEX.formatHex(sha256(canonicalRequest)));
+
+        byte[] signingKey = hmac(("AWS4" + secretKey).getBytes(StandardCharsets.UTF_8), date);
+        signingKey = hmac(signingKey, region);
+        signingKey = hmac(signingKey, service);
+        signingKey = hmac(signingKey, "aws4_request");
+        final String signature = HEX.formatHex(hmac(signingKey, stringToSign));
+
+        final Map<String, String> signed = new LinkedHashMap<>();
+        signed.put("x-amz-date", amzDate);
+        signed.put("x-amz-content-sha256", EMPTY_PAYLOAD_HASH);
+        signed.put("Authorization", ALGORITHM + " Credential=" + accessKey + "/" + scope + ", SignedHeaders=" + signedHeaders + ", Signature=" + signature);
+        return signed;
+    }
+
+    /**
+     * Host header of the URI, with the port when there is one.
+     *
+     * @param uri URI.
+     * @return String.
+     */
+    public static String host(final URI uri) {
+        return uri.getPort() == -1 ? uri.getHost() : uri.getHost() + ":" + uri.getPort();
+    }
+
+    /**
+     * Percent-encode as the signature expects: everything but the unreserved characters, and '/' when asked.
+     *
+     * @param value     String.
+     * @param keepSlash leave '/' as is, for paths.
+     * @return String.
+     */
+    public static String encode(final String value, final boolean keepSlash) {
+        final StringBuilder encoded = new StringBuilder(value.length());
+        for (byte b : value.getBytes(StandardCharsets.UTF_8)) {
+            final char c = (char) (b & 0xFF);
+            if ((c >= 'A' && c <= 'Z') || (c >= 'a' && c <= 'z') || (c >= '0' && c <= '9') || c == '-' || c == '_' || c == '.' || c == '~' || (keepSlash && c == '/')) {
+                encoded.append(c);
+            } else {
+                encoded.append('%').append(HEX.withUpperCase().toHexDigits(b));
+            }
+        }
+        return encoded.toString();
+    }
+
+    private static String canonicalQuery(final String rawQuery) {
+        if (rawQuery == null || rawQuery.isEmpty()) {
+            return "";
+        }
+        return Arrays.stream(rawQuery.split("&")).map(parameter -> parameter.contains("=") ? parameter : parameter + "=").sorted().collect(Collectors.joining("&"));
+    }
+
+    private static byte[] sha256(final String value) {
+        try {
+            return MessageDigest.getInstance("SHA-256").digest(value.getBytes(StandardCharsets.UTF_8));
+        } catch (GeneralSecurityException generalSecurityException) {
+            throw new IllegalStateException(generalSecurityException);
+        }
+    }
+
+    private static byte[] hmac(final byte[] key, final String value) {
+        try {
+            final Mac mac = Mac.getInstance("HmacSHA256");
+            mac.init(new SecretKeySpec(key, "HmacSHA256"));
+            return mac.doFinal(value.getBytes(StandardCharsets.UTF_8));
+        } catch (GeneralSecurityException generalSecurityException) {
+            throw new IllegalStateException(generalSecurityException);
+        }
+    }
+}
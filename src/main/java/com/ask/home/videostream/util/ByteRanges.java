@@ -0,0 +1,123 @@
+package com.ask.home.videostream.util;
+
+import com.ask.home.videostream.model.ByteRange;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.function.LongSupplier;
+
+/**
+ * Parses the Range header (RFC 9110 section 14.2) against the size of the content.
+ * <p>
+ * Every range of the set is resolved: {@code first-last}, {@code first-} and the suffix {@code -length}. Ranges
+ * starting beyond the content are dropped, the others are sorted and the overlapping or adjacent ones coalesced. An
+ * open-ended range gets the chunk size instead of the rest of the content, so a player asking for {@code bytes=N-}
+ * keeps streaming in chunks.
+ */
+public final class ByteRanges {
+
+    private static final String BYTES_UNIT = "bytes=";
+    // more ranges than this are served as the single range covering them.
+    static final int MAX_RANGES = 16;
+
+    private ByteRanges() {
+    }
+
+    /**
+     * Resolve the Range header.
+     *
+     * @param rangeHeader value of the Range header, may be null.
+     * @param contentSize size of the content, at least 1.
+     * @param chunkSize   size of an open-ended range, asked at most once per open-ended range.
+     * @return coalesced ranges sorted by start, empty when none is satisfiable. A missing or invalid header resolves to
+     * the first chunk.
+     */
+    public static List<ByteRange> parse(final String rangeHeader, final long contentSize, final LongSupplier chunkSize) {
+        final List<ByteRange> ranges = rangeHeader == null ? null : resolve(rangeHeader, contentSize, chunkSize);
+        if (ranges == null) {
+            // a Range header that can't be parsed is ignored.
+            return List.of(new ByteRange(0, Math.min(chunkSize.getAsLong(), contentSize - 1)));
+        }
+        return coalesce(ranges);
+    }
+
+    /**
+     * Resolve every range of the set.
+     *
+     * @return satisfiable ranges, null when the header is invalid.
+     */
+    private static List<ByteRange> resolve(final String rangeHeader, final long contentSize, final LongSupplier chunkSize) {
+        final String header = rangeHeader.trim();
+        if (!header.toLowerCase(Locale.ROOT).startsWith(BYTES_UNIT)) {
+            return null;
+        }
+        final List<ByteRange> ranges = new ArrayList<>();
+        for (String rangeSpec : header.substring(BYTES_UNIT.length()).split(",")) {
+            final String spec = rangeSpec.trim();
+            if (spec.isEmpty()) {
+                // empty list elements are allowed.
+                continue;
+            }
+            final int dash = spec.indexOf('-');
+            if (dash < 0) {
+                return null;
+            }
+            final long first = number(spec.substring(0, dash));
+            final long last = number(spec.substring(dash + 1));
+            if (dash == 0) {
+                // suffix range: the last bytes of the content
+                if (last < 0) {
+                    return null;
+                }
+                if (last > 0) {
+                    ranges.add(new ByteRange(Math.max(0, contentSize - last), contentSize - 1));
+                }
+            } else if (first < 0 || (dash < spec.length() - 1 && (last < 0 || last < first))) {
+                return null;
+            } else if (first < contentSize) {
+                final long end = dash == spec.length() - 1 ? first + chunkSize.getAsLong() : last;
+                ranges.add(new ByteRange(first, Math.min(end, contentSize - 1)));
+            }
+        }
+        return ranges;
+    }
+
+    /**
+     * Sort the ranges and merge the overlapping or adjacent ones.
+     */
+    private static List<ByteRange> coalesce(final List<ByteRange> ranges) {
+        ranges.sort(Comparator.comparingLong(ByteRange::getStart));
+        final List<ByteRange> coalesced = new ArrayList<>(ranges.size());
+        for (ByteRange range : ranges) {
+            final ByteRange previous = coalesced.isEmpty() ? null : coalesced.getLast();
+            if (previous != null && range.getStart() <= previous.getEnd() + 1) {
+                coalesced.set(coalesced.size() - 1, new ByteRange(previous.getStart(), Math.max(previous.getEnd(), range.getEnd())));
+            } else {
+                coalesced.add(range);
+            }
+        }
+        if (coalesced.size() > MAX_RANGES) {
+            return List.of(new ByteRange(coalesced.getFirst().getStart(), coalesced.getLast().getEnd()));
+        }
+        return coalesced;
+    }
+
+    /**
+     * Parse a non-negative decimal number.
+     *
+     * @return the number, -1 when empty or not a number.
+     */
+    private static long number(final String value) {
+        if (value.isEmpty() || value.length() > 18) {
+            return -1;
+        }
+        for (int i = 0; i < value.length(); i++) {
+            if (value.charAt(i) < '0' || value.charAt(i) > '9') {
+                return -1;
+            }
+        }
+        return Long.parseLong(value);
+    }
+}
@@ -8,6 +8,7 @@ import java.io.IOException;
 import java.net.URL;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
 
 import static com.ask.home.videostream.adapter.LocalFileContentAdapter.FILE_PATH_FORMAT;
 import static com.ask.home.videostream.constants.ApplicationConstants.VIDEO;
@@ -43,11 +44,20 @@ public class FileUtil {
      */
     public static boolean isVideoFile(Path path) {
         try {
-            String contentType = Files.probeContentType(path);
-            return contentType != null && contentType.startsWith("video/");
+            return isVideoFile(path, Files.readAttributes(path, BasicFileAttributes.class));
         } catch (IOException ioException) {
             log.error("Exception in when checking the file is video file {}", ioException.getMessage());
             return false;
         }
     }
+
+    /**
+     * Check the file is video from its magic bytes.
+     * @param path Path
+     * @param attributes BasicFileAttributes of the file, used to cache the result
+     * @return boolean
+     */
+    public static boolean isVideoFile(Path path, BasicFileAttributes attributes) {
+        return VideoContainerSniffer.detect(path, attributes).isPresent();
+    }
 }
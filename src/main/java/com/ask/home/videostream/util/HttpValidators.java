@@ -0,0 +1,76 @@
+package com.ask.home.videostream.util;
+
+import org.springframework.http.ETag;
+import org.springframework.http.HttpHeaders;
+
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.List;
+
+/**
+ * Validators of the contents and the evaluation of the conditional request headers (RFC 9110 section 13).
+ */
+public final class HttpValidators {
+
+    private HttpValidators() {
+    }
+
+    /**
+     * Strong entity tag of a file, changes with its identity, size or modification time.
+     *
+     * @param fileKey      file system identity of the file.
+     * @param size         size in bytes.
+     * @param lastModified epoch millis.
+     * @return quoted ETag, null without a file key.
+     */
+    public static String etag(final String fileKey, final long size, final long lastModified) {
+        if (fileKey == null) {
+            return null;
+        }
+        return "\"" + Integer.toHexString(fileKey.hashCode()) + "-" + Long.toHexString(size) + "-" + Long.toHexString(lastModified) + "\"";
+    }
+
+    /**
+     * Whether the representation the client holds is still current, If-None-Match taking precedence over
+     * If-Modified-Since.
+     *
+     * @param requestHeaders headers of the request.
+     * @param etag           current ETag, may be null.
+     * @param lastModified   current modification time in epoch millis, may be null.
+     * @return true to answer 304.
+     */
+    public static boolean notModified(final HttpHeaders requestHeaders, final String etag, final Long lastModified) {
+        final List<String> ifNoneMatch = requestHeaders.getIfNoneMatch();
+        if (!ifNoneMatch.isEmpty()) {
+            return etag != null && ifNoneMatch.stream().anyMatch(value -> ETag.parse(value).stream().anyMatch(tag -> tag.isWildcard() || tag.compare(ETag.create(etag), false)));
+        }
+        final long ifModifiedSince = requestHeaders.getIfModifiedSince();
+        return ifModifiedSince >= 0 && lastModified != null && lastModified / 1000 <= ifModifiedSince / 1000;
+    }
+
+    /**
+     * Whether the Range of the request applies: without If-Range, or when its validator still matches. An entity tag
+     * must match strongly, a date must be the exact modification time.
+     *
+     * @param requestHeaders headers of the request.
+     * @param etag           current ETag, may be null.
+     * @param lastModified   current modification time in epoch millis, may be null.
+     * @return false to ignore the Range and send the content from the start.
+     */
+    public static boolean rangeApplies(final HttpHeaders requestHeaders, final String etag, final Long lastModified) {
+        final String ifRange = requestHeaders.getFirst(HttpHeaders.IF_RANGE);
+        if (ifRange == null) {
+            return true;
+        }
+        final String validator = ifRange.trim();
+        if (validator.startsWith("\"") || validator.startsWith("W/")) {
+            return etag != null && ETag.create(validator).compare(ETag.create(etag), true);
+        }
+        try {
+            return lastModified != null && ZonedDateTime.parse(validator, DateTimeFormatter.RFC_1123_DATE_TIME).toEpochSecond() == lastModified / 1000;
+        } catch (DateTimeParseException dateTimeParseException) {
+            return false;
+        }
+    }
+}
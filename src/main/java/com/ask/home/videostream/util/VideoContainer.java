@@ -0,0 +1,46 @@
+package com.ask.home.videostream.util;
+
+import java.util.Arrays;
+import java.util.Optional;
+
+/**
+ * Video container formats recognised by the {@link VideoContainerSniffer}.
+ */
+public enum VideoContainer {
+    MP4("mp4", "m4v"),
+    MOV("mov", "qt"),
+    THREE_GP("3gp", "3g2"),
+    MKV("mkv"),
+    WEBM("webm"),
+    MPEG_TS("ts", "m2ts", "mts"),
+    MPEG_PS("mpg", "mpeg", "vob"),
+    AVI("avi"),
+    FLV("flv"),
+    ASF("wmv", "asf"),
+    OGG("ogv");
+
+    private final String[] extensions;
+
+    VideoContainer(final String... extensions) {
+        this.extensions = extensions;
+    }
+
+    /**
+     * Whether the container is made of ISO base media file format boxes.
+     *
+     * @return boolean.
+     */
+    public boolean isIsoBaseMedia() {
+        return this == MP4 || this == MOV || this == THREE_GP;
+    }
+
+    /**
+     * Container usually stored with the file extension.
+     *
+     * @param extension file extension, without the dot.
+     * @return Optional of VideoContainer.
+     */
+    public static Optional<VideoContainer> fromExtension(final String extension) {
+        return Arrays.stream(values()).filter(container -> Arrays.stream(container.extensions).anyMatch(value -> value.equalsIgnoreCase(extension))).findFirst();
+    }
+}
@@ -0,0 +1,227 @@
+package com.ask.home.videostream.util;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+
+/**
+ * Detects the video container from the magic bytes at the start of the file, independent of the MIME database of
+ * the image. Results are cached by file key and last modified time, for the most recently sniffed files.
+ */
+@Slf4j
+public class VideoContainerSniffer {
+
+    // two MPEG-TS packets plus the M2TS timestamp prefix.
+    static final int HEADER_SIZE = 400;
+    // shortest header any of the formats can be told from.
+    private static final int MIN_HEADER_SIZE = 12;
+    private static final int TS_PACKET_SIZE = 188;
+    private static final int M2TS_PACKET_SIZE = 192;
+    private static final int MAX_DETECTIONS = 65_536;
+    /**
+     * ISO-BMFF brands of video files. Brands of stills and audio (heic, mif1, avif, M4A, M4B, ...) share the ftyp box
+     * and generic compatible brands such as isom, so the major brand is checked first.
+     */
+    private static final Set<String> VIDEO_BRANDS = Set.of("isom", "iso2", "iso3", "iso4", "iso5", "iso6", "iso7", "iso8", "iso9", "mp41", "mp42", "mp71",
+            "avc1", "dash", "M4V ", "M4VH", "M4VP", "f4v ", "mmp4", "msnv", "MSNV", "XAVC", "NDAS", "qt  ", "3gp4", "3gp5", "3gp6", "3gp7", "3gg6", "3g2a",
+            "3g2b", "3g2c", "hvc1", "cmfc", "cmf2", "av01");
+    private static final Set<String> NON_VIDEO_BRANDS = Set.of("M4A ", "M4B ", "M4P ", "F4A ", "F4B ", "heic", "heix", "hevc", "hevx", "heim", "heis",
+            "mif1", "mif2", "msf1", "avif", "avis", "jpeg", "jpgs", "crx ", "caqv");
+
+    private static final ThreadLocal<ByteBuffer> HEADER_BUFFER = ThreadLocal.withInitial(() -> ByteBuffer.allocate(HEADER_SIZE));
+    private static final Map<String, Detection> DETECTIONS = new LinkedHashMap<>(1024, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(final Map.Entry<String, Detection> eldest) {
+            return size() > MAX_DETECTIONS;
+        }
+    };
+
+    private record Detection(long lastModified, long size, Optional<VideoContainer> container) {
+    }
+
+    private VideoContainerSniffer() {
+    }
+
+    /**
+     * Detect the container of the file.
+     *
+     * @param path       Path.
+     * @param attributes BasicFileAttributes of the file.
+     * @return Optional of VideoContainer, empty when the file isn't a video.
+     */
+    public static Optional<VideoContainer> detect(final Path path, final BasicFileAttributes attributes) {
+        if (!attributes.isRegularFile()) {
+            return Optional.empty();
+        }
+        final long lastModified = attributes.lastModifiedTime().toMillis();
+        final String fileKey = attributes.fileKey() == null ? path.toAbsolutePath().toString() : attributes.fileKey().toString();
+        final Detection cached;
+        synchronized (DETECTIONS) {
+            cached = DETECTIONS.get(fileKey);
+        }
+        if (cached != null && cached.lastModified() == lastModified && cached.size() == attributes.size()) {
+            return cached.container();
+        }
+        final Optional<VideoContainer> container = sniff(path);
+        synchronized (DETECTIONS) {
+            DETECTIONS.put(fileKey, new Detection(lastModified, attributes.size(), container));
+        }
+        return container;
+    }
+
+    /**
+     * Read the header of the file and detect the container.
+     *
+     * @param path Path.
+     * @return Optional of VideoContainer.
+     */
+    static Optional<VideoContainer> sniff(final Path path) {
+        final ByteBuffer header = HEADER_BUFFER.get().clear();
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            while (header.hasRemaining() && channel.read(header) > 0) {
+                // read until the buffer is full or the file ends
+            }
+        } catch (IOException ioException) {
+            log.error("Exception while reading the header of {} {}", path, ioException.getMessage());
+            return Optional.empty();
+        }
+        header.flip();
+        if (header.remaining() < MIN_HEADER_SIZE) {
+            // nothing to sniff yet (empty or still being copied), trust the extension.
+            return VideoContainer.fromExtension(extension(path));
+        }
+        return detect(header);
+    }
+
+    /**
+     * Detect the container from the header bytes.
+     *
+     * @param header ByteBuffer positioned at the start of the file.
+     * @return Optional of VideoContainer.
+     */
+    static Optional<VideoContainer> detect(final ByteBuffer header) {
+        final int length = header.remaining();
+        if (matches(header, 4, "ftyp")) {
+            return isoBaseMedia(header);
+        }
+        // QuickTime files written without ftyp start with one of the top level atoms.
+        if (matches(header, 4, "moov") || matches(header, 4, "mdat") || matches(header, 4, "wide") || matches(header, 4, "free") || matches(header, 4, "skip")) {
+            return Optional.of(VideoContainer.MOV);
+        }
+        if (unsigned(header, 0) == 0x1A && unsigned(header, 1) == 0x45 && unsigned(header, 2) == 0xDF && unsigned(header, 3) == 0xA3) {
+            return Optional.of(contains(header, "webm") ? VideoContainer.WEBM : VideoContainer.MKV);
+        }
+        if (matches(header, 0, "RIFF") && matches(header, 8, "AVI ")) {
+            return Optional.of(VideoContainer.AVI);
+        }
+        if (matches(header, 0, "FLV") && unsigned(header, 3) == 0x01) {
+            return Optional.of(VideoContainer.FLV);
+        }
+        if (unsigned(header, 0) == 0x30 && unsigned(header, 1) == 0x26 && unsigned(header, 2) == 0xB2 && unsigned(header, 3) == 0x75
+                && unsigned(header, 4) == 0x8E && unsigned(header, 5) == 0x66 && unsigned(header, 6) == 0xCF && unsigned(header, 7) == 0x11) {
+            return Optional.of(VideoContainer.ASF);
+        }
+        if (unsigned(header, 0) == 0x00 && unsigned(header, 1) == 0x00 && unsigned(header, 2) == 0x01 && unsigned(header, 3) == 0xBA) {
+            return Optional.of(VideoContainer.MPEG_PS);
+        }
+        if (matches(header, 0, "OggS") && contains(header, "theora")) {
+            return Optional.of(VideoContainer.OGG);
+        }
+        if (isTransportStream(header, 0, TS_PACKET_SIZE, length) || isTransportStream(header, 4, M2TS_PACKET_SIZE, length)) {
+            return Optional.of(VideoContainer.MPEG_TS);
+        }
+        return Optional.empty();
+    }
+
+    /**
+     * Container of an ISO-BMFF file from its ftyp box: the major brand when it is known, the first video compatible
+     * brand otherwise.
+     *
+     * @param header ByteBuffer positioned at the start of the file.
+     * @return Optional of VideoContainer, empty for stills and audio.
+     */
+    private static Optional<VideoContainer> isoBaseMedia(final ByteBuffer header) {
+        final String majorBrand = ascii(header, 8, 4);
+        if (NON_VIDEO_BRANDS.contains(majorBrand)) {
+            return Optional.empty();
+        }
+        if (VIDEO_BRANDS.contains(majorBrand)) {
+            return Optional.of(container(majorBrand));
+        }
+        final long boxSize = (long) unsigned(header, 0) << 24 | unsigned(header, 1) << 16 | unsigned(header, 2) << 8 | unsigned(header, 3);
+        final int end = (int) Math.min(boxSize, header.remaining());
+        // compatible brands follow the major brand and its minor version.
+        for (int offset = 16; offset + 4 <= end; offset += 4) {
+            final String brand = ascii(header, offset, 4);
+            if (VIDEO_BRANDS.contains(brand)) {
+                return Optional.of(container(brand));
+            }
+        }
+        return Optional.empty();
+    }
+
+    private static VideoContainer container(final String brand) {
+        if (brand.startsWith("qt")) {
+            return VideoContainer.MOV;
+        }
+        if (brand.startsWith("3g")) {
+            return VideoContainer.THREE_GP;
+        }
+        return VideoContainer.MP4;
+    }
+
+    private static boolean isTransportStream(final ByteBuffer header, final int offset, final int packetSize, final int length) {
+        if (unsigned(header, offset) != 0x47) {
+            return false;
+        }
+        // a single sync byte is too weak, the next packet has to line up.
+        return offset + packetSize < length && unsigned(header, offset + packetSize) == 0x47;
+    }
+
+    private static boolean matches(final ByteBuffer header, final int offset, final String value) {
+        if (offset + value.length() > header.remaining()) {
+            return false;
+        }
+        for (int i = 0; i < value.length(); i++) {
+            if (header.get(header.position() + offset + i) != (byte) value.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean contains(final ByteBuffer header, final String value) {
+        for (int offset = 0; offset + value.length() <= header.remaining(); offset++) {
+            if (matches(header, offset, value)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static int unsigned(final ByteBuffer header, final int offset) {
+        return offset < header.remaining() ? header.get(header.position() + offset) & 0xFF : -1;
+    }
+
+    private static String ascii(final ByteBuffer header, final int offset, final int length) {
+        final byte[] bytes = new byte[Math.max(0, Math.min(length, header.remaining() - offset))];
+        header.get(header.position() + offset, bytes);
+        return new String(bytes, StandardCharsets.US_ASCII);
+    }
+
+    private static String extension(final Path path) {
+        final String fileName = path.getFileName().toString();
+        final int index = fileName.lastIndexOf('.');
+        return index > 0 ? fileName.substring(index + 1) : "";
+    }
+}
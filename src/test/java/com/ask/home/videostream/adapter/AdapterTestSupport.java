@@ -0,0 +1,56 @@
+package com.ask.home.videostream.adapter;
+
+import com.ask.home.videostream.model.Content;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferUtils;
+
+import java.time.Duration;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Reads the contents served by the adapters and waits for their background work.
+ */
+final class AdapterTestSupport {
+
+    private static final Duration AWAIT_TIMEOUT = Duration.ofSeconds(10);
+    private static final Duration AWAIT_INTERVAL = Duration.ofMillis(5);
+
+    private AdapterTestSupport() {
+    }
+
+    /**
+     * Bytes of a content, its buffers released.
+     */
+    static byte[] read(final Content content) {
+        return read(DataBufferUtils.join(content.getData()).block());
+    }
+
+    /**
+     * Bytes of a joined buffer, released once read.
+     */
+    static byte[] read(final DataBuffer joined) {
+        assertNotNull(joined);
+        byte[] bytes = new byte[joined.readableByteCount()];
+        joined.read(bytes);
+        DataBufferUtils.release(joined);
+        return bytes;
+    }
+
+    /**
+     * Wait for a condition, failing when it isn't met within 10s.
+     */
+    static void awaitCondition(final BooleanSupplier condition) {
+        long deadline = System.nanoTime() + AWAIT_TIMEOUT.toNanos();
+        while (!condition.getAsBoolean()) {
+            if (System.nanoTime() > deadline) {
+                assertTrue(condition.getAsBoolean(), "Condition not met within " + AWAIT_TIMEOUT);
+                return;
+            }
+            LockSupport.parkNanos(AWAIT_INTERVAL.toNanos());
+        }
+    }
+}
@@ -0,0 +1,124 @@
+package com.ask.home.videostream.adapter;
+
+import com.ask.home.videostream.cache.BlockCache;
+import com.ask.home.videostream.model.Content;
+import com.ask.home.videostream.model.ContentRequest;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.core.io.buffer.DefaultDataBufferFactory;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+
+import static com.ask.home.videostream.adapter.AdapterTestSupport.awaitCondition;
+import static com.ask.home.videostream.adapter.AdapterTestSupport.read;
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+class CachingContentAdapterTest {
+
+    @TempDir
+    Path tempDir;
+
+    byte[] data = new byte[10_000];
+    BlockCache blockCache = new BlockCache(4_000, 1_000);
+    LocalFileContentAdapter localFileContentAdapter;
+    CachingContentAdapter cachingContentAdapter;
+
+    @BeforeEach
+    void setup() throws IOException {
+        new Random(3).nextBytes(data);
+        Files.write(tempDir.resolve("sample.mp4"), data);
+        localFileContentAdapter = new LocalFileContentAdapter(tempDir.toString());
+        cachingContentAdapter = new CachingContentAdapter(localFileContentAdapter, blockCache, 2_500);
+    }
+
+    @AfterEach
+    void tearDown() {
+        localFileContentAdapter.close();
+        // releases the pooled blocks, the leak detector reports those the reads didn't.
+        blockCache.clear();
+    }
+
+    @Test
+    void getContentAssemblesRangeFromBlocks() {
+        Content content = cachingContentAdapter.getContent(request("key", 1_500, 3_499)).block();
+
+        assertEquals(2_000, content.getContentLength());
+        assertNull(content.getLocalFile());
+        assertArrayEquals(Arrays.copyOfRange(data, 1_500, 3_500), read(content));
+        assertEquals(3, blockCache.getMisses());
+        assertEquals(3, blockCache.getBlockCount());
+
+        Content cached = cachingContentAdapter.getContent(request("key", 2_000, 2_999)).block();
+        assertArrayEquals(Arrays.copyOfRange(data, 2_000, 3_000), read(cached));
+        assertEquals(1, blockCache.getHits());
+    }
+
+    @Test
+    void getContentClampsLastBlockToFileSize() {
+        Content content = cachingContentAdapter.getContent(request("key", 9_500, 20_000)).block();
+
+        assertEquals(9_999, content.getRangeEnd());
+        assertArrayEquals(Arrays.copyOfRange(data, 9_500, 10_000), read(content));
+    }
+
+    @Test
+    void getContentBypassesCacheForLargeRangesAndUnknownKeys() {
+        Content large = cachingContentAdapter.getContent(request("key", 0, 4_999)).block();
+        Content unknown = cachingContentAdapter.getContent(request(null, 0, 99)).block();
+
+        assertNotNull(large.getLocalFile());
+        assertArrayEquals(Arrays.copyOfRange(data, 0, 5_000), read(large));
+        assertArrayEquals(Arrays.copyOfRange(data, 0, 100), read(unknown));
+        assertEquals(0, blockCache.getBlockCount());
+    }
+
+    @Test
+    void getContentCoalescesConcurrentReadsOfTheSameBlock() {
+        ContentAdapter delegate = mock(ContentAdapter.class);
+        Sinks.One<DataBuffer> disk = Sinks.one();
+        when(delegate.getContentSize(any())).thenReturn(Mono.just(1_000L));
+        when(delegate.getContent(any())).thenReturn(Mono.just(Content.builder().data(disk.asMono().flux()).build()));
+        CachingContentAdapter coalescing = new CachingContentAdapter(delegate, blockCache, 2_500);
+
+        // both subscriptions miss before the disk read completes.
+        CompletableFuture<DataBuffer> first = DataBufferUtils.join(coalescing.getContent(request("key", 0, 99)).block().getData()).toFuture();
+        CompletableFuture<DataBuffer> second = DataBufferUtils.join(coalescing.getContent(request("key", 100, 199)).block().getData()).toFuture();
+        disk.tryEmitValue(DefaultDataBufferFactory.sharedInstance.wrap(Arrays.copyOf(data, 1_000)));
+
+        assertArrayEquals(Arrays.copyOfRange(data, 0, 100), read(first.join()));
+        assertArrayEquals(Arrays.copyOfRange(data, 100, 200), read(second.join()));
+        verify(delegate, times(1)).getContent(any());
+        assertEquals(1, blockCache.getBlockCount());
+    }
+
+    @Test
+    void prefetchReadsBlocksAheadWithinBound() {
+        CachingContentAdapter prefetching = new CachingContentAdapter(localFileContentAdapter, blockCache, 2_500, 2_000);
+
+        prefetching.prefetch(request("key", 0, 0), 1_000, 9_999);
+        awaitCondition(() -> blockCache.getBlockCount() == 2);
+
+        assertEquals(2_000, blockCache.getUnreadPrefetchedBytes());
+        Content content = prefetching.getContent(request("key", 1_000, 1_999)).block();
+        assertArrayEquals(Arrays.copyOfRange(data, 1_000, 2_000), read(content));
+        assertEquals(1, blockCache.getHits());
+        assertEquals(1_000, blockCache.getUnreadPrefetchedBytes());
+    }
+
+    private static ContentRequest request(String objectKey, long start, long end) {
+        return ContentRequest.builder().fileName("sample.mp4").fileType("mp4").filePath("").objectKey(objectKey).rangeStart(start).rangeEnd(end).build();
+    }
+}
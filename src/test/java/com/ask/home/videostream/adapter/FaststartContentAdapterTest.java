@@ -0,0 +1,131 @@
+package com.ask.home.videostream.adapter;
+
+import com.ask.home.videostream.model.Content;
+import com.ask.home.videostream.model.ContentRequest;
+import com.ask.home.videostream.mp4.Mp4BoxParser;
+import com.ask.home.videostream.mp4.Mp4Index;
+import com.ask.home.videostream.mp4.Mp4TestFiles;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import reactor.core.publisher.Mono;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Arrays;
+
+import static com.ask.home.videostream.adapter.AdapterTestSupport.read;
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.Mockito.*;
+
+class FaststartContentAdapterTest {
+
+    @TempDir
+    Path tempDir;
+
+    LocalFileContentAdapter localFileContentAdapter;
+    FaststartContentAdapter faststartContentAdapter;
+    Content content;
+
+    @AfterEach
+    void tearDown() {
+        localFileContentAdapter.close();
+    }
+
+    @Test
+    void getContentServesTheMoovBeforeTheMediaData() throws IOException {
+        byte[] file = Mp4TestFiles.moovAtEnd(100_000);
+        start(file);
+        int moovSize = Mp4TestFiles.moov(0, 0).length;
+
+        byte[] virtual = read(faststartContentAdapter.getContent(request(0, file.length - 1)).block());
+
+        assertEquals(file.length, virtual.length);
+        assertEquals("moov", new String(virtual, 28, 4, StandardCharsets.ISO_8859_1));
+        assertEquals("mdat", new String(virtual, 24 + moovSize + 4, 4, StandardCharsets.ISO_8859_1));
+        Mp4Index index = Mp4BoxParser.parseMoov(ByteBuffer.wrap(virtual, 24, moovSize), 24);
+        for (int i = 0; i < index.getKeyframeCount(); i++) {
+            // the relocated offsets address the same samples.
+            long offset = index.getKeyframeOffsets()[i];
+            assertArrayEquals(Arrays.copyOfRange(file, (int) offset - moovSize, (int) offset - moovSize + 100), Arrays.copyOfRange(virtual, (int) offset, (int) offset + 100));
+        }
+        assertEquals(FaststartContentAdapter.ENTRY_BYTES + moovSize, faststartContentAdapter.getUsedBytes());
+    }
+
+    @Test
+    void getContentKeepsZeroCopyForRangesInTheFile() throws IOException {
+        byte[] file = Mp4TestFiles.moovAtEnd(100_000);
+        start(file);
+        int moovSize = Mp4TestFiles.moov(0, 0).length;
+        long start = 24 + moovSize + 1000;
+
+        Content range = faststartContentAdapter.getContent(request(start, start + 4999)).block();
+
+        assertNotNull(range.getLocalFile());
+        assertEquals(1024, range.getFilePosition());
+        assertEquals(start, range.getRangeStart());
+        assertEquals(start + 4999, range.getRangeEnd());
+        assertArrayEquals(Arrays.copyOfRange(file, 1024, 6024), read(range));
+    }
+
+    @Test
+    void getContentServesFaststartFilesAsTheyAre() throws IOException {
+        byte[] file = Mp4TestFiles.moovAtEnd(100_000);
+        int mdatEnd = file.length - Mp4TestFiles.moov(0, 0).length;
+        byte[] faststart = Mp4TestFiles.concat(Arrays.copyOfRange(file, 0, 24), Arrays.copyOfRange(file, mdatEnd, file.length), Arrays.copyOfRange(file, 24, mdatEnd));
+        start(faststart);
+
+        Content range = faststartContentAdapter.getContent(request(0, faststart.length - 1)).block();
+
+        assertNull(range.getFilePosition());
+        assertArrayEquals(faststart, read(range));
+        assertEquals(FaststartContentAdapter.ENTRY_BYTES, faststartContentAdapter.getUsedBytes());
+    }
+
+    @Test
+    void getContentBoundsTheContentsServedAsTheyAre() throws IOException {
+        start(Mp4TestFiles.concat(Arrays.copyOfRange(Mp4TestFiles.moovAtEnd(0), 0, 24), new byte[1000]));
+        faststartContentAdapter = new FaststartContentAdapter(localFileContentAdapter, 2 * FaststartContentAdapter.ENTRY_BYTES);
+
+        for (int i = 0; i < 5; i++) {
+            ContentRequest other = request(0, 99).toBuilder().objectKey("key-" + i).build();
+            read(faststartContentAdapter.getContent(other).block());
+        }
+
+        assertEquals(2 * FaststartContentAdapter.ENTRY_BYTES, faststartContentAdapter.getUsedBytes());
+    }
+
+    @Test
+    void concurrentFirstRequestsReadTheMoovOnce() throws IOException {
+        byte[] file = Mp4TestFiles.moovAtEnd(100_000);
+        start(file);
+        long moovOffset = file.length - Mp4TestFiles.moov(0, 0).length;
+        ContentAdapter delegate = spy(localFileContentAdapter);
+        doAnswer(invocation -> ((Mono<?>) invocation.callRealMethod()).delayElement(Duration.ofMillis(50))).when(delegate).getContent(any());
+        faststartContentAdapter = new FaststartContentAdapter(delegate, 1_000_000);
+
+        Mono.zip(faststartContentAdapter.getContent(request(0, 99)).map(AdapterTestSupport::read),
+                faststartContentAdapter.getContent(request(0, 99)).map(AdapterTestSupport::read)).block();
+
+        verify(delegate, times(1)).getContent(argThat(request -> request.getRangeStart() == moovOffset && request.getRangeEnd() == file.length - 1));
+    }
+
+    private void start(final byte[] file) throws IOException {
+        Files.write(tempDir.resolve("sample.mp4"), file);
+        localFileContentAdapter = new LocalFileContentAdapter(tempDir.toString());
+        localFileContentAdapter.start();
+        content = localFileContentAdapter.findAllContents().blockFirst();
+        faststartContentAdapter = new FaststartContentAdapter(localFileContentAdapter, 1_000_000);
+    }
+
+    private ContentRequest request(final long start, final long end) {
+        return ContentRequest.builder().fileName(content.getContentName()).fileType(content.getContentType()).filePath(content.getContentPath()).objectKey(content.getObjectKey())
+                .rangeStart(start).rangeEnd(end).build();
+    }
+}
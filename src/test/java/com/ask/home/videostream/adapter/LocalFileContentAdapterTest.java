@@ -1,18 +1,31 @@
 package com.ask.home.videostream.adapter;
 
+import com.ask.home.videostream.cache.FileHandleCache;
+import com.ask.home.videostream.catalog.CatalogListener;
 import com.ask.home.videostream.model.Content;
 import com.ask.home.videostream.model.ContentRequest;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.EnumSource;
 import org.mockito.junit.jupiter.MockitoExtension;
-import org.springframework.test.util.ReflectionTestUtils;
+import reactor.core.scheduler.Scheduler;
+import reactor.test.StepVerifier;
 
 import java.io.File;
-import java.util.HashMap;
-import java.util.List;
-import java.util.Map;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileTime;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicInteger;
 
+import static com.ask.home.videostream.adapter.AdapterTestSupport.awaitCondition;
+import static com.ask.home.videostream.adapter.AdapterTestSupport.read;
 import static org.junit.jupiter.api.Assertions.*;
 
 @ExtendWith(MockitoExtension.class)
@@ -29,23 +42,21 @@ class LocalFileContentAdapterTest {
 
     @Test
     void findFileByKeyWithNullKey() {
-        assertThrows(RuntimeException.class, () -> localFileContentAdapter.findFileByKey(null));
+        StepVerifier.create(localFileContentAdapter.findFileByKey(null)).expectError(RuntimeException.class).verify();
     }
 
     @Test
     void findFileByKeyWithInvalidKey() {
-        Content responseContent = localFileContentAdapter.findFileByKey("test");
+        Content responseContent = localFileContentAdapter.findFileByKey("test").block();
         assertNull(responseContent);
     }
 
     @Test
     void findFileByKeyWithValidKey() {
-        Map<String, Content> cache = new HashMap<>();
         String fileKey = "957e9073-9aec-3be2-a94e-268312e13bed";
         Content content = Content.builder().contentName("test").objectKey(fileKey).build();
-        cache.put(fileKey, content);
-        ReflectionTestUtils.setField(localFileContentAdapter, "localFileMap", cache);
-        Content responseContent = localFileContentAdapter.findFileByKey(fileKey);
+        localFileContentAdapter.getContentCatalog().register(content);
+        Content responseContent = localFileContentAdapter.findFileByKey(fileKey).block();
 
         assertNotNull(responseContent);
         assertNotNull(responseContent.getContentName());
@@ -57,38 +68,189 @@ class LocalFileContentAdapterTest {
     void getContentWithEmptyData() {
         ContentRequest contentRequest = ContentRequest.builder().fileName("video_empty.mp4").fileType("mp4").filePath("").build();
 
-        Content content = localFileContentAdapter.getContent(contentRequest);
+        Content content = localFileContentAdapter.getContent(contentRequest).block();
         assertNotNull(content);
-        assertEquals(0, content.getContent().length);
+        assertEquals(0, content.getContentLength());
+        StepVerifier.create(content.getData()).verifyComplete();
     }
 
     @Test
     void getContentWithRealVideoFile() {
         ContentRequest contentRequest = ContentRequest.builder().fileName("toystory.mp4").fileType("mp4").filePath("").build();
 
-        Content content = localFileContentAdapter.getContent(contentRequest);
+        Content content = localFileContentAdapter.getContent(contentRequest).block();
         assertNotNull(content);
-        assertTrue(content.getContent().length > 0);
+        assertTrue(content.getContentLength() > 0);
+    }
+
+    @Test
+    void getContentStreamsRequestedRange(@TempDir Path tempDir) throws IOException {
+        byte[] data = new byte[200_000];
+        new Random(7).nextBytes(data);
+        Files.write(tempDir.resolve("sample.mp4"), data);
+        LocalFileContentAdapter adapter = new LocalFileContentAdapter(tempDir.toString());
+        ContentRequest contentRequest = ContentRequest.builder().fileName("sample.mp4").fileType("mp4").filePath("").rangeStart(1000).rangeEnd(150_999).build();
+
+        Content content = adapter.getContent(contentRequest).block();
+
+        assertEquals(150_000, content.getContentLength());
+        assertArrayEquals(Arrays.copyOfRange(data, 1000, 151_000), read(content));
+    }
+
+    @ParameterizedTest
+    @EnumSource(IoMode.class)
+    void getContentStreamsRangesLargerThanASingleRead(IoMode ioMode, @TempDir Path tempDir) throws IOException {
+        byte[] data = new byte[3 * 1024 * 1024];
+        new Random(11).nextBytes(data);
+        Files.write(tempDir.resolve("sample.mp4"), data);
+        Scheduler ioScheduler = ioMode.newScheduler();
+        LocalFileContentAdapter adapter = new LocalFileContentAdapter(tempDir.toString(), null, 1, new FileHandleCache(4, Duration.ofSeconds(2)), ioScheduler, ioMode);
+        ContentRequest contentRequest = ContentRequest.builder().fileName("sample.mp4").fileType("mp4").filePath("").rangeStart(1000).rangeEnd(2_500_999).build();
+
+        try {
+            Content content = adapter.getContent(contentRequest).block();
+
+            assertEquals(2_500_000, content.getContentLength());
+            assertArrayEquals(Arrays.copyOfRange(data, 1000, 2_501_000), read(content));
+        } finally {
+            adapter.close();
+            ioScheduler.dispose();
+        }
+    }
+
+    @Test
+    void getContentClampsRangeEndToFileSize(@TempDir Path tempDir) throws IOException {
+        Files.write(tempDir.resolve("short.mp4"), new byte[100]);
+        LocalFileContentAdapter adapter = new LocalFileContentAdapter(tempDir.toString());
+        ContentRequest contentRequest = ContentRequest.builder().fileName("short.mp4").fileType("mp4").filePath("").rangeStart(0).rangeEnd(314700).build();
+
+        Content content = adapter.getContent(contentRequest).block();
+
+        assertEquals(100, content.getContentLength());
+        assertEquals(99, content.getRangeEnd());
     }
 
     @Test
     void getContentWithNullObject() {
-        assertThrows(RuntimeException.class, () -> localFileContentAdapter.getContent(null));
+        StepVerifier.create(localFileContentAdapter.getContent(null)).expectError(RuntimeException.class).verify();
     }
 
     @Test
     void getContentSizeWithValidFile() {
         ContentRequest contentRequest = ContentRequest.builder().fileName("toystory.mp4").fileType("mp4").filePath("").build();
 
-        long contentSize = localFileContentAdapter.getContentSize(contentRequest);
+        long contentSize = localFileContentAdapter.getContentSize(contentRequest).block();
 
         assertEquals(33505479, contentSize);
     }
 
     @Test
     void findAllContents() {
-        List<Content> contentList = localFileContentAdapter.findAllContents();
+        List<Content> contentList = localFileContentAdapter.findAllContents().collectList().block();
         assertNotNull(contentList);
         assertFalse(contentList.isEmpty());
     }
-}
\ No newline at end of file
+
+    @Test
+    void catalogFollowsFileSystemChanges(@TempDir Path tempDir) throws Exception {
+        LocalFileContentAdapter adapter = new LocalFileContentAdapter(tempDir.toString());
+        adapter.start();
+        try {
+            assertTrue(adapter.findAllContents().collectList().block().isEmpty());
+
+            Files.createDirectories(tempDir.resolve("series"));
+            Files.write(tempDir.resolve("series/episode1.mp4"), new byte[10]);
+            awaitCatalogSize(adapter, 1);
+            Content content = adapter.findAllContents().collectList().block().getFirst();
+            assertEquals("/series", content.getContentPath());
+            assertEquals("episode1.mp4", content.getContentName());
+            assertEquals(content, adapter.findFileByKey(content.getObjectKey()).block());
+
+            Files.delete(tempDir.resolve("series/episode1.mp4"));
+            awaitCatalogSize(adapter, 0);
+            assertNull(adapter.findFileByKey(content.getObjectKey()).block());
+        } finally {
+            adapter.close();
+        }
+    }
+
+    @Test
+    void catalogWaitsForCopiedFilesToSettle(@TempDir Path tempDir) throws Exception {
+        LocalFileContentAdapter adapter = new LocalFileContentAdapter(tempDir.toString());
+        adapter.start();
+        AtomicInteger registrations = new AtomicInteger();
+        adapter.getContentCatalog().addListener(new CatalogListener() {
+            @Override
+            public void contentRegistered(Content content) {
+                registrations.incrementAndGet();
+            }
+        });
+        try {
+            Path file = tempDir.resolve("episode1.mp4");
+            Files.write(file, new byte[]{0, 0, 0, 12, 'f', 't', 'y', 'p', 'i', 's', 'o', 'm'});
+            // still being copied
+            for (int i = 0; i < 5; i++) {
+                Thread.sleep(100);
+                Files.write(file, new byte[10], StandardOpenOption.APPEND);
+            }
+            awaitCatalogSize(adapter, 1);
+            Thread.sleep(1500);
+
+            assertEquals(1, registrations.get());
+            assertEquals(62, adapter.getContentCatalog().findByPath("episode1.mp4").getTotalContentSize());
+        } finally {
+            adapter.close();
+        }
+    }
+
+    @Test
+    void catalogSnapshotIsLoadedAndVerified(@TempDir Path tempDir) throws Exception {
+        Path root = Files.createDirectories(tempDir.resolve("content"));
+        Path snapshot = tempDir.resolve("catalog.snapshot");
+        Files.createDirectories(root.resolve("movies"));
+        Files.write(root.resolve("movies/kept.mp4"), new byte[10]);
+        Files.write(root.resolve("movies/removed.mp4"), new byte[10]);
+
+        LocalFileContentAdapter adapter = new LocalFileContentAdapter(root.toString(), snapshot, 4);
+        adapter.start();
+        adapter.close();
+        assertTrue(Files.exists(snapshot));
+
+        // changes while the service is down
+        Files.delete(root.resolve("movies/removed.mp4"));
+        Files.createDirectories(root.resolve("movies/new"));
+        Files.write(root.resolve("movies/new/added.mp4"), new byte[10]);
+        Files.setLastModifiedTime(root.resolve("movies"), FileTime.fromMillis(System.currentTimeMillis() + 5_000));
+
+        LocalFileContentAdapter restarted = new LocalFileContentAdapter(root.toString(), snapshot, 4);
+        restarted.start();
+        try {
+            awaitCondition(() -> restarted.getContentCatalog().findByPath("movies/removed.mp4") == null);
+            assertEquals(2, restarted.findAllContents().collectList().block().size());
+            assertNotNull(restarted.getContentCatalog().findByPath("movies/kept.mp4"));
+            assertNotNull(restarted.getContentCatalog().findByPath("movies/new/added.mp4"));
+            assertNull(restarted.getContentCatalog().findByPath("movies/removed.mp4"));
+        } finally {
+            restarted.close();
+        }
+    }
+
+    @Test
+    void catalogLeavesOutTheUploads(@TempDir Path tempDir) throws Exception {
+        Files.createDirectories(tempDir.resolve(LocalFileContentAdapter.UPLOAD_FOLDER));
+        Files.write(tempDir.resolve(LocalFileContentAdapter.UPLOAD_FOLDER).resolve("partial.mp4"), new byte[10]);
+        Files.write(tempDir.resolve("episode1.mp4"), new byte[10]);
+        LocalFileContentAdapter adapter = new LocalFileContentAdapter(tempDir.toString());
+
+        List<Content> contents = adapter.findAllContents().collectList().block();
+        assertEquals(1, contents.size());
+        assertEquals("episode1.mp4", contents.getFirst().getContentName());
+        assertThrows(IllegalArgumentException.class, () -> adapter.resolveContentPath("../episode1.mp4"));
+        assertEquals(tempDir.resolve("series/episode1.mp4"), adapter.resolveContentPath("/series/episode1.mp4"));
+    }
+
+    private static void awaitCatalogSize(LocalFileContentAdapter adapter, int size) {
+        awaitCondition(() -> adapter.findAllContents().collectList().block().size() == size);
+        assertEquals(size, adapter.findAllContents().collectList().block().size());
+    }
+}
@@ -0,0 +1,156 @@
+package com.ask.home.videostream.adapter;
+
+import com.ask.home.videostream.model.Content;
+import com.ask.home.videostream.model.ContentRequest;
+import io.netty.handler.codec.http.HttpHeaderNames;
+import io.netty.handler.codec.http.HttpMethod;
+import io.netty.handler.codec.http.HttpResponseStatus;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Mono;
+import reactor.netty.DisposableServer;
+import reactor.netty.http.server.HttpServer;
+import reactor.netty.http.server.HttpServerRequest;
+import reactor.netty.http.server.HttpServerResponse;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static com.ask.home.videostream.adapter.AdapterTestSupport.read;
+import static org.junit.jupiter.api.Assertions.*;
+
+class S3ContentAdapterTest {
+
+    Map<String, byte[]> objects = new ConcurrentHashMap<>();
+    List<String> requests = new CopyOnWriteArrayList<>();
+    List<String> authorizations = new CopyOnWriteArrayList<>();
+    AtomicInteger inFlight = new AtomicInteger();
+    AtomicInteger maxInFlight = new AtomicInteger();
+    DisposableServer server;
+    S3ContentAdapter adapter;
+    byte[] first = bytes(1000, 1);
+
+    @BeforeEach
+    void setup() {
+        objects.put("videos/movies/first.mp4", first);
+        objects.put("videos/second.mkv", bytes(10, 2));
+        objects.put("videos/notes.txt", bytes(10, 3));
+        server = HttpServer.create().host("127.0.0.1").port(0).handle(this::handle).bindNow();
+        adapter = new S3ContentAdapter(S3Settings.builder().endpoint("http://127.0.0.1:" + server.port()).bucket("media").prefix("videos")
+                .accessKey("AKIDEXAMPLE").secretKey("secret").partSize(100).parallelism(4).refreshInterval(Duration.ZERO).build());
+    }
+
+    @AfterEach
+    void tearDown() {
+        adapter.close();
+        server.disposeNow();
+    }
+
+    @Test
+    void listingFillsTheCatalog() {
+        List<Content> contents = adapter.findAllContents().collectList().block();
+
+        assertEquals(2, contents.size());
+        Content catalogued = adapter.findFileByPath("movies/first.mp4").block();
+        assertEquals("/movies", catalogued.getContentPath());
+        assertEquals("mp4", catalogued.getContentType());
+        assertEquals("\"etag-videos/movies/first.mp4\"", catalogued.getEtag());
+        assertEquals(catalogued, adapter.findFileByKey(catalogued.getObjectKey()).block());
+        // two pages.
+        assertEquals(2, requests.size());
+        assertTrue(authorizations.stream().allMatch(authorization -> authorization.startsWith("AWS4-HMAC-SHA256 Credential=AKIDEXAMPLE/")));
+
+        assertEquals(1000, adapter.getContentSize(request("first.mp4", 0, 0)).block());
+        assertEquals(2, requests.size());
+    }
+
+    @Test
+    void largeRangesAreReadInParallelParts() {
+        adapter.refresh().block();
+        requests.clear();
+
+        Content content = adapter.getContent(request("first.mp4", 50, 5000)).block();
+
+        assertEquals(950, content.getContentLength());
+        assertEquals(999, content.getRangeEnd());
+        assertArrayEquals(Arrays.copyOfRange(first, 50, 1000), read(content));
+        assertEquals(10, requests.size());
+        assertTrue(requests.contains("GET /media/videos/movies/first.mp4 bytes=50-149"));
+        assertTrue(requests.contains("GET /media/videos/movies/first.mp4 bytes=950-999"));
+        assertTrue(maxInFlight.get() > 1, "parts in flight " + maxInFlight.get());
+        assertTrue(maxInFlight.get() <= 4, "parts in flight " + maxInFlight.get());
+    }
+
+    @Test
+    void objectsOutsideTheCatalogAreSizedOnce() {
+        adapter.refresh().block();
+        objects.put("videos/movies/late.mp4", bytes(300, 4));
+        requests.clear();
+
+        assertEquals(300, adapter.getContentSize(request("late.mp4", 0, 0)).block());
+        assertEquals(300, adapter.getContentSize(request("late.mp4", 0, 0)).block());
+        assertEquals(List.of("HEAD /media/videos/movies/late.mp4 null"), requests);
+        assertEquals(0, adapter.getContentSize(request("missing.mp4", 0, 0)).block());
+        assertEquals(0, adapter.getContent(request("missing.mp4", 0, 99)).block().getContentLength());
+        assertThrows(IllegalArgumentException.class, () -> new S3ContentAdapter(S3Settings.builder().endpoint("http://localhost").bucket("media").partSize(0).build()));
+    }
+
+    private Mono<Void> handle(HttpServerRequest request, HttpServerResponse response) {
+        String range = request.requestHeaders().get(HttpHeaderNames.RANGE);
+        requests.add(request.method() + " " + request.path().replaceFirst("^/?", "/") + " " + range);
+        authorizations.add(String.valueOf(request.requestHeaders().get(HttpHeaderNames.AUTHORIZATION)));
+        String key = request.path().replaceFirst("^/?media/?", "");
+        if (key.isEmpty()) {
+            return response.header(HttpHeaderNames.CONTENT_TYPE, "application/xml").sendString(Mono.just(listing(request.uri().contains("continuation-token=page2")))).then();
+        }
+        byte[] object = objects.get(key);
+        if (object == null) {
+            return response.status(HttpResponseStatus.NOT_FOUND).send();
+        }
+        if (request.method().equals(HttpMethod.HEAD)) {
+            return response.header(HttpHeaderNames.CONTENT_LENGTH, String.valueOf(object.length)).send();
+        }
+        String[] bounds = range.substring("bytes=".length()).split("-");
+        int start = Integer.parseInt(bounds[0]);
+        int end = Math.min(Integer.parseInt(bounds[1]), object.length - 1);
+        maxInFlight.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+        // done before the body goes out, the client may send the next part as soon as it's read; doFinally would only
+        // run once the response is sent.
+        return Mono.delay(Duration.ofMillis(50))
+                .doOnNext(_ -> inFlight.decrementAndGet())
+                .then(response.status(HttpResponseStatus.PARTIAL_CONTENT).header(HttpHeaderNames.CONTENT_LENGTH, String.valueOf(end - start + 1))
+                        .sendByteArray(Mono.just(Arrays.copyOfRange(object, start, end + 1))).then());
+    }
+
+    // the objects in two pages, the first holding one key.
+    private String listing(boolean secondPage) {
+        List<String> keys = objects.keySet().stream().sorted().toList();
+        StringBuilder xml = new StringBuilder("<?xml version=\"1.0\" encoding=\"UTF-8\"?><ListBucketResult xmlns=\"http://s3.amazonaws.com/doc/2006-03-01/\"><Name>media</Name>");
+        for (String key : secondPage ? keys.subList(1, keys.size()) : keys.subList(0, 1)) {
+            xml.append("<Contents><Key>").append(key).append("</Key><LastModified>2024-01-01T00:00:00.000Z</LastModified><ETag>&quot;etag-").append(key)
+                    .append("&quot;</ETag><Size>").append(objects.get(key).length).append("</Size><StorageClass>STANDARD</StorageClass></Contents>");
+        }
+        xml.append("<IsTruncated>").append(!secondPage).append("</IsTruncated>");
+        if (!secondPage) {
+            xml.append("<NextContinuationToken>page2</NextContinuationToken>");
+        }
+        return xml.append("</ListBucketResult>").toString();
+    }
+
+    private static ContentRequest request(String fileName, long start, long end) {
+        return ContentRequest.builder().fileName(fileName).fileType("mp4").filePath("/movies").rangeStart(start).rangeEnd(end).build();
+    }
+
+    private static byte[] bytes(int size, long seed) {
+        byte[] bytes = new byte[size];
+        new Random(seed).nextBytes(bytes);
+        return bytes;
+    }
+}
@@ -0,0 +1,173 @@
+package com.ask.home.videostream.adapter;
+
+import com.ask.home.videostream.model.Content;
+import com.ask.home.videostream.model.ContentRequest;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import reactor.core.scheduler.Schedulers;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Random;
+
+import static com.ask.home.videostream.adapter.AdapterTestSupport.awaitCondition;
+import static com.ask.home.videostream.adapter.AdapterTestSupport.read;
+import static org.junit.jupiter.api.Assertions.*;
+
+class TieredContentAdapterTest {
+
+    static final Duration WINDOW = Duration.ofMinutes(10);
+
+    @TempDir
+    Path coldRoot;
+    @TempDir
+    Path hotRoot;
+
+    LocalFileContentAdapter cold;
+    LocalFileContentAdapter hot;
+    byte[] first = bytes(1000, 1);
+    byte[] second = bytes(1000, 2);
+
+    @BeforeEach
+    void setup() throws IOException {
+        Files.createDirectories(coldRoot.resolve("movies"));
+        // an ftyp box first, for the video sniffing.
+        Files.write(coldRoot.resolve("movies/first.mp4"), first);
+        Files.write(coldRoot.resolve("movies/second.mp4"), second);
+        cold = new LocalFileContentAdapter(coldRoot.toString());
+        hot = new LocalFileContentAdapter(hotRoot.toString());
+        assertEquals(2, cold.findAllContents().collectList().block().size());
+    }
+
+    @AfterEach
+    void tearDown() {
+        cold.close();
+        hot.close();
+    }
+
+    @Test
+    void frequentlyReadContentsMoveToTheHotTier() throws Exception {
+        TieredContentAdapter tiered = new TieredContentAdapter(cold, hot, hotRoot, 10_000, 2, WINDOW, Schedulers.boundedElastic());
+
+        Content coldRead = tiered.getContent(request("first.mp4", 0, 99, "first-client")).block();
+        assertTrue(coldRead.getLocalFile().startsWith(coldRoot));
+        assertArrayEquals(Arrays.copyOfRange(first, 0, 100), read(coldRead));
+        read(tiered.getContent(request("first.mp4", 100, 199, "second-client")).block());
+        awaitCondition(() -> tiered.getPromotions() == 1);
+        assertArrayEquals(first, Files.readAllBytes(hotRoot.resolve("movies/first.mp4")));
+
+        Content hotRead = tiered.getContent(request("first.mp4", 500, 599, "first-client")).block();
+        assertTrue(hotRead.getLocalFile().startsWith(hotRoot));
+        assertArrayEquals(Arrays.copyOfRange(first, 500, 600), read(hotRead));
+        assertEquals(1, tiered.getHotReads());
+        assertEquals(2, tiered.getColdReads());
+        assertEquals(1000, tiered.getUsedBytes());
+    }
+
+    @Test
+    void rangesReadByOneClientDontPromoteTheContent() throws Exception {
+        TieredContentAdapter tiered = new TieredContentAdapter(cold, hot, hotRoot, 10_000, 2, WINDOW, Schedulers.boundedElastic());
+
+        for (int start = 0; start < 1000; start += 100) {
+            read(tiered.getContent(request("first.mp4", start, start + 99, "client")).block());
+        }
+        // reads of the server itself aren't counted.
+        read(tiered.getContent(request("first.mp4", 0, 99, null)).block());
+        Thread.sleep(200);
+
+        assertEquals(0, tiered.getPromotions());
+        assertEquals(11, tiered.getColdReads());
+        assertFalse(Files.exists(hotRoot.resolve("movies/first.mp4")));
+    }
+
+    @Test
+    void unreadableHotCopiesAreEvictedAndReadFromTheColdTier() throws Exception {
+        TieredContentAdapter tiered = new TieredContentAdapter(cold, hot, hotRoot, 10_000, 1, WINDOW, Schedulers.boundedElastic());
+        read(tiered.getContent(request("first.mp4", 0, 99, "client")).block());
+        awaitCondition(() -> tiered.getPromotions() == 1);
+        Files.delete(hotRoot.resolve("movies/first.mp4"));
+
+        Content fallBack = tiered.getContent(request("first.mp4", 100, 199, "client")).block();
+
+        assertTrue(fallBack.getLocalFile().startsWith(coldRoot));
+        assertArrayEquals(Arrays.copyOfRange(first, 100, 200), read(fallBack));
+        assertEquals(1, tiered.getEvictions());
+        assertEquals(0, tiered.getUsedBytes());
+    }
+
+    @Test
+    void pathsTheHotTierCantHoldReserveNoSpace() throws Exception {
+        Files.createDirectories(coldRoot.resolve(".uploads"));
+        Files.write(coldRoot.resolve(".uploads/clip.mp4"), second);
+        TieredContentAdapter tiered = new TieredContentAdapter(cold, hot, hotRoot, 1500, 1, WINDOW, Schedulers.boundedElastic());
+        ContentRequest upload = ContentRequest.builder().fileName("clip.mp4").fileType("mp4").filePath("/.uploads").rangeStart(0).rangeEnd(99).clientId("client").build();
+
+        assertArrayEquals(Arrays.copyOfRange(second, 0, 100), read(tiered.getContent(upload).block()));
+        read(tiered.getContent(request("first.mp4", 0, 99, "client")).block());
+        awaitCondition(() -> tiered.getPromotions() == 1);
+
+        assertTrue(Files.exists(hotRoot.resolve("movies/first.mp4")));
+        assertEquals(1000, tiered.getUsedBytes());
+    }
+
+    @Test
+    void leastRecentlyReadCopiesAreEvictedUnderTheQuota() throws Exception {
+        TieredContentAdapter tiered = new TieredContentAdapter(cold, hot, hotRoot, 1500, 1, WINDOW, Schedulers.boundedElastic());
+
+        read(tiered.getContent(request("first.mp4", 0, 99, "client")).block());
+        awaitCondition(() -> tiered.getPromotions() == 1);
+        read(tiered.getContent(request("second.mp4", 0, 99, "client")).block());
+        awaitCondition(() -> tiered.getPromotions() == 2);
+        awaitCondition(() -> !Files.exists(hotRoot.resolve("movies/first.mp4")));
+
+        assertFalse(Files.exists(hotRoot.resolve("movies/first.mp4")));
+        assertTrue(Files.exists(hotRoot.resolve("movies/second.mp4")));
+        assertEquals(1, tiered.getEvictions());
+        assertEquals(1000, tiered.getUsedBytes());
+    }
+
+    @Test
+    void changedContentsAreReadFromTheColdTierAgain() throws Exception {
+        TieredContentAdapter tiered = new TieredContentAdapter(cold, hot, hotRoot, 10_000, 1, WINDOW, Schedulers.boundedElastic());
+        read(tiered.getContent(request("first.mp4", 0, 99, "client")).block());
+        awaitCondition(() -> tiered.getPromotions() == 1);
+
+        Content catalogued = cold.getContentCatalog().findByPath("movies/first.mp4");
+        cold.getContentCatalog().register(Content.builder().contentName(catalogued.getContentName()).contentPath(catalogued.getContentPath()).contentType("mp4")
+                .objectKey(catalogued.getObjectKey()).totalContentSize(catalogued.getTotalContentSize()).etag("\"changed\"").build());
+
+        assertEquals(1, tiered.getEvictions());
+        assertEquals(0, tiered.getUsedBytes());
+        assertTrue(tiered.getContent(request("first.mp4", 0, 99, "client")).block().getLocalFile().startsWith(coldRoot));
+        awaitCondition(() -> !Files.exists(hotRoot.resolve("movies/first.mp4")));
+    }
+
+    @Test
+    void startEmptiesTheHotDirectory() throws Exception {
+        Files.createDirectories(hotRoot.resolve("movies"));
+        Files.write(hotRoot.resolve("movies/stale.mp4"), first);
+
+        new TieredContentAdapter(cold, hot, hotRoot, 10_000, 1, WINDOW, Schedulers.boundedElastic()).start();
+
+        try (var left = Files.list(hotRoot)) {
+            assertEquals(0, left.count());
+        }
+        assertThrows(IllegalArgumentException.class, () -> new TieredContentAdapter(cold, hot, hotRoot, 0, 1, WINDOW, Schedulers.boundedElastic()));
+    }
+
+    private static ContentRequest request(String fileName, long start, long end, String clientId) {
+        return ContentRequest.builder().fileName(fileName).fileType("mp4").filePath("/movies").rangeStart(start).rangeEnd(end).clientId(clientId).build();
+    }
+
+    private static byte[] bytes(int size, long seed) {
+        byte[] bytes = new byte[size];
+        new Random(seed).nextBytes(bytes);
+        System.arraycopy(new byte[]{0, 0, 0, 24, 'f', 't', 'y', 'p', 'i', 's', 'o', 'm'}, 0, bytes, 0, 12);
+        return bytes;
+    }
+}
@@ -0,0 +1,49 @@
+package com.ask.home.videostream.benchmark;
+
+import com.ask.home.videostream.adapter.LocalFileContentAdapter;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Catalog scan time of a synthetic library of ~100k videos, sequential vs parallel. Run with
+ * {@code mvn test -Pbenchmark}. A local disk with a warm page cache hides most of the round trips an NFS mount pays,
+ * so the gap is a lower bound.
+ */
+@Tag("benchmark")
+class CatalogScanBenchmarkTest {
+
+    private static final int FOLDERS = 200;
+    private static final int FILES_PER_FOLDER = 500;
+    private static final byte[] MP4_HEADER = {0, 0, 0, 24, 'f', 't', 'y', 'p', 'i', 's', 'o', 'm', 0, 0, 2, 0, 'i', 's', 'o', 'm', 'm', 'p', '4', '1'};
+
+    @Test
+    void scanSyntheticLibrary(@TempDir Path tempDir) throws IOException {
+        for (int folder = 0; folder < FOLDERS; folder++) {
+            Path path = Files.createDirectories(tempDir.resolve(String.format("series%03d/season1", folder)));
+            for (int file = 0; file < FILES_PER_FOLDER; file++) {
+                Files.write(path.resolve(String.format("episode%03d.mp4", file)), MP4_HEADER);
+            }
+        }
+
+        // warm up the page cache and the JIT
+        scan(tempDir, 16);
+        for (int parallelism : new int[]{1, 4, 16, 64}) {
+            long start = System.nanoTime();
+            int contents = scan(tempDir, parallelism);
+            System.out.printf("parallelism %2d: %,d contents in %,d ms%n", parallelism, contents, (System.nanoTime() - start) / 1_000_000);
+            assertEquals(FOLDERS * FILES_PER_FOLDER, contents);
+        }
+    }
+
+    private static int scan(Path root, int parallelism) {
+        LocalFileContentAdapter adapter = new LocalFileContentAdapter(root.toString(), null, parallelism);
+        return adapter.findAllContents().collectList().block().size();
+    }
+}
@@ -0,0 +1,139 @@
+package com.ask.home.videostream.benchmark;
+
+import com.ask.home.videostream.cache.FileHandleCache;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Primary;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.netty.http.client.HttpClient;
+import reactor.netty.resources.ConnectionProvider;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Latency of a request that never touches the disk (the catalog listing) while many streams wait on a slow disk, every
+ * file system call of the adapter taking {@link #DISK_LATENCY}. With the blocking calls on the I/O scheduler the event
+ * loops stay free and the latency stays flat; calls made on the event loops would add up to the disk latency to it.
+ * Run with {@code mvn test -Pbenchmark}.
+ */
+@Tag("benchmark")
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT, properties = {
+        "video.catalog.snapshot-path=", "video.cache.max-bytes=0", "video.head.max-bytes=0", "video.prefetch.max-depth=0", "video.files.revalidate-after=0s"})
+class EventLoopLatencyBenchmarkTest {
+
+    private static final Duration DISK_LATENCY = Duration.ofMillis(100);
+    private static final int STREAMS = 64;
+    private static final int PROBES = 200;
+
+    @LocalServerPort
+    int port;
+
+    @DynamicPropertySource
+    static void contentPath(DynamicPropertyRegistry registry) throws IOException {
+        Path root = Files.createTempDirectory("video-latency");
+        byte[] video = new byte[1024 * 1024];
+        System.arraycopy(new byte[]{0, 0, 0, 24, 'f', 't', 'y', 'p', 'i', 's', 'o', 'm'}, 0, video, 0, 12);
+        Files.write(root.resolve("sample.mp4"), video);
+        registry.add("video.content.path", root::toString);
+    }
+
+    @TestConfiguration
+    static class SlowDiskConfig {
+
+        @Bean
+        @Primary
+        FileHandleCache slowFileHandleCache() {
+            return new FileHandleCache(256, Duration.ZERO) {
+                @Override
+                public FileAttributes attributes(Path path) throws IOException {
+                    sleep();
+                    return super.attributes(path);
+                }
+
+                @Override
+                public Handle acquire(Path path) throws IOException {
+                    sleep();
+                    return super.acquire(path);
+                }
+            };
+        }
+
+        private static void sleep() {
+            try {
+                Thread.sleep(DISK_LATENCY);
+            } catch (InterruptedException interruptedException) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    @Test
+    void eventLoopLatencyStaysFlatWhileDiskIsSlow() {
+        HttpClient probeClient = HttpClient.create(ConnectionProvider.create("probes", 1)).baseUrl("http://localhost:" + port);
+        HttpClient streamClient = HttpClient.create(ConnectionProvider.create("streams", STREAMS)).baseUrl("http://localhost:" + port);
+        // warm up
+        probe(probeClient, 50);
+        long[] idle = probe(probeClient, PROBES);
+
+        AtomicBoolean running = new AtomicBoolean(true);
+        AtomicLong streamed = new AtomicLong();
+        Flux.range(0, STREAMS)
+                .flatMap(_ -> Mono.defer(() -> streamClient.headers(headers -> headers.set("Range", "bytes=0-1023"))
+                                .get().uri("/api/v1/videos/stream/mp4/sample").responseContent().aggregate().asByteArray())
+                        .doOnNext(bytes -> streamed.incrementAndGet())
+                        .repeat(running::get), STREAMS)
+                .subscribe();
+        long[] loaded;
+        try {
+            // let every stream reach the disk
+            sleepFor(DISK_LATENCY.multipliedBy(3));
+            loaded = probe(probeClient, PROBES);
+        } finally {
+            running.set(false);
+        }
+
+        System.out.printf("idle      p50 %5.1f ms  p99 %5.1f ms%n", percentile(idle, 50), percentile(idle, 99));
+        System.out.printf("slow disk p50 %5.1f ms  p99 %5.1f ms  (%d streams, %d ranges served)%n", percentile(loaded, 50), percentile(loaded, 99), STREAMS, streamed.get());
+        assertTrue(streamed.get() > 0);
+        assertTrue(percentile(loaded, 99) < DISK_LATENCY.toMillis() / 2.0, "event loop latency followed the disk latency");
+    }
+
+    private static long[] probe(HttpClient httpClient, int probes) {
+        long[] latencies = new long[probes];
+        for (int i = 0; i < probes; i++) {
+            long start = System.nanoTime();
+            httpClient.get().uri("/api/v1/videos").responseContent().aggregate().asString().block(Duration.ofSeconds(5));
+            latencies[i] = System.nanoTime() - start;
+        }
+        return latencies;
+    }
+
+    private static double percentile(long[] latencies, int percentile) {
+        long[] sorted = latencies.clone();
+        Arrays.sort(sorted);
+        return sorted[Math.min(sorted.length - 1, sorted.length * percentile / 100)] / 1_000_000.0;
+    }
+
+    private static void sleepFor(Duration duration) {
+        try {
+            Thread.sleep(duration);
+        } catch (InterruptedException interruptedException) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
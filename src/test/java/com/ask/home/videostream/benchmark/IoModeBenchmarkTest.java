@@ -0,0 +1,99 @@
+package com.ask.home.videostream.benchmark;
+
+import com.ask.home.videostream.adapter.IoMode;
+import com.ask.home.videostream.adapter.LocalFileContentAdapter;
+import com.ask.home.videostream.cache.FileHandleCache;
+import com.ask.home.videostream.model.Content;
+import com.ask.home.videostream.model.ContentRequest;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Throughput and latency of random range reads with {@link #READERS} concurrent readers, for every {@link IoMode}.
+ * Run with {@code mvn test -Pbenchmark}. The file sits in the page cache, so this measures the cost of the execution
+ * mode itself; a slow or remote disk widens the gap between the modes that park a thread per read and the others.
+ */
+@Tag("benchmark")
+class IoModeBenchmarkTest {
+
+    private static final int READERS = 1024;
+    private static final int READS_PER_READER = 8;
+    private static final int FILE_SIZE = 64 * 1024 * 1024;
+    private static final int RANGE_SIZE = 64 * 1024;
+
+    @Test
+    void compareIoModes(@TempDir Path tempDir) throws IOException {
+        byte[] video = new byte[FILE_SIZE];
+        new Random(13).nextBytes(video);
+        Files.write(tempDir.resolve("sample.mp4"), video);
+
+        for (IoMode ioMode : IoMode.values()) {
+            // warm up the page cache and the JIT
+            run(tempDir, ioMode);
+            long start = System.nanoTime();
+            long[] latencies = run(tempDir, ioMode);
+            double seconds = (System.nanoTime() - start) / 1e9;
+            System.out.printf("%-16s %,7.0f reads/s  %,6.0f MB/s  p50 %6.1f ms  p99 %6.1f ms%n", ioMode.getValue(), latencies.length / seconds,
+                    latencies.length * (double) RANGE_SIZE / seconds / (1024 * 1024), percentile(latencies, 50), percentile(latencies, 99));
+            assertEquals(READERS * READS_PER_READER, latencies.length);
+        }
+    }
+
+    private static long[] run(Path root, IoMode ioMode) {
+        Scheduler ioScheduler = ioMode.newScheduler();
+        LocalFileContentAdapter adapter = new LocalFileContentAdapter(root.toString(), null, 1, new FileHandleCache(16, Duration.ofSeconds(2)), ioScheduler, ioMode);
+        long[] latencies = new long[READERS * READS_PER_READER];
+        AtomicInteger index = new AtomicInteger();
+        try {
+            Flux.range(0, READERS)
+                    .flatMap(_ -> Flux.range(0, READS_PER_READER).concatMap(_ -> read(adapter, latencies, index)), READERS)
+                    .blockLast();
+        } finally {
+            adapter.close();
+            ioScheduler.dispose();
+        }
+        return latencies;
+    }
+
+    private static Mono<Long> read(LocalFileContentAdapter adapter, long[] latencies, AtomicInteger index) {
+        return Mono.defer(() -> {
+            long rangeStart = ThreadLocalRandom.current().nextLong(FILE_SIZE / RANGE_SIZE) * RANGE_SIZE;
+            ContentRequest contentRequest = ContentRequest.builder().fileName("sample.mp4").fileType("mp4").filePath("").rangeStart(rangeStart).rangeEnd(rangeStart + RANGE_SIZE - 1).build();
+            long start = System.nanoTime();
+            return adapter.getContent(contentRequest)
+                    .flatMapMany(Content::getData)
+                    .map(buffer -> {
+                        int length = buffer.readableByteCount();
+                        DataBufferUtils.release(buffer);
+                        return (long) length;
+                    })
+                    .reduce(0L, Long::sum)
+                    .doOnNext(length -> {
+                        assertEquals(RANGE_SIZE, length);
+                        latencies[index.getAndIncrement()] = System.nanoTime() - start;
+                    });
+        });
+    }
+
+    private static double percentile(long[] latencies, int percentile) {
+        long[] sorted = latencies.clone();
+        Arrays.sort(sorted);
+        return sorted[Math.min(sorted.length - 1, sorted.length * percentile / 100)] / 1_000_000.0;
+    }
+}
@@ -0,0 +1,58 @@
+package com.ask.home.videostream.benchmark;
+
+import com.ask.home.videostream.catalog.ContentCatalog;
+import com.ask.home.videostream.catalog.SearchIndex;
+import com.ask.home.videostream.model.Content;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Search latency over a synthetic catalog of 300k contents named from a small vocabulary, so that common words hit
+ * thousands of documents. Run with {@code mvn test -Pbenchmark}.
+ */
+@Tag("benchmark")
+class SearchIndexBenchmarkTest {
+
+    private static final int CONTENTS = 300_000;
+    private static final int SEARCHES = 20_000;
+    private static final String[] WORDS = {"story", "night", "return", "king", "space", "ocean", "shadow", "city", "empire", "dream", "last", "lost",
+            "winter", "fire", "stone", "river", "ghost", "planet", "garden", "storm", "island", "secret", "journey", "legend", "mountain", "silver",
+            "midnight", "hunter", "crystal", "falcon", "harbor", "thunder"};
+    private static final String[] QUERIES = {"story", "king ret", "shadow of", "plan", "midnight hunter", "ep0042", "season3 storm", "crys fal", "the", "lost isl"};
+
+    @Test
+    void searchSyntheticCatalog() {
+        Random random = new Random(42);
+        ContentCatalog contentCatalog = new ContentCatalog();
+        long start = System.nanoTime();
+        SearchIndex searchIndex = new SearchIndex(contentCatalog);
+        for (int i = 0; i < CONTENTS; i++) {
+            String title = WORDS[random.nextInt(WORDS.length)] + " of the " + WORDS[random.nextInt(WORDS.length)] + " " + WORDS[random.nextInt(WORDS.length)];
+            contentCatalog.register(Content.builder().objectKey("key-" + i).contentPath(String.format("/series/%s/season%d", title.replace(' ', '-'), i % 7))
+                    .contentName(String.format("%s ep%04d.mp4", title, i % 5000)).contentType("mp4").build());
+        }
+        System.out.printf("indexed %,d contents in %,d ms%n", searchIndex.size(), (System.nanoTime() - start) / 1_000_000);
+
+        // warm up the JIT
+        for (int i = 0; i < SEARCHES; i++) {
+            searchIndex.search(QUERIES[i % QUERIES.length], 20);
+        }
+        for (String query : QUERIES) {
+            long[] nanos = new long[SEARCHES / QUERIES.length];
+            for (int i = 0; i < nanos.length; i++) {
+                long searchStart = System.nanoTime();
+                assertFalse(searchIndex.search(query, 20).isEmpty(), query);
+                nanos[i] = System.nanoTime() - searchStart;
+            }
+            Arrays.sort(nanos);
+            System.out.printf("%-16s p50 %,8d µs  p99 %,8d µs%n", query, nanos[nanos.length / 2] / 1000, nanos[nanos.length * 99 / 100] / 1000);
+            assertTrue(nanos[nanos.length / 2] > 0);
+        }
+    }
+}
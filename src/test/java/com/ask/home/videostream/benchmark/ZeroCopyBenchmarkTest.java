@@ -0,0 +1,114 @@
+package com.ask.home.videostream.benchmark;
+
+import com.ask.home.videostream.Application;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadInfo;
+import java.lang.management.ThreadMXBean;
+import java.net.URI;
+import java.net.URL;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.Random;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Server CPU time spent per delivered GB, buffered streaming vs sendfile. Run with {@code mvn test -Pbenchmark}.
+ * Uses the largest video under {@code src/test/resources/video}, or a generated one when those are too small to measure.
+ */
+@Tag("benchmark")
+class ZeroCopyBenchmarkTest {
+
+    private static final long MIN_VIDEO_SIZE = 16L * 1024 * 1024;
+    private static final long DELIVERED_BYTES = 4L * 1024 * 1024 * 1024;
+    private static final double GB = 1024d * 1024 * 1024;
+
+    @Test
+    void cpuPerDeliveredGigabyte(@TempDir Path tempDir) throws Exception {
+        Path video = benchmarkVideo(tempDir);
+
+        // warm up both paths before measuring
+        measure(video, Long.MAX_VALUE, DELIVERED_BYTES / 8);
+        measure(video, 0, DELIVERED_BYTES / 8);
+        double buffered = measure(video, Long.MAX_VALUE, DELIVERED_BYTES);
+        double zeroCopy = measure(video, 0, DELIVERED_BYTES);
+
+        System.out.printf("video %s (%d bytes)%n", video.getFileName(), Files.size(video));
+        System.out.printf("buffered : %.1f ms server CPU per GB%n", buffered);
+        System.out.printf("zero-copy: %.1f ms server CPU per GB%n", zeroCopy);
+    }
+
+    /**
+     * Start the service and download the whole video until {@code deliveredBytes} went through.
+     *
+     * @return server event-loop CPU milliseconds per delivered GB.
+     */
+    private double measure(final Path video, final long zeroCopyMinSize, final long deliveredBytes) throws Exception {
+        try (ConfigurableApplicationContext context = new SpringApplicationBuilder(Application.class).run(
+                "--server.port=0", "--spring.main.banner-mode=off", "--logging.level.root=WARN",
+                "--video.content.path=" + video.getParent(), "--video.zero-copy.min-size=" + zeroCopyMinSize)) {
+            String port = context.getEnvironment().getProperty("local.server.port");
+            String name = video.getFileName().toString();
+            String uri = String.format("http://localhost:%s/video-service/api/v1/videos/stream/mp4/%s", port, name.substring(0, name.lastIndexOf('.')));
+            long size = Files.size(video);
+            HttpRequest request = HttpRequest.newBuilder(URI.create(uri)).header("Range", "bytes=0-" + (size - 1)).build();
+
+            try (HttpClient client = HttpClient.newHttpClient()) {
+                long delivered = 0;
+                long cpuBefore = serverCpuNanos();
+                while (delivered < deliveredBytes) {
+                    HttpResponse<Void> response = client.send(request, HttpResponse.BodyHandlers.discarding());
+                    assertEquals(size, response.headers().firstValueAsLong("Content-Length").orElse(-1));
+                    delivered += size;
+                }
+                return (serverCpuNanos() - cpuBefore) / 1_000_000d / (delivered / GB);
+            }
+        }
+    }
+
+    private static long serverCpuNanos() {
+        ThreadMXBean threadMXBean = ManagementFactory.getThreadMXBean();
+        long total = 0;
+        for (ThreadInfo threadInfo : threadMXBean.getThreadInfo(threadMXBean.getAllThreadIds())) {
+            if (threadInfo != null && threadInfo.getThreadName().startsWith("reactor-http")) {
+                total += Math.max(0, threadMXBean.getThreadCpuTime(threadInfo.getThreadId()));
+            }
+        }
+        return total;
+    }
+
+    private Path benchmarkVideo(final Path tempDir) throws IOException {
+        URL url = getClass().getClassLoader().getResource("video");
+        if (url != null) {
+            try (Stream<Path> files = Files.list(new File(url.getFile()).toPath())) {
+                Path largest = files.filter(file -> file.toString().endsWith(".mp4")).max(Comparator.comparingLong(file -> file.toFile().length())).orElse(null);
+                if (largest != null && Files.size(largest) >= MIN_VIDEO_SIZE) {
+                    return largest;
+                }
+            }
+        }
+        Path video = tempDir.resolve("benchmark.mp4");
+        byte[] block = new byte[1024 * 1024];
+        new Random(1).nextBytes(block);
+        try (OutputStream outputStream = Files.newOutputStream(video)) {
+            for (int i = 0; i < 64; i++) {
+                outputStream.write(block);
+            }
+        }
+        return video;
+    }
+}
@@ -0,0 +1,128 @@
+package com.ask.home.videostream.cache;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BlockCacheTest {
+
+    BlockCache blockCache = new BlockCache(300, 100);
+    List<ByteBuf> blocks = new ArrayList<>();
+
+    @AfterEach
+    void tearDown() {
+        blockCache.clear();
+        // every block is released once the cache lets go of it and its readers are done.
+        blocks.forEach(block -> assertEquals(0, block.refCnt()));
+    }
+
+    @Test
+    void acquireCountsHitsAndMisses() {
+        assertNull(blockCache.acquire(new BlockKey("a", 0)));
+        blockCache.put(new BlockKey("a", 0), block(100));
+
+        ByteBuf block = blockCache.acquire(new BlockKey("a", 0));
+
+        assertNotNull(block);
+        assertEquals(100, block.readableBytes());
+        assertEquals(1, blockCache.getHits());
+        assertEquals(1, blockCache.getMisses());
+        block.release();
+    }
+
+    @Test
+    void putEvictsLeastRecentlyUsed() {
+        blockCache.put(new BlockKey("a", 0), block(100));
+        blockCache.put(new BlockKey("a", 1), block(100));
+        blockCache.put(new BlockKey("a", 2), block(100));
+        // touch block 0 so block 1 is the eldest
+        blockCache.acquire(new BlockKey("a", 0)).release();
+
+        blockCache.put(new BlockKey("b", 0), block(100));
+
+        assertEquals(300, blockCache.getUsedBytes());
+        assertEquals(1, blockCache.getEvictions());
+        assertNull(blockCache.acquire(new BlockKey("a", 1)));
+        ByteBuf touched = blockCache.acquire(new BlockKey("a", 0));
+        assertNotNull(touched);
+        touched.release();
+    }
+
+    @Test
+    void evictedBlockStaysValidForItsReaders() {
+        ByteBuf stored = block(100);
+        blockCache.put(new BlockKey("a", 0), stored);
+        ByteBuf reader = blockCache.acquire(new BlockKey("a", 0));
+
+        blockCache.invalidate("a");
+
+        assertEquals(0, blockCache.getUsedBytes());
+        assertEquals(1, stored.refCnt());
+        assertEquals(7, reader.getByte(7));
+        reader.release();
+        assertEquals(0, stored.refCnt());
+    }
+
+    @Test
+    void blocksReadBeforeAnInvalidationAreNotCached() {
+        long generation = blockCache.generation("a");
+        blockCache.invalidate("a");
+        ByteBuf stale = block(100);
+
+        blockCache.put(new BlockKey("a", 0), stale, false, generation);
+
+        assertEquals(0, stale.refCnt());
+        assertNull(blockCache.acquire(new BlockKey("a", 0)));
+        blockCache.put(new BlockKey("a", 0), block(100), false, blockCache.generation("a"));
+        assertEquals(1, blockCache.getBlockCount());
+    }
+
+    @Test
+    void putIgnoresBlockLargerThanBudget() {
+        ByteBuf large = block(400);
+        blockCache.put(new BlockKey("a", 0), large);
+
+        assertEquals(0, blockCache.getBlockCount());
+        assertEquals(0, large.refCnt());
+    }
+
+    @Test
+    void putReplacesBlock() {
+        ByteBuf first = block(100);
+        blockCache.put(new BlockKey("a", 0), first);
+        blockCache.put(new BlockKey("a", 0), block(50));
+
+        assertEquals(0, first.refCnt());
+        assertEquals(50, blockCache.getUsedBytes());
+        assertEquals(1, blockCache.getBlockCount());
+    }
+
+    @Test
+    void prefetchedBlocksAreTrackedUntilRead() {
+        blockCache.put(new BlockKey("a", 0), block(100), true);
+        blockCache.put(new BlockKey("a", 1), block(100), true);
+        assertEquals(200, blockCache.getUnreadPrefetchedBytes());
+
+        blockCache.acquire(new BlockKey("a", 0)).release();
+        blockCache.invalidate("a");
+
+        assertEquals(200, blockCache.getPrefetchedBytes());
+        assertEquals(100, blockCache.getPrefetchUnusedBytes());
+        assertEquals(0, blockCache.getUnreadPrefetchedBytes());
+    }
+
+    private ByteBuf block(int size) {
+        ByteBuf block = Unpooled.directBuffer(size);
+        blocks.add(block);
+        for (int i = 0; i < size; i++) {
+            block.writeByte(i);
+        }
+        return block;
+    }
+}
@@ -0,0 +1,157 @@
+package com.ask.home.videostream.cache;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.time.Duration;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class FileHandleCacheTest {
+
+    @TempDir
+    Path tempDir;
+
+    AtomicLong clock = new AtomicLong();
+    FileHandleCache fileHandleCache = new FileHandleCache(2, Duration.ofSeconds(2), clock::get);
+
+    @Test
+    void attributesAreReadOncePerRevalidationPeriod() throws IOException {
+        Path file = write("a.mp4", 10);
+
+        assertEquals(10, fileHandleCache.attributes(file).size());
+        Files.write(file, new byte[20]);
+        assertEquals(10, fileHandleCache.attributes(file).size());
+        assertEquals(1, fileHandleCache.getStats());
+
+        clock.addAndGet(Duration.ofSeconds(3).toNanos());
+        assertEquals(20, fileHandleCache.attributes(file).size());
+        assertEquals(2, fileHandleCache.getStats());
+    }
+
+    @Test
+    void slowStatHoldsUpOnlyItsPath() throws Exception {
+        Path slow = write("slow.mp4", 10);
+        Path fast = write("fast.mp4", 20);
+        CountDownLatch statStarted = new CountDownLatch(1);
+        CountDownLatch statReleased = new CountDownLatch(1);
+        AtomicInteger slowStats = new AtomicInteger();
+        FileHandleCache cache = new FileHandleCache(2, Duration.ofSeconds(2), clock::get) {
+            @Override
+            FileAttributes stat(Path path) throws IOException {
+                if (path.endsWith("slow.mp4")) {
+                    slowStats.incrementAndGet();
+                    statStarted.countDown();
+                    try {
+                        statReleased.await();
+                    } catch (InterruptedException interruptedException) {
+                        Thread.currentThread().interrupt();
+                    }
+                }
+                return super.stat(path);
+            }
+        };
+        ExecutorService executor = Executors.newFixedThreadPool(3);
+        try {
+            Future<FileHandleCache.FileAttributes> first = executor.submit(() -> cache.attributes(slow));
+            assertTrue(statStarted.await(5, TimeUnit.SECONDS));
+            Future<FileHandleCache.FileAttributes> second = executor.submit(() -> cache.attributes(slow));
+
+            // not waiting for the slow stat.
+            assertEquals(20, executor.submit(() -> cache.attributes(fast)).get(2, TimeUnit.SECONDS).size());
+            executor.submit(() -> {
+                cache.acquire(fast).close();
+                return null;
+            }).get(2, TimeUnit.SECONDS);
+            Thread.sleep(200);
+            statReleased.countDown();
+
+            assertEquals(10, first.get(5, TimeUnit.SECONDS).size());
+            assertEquals(10, second.get(5, TimeUnit.SECONDS).size());
+            assertEquals(1, slowStats.get());
+        } finally {
+            statReleased.countDown();
+            executor.shutdownNow();
+            cache.close();
+        }
+    }
+
+    @Test
+    void acquireSharesOneChannel() throws IOException {
+        Path file = write("a.mp4", 10);
+
+        try (FileHandleCache.Handle first = fileHandleCache.acquire(file); FileHandleCache.Handle second = fileHandleCache.acquire(tempDir.resolve("./a.mp4"))) {
+            assertSame(first.channel(), second.channel());
+            assertEquals(1, fileHandleCache.getOpens());
+            assertEquals(1, fileHandleCache.getStats());
+        }
+        assertEquals(1, fileHandleCache.getOpenChannels());
+    }
+
+    @Test
+    void changedFileIsReopenedAndOldChannelClosedAfterItsReaders() throws IOException {
+        Path file = write("a.mp4", 10);
+        FileHandleCache.Handle reader = fileHandleCache.acquire(file);
+
+        Files.write(file, new byte[20]);
+        Files.setLastModifiedTime(file, FileTime.fromMillis(System.currentTimeMillis() + 5_000));
+        clock.addAndGet(Duration.ofSeconds(3).toNanos());
+        try (FileHandleCache.Handle handle = fileHandleCache.acquire(file)) {
+            assertNotSame(reader.channel(), handle.channel());
+            assertEquals(20, handle.attributes().size());
+        }
+
+        assertTrue(reader.channel().isOpen());
+        assertEquals(4, reader.channel().read(ByteBuffer.allocate(4), 0));
+        reader.close();
+        assertFalse(reader.channel().isOpen());
+    }
+
+    @Test
+    void leastRecentlyUsedFilesAreEvicted() throws IOException {
+        FileHandleCache.Handle handle = fileHandleCache.acquire(write("a.mp4", 10));
+        handle.close();
+        fileHandleCache.attributes(write("b.mp4", 10));
+        fileHandleCache.attributes(write("c.mp4", 10));
+
+        assertEquals(2, fileHandleCache.getEntryCount());
+        assertFalse(handle.channel().isOpen());
+    }
+
+    @Test
+    void invalidateForgetsFilesUnderFolder() throws IOException {
+        Files.createDirectories(tempDir.resolve("series"));
+        FileHandleCache.Handle handle = fileHandleCache.acquire(write("series/a.mp4", 10));
+        fileHandleCache.attributes(write("b.mp4", 10));
+
+        fileHandleCache.invalidate(tempDir.resolve("series"));
+
+        assertEquals(1, fileHandleCache.getEntryCount());
+        assertTrue(handle.channel().isOpen());
+        handle.close();
+        assertFalse(handle.channel().isOpen());
+    }
+
+    @Test
+    void missingFileIsNotCached() {
+        assertThrows(NoSuchFileException.class, () -> fileHandleCache.attributes(tempDir.resolve("missing.mp4")));
+        assertEquals(0, fileHandleCache.getEntryCount());
+    }
+
+    private Path write(String name, int size) throws IOException {
+        return Files.write(tempDir.resolve(name), new byte[size]);
+    }
+}
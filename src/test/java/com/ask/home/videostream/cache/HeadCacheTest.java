@@ -0,0 +1,84 @@
+package com.ask.home.videostream.cache;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class HeadCacheTest {
+
+    HeadCache headCache = new HeadCache(250, 100);
+    List<ByteBuf> heads = new ArrayList<>();
+
+    @AfterEach
+    void tearDown() {
+        headCache.clear();
+        // every head is released once the cache lets go of it and its readers are done.
+        heads.forEach(head -> assertEquals(0, head.refCnt()));
+    }
+
+    @Test
+    void coveringChecksRangeAgainstHeadAndFileSize() {
+        headCache.put("a", head(100), 1_000, "\"v1\"");
+        headCache.put("b", head(50), 50, "\"v1\"");
+
+        assertEquals(1_000, headCache.covering("a", 0, 99));
+        assertNull(headCache.covering("a", 0, 100));
+        assertEquals(50, headCache.covering("b", 10, 5_000));
+        assertNull(headCache.covering("b", 50, 5_000));
+        assertNull(headCache.covering("c", 0, 0));
+        assertEquals(2, headCache.getHits());
+        assertEquals(3, headCache.getMisses());
+    }
+
+    @Test
+    void putKeepsHeadsWithinBudget() {
+        assertTrue(headCache.put("a", head(100), 100, "\"v1\""));
+        assertTrue(headCache.put("b", head(100), 100, "\"v1\""));
+        ByteBuf rejected = head(100);
+
+        assertFalse(headCache.put("c", rejected, 100, "\"v1\""));
+        assertEquals(0, rejected.refCnt());
+        assertEquals(200, headCache.getUsedBytes());
+    }
+
+    @Test
+    void removedHeadStaysValidForItsReaders() {
+        ByteBuf stored = head(100);
+        headCache.put("a", stored, 100, "\"v1\"");
+        HeadCache.Head head = headCache.acquire("a");
+
+        headCache.remove("a");
+
+        assertNull(headCache.acquire("a"));
+        assertEquals(9, head.data().getByte(9));
+        head.data().release();
+        assertEquals(0, stored.refCnt());
+    }
+
+    @Test
+    void removeStaleKeepsTheHeadOfTheCurrentVersion() {
+        headCache.put("a", head(100), 100, "\"v1\"");
+
+        assertTrue(headCache.isCurrent("a", "\"v1\""));
+        assertFalse(headCache.removeStale("a", "\"v1\""));
+        assertFalse(headCache.isCurrent("a", "\"v2\""));
+        assertTrue(headCache.removeStale("a", "\"v2\""));
+        assertNull(headCache.acquire("a"));
+        assertEquals(0, headCache.getUsedBytes());
+    }
+
+    private ByteBuf head(int size) {
+        ByteBuf head = Unpooled.directBuffer(size);
+        heads.add(head);
+        for (int i = 0; i < size; i++) {
+            head.writeByte(i);
+        }
+        return head;
+    }
+}
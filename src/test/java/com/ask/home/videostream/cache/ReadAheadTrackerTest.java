@@ -0,0 +1,64 @@
+package com.ask.home.videostream.cache;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ReadAheadTrackerTest {
+
+    AtomicLong clock = new AtomicLong();
+    ReadAheadTracker readAheadTracker = new ReadAheadTracker(8, Duration.ofSeconds(2), 2, clock::get);
+
+    @Test
+    void recordReadsAheadFromTheSecondSequentialRequest() {
+        assertEquals(0, request("client", "key", 0, 99, 0));
+        assertEquals(0, request("client", "key", 100, 199, 1_000));
+        assertEquals(2, request("client", "key", 200, 299, 1_000));
+    }
+
+    @Test
+    void recordScalesDepthWithRequestRate() {
+        request("client", "key", 0, 99, 0);
+        request("client", "key", 100, 199, 100);
+        assertEquals(8, request("client", "key", 200, 299, 100));
+
+        // the client slows down to playback speed.
+        int depth = 8;
+        for (int i = 3; i < 20; i++) {
+            depth = request("client", "key", i * 100L, i * 100L + 99, 3_000);
+        }
+        assertEquals(1, depth);
+    }
+
+    @Test
+    void recordResetsOnSeek() {
+        request("client", "key", 0, 99, 0);
+        request("client", "key", 100, 199, 100);
+        assertEquals(0, request("client", "key", 5_000, 5_099, 100));
+        assertEquals(0, request("client", "key", 5_100, 5_199, 100));
+    }
+
+    @Test
+    void recordTracksSessionsPerClientAndObject() {
+        request("client", "key", 0, 99, 0);
+        request("client", "key", 100, 199, 100);
+        assertEquals(0, request("other", "key", 200, 299, 0));
+        assertEquals(0, request("client", "other", 200, 299, 0));
+        // the first session was the eldest of three.
+        assertEquals(0, request("client", "key", 200, 299, 0));
+    }
+
+    @Test
+    void recordIgnoresRequestsWithoutObjectKey() {
+        assertEquals(0, request("client", null, 0, 99, 0));
+        assertEquals(0, new ReadAheadTracker(0, Duration.ofSeconds(2), 2).record("client", "key", 0, 99));
+    }
+
+    private int request(String clientId, String objectKey, long start, long end, long afterMillis) {
+        clock.addAndGet(Duration.ofMillis(afterMillis).toNanos());
+        return readAheadTracker.record(clientId, objectKey, start, end);
+    }
+}
@@ -0,0 +1,107 @@
+package com.ask.home.videostream.catalog;
+
+import com.ask.home.videostream.model.Content;
+import com.ask.home.videostream.model.ContentPage;
+import com.ask.home.videostream.model.ContentQuery;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Flux;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CatalogPagerTest {
+
+    List<Content> contents = List.of(
+            content("/movies", "c.mp4", 300, 3),
+            content("/movies", "a.mp4", 100, 2),
+            content("/movies/pixar", "b.mkv", 200, 1),
+            content("", "d.mp4", 200, 4));
+
+    @Test
+    void pagesFollowTheCursorToTheEnd() {
+        List<String> names = new ArrayList<>();
+        String cursor = null;
+        int pages = 0;
+        do {
+            ContentPage page = page(ContentQuery.builder().limit(3).cursor(cursor).build());
+            page.getContents().forEach(content -> names.add(ContentCatalog.relativePath(content)));
+            cursor = page.getNextCursor();
+            pages++;
+        } while (cursor != null);
+
+        assertEquals(2, pages);
+        assertEquals(List.of("movies/a.mp4", "movies/pixar/b.mkv", "movies/c.mp4", "d.mp4"), names);
+    }
+
+    @Test
+    void pageSortsBySizeWithThePathBreakingTies() {
+        ContentPage first = page(ContentQuery.builder().sort(ContentQuery.Sort.SIZE).descending(true).limit(2).build());
+        ContentPage second = page(ContentQuery.builder().sort(ContentQuery.Sort.SIZE).descending(true).limit(2).cursor(first.getNextCursor()).build());
+
+        // descending reverses the tie break too.
+        assertEquals(List.of("c.mp4", "b.mkv"), first.getContents().stream().map(Content::getContentName).toList());
+        assertEquals(List.of("d.mp4", "a.mp4"), second.getContents().stream().map(Content::getContentName).toList());
+        assertNull(second.getNextCursor());
+    }
+
+    @Test
+    void pageSortsByNameAcrossFoldersIgnoringCase() {
+        List<Content> named = List.of(
+                content("/z", "Banana.mp4", 1, 1),
+                content("/a", "cherry.mp4", 1, 1),
+                content("/b", "apple.mp4", 1, 1),
+                content("/a", "apple.mp4", 1, 1));
+        ContentPage first = CatalogPager.page(Flux.fromIterable(named), ContentQuery.builder().sort(ContentQuery.Sort.NAME).limit(3).build()).block();
+        ContentPage second = CatalogPager.page(Flux.fromIterable(named), ContentQuery.builder().sort(ContentQuery.Sort.NAME).limit(3).cursor(first.getNextCursor()).build()).block();
+
+        // the same name in two folders is ordered by path.
+        assertEquals(List.of("a/apple.mp4", "b/apple.mp4", "z/Banana.mp4"), first.getContents().stream().map(ContentCatalog::relativePath).toList());
+        assertEquals(List.of("a/cherry.mp4"), second.getContents().stream().map(ContentCatalog::relativePath).toList());
+        assertNull(second.getNextCursor());
+        // descending reverses the name and the path.
+        assertEquals(List.of("cherry.mp4", "Banana.mp4", "apple.mp4"), page(named, ContentQuery.builder().sort(ContentQuery.Sort.NAME).descending(true).limit(3).build()));
+    }
+
+    @Test
+    void pageFiltersByPathTypeAndSize() {
+        assertEquals(List.of("a.mp4", "b.mkv", "c.mp4"), names(ContentQuery.builder().pathPrefix("/movies").build()));
+        assertEquals(List.of("b.mkv"), names(ContentQuery.builder().type("MKV").build()));
+        assertEquals(List.of("b.mkv", "d.mp4"), names(ContentQuery.builder().minSize(150L).maxSize(250L).build()));
+    }
+
+    @Test
+    void validateRejectsInvalidLimitsAndCursors() {
+        String cursor = page(ContentQuery.builder().limit(1).build()).getNextCursor();
+
+        assertThrows(IllegalArgumentException.class, () -> CatalogPager.validate(ContentQuery.builder().limit(0).build()));
+        assertThrows(IllegalArgumentException.class, () -> CatalogPager.validate(ContentQuery.builder().limit(CatalogPager.MAX_LIMIT + 1).build()));
+        assertThrows(IllegalArgumentException.class, () -> CatalogPager.validate(ContentQuery.builder().cursor("not a cursor").build()));
+        assertThrows(IllegalArgumentException.class, () -> CatalogPager.validate(ContentQuery.builder().sort(ContentQuery.Sort.SIZE).cursor(cursor).build()));
+        assertDoesNotThrow(() -> CatalogPager.validate(ContentQuery.builder().cursor(cursor).build()));
+    }
+
+    @Test
+    void filterStreamsInCatalogOrder() {
+        assertEquals(List.of("c.mp4", "a.mp4"), CatalogPager.filter(Flux.fromIterable(contents), ContentQuery.builder().type("mp4").limit(2).build())
+                .map(Content::getContentName).collectList().block());
+    }
+
+    private List<String> names(final ContentQuery query) {
+        return page(query).getContents().stream().map(Content::getContentName).toList();
+    }
+
+    private static List<String> page(final List<Content> contents, final ContentQuery query) {
+        return CatalogPager.page(Flux.fromIterable(contents), query).block().getContents().stream().map(Content::getContentName).toList();
+    }
+
+    private ContentPage page(final ContentQuery query) {
+        return CatalogPager.page(Flux.fromIterable(contents), query).block();
+    }
+
+    private static Content content(final String contentPath, final String contentName, final long size, final long lastModified) {
+        return Content.builder().contentPath(contentPath).contentName(contentName).contentType(contentName.substring(contentName.lastIndexOf('.') + 1))
+                .totalContentSize(size).lastModified(lastModified).build();
+    }
+}
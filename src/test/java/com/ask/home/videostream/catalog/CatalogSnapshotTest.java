@@ -0,0 +1,50 @@
+package com.ask.home.videostream.catalog;
+
+import com.ask.home.videostream.model.Content;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CatalogSnapshotTest {
+
+    @Test
+    void writeAndRead(@TempDir Path tempDir) throws IOException {
+        Path file = tempDir.resolve("catalog.snapshot");
+        Content content = Content.builder().objectKey("key-1").contentPath("/movies").contentName("toystory.mp4").contentType("mp4")
+                .totalContentSize(33505479L).lastModified(1700000000000L).fileKey("(dev=803,ino=42)").build();
+        Content withoutFileKey = Content.builder().objectKey("key-2").contentPath("").contentName("trailer.mkv").contentType("mkv")
+                .totalContentSize(10L).lastModified(1L).build();
+
+        CatalogSnapshot.write(file, "/videos", Map.of("", 1L, "movies", 2L), List.of(content, withoutFileKey));
+        CatalogSnapshot snapshot = CatalogSnapshot.read(file);
+
+        assertEquals("/videos", snapshot.getRootPath());
+        assertEquals(Map.of("", 1L, "movies", 2L), snapshot.getFolderModifiedTimes());
+        assertEquals(List.of(content, withoutFileKey), snapshot.getContents());
+    }
+
+    @Test
+    void readInvalidFile(@TempDir Path tempDir) throws IOException {
+        Path file = Files.write(tempDir.resolve("catalog.snapshot"), new byte[]{1, 2, 3, 4, 5, 6, 7, 8, 9});
+
+        assertThrows(IOException.class, () -> CatalogSnapshot.read(file));
+    }
+
+    @Test
+    void readTruncatedFile(@TempDir Path tempDir) throws IOException {
+        Path file = tempDir.resolve("catalog.snapshot");
+        CatalogSnapshot.write(file, "/videos", Map.of("", 1L), List.of(Content.builder().objectKey("key-1").contentName("a.mp4").build()));
+        byte[] bytes = Files.readAllBytes(file);
+        Files.write(file, Arrays.copyOf(bytes, bytes.length - 6));
+
+        assertThrows(IOException.class, () -> CatalogSnapshot.read(file));
+    }
+}
@@ -0,0 +1,114 @@
+package com.ask.home.videostream.catalog;
+
+import com.ask.home.videostream.model.Content;
+import com.ask.home.videostream.util.HttpValidators;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ContentCatalogTest {
+
+    ContentCatalog contentCatalog = new ContentCatalog();
+
+    @Test
+    void relativePath() {
+        assertEquals("toystory.mp4", ContentCatalog.relativePath("", "toystory.mp4"));
+        assertEquals("toystory.mp4", ContentCatalog.relativePath(null, "toystory.mp4"));
+        assertEquals("movies/pixar/toystory.mp4", ContentCatalog.relativePath("/movies/pixar", "toystory.mp4"));
+    }
+
+    @Test
+    void registerIndexesByKeyAndPath() {
+        Content content = content("key-1", "/movies", "toystory.mp4");
+        contentCatalog.register(content);
+
+        assertSame(content, contentCatalog.findByObjectKey("key-1"));
+        assertSame(content, contentCatalog.findByPath("movies/toystory.mp4"));
+        assertEquals(1, contentCatalog.size());
+    }
+
+    @Test
+    void registerComputesTheEtagOnce() {
+        Content content = Content.builder().objectKey("key-1").contentPath("").contentName("toystory.mp4").fileKey("(dev=803,ino=42)").totalContentSize(1000L).lastModified(5L).build();
+        contentCatalog.register(content);
+        List<Content> registered = new ArrayList<>();
+        contentCatalog.addListener(new CatalogListener() {
+            @Override
+            public void contentRegistered(Content content) {
+                registered.add(content);
+            }
+        });
+
+        // the same file seen again by the watcher is no change.
+        contentCatalog.register(Content.builder().objectKey("key-1").contentPath("").contentName("toystory.mp4").fileKey("(dev=803,ino=42)").totalContentSize(1000L).lastModified(5L).build());
+
+        assertEquals(HttpValidators.etag("(dev=803,ino=42)", 1000, 5), content.getEtag());
+        assertTrue(registered.isEmpty());
+    }
+
+    @Test
+    void registerMovedContentDropsOldPath() {
+        contentCatalog.register(content("key-1", "/movies", "toystory.mp4"));
+        contentCatalog.register(content("key-1", "/archive", "toystory.mp4"));
+
+        assertNull(contentCatalog.findByPath("movies/toystory.mp4"));
+        assertNotNull(contentCatalog.findByPath("archive/toystory.mp4"));
+        assertEquals(1, contentCatalog.size());
+    }
+
+    @Test
+    void registerReplacedFileDropsOldKey() {
+        contentCatalog.register(content("key-1", "", "toystory.mp4"));
+        contentCatalog.register(content("key-2", "", "toystory.mp4"));
+
+        assertNull(contentCatalog.findByObjectKey("key-1"));
+        assertNotNull(contentCatalog.findByObjectKey("key-2"));
+        assertEquals(1, contentCatalog.size());
+    }
+
+    @Test
+    void unregisterFolderAndRetain() {
+        contentCatalog.register(content("key-1", "/movies", "a.mp4"));
+        contentCatalog.register(content("key-2", "/movies/old", "b.mp4"));
+        contentCatalog.register(content("key-3", "/moviesextra", "c.mp4"));
+        contentCatalog.register(content("key-4", "", "d.mp4"));
+
+        contentCatalog.unregisterFolder("movies");
+        assertEquals(2, contentCatalog.size());
+        assertNotNull(contentCatalog.findByObjectKey("key-3"));
+
+        contentCatalog.retainPaths(Set.of("d.mp4"));
+        assertEquals(1, contentCatalog.size());
+        assertNotNull(contentCatalog.findByPath("d.mp4"));
+    }
+
+    @Test
+    void listenersAreNotified() {
+        List<String> events = new ArrayList<>();
+        contentCatalog.addListener(new CatalogListener() {
+            @Override
+            public void contentRegistered(Content content) {
+                events.add("registered " + content.getObjectKey());
+            }
+
+            @Override
+            public void contentRemoved(Content content) {
+                events.add("removed " + content.getObjectKey());
+            }
+        });
+
+        contentCatalog.register(content("key-1", "", "a.mp4"));
+        contentCatalog.unregister("a.mp4");
+        contentCatalog.unregister("a.mp4");
+
+        assertEquals(List.of("registered key-1", "removed key-1"), events);
+    }
+
+    private static Content content(String objectKey, String contentPath, String contentName) {
+        return Content.builder().objectKey(objectKey).contentPath(contentPath).contentName(contentName).build();
+    }
+}
@@ -0,0 +1,84 @@
+package com.ask.home.videostream.catalog;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ParallelDirectoryScannerTest {
+
+    @Test
+    void scanVisitsEveryFileAndFolder(@TempDir Path tempDir) throws IOException {
+        for (int folder = 0; folder < 5; folder++) {
+            Path path = Files.createDirectories(tempDir.resolve("folder" + folder + "/nested"));
+            for (int file = 0; file < 150; file++) {
+                Files.createFile(path.getParent().resolve("video" + file + ".mp4"));
+            }
+            Files.createFile(path.resolve("deep.mp4"));
+        }
+        Set<Path> files = ConcurrentHashMap.newKeySet();
+        Set<Path> folders = ConcurrentHashMap.newKeySet();
+
+        new ParallelDirectoryScanner(4).scan(tempDir, 10, visitor(files, folders));
+
+        assertEquals(5 * 151, files.size());
+        assertEquals(11, folders.size());
+        assertTrue(files.contains(tempDir.resolve("folder3/nested/deep.mp4")));
+    }
+
+    @Test
+    void scanOnPlatformThreadsVisitsEveryFile(@TempDir Path tempDir) throws IOException {
+        for (int folder = 0; folder < 3; folder++) {
+            Path path = Files.createDirectories(tempDir.resolve("folder" + folder));
+            for (int file = 0; file < 100; file++) {
+                Files.createFile(path.resolve("video" + file + ".mp4"));
+            }
+        }
+        Set<Path> files = ConcurrentHashMap.newKeySet();
+
+        new ParallelDirectoryScanner(2, false).scan(tempDir, 10, visitor(files, ConcurrentHashMap.newKeySet()));
+
+        assertEquals(300, files.size());
+    }
+
+    @Test
+    void scanStopsAtMaxDepth(@TempDir Path tempDir) throws IOException {
+        Files.createDirectories(tempDir.resolve("a/b"));
+        Files.createFile(tempDir.resolve("root.mp4"));
+        Files.createFile(tempDir.resolve("a/first.mp4"));
+        Files.createFile(tempDir.resolve("a/b/second.mp4"));
+        Set<Path> files = ConcurrentHashMap.newKeySet();
+
+        new ParallelDirectoryScanner(2).scan(tempDir, 2, visitor(files, ConcurrentHashMap.newKeySet()));
+
+        assertEquals(Set.of(tempDir.resolve("root.mp4"), tempDir.resolve("a/first.mp4")), files);
+    }
+
+    @Test
+    void scanRejectsMissingFolder(@TempDir Path tempDir) {
+        ParallelDirectoryScanner scanner = new ParallelDirectoryScanner(1);
+        assertThrows(RuntimeException.class, () -> scanner.scan(tempDir.resolve("missing"), 10, visitor(ConcurrentHashMap.newKeySet(), ConcurrentHashMap.newKeySet())));
+        assertThrows(IllegalArgumentException.class, () -> new ParallelDirectoryScanner(0));
+    }
+
+    private static ParallelDirectoryScanner.Visitor visitor(Set<Path> files, Set<Path> folders) {
+        return new ParallelDirectoryScanner.Visitor() {
+            @Override
+            public void folder(Path folder) {
+                folders.add(folder);
+            }
+
+            @Override
+            public void file(Path file, BasicFileAttributes attributes) {
+                files.add(file);
+            }
+        };
+    }
+}
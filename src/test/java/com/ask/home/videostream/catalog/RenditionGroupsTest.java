@@ -0,0 +1,59 @@
+package com.ask.home.videostream.catalog;
+
+import com.ask.home.videostream.model.Content;
+import com.ask.home.videostream.model.Title;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.regex.Pattern;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RenditionGroupsTest {
+
+    ContentCatalog contentCatalog = new ContentCatalog();
+
+    @Test
+    void titlesGroupTheRenditionsOfAFolder() {
+        contentCatalog.register(content("key-1", "/movies", "toystory_1080p.mp4"));
+        RenditionGroups renditionGroups = new RenditionGroups(contentCatalog, Pattern.compile(RenditionGroups.DEFAULT_PATTERN));
+        contentCatalog.register(content("key-2", "/movies", "toystory_720p.mp4"));
+        contentCatalog.register(content("key-3", "/other", "toystory_480p.mp4"));
+        contentCatalog.register(content("key-4", "/movies", "trailer.mp4"));
+
+        List<Title> titles = renditionGroups.titles();
+
+        assertEquals(2, titles.size());
+        Title movies = titles.getFirst();
+        assertEquals("toystory", movies.getTitleName());
+        assertEquals("/movies", movies.getContentPath());
+        assertEquals(List.of("1080p", "720p"), movies.getRenditions().stream().map(Title.Rendition::label).toList());
+        assertEquals("key-1", movies.getRenditions().getFirst().content().getObjectKey());
+        assertEquals(movies, renditionGroups.findByTitleId(movies.getTitleId()));
+        assertNotEquals(movies.getTitleId(), titles.get(1).getTitleId());
+    }
+
+    @Test
+    void titlesFollowTheCatalog() {
+        RenditionGroups renditionGroups = new RenditionGroups(contentCatalog, Pattern.compile(RenditionGroups.DEFAULT_PATTERN));
+        contentCatalog.register(content("key-1", "", "toystory.1080p.mp4"));
+        contentCatalog.register(content("key-2", "", "toystory 720p.mp4"));
+        String titleId = renditionGroups.titles().getFirst().getTitleId();
+
+        contentCatalog.unregister("toystory 720p.mp4");
+        assertEquals(1, renditionGroups.findByTitleId(titleId).getRenditions().size());
+
+        contentCatalog.unregister("toystory.1080p.mp4");
+        assertNull(renditionGroups.findByTitleId(titleId));
+        assertTrue(renditionGroups.titles().isEmpty());
+    }
+
+    @Test
+    void constructorRequiresTheNamedGroups() {
+        assertThrows(IllegalArgumentException.class, () -> new RenditionGroups(contentCatalog, Pattern.compile("(.+)_(\\d+p)")));
+    }
+
+    private static Content content(final String objectKey, final String contentPath, final String contentName) {
+        return Content.builder().objectKey(objectKey).contentPath(contentPath).contentName(contentName).contentType("mp4").build();
+    }
+}
@@ -0,0 +1,63 @@
+package com.ask.home.videostream.catalog;
+
+import com.ask.home.videostream.model.Content;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SearchIndexTest {
+
+    ContentCatalog contentCatalog = new ContentCatalog();
+    SearchIndex searchIndex;
+
+    @BeforeEach
+    void setup() {
+        contentCatalog.register(content("key-1", "/movies/pixar", "Toy Story.mp4"));
+        searchIndex = new SearchIndex(contentCatalog);
+        contentCatalog.register(content("key-2", "/movies/pixar", "Toy Story 2.mp4"));
+        contentCatalog.register(content("key-3", "/movies/toys", "Small Soldiers.mkv"));
+        contentCatalog.register(content("key-4", "/series", "Story of Film_ep01.mp4"));
+    }
+
+    @Test
+    void searchMatchesEveryTokenByPrefix() {
+        assertEquals(List.of("key-1", "key-2"), keys(searchIndex.search("toy sto", 10)));
+        assertEquals(List.of("key-3"), keys(searchIndex.search("SOLD", 10)));
+        assertEquals(List.of(), keys(searchIndex.search("toy film", 10)));
+    }
+
+    @Test
+    void searchRanksNameMatchesBeforePathMatches() {
+        // whole tokens of the name, then the prefix in the path.
+        assertEquals(List.of("key-1", "key-2", "key-3"), keys(searchIndex.search("toy", 10)));
+        assertEquals(List.of("key-1", "key-2", "key-4"), keys(searchIndex.search("story", 10)));
+        assertEquals(List.of("key-1"), keys(searchIndex.search("toy", 1)));
+    }
+
+    @Test
+    void searchFollowsTheCatalog() {
+        contentCatalog.unregister("movies/pixar/Toy Story 2.mp4");
+        contentCatalog.register(content("key-1", "/movies/pixar", "Toy Story (1995).mp4"));
+
+        assertEquals(List.of("key-1"), keys(searchIndex.search("toy story", 10)));
+        assertEquals(List.of("key-1"), keys(searchIndex.search("1995", 10)));
+        assertEquals(3, searchIndex.size());
+    }
+
+    @Test
+    void searchIgnoresBlankQueries() {
+        assertTrue(searchIndex.search(" - ", 10).isEmpty());
+        assertTrue(searchIndex.search(null, 10).isEmpty());
+    }
+
+    private static List<String> keys(final List<Content> contents) {
+        return contents.stream().map(Content::getObjectKey).toList();
+    }
+
+    private static Content content(final String objectKey, final String contentPath, final String contentName) {
+        return Content.builder().objectKey(objectKey).contentPath(contentPath).contentName(contentName).contentType("mp4").build();
+    }
+}
@@ -0,0 +1,82 @@
+package com.ask.home.videostream.codec;
+
+import com.ask.home.videostream.delivery.ChunkSizer;
+import com.ask.home.videostream.model.ContentRegion;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.ResolvableType;
+import org.springframework.core.io.buffer.DefaultDataBufferFactory;
+import org.springframework.http.MediaType;
+import org.springframework.http.ZeroCopyHttpOutputMessage;
+import org.springframework.http.server.reactive.ServerHttpResponse;
+import org.springframework.mock.http.server.reactive.MockServerHttpRequest;
+import org.springframework.mock.http.server.reactive.MockServerHttpResponse;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.Collections;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+class ContentRegionHttpMessageWriterTest {
+
+    private static final ResolvableType REGION_TYPE = ResolvableType.forClass(ContentRegion.class);
+
+    ContentRegionHttpMessageWriter writer = new ContentRegionHttpMessageWriter(10);
+
+    @Test
+    void canWriteContentRegionOnly() {
+        assertTrue(writer.canWrite(REGION_TYPE, MediaType.parseMediaType("video/mp4")));
+        assertFalse(writer.canWrite(ResolvableType.forClass(String.class), MediaType.parseMediaType("video/mp4")));
+    }
+
+    @Test
+    void writeLargeLocalRegionWithZeroCopy() {
+        ServerHttpResponse response = mock(ServerHttpResponse.class, withSettings().extraInterfaces(ZeroCopyHttpOutputMessage.class));
+        when(((ZeroCopyHttpOutputMessage) response).writeWith(any(Path.class), anyLong(), anyLong())).thenReturn(Mono.empty());
+        Path file = Path.of("video.mp4");
+        ContentRegion region = ContentRegion.builder().data(Flux.error(new IllegalStateException("must not be read"))).file(file).position(5).count(100).build();
+
+        StepVerifier.create(writer.write(Mono.just(region), REGION_TYPE, REGION_TYPE, null, MockServerHttpRequest.get("/").build(), response, Collections.emptyMap())).verifyComplete();
+
+        verify((ZeroCopyHttpOutputMessage) response).writeWith(file, 5L, 100L);
+        verify(response, never()).writeWith(any());
+    }
+
+    @Test
+    void writeRegionReportsTheDelivery() {
+        ChunkSizer chunkSizer = mock(ChunkSizer.class);
+        ContentRegionHttpMessageWriter measuringWriter = new ContentRegionHttpMessageWriter(10, chunkSizer);
+        MockServerHttpResponse response = new MockServerHttpResponse();
+        ContentRegion region = ContentRegion.builder().data(Flux.just(DefaultDataBufferFactory.sharedInstance.wrap("abc".getBytes(StandardCharsets.UTF_8)))).count(3).clientId("client").build();
+
+        StepVerifier.create(measuringWriter.write(Mono.just(region), REGION_TYPE, REGION_TYPE, null, MockServerHttpRequest.get("/").build(), response, Collections.emptyMap())).verifyComplete();
+
+        verify(chunkSizer).recordDelivery(eq("client"), eq(3L), anyLong());
+    }
+
+    @Test
+    void writeSmallRegionBuffered() {
+        MockServerHttpResponse response = new MockServerHttpResponse();
+        ContentRegion region = ContentRegion.builder().data(Flux.just(DefaultDataBufferFactory.sharedInstance.wrap("abc".getBytes(StandardCharsets.UTF_8)))).file(Path.of("video.mp4")).count(3).build();
+
+        StepVerifier.create(writer.write(Mono.just(region), REGION_TYPE, REGION_TYPE, null, MockServerHttpRequest.get("/").build(), response, Collections.emptyMap())).verifyComplete();
+
+        StepVerifier.create(response.getBodyAsString()).expectNext("abc").verifyComplete();
+    }
+
+    @Test
+    void writeRegionWithoutFileBuffered() {
+        MockServerHttpResponse response = new MockServerHttpResponse();
+        ContentRegion region = ContentRegion.builder().data(Flux.just(DefaultDataBufferFactory.sharedInstance.wrap("video-bytes".getBytes(StandardCharsets.UTF_8)))).count(11).build();
+
+        StepVerifier.create(writer.write(Mono.just(region), REGION_TYPE, REGION_TYPE, null, MockServerHttpRequest.get("/").build(), response, Collections.emptyMap())).verifyComplete();
+
+        StepVerifier.create(response.getBodyAsString()).expectNext("video-bytes").verifyComplete();
+    }
+}
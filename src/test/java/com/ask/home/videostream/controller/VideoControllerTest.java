@@ -1,18 +1,28 @@
 package com.ask.home.videostream.controller;
 
+import com.ask.home.videostream.model.Content;
+import com.ask.home.videostream.model.ContentPage;
+import com.ask.home.videostream.model.ContentQuery;
+import com.ask.home.videostream.model.ContentRegion;
+import com.ask.home.videostream.model.SeekPosition;
+import com.ask.home.videostream.model.Upload;
 import com.ask.home.videostream.service.VideoService;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.reactive.WebFluxTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.test.context.junit.jupiter.SpringExtension;
 import org.springframework.test.web.reactive.server.WebTestClient;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
 
 import java.util.Collections;
 
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.*;
 
 @WebFluxTest(controllers = VideoController.class)
@@ -27,38 +37,126 @@ class VideoControllerTest {
 
     @Test
     void streamVideoWithFilePathAndName() {
-        when(videoService.prepareContentByFilePath(any(), any(), any())).thenReturn(ResponseEntity.ok(new byte[]{}));
+        when(videoService.prepareContentByFilePath(any(), any(), any(), any(), any())).thenReturn(Mono.just(ResponseEntity.ok(ContentRegion.builder().data(Flux.empty()).build())));
         webTestClient.get().uri("/api/v1/videos/stream/mp4/toystory").exchange().expectStatus().is2xxSuccessful();
 
-        verify(videoService, times(1)).prepareContentByFilePath(any(), any(), any());
-        verify(videoService, times(0)).prepareContentByObjectKey(any(), any());
+        verify(videoService, times(1)).prepareContentByFilePath(any(), any(), any(), any(), any());
+        verify(videoService, times(0)).prepareContentByObjectKey(any(), any(), any(), any());
     }
 
     @Test
     void streamVideoWithFilePathFolderAndName() {
-        when(videoService.prepareContentByFilePath(any(), any(), any())).thenReturn(ResponseEntity.ok(new byte[]{}));
+        when(videoService.prepareContentByFilePath(any(), any(), any(), any(), any())).thenReturn(Mono.just(ResponseEntity.ok(ContentRegion.builder().data(Flux.empty()).build())));
         webTestClient.get().uri("/api/v1/videos/stream/mp4/video1+toystory").exchange().expectStatus().is2xxSuccessful();
 
-        verify(videoService, times(1)).prepareContentByFilePath(any(), any(), any());
-        verify(videoService, times(0)).prepareContentByObjectKey(any(), any());
+        verify(videoService, times(1)).prepareContentByFilePath(any(), any(), any(), any(), any());
+        verify(videoService, times(0)).prepareContentByObjectKey(any(), any(), any(), any());
     }
 
     @Test
     void testStreamVideoWithObjectKey() {
-        when(videoService.prepareContentByObjectKey(any(), any())).thenReturn(ResponseEntity.ok(new byte[]{}));
+        when(videoService.prepareContentByObjectKey(any(), any(), any(), any())).thenReturn(Mono.just(ResponseEntity.ok(ContentRegion.builder().data(Flux.empty()).build())));
         webTestClient.get().uri("/api/v1/videos/stream/object-key/test-key").exchange().expectStatus().is2xxSuccessful();
 
-        verify(videoService, times(0)).prepareContentByFilePath(any(), any(), any());
-        verify(videoService, times(1)).prepareContentByObjectKey(any(), any());
+        verify(videoService, times(0)).prepareContentByFilePath(any(), any(), any(), any(), any());
+        verify(videoService, times(1)).prepareContentByObjectKey(any(), any(), any(), any());
+    }
+
+    @Test
+    void seekByObjectKey() {
+        when(videoService.seekByObjectKey(any(), anyDouble())).thenReturn(Mono.just(ResponseEntity.ok(SeekPosition.builder().offset(1024).range("bytes=1024-").build())));
+        webTestClient.get().uri("/api/v1/videos/seek/object-key/test-key?t=12.5").exchange().expectStatus().is2xxSuccessful()
+                .expectBody().jsonPath("$.offset").isEqualTo(1024).jsonPath("$.range").isEqualTo("bytes=1024-");
+
+        verify(videoService, times(1)).seekByObjectKey("test-key", 12.5);
+    }
+
+    @Test
+    void hlsPlaylistByObjectKey() {
+        when(videoService.hlsPlaylistByObjectKey(any())).thenReturn(Mono.just(ResponseEntity.ok().header("Content-Type", "application/vnd.apple.mpegurl").body("#EXTM3U\n")));
+        webTestClient.get().uri("/api/v1/videos/hls/object-key/test-key/playlist.m3u8").exchange().expectStatus().is2xxSuccessful()
+                .expectHeader().contentType("application/vnd.apple.mpegurl").expectBody(String.class).isEqualTo("#EXTM3U\n");
+
+        verify(videoService, times(1)).hlsPlaylistByObjectKey("test-key");
+    }
+
+    @Test
+    void hlsSegmentByObjectKey() {
+        when(videoService.hlsSegmentByObjectKey(any(), anyInt(), any())).thenReturn(Mono.just(ResponseEntity.notFound().build()));
+        webTestClient.get().uri("/api/v1/videos/hls/object-key/test-key/12.m4s").exchange().expectStatus().isNotFound();
+
+        verify(videoService, times(1)).hlsSegmentByObjectKey(eq("test-key"), eq(12), any());
+    }
+
+    @Test
+    void hlsMasterPlaylistByTitleId() {
+        when(videoService.hlsMasterPlaylistByTitleId(any())).thenReturn(Mono.just(ResponseEntity.ok().header("Content-Type", "application/vnd.apple.mpegurl").body("#EXTM3U\n")));
+        webTestClient.get().uri("/api/v1/videos/hls/title/title-id/master.m3u8").exchange().expectStatus().is2xxSuccessful();
+
+        verify(videoService, times(1)).hlsMasterPlaylistByTitleId("title-id");
+    }
+
+    @Test
+    void getAllTitles() {
+        when(videoService.getAllTitles()).thenReturn(Mono.just(ResponseEntity.ok(Collections.emptyList())));
+        webTestClient.get().uri("/api/v1/videos/titles").exchange().expectStatus().is2xxSuccessful();
+
+        verify(videoService, times(1)).getAllTitles();
+    }
+
+    @Test
+    void getContentPage() {
+        when(videoService.getContentPage(any())).thenReturn(Mono.just(ResponseEntity.ok(ContentPage.builder().contents(Collections.emptyList()).nextCursor("next").build())));
+        webTestClient.get().uri("/api/v1/videos/catalog?path=movies&type=mp4&sort=size&order=desc&limit=10").exchange().expectStatus().is2xxSuccessful()
+                .expectBody().jsonPath("$.nextCursor").isEqualTo("next");
+
+        verify(videoService, times(1)).getContentPage(ContentQuery.builder().pathPrefix("movies").type("mp4").sort(ContentQuery.Sort.SIZE).descending(true).limit(10).build());
+    }
+
+    @Test
+    void getContentPageRejectsUnknownOrders() {
+        webTestClient.get().uri("/api/v1/videos/catalog?sort=color").exchange().expectStatus().isBadRequest();
+        webTestClient.get().uri("/api/v1/videos/catalog?order=random").exchange().expectStatus().isBadRequest();
+
+        verify(videoService, times(0)).getContentPage(any());
+    }
+
+    @Test
+    void streamContentsAsNdjson() {
+        Content content = Content.builder().contentName("toystory.mp4").objectKey("test-key").build();
+        when(videoService.streamContents(any())).thenReturn(Mono.just(ResponseEntity.ok(Flux.just(content, content))));
+        webTestClient.get().uri("/api/v1/videos/catalog?type=mp4").accept(MediaType.APPLICATION_NDJSON).exchange().expectStatus().is2xxSuccessful()
+                .expectHeader().contentTypeCompatibleWith(MediaType.APPLICATION_NDJSON)
+                .expectBody(String.class).isEqualTo("{\"contentName\":\"toystory.mp4\",\"objectKey\":\"test-key\"}\n{\"contentName\":\"toystory.mp4\",\"objectKey\":\"test-key\"}\n");
+
+        verify(videoService, times(1)).streamContents(ContentQuery.builder().type("mp4").build());
+    }
+
+    @Test
+    void search() {
+        when(videoService.search(any(), anyInt())).thenReturn(Mono.just(ResponseEntity.ok(Collections.emptyList())));
+        webTestClient.get().uri("/api/v1/videos/search?q=toy story").exchange().expectStatus().is2xxSuccessful();
+
+        verify(videoService, times(1)).search("toy story", 20);
+    }
+
+    @Test
+    void uploadPartStreamsTheBody() {
+        Upload upload = Upload.builder().uploadId("upload-id").size(4).received(4).missing(Collections.emptyList()).build();
+        when(videoService.uploadPart(any(), anyLong(), any())).thenReturn(Mono.just(ResponseEntity.ok(upload)));
+        webTestClient.put().uri("/api/v1/videos/uploads/upload-id?offset=4").bodyValue(new byte[4]).exchange().expectStatus().is2xxSuccessful()
+                .expectBody().jsonPath("$.received").isEqualTo(4);
+
+        verify(videoService, times(1)).uploadPart(eq("upload-id"), eq(4L), any());
     }
 
     @Test
     void getAllContents() {
-        when(videoService.getAllContents()).thenReturn(ResponseEntity.ok(Collections.emptyList()));
+        when(videoService.getAllContents()).thenReturn(Mono.just(ResponseEntity.ok(Collections.emptyList())));
         webTestClient.get().uri("/api/v1/videos").exchange().expectStatus().is2xxSuccessful();
 
-        verify(videoService, times(0)).prepareContentByFilePath(any(), any(), any());
-        verify(videoService, times(0)).prepareContentByObjectKey(any(), any());
+        verify(videoService, times(0)).prepareContentByFilePath(any(), any(), any(), any(), any());
+        verify(videoService, times(0)).prepareContentByObjectKey(any(), any(), any(), any());
         verify(videoService, times(1)).getAllContents();
     }
 }
\ No newline at end of file
@@ -0,0 +1,68 @@
+package com.ask.home.videostream.delivery;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ChunkSizerTest {
+
+    private static final long MB = 1024 * 1024;
+
+    ChunkSizer chunkSizer = new ChunkSizer(256 * 1024, 8 * MB, 314700, Duration.ofSeconds(1), 2);
+
+    @Test
+    void chunkSizeDefaultsWithoutMeasurement() {
+        assertEquals(314700, chunkSizer.chunkSize("client"));
+        assertEquals(314700, chunkSizer.chunkSize(null));
+    }
+
+    @Test
+    void chunkSizeFollowsTheMeasuredThroughput() {
+        // 4MB in a second
+        chunkSizer.recordDelivery("client", 4 * MB, Duration.ofSeconds(1).toNanos());
+        assertEquals(4 * MB, chunkSizer.chunkSize("client"));
+        assertEquals(314700, chunkSizer.chunkSize("other"));
+    }
+
+    @Test
+    void chunkSizeStaysWithinBounds() {
+        chunkSizer.recordDelivery("fast", 100 * MB, Duration.ofMillis(100).toNanos());
+        chunkSizer.recordDelivery("slow", MB, Duration.ofSeconds(100).toNanos());
+        assertEquals(8 * MB, chunkSizer.chunkSize("fast"));
+        assertEquals(256 * 1024, chunkSizer.chunkSize("slow"));
+    }
+
+    @Test
+    void recordDeliverySmoothsTheThroughput() {
+        chunkSizer.recordDelivery("client", 4 * MB, Duration.ofSeconds(1).toNanos());
+        chunkSizer.recordDelivery("client", 2 * MB, Duration.ofSeconds(1).toNanos());
+        long size = chunkSizer.chunkSize("client");
+        assertTrue(size > 2 * MB && size < 4 * MB, "smoothed size " + size);
+    }
+
+    @Test
+    void recordDeliveryIgnoresSmallResponses() {
+        chunkSizer.recordDelivery("client", 1024, 1);
+        assertEquals(314700, chunkSizer.chunkSize("client"));
+    }
+
+    @Test
+    void chunkSizeReportsEveryChosenSize() {
+        List<Long> sizes = new ArrayList<>();
+        chunkSizer.setSizeListener(sizes::add);
+        chunkSizer.recordDelivery("client", 4 * MB, Duration.ofSeconds(1).toNanos());
+        chunkSizer.chunkSize("client");
+        chunkSizer.chunkSize("other");
+        assertEquals(List.of(4 * MB, 314700L), sizes);
+    }
+
+    @Test
+    void constructorRejectsInvalidBounds() {
+        assertThrows(IllegalArgumentException.class, () -> new ChunkSizer(0, MB, MB, Duration.ofSeconds(1), 2));
+        assertThrows(IllegalArgumentException.class, () -> new ChunkSizer(2 * MB, MB, MB, Duration.ofSeconds(1), 2));
+    }
+}
@@ -0,0 +1,56 @@
+package com.ask.home.videostream.hls;
+
+import com.ask.home.videostream.mp4.FragmentedLayout;
+import com.ask.home.videostream.mp4.Mp4TestFiles;
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class HlsPlaylistTest {
+
+    // 1280x720 video keyframes at 0 and 1.5s, in 400 byte segments of a 3s movie.
+    FragmentedLayout layout = new FragmentedLayout(Mp4TestFiles.box("ftyp", "isom\0\0\0\0".getBytes(StandardCharsets.ISO_8859_1)),
+            ByteBuffer.wrap(Mp4TestFiles.moovWithAudio(1000, 1400, 1300, 1700)), Duration.ofSeconds(1));
+
+    @Test
+    void renderWritesAFragmentedMp4Playlist() {
+        String playlist = HlsPlaylist.render(layout, "init.mp4", "%d.m4s");
+
+        assertEquals("""
+                #EXTM3U
+                #EXT-X-VERSION:7
+                #EXT-X-TARGETDURATION:2
+                #EXT-X-MEDIA-SEQUENCE:0
+                #EXT-X-PLAYLIST-TYPE:VOD
+                #EXT-X-INDEPENDENT-SEGMENTS
+                #EXT-X-MAP:URI="init.mp4"
+                #EXTINF:1.500,
+                0.m4s
+                #EXTINF:1.500,
+                1.m4s
+                #EXT-X-ENDLIST
+                """, playlist);
+    }
+
+    @Test
+    void renderMasterListsTheVariantsByBandwidth() {
+        HlsPlaylist.Variant variant = HlsPlaylist.variant(layout, "hd.m3u8");
+
+        // 400 bytes every 1.5s.
+        assertEquals(new HlsPlaylist.Variant("hd.m3u8", 2134, 2134, 1280, 720, "avc1.64001f,mp4a.40.2"), variant);
+        assertEquals("""
+                #EXTM3U
+                #EXT-X-VERSION:7
+                #EXT-X-INDEPENDENT-SEGMENTS
+                #EXT-X-STREAM-INF:BANDWIDTH=800,AVERAGE-BANDWIDTH=600
+                sd.m3u8
+                #EXT-X-STREAM-INF:BANDWIDTH=2134,AVERAGE-BANDWIDTH=2134,CODECS="avc1.64001f,mp4a.40.2",RESOLUTION=1280x720
+                hd.m3u8
+                """, HlsPlaylist.renderMaster(List.of(variant, new HlsPlaylist.Variant("sd.m3u8", 800, 600, 0, 0, null))));
+    }
+}
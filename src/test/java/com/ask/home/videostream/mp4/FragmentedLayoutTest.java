@@ -0,0 +1,85 @@
+package com.ask.home.videostream.mp4;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class FragmentedLayoutTest {
+
+    static final byte[] FTYP = Mp4TestFiles.box("ftyp", "isom\0\0\0\0isomiso2".getBytes(StandardCharsets.ISO_8859_1));
+    // video chunks at 1000 and 1400, an audio chunk after each.
+    static final byte[] MOOV = Mp4TestFiles.moovWithAudio(1000, 1400, 1300, 1700);
+
+    @Test
+    void segmentsAreCutAtTheVideoKeyframesReachingTheTarget() {
+        FragmentedLayout layout = new FragmentedLayout(FTYP, ByteBuffer.wrap(MOOV), Duration.ofSeconds(1));
+
+        assertEquals(List.of(new FragmentedLayout.Segment(1000, 400, 1500), new FragmentedLayout.Segment(1400, 400, 1500)), layout.getSegments());
+        assertEquals(3000, layout.getDurationMillis());
+        assertEquals(1280, layout.getWidth());
+    }
+
+    @Test
+    void fragmentHeaderDescribesTheSamplesOfEveryTrackInTheSegment() {
+        FragmentedLayout layout = new FragmentedLayout(FTYP, ByteBuffer.wrap(MOOV), Duration.ofSeconds(1));
+        byte[] file = new byte[1800];
+        for (int i = 0; i < file.length; i++) {
+            file[i] = (byte) (i * 7);
+        }
+
+        ByteBuffer header = ByteBuffer.wrap(layout.fragmentHeader(1));
+        int moofSize = header.getInt(0);
+        // mfhd sequence number.
+        assertEquals(2, header.getInt(8 + 12));
+        int videoTraf = 8 + 16;
+        assertEquals(1, header.getInt(videoTraf + 8 + 12));
+        // decode time after three 45000 tick samples.
+        assertEquals(135_000, header.getLong(videoTraf + 8 + 16 + 12));
+        int videoTrun = videoTraf + 8 + 16 + 20;
+        assertEquals(3, header.getInt(videoTrun + 12));
+        assertEquals(0x02000000, header.getInt(videoTrun + 20 + 8));
+        assertEquals(0x01010000, header.getInt(videoTrun + 20 + 12 + 8));
+        int audioTraf = videoTraf + header.getInt(videoTraf);
+        assertEquals(2, header.getInt(audioTraf + 8 + 12));
+        assertEquals(2048, header.getLong(audioTraf + 8 + 16 + 12));
+        assertEquals("mdat", new String(header.array(), moofSize + 4, 4, StandardCharsets.ISO_8859_1));
+        assertEquals(8 + 400, header.getInt(moofSize));
+
+        // the data offsets address the samples in the segment.
+        byte[] segment = Mp4TestFiles.concat(header.array(), Arrays.copyOfRange(file, 1400, 1800));
+        int videoData = header.getInt(videoTrun + 16);
+        int audioData = header.getInt(audioTraf + 8 + 16 + 20 + 16);
+        assertArrayEquals(Arrays.copyOfRange(file, 1400, 1700), Arrays.copyOfRange(segment, videoData, videoData + 300));
+        assertArrayEquals(Arrays.copyOfRange(file, 1700, 1800), Arrays.copyOfRange(segment, audioData, audioData + 100));
+    }
+
+    @Test
+    void initSectionHoldsTheTracksWithoutSamples() {
+        FragmentedLayout layout = new FragmentedLayout(FTYP, ByteBuffer.wrap(MOOV), Duration.ofSeconds(1));
+        byte[] init = layout.getInitSection();
+
+        assertArrayEquals(FTYP, Arrays.copyOf(init, FTYP.length));
+        ByteBuffer moov = ByteBuffer.wrap(init, FTYP.length, init.length - FTYP.length);
+        List<Mp4Track> tracks = Mp4BoxParser.parseTracks(moov);
+        assertEquals(2, tracks.size());
+        assertEquals(0, tracks.get(0).getSampleCount());
+        assertEquals(0, tracks.get(1).getSampleCount());
+        String boxes = new String(init, StandardCharsets.ISO_8859_1);
+        assertTrue(boxes.contains("mvex"));
+        assertEquals(2, boxes.split("trex", -1).length - 1);
+        assertFalse(boxes.contains("stss"));
+    }
+
+    @Test
+    void samplesOutOfFileOrderCantBeFragmented() {
+        byte[] moov = Mp4TestFiles.moov(1400, 1000);
+
+        assertThrows(IllegalArgumentException.class, () -> new FragmentedLayout(FTYP, ByteBuffer.wrap(moov), Duration.ofSeconds(1)));
+    }
+}
@@ -0,0 +1,118 @@
+package com.ask.home.videostream.mp4;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class Mp4BoxParserTest {
+
+    @Test
+    void parseMoovIndexesTheKeyframesOfTheVideoTrack() {
+        Mp4Index index = Mp4BoxParser.parseMoov(ByteBuffer.wrap(Mp4TestFiles.moov(1000, 2000)), 5000);
+
+        assertEquals(5000, index.getMoovOffset());
+        assertEquals(Mp4TestFiles.moov(1000, 2000).length, index.getMoovSize());
+        assertEquals(30_000, index.getDurationMillis());
+        assertEquals(1280, index.getWidth());
+        assertEquals(720, index.getHeight());
+        assertArrayEquals(new long[]{0, 1500}, index.getKeyframeTimesMillis());
+        // samples of 100 bytes, three per chunk: the fourth sample opens the second chunk.
+        assertArrayEquals(new long[]{1000, 2000}, index.getKeyframeOffsets());
+    }
+
+    @Test
+    void parseMoovSkipsTracksThatAreNotVideo() {
+        byte[] sound = Mp4TestFiles.box("trak", Mp4TestFiles.box("mdia", Mp4TestFiles.box("hdlr", Mp4TestFiles.handler("soun"))));
+        byte[] moov = Mp4TestFiles.moov(1000, 2000);
+        byte[] withSound = Mp4TestFiles.box("moov", Mp4TestFiles.concat(sound, Arrays.copyOfRange(moov, 8, moov.length)));
+
+        Mp4Index index = Mp4BoxParser.parseMoov(ByteBuffer.wrap(withSound), 0);
+
+        assertEquals(2, index.getKeyframeCount());
+    }
+
+    @Test
+    void parseMoovRejectsMalformedBoxes() {
+        byte[] moov = Mp4TestFiles.moov(1000, 2000);
+        assertThrows(IllegalArgumentException.class, () -> Mp4BoxParser.parseMoov(ByteBuffer.wrap(Mp4TestFiles.box("free", new byte[8])), 0));
+        assertThrows(IllegalArgumentException.class, () -> Mp4BoxParser.parseMoov(ByteBuffer.wrap(Mp4TestFiles.box("moov", Mp4TestFiles.mvhd())), 0));
+        assertThrows(IllegalArgumentException.class, () -> Mp4BoxParser.parseMoov(ByteBuffer.wrap(Arrays.copyOf(moov, moov.length / 2)), 0));
+    }
+
+    @Test
+    void parseMoovRejectsEntryCountsBeyondTheirBoxes() {
+        for (String table : new String[]{"stss", "stco", "stsc", "stts"}) {
+            for (int count : new int[]{0x7fffffff, -1, 3}) {
+                byte[] moov = Mp4TestFiles.moov(1000, 2000);
+                // count after the type, version and flags.
+                ByteBuffer.wrap(moov).putInt(indexOf(moov, table) + 8, count);
+                assertThrows(IllegalArgumentException.class, () -> Mp4BoxParser.parseMoov(ByteBuffer.wrap(moov), 0), table + " " + count);
+            }
+        }
+    }
+
+    @Test
+    void parseTracksReadsTheCodecOfTheSampleDescription() {
+        List<Mp4Track> tracks = Mp4BoxParser.parseTracks(ByteBuffer.wrap(Mp4TestFiles.moovWithAudio(1000, 2000, 3000)));
+        assertEquals("avc1.64001f", tracks.get(0).getCodec());
+        assertEquals("mp4a.40.2", tracks.get(1).getCodec());
+
+        // Main profile, compatible with Main and Main 10, main tier level 3.1, progressive source flag.
+        byte[] hvcC = {1, 0x01, 0x60, 0, 0, 0, (byte) 0x90, 0, 0, 0, 0, 0, 93, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0};
+        byte[] hevc = Mp4TestFiles.box("hvc1", Mp4TestFiles.concat(Mp4TestFiles.sampleEntry(78), Mp4TestFiles.box("hvcC", hvcC)));
+        assertEquals("hvc1.1.6.L93.90", Mp4BoxParser.parseTracks(ByteBuffer.wrap(Mp4TestFiles.moov(1000, 2000, hevc))).getFirst().getCodec());
+
+        byte[] vp9 = Mp4TestFiles.box("vp09", Mp4TestFiles.sampleEntry(78));
+        assertNull(Mp4BoxParser.parseTracks(ByteBuffer.wrap(Mp4TestFiles.moov(1000, 2000, vp9))).getFirst().getCodec());
+        byte[] truncated = Mp4TestFiles.box("avc1", Mp4TestFiles.sampleEntry(10));
+        assertNull(Mp4BoxParser.parseTracks(ByteBuffer.wrap(Mp4TestFiles.moov(1000, 2000, truncated))).getFirst().getCodec());
+    }
+
+    @Test
+    void relocateChunkOffsetsMovesTheOffsetsInTheRange() {
+        byte[] moov = Mp4TestFiles.moov(1000, 2000);
+
+        byte[] relocated = Mp4BoxParser.relocateChunkOffsets(ByteBuffer.wrap(moov), 1500, 5000, moov.length);
+
+        assertEquals(moov.length, relocated.length);
+        assertArrayEquals(new long[]{1000, 2000 + moov.length}, Mp4BoxParser.parseMoov(ByteBuffer.wrap(relocated), 0).getKeyframeOffsets());
+        assertThrows(IllegalArgumentException.class, () -> Mp4BoxParser.relocateChunkOffsets(ByteBuffer.wrap(moov), 0, 5000, 0xFFFFFFFFL));
+    }
+
+    @Test
+    void readBoxHeaderReadsLargeAndOpenEndedSizes() {
+        ByteBuffer large = ByteBuffer.allocate(16).putInt(1).put(Mp4TestFiles.type("mdat")).putLong(1L << 33).flip();
+        assertEquals(new Mp4BoxParser.BoxHeader("mdat", 100, 1L << 33, 16), Mp4BoxParser.readBoxHeader(large, 100, Long.MAX_VALUE));
+
+        ByteBuffer openEnded = ByteBuffer.allocate(8).putInt(0).put(Mp4TestFiles.type("mdat")).flip();
+        assertEquals(new Mp4BoxParser.BoxHeader("mdat", 100, 900, 8), Mp4BoxParser.readBoxHeader(openEnded, 100, 1000));
+
+        ByteBuffer overflowing = ByteBuffer.allocate(8).putInt(2000).put(Mp4TestFiles.type("mdat")).flip();
+        assertNull(Mp4BoxParser.readBoxHeader(overflowing, 100, 1000));
+    }
+
+    @Test
+    void keyframeAtAnswersTheKeyframeAtOrBeforeTheTime() {
+        Mp4Index index = new Mp4Index(0, 0, 30_000, new long[]{0, 1500, 1500, 4000}, new long[]{10, 20, 30, 40});
+
+        assertEquals(new Mp4Index.Keyframe(0, 10), index.keyframeAt(1499));
+        assertEquals(new Mp4Index.Keyframe(1500, 20), index.keyframeAt(1500));
+        assertEquals(new Mp4Index.Keyframe(1500, 20), index.keyframeAt(3999));
+        assertEquals(new Mp4Index.Keyframe(4000, 40), index.keyframeAt(60_000));
+        assertNull(new Mp4Index(0, 0, 0, new long[0], new long[0]).keyframeAt(0));
+    }
+
+    private static int indexOf(byte[] bytes, String type) {
+        for (int i = 0; i + 4 <= bytes.length; i++) {
+            if (new String(bytes, i, 4, StandardCharsets.ISO_8859_1).equals(type)) {
+                return i;
+            }
+        }
+        throw new IllegalArgumentException(type);
+    }
+}
@@ -0,0 +1,89 @@
+package com.ask.home.videostream.mp4;
+
+import com.ask.home.videostream.adapter.LocalFileContentAdapter;
+import com.ask.home.videostream.catalog.ContentCatalog;
+import com.ask.home.videostream.model.Content;
+import com.ask.home.videostream.model.ContentRequest;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import reactor.core.publisher.Mono;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class Mp4IndexCacheTest {
+
+    @TempDir
+    Path tempDir;
+
+    LocalFileContentAdapter localFileContentAdapter;
+    Mp4IndexCache mp4IndexCache;
+    byte[] file;
+
+    @BeforeEach
+    void setup() throws IOException {
+        file = Mp4TestFiles.moovAtEnd(100_000);
+        Files.write(tempDir.resolve("sample.mp4"), file);
+        localFileContentAdapter = new LocalFileContentAdapter(tempDir.toString());
+        localFileContentAdapter.start();
+        mp4IndexCache = new Mp4IndexCache(localFileContentAdapter, 10);
+    }
+
+    @AfterEach
+    void tearDown() {
+        localFileContentAdapter.close();
+    }
+
+    @Test
+    void indexFindsTheMoovAfterTheMediaData() {
+        Content content = localFileContentAdapter.findAllContents().blockFirst();
+
+        Mp4Index index = mp4IndexCache.index(content, request(content), file.length).block();
+
+        assertNotNull(index);
+        assertEquals(file.length - Mp4TestFiles.moov(0, 0).length, index.getMoovOffset());
+        assertEquals(new Mp4Index.Keyframe(1500, 332), index.keyframeAt(2000));
+        assertEquals(1, mp4IndexCache.size());
+        assertSame(index, mp4IndexCache.index(content, request(content), file.length).block());
+    }
+
+    @Test
+    void concurrentFirstSeeksShareOneRead() {
+        Content content = localFileContentAdapter.findAllContents().blockFirst();
+
+        Mono<Mp4Index> first = mp4IndexCache.index(content, request(content), file.length);
+        Mono<Mp4Index> second = mp4IndexCache.index(content, request(content), file.length);
+
+        assertSame(first, second);
+        assertSame(first.block(), second.block());
+        assertEquals(1, mp4IndexCache.size());
+    }
+
+    @Test
+    void indexIsDroppedWhenTheContentChanges() {
+        Content content = localFileContentAdapter.findAllContents().blockFirst();
+        mp4IndexCache.index(content, request(content), file.length).block();
+
+        localFileContentAdapter.getContentCatalog().unregister(ContentCatalog.relativePath(content));
+
+        assertEquals(0, mp4IndexCache.size());
+    }
+
+    @Test
+    void indexFailsWithoutMoov() throws IOException {
+        Files.write(tempDir.resolve("sample.mp4"), Mp4TestFiles.box("mdat", new byte[1000]));
+        Content content = localFileContentAdapter.findAllContents().blockFirst();
+
+        assertThrows(IllegalArgumentException.class, () -> mp4IndexCache.index(content, request(content), 1008).block());
+        assertEquals(0, mp4IndexCache.size());
+    }
+
+    private static ContentRequest request(final Content content) {
+        return ContentRequest.builder().fileName(content.getContentName()).fileType(content.getContentType()).filePath(content.getContentPath()).objectKey(content.getObjectKey()).build();
+    }
+}
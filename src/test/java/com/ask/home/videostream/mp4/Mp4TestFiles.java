@@ -0,0 +1,118 @@
+package com.ask.home.videostream.mp4;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Builds the boxes of synthetic MP4 files.
+ */
+public final class Mp4TestFiles {
+
+    // ES_Descriptor of a DecoderConfigDescriptor of MPEG-4 audio with an AAC-LC AudioSpecificConfig, then an SLConfig.
+    private static final byte[] AAC_LC_DESCRIPTORS = {3, 25, 0, 1, 0, 4, 17, 0x40, 0x15, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 5, 2, 0x11, (byte) 0x90, 6, 1, 2};
+
+    private static final byte[] AVC_SAMPLE_ENTRY = box("avc1", concat(sampleEntry(78), box("avcC", new byte[]{1, 0x64, 0x00, 0x1f, (byte) 0xff, (byte) 0xe0})));
+
+    private Mp4TestFiles() {
+    }
+
+    /**
+     * moov of a 30s movie with a 1280x720 H.264 High 3.1 video track of six 100 byte samples every 500ms in two chunks, samples 1 and 4
+     * being keyframes.
+     */
+    public static byte[] moov(final int firstChunkOffset, final int secondChunkOffset) {
+        return box("moov", concat(mvhd(), videoTrak(firstChunkOffset, secondChunkOffset, AVC_SAMPLE_ENTRY)));
+    }
+
+    /**
+     * moov of {@link #moov(int, int)} with another sample entry for the video track.
+     */
+    static byte[] moov(final int firstChunkOffset, final int secondChunkOffset, final byte[] sampleEntry) {
+        return box("moov", concat(mvhd(), videoTrak(firstChunkOffset, secondChunkOffset, sampleEntry)));
+    }
+
+    /**
+     * moov of {@link #moov(int, int)} with a second, AAC-LC audio, track of a chunk of two 50 byte samples of 1024 ticks
+     * at 48kHz at every offset.
+     */
+    public static byte[] moovWithAudio(final int firstChunkOffset, final int secondChunkOffset, final int... audioChunkOffsets) {
+        int[] stco = new int[2 + audioChunkOffsets.length];
+        stco[1] = audioChunkOffsets.length;
+        System.arraycopy(audioChunkOffsets, 0, stco, 2, audioChunkOffsets.length);
+        byte[] stbl = box("stbl", concat(
+                box("stsd", concat(ints(0, 1), box("mp4a", concat(sampleEntry(28), box("esds", concat(ints(0), AAC_LC_DESCRIPTORS)))))),
+                box("stts", ints(0, 1, 2 * audioChunkOffsets.length, 1024)),
+                box("stsc", ints(0, 1, 1, 2, 1)),
+                box("stsz", ints(0, 50, 2 * audioChunkOffsets.length)),
+                box("stco", ints(stco))));
+        byte[] mdia = box("mdia", concat(box("mdhd", ints(0, 0, 0, 48_000, 0, 0)), box("hdlr", handler("soun")), box("minf", stbl)));
+        byte[] audio = box("trak", concat(box("tkhd", ByteBuffer.allocate(84).putInt(12, 2).array()), mdia));
+        return box("moov", concat(mvhd(), videoTrak(firstChunkOffset, secondChunkOffset, AVC_SAMPLE_ENTRY), audio));
+    }
+
+    private static byte[] videoTrak(final int firstChunkOffset, final int secondChunkOffset, final byte[] sampleEntry) {
+        byte[] stbl = box("stbl", concat(
+                box("stsd", concat(ints(0, 1), sampleEntry)),
+                box("stts", ints(0, 1, 6, 45_000)),
+                box("stss", ints(0, 2, 1, 4)),
+                box("stsc", ints(0, 1, 1, 3, 1)),
+                box("stsz", ints(0, 100, 6)),
+                box("stco", ints(0, 2, firstChunkOffset, secondChunkOffset))));
+        byte[] mdia = box("mdia", concat(box("mdhd", ints(0, 0, 0, 90_000, 270_000, 0)), box("hdlr", handler("vide")), box("minf", stbl)));
+        // track_ID 1.
+        byte[] tkhd = box("tkhd", ByteBuffer.allocate(84).putInt(12, 1).putInt(76, 1280 << 16).putInt(80, 720 << 16).array());
+        return box("trak", concat(tkhd, mdia));
+    }
+
+    /**
+     * Fields of a sample entry before its child boxes, data_reference_index 1.
+     */
+    static byte[] sampleEntry(final int size) {
+        byte[] fields = new byte[size];
+        fields[7] = 1;
+        return fields;
+    }
+
+    public static byte[] box(final String type, final byte[] content) {
+        return ByteBuffer.allocate(8 + content.length).putInt(8 + content.length).put(type(type)).put(content).array();
+    }
+
+    static byte[] mvhd() {
+        return box("mvhd", Arrays.copyOf(ints(0, 0, 0, 1000, 30_000), 100));
+    }
+
+    static byte[] handler(final String handlerType) {
+        return concat(ints(0, 0), type(handlerType), new byte[13]);
+    }
+
+    private static byte[] ints(final int... values) {
+        ByteBuffer buffer = ByteBuffer.allocate(values.length * 4);
+        Arrays.stream(values).forEach(buffer::putInt);
+        return buffer.array();
+    }
+
+    static byte[] type(final String type) {
+        return type.getBytes(StandardCharsets.ISO_8859_1);
+    }
+
+    public static byte[] concat(final byte[]... parts) {
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        Arrays.stream(parts).forEach(outputStream::writeBytes);
+        return outputStream.toByteArray();
+    }
+
+    /**
+     * ftyp, an mdat of the size with the samples of {@link #moov(int, int)} at 32 and 332, then moov: the layout most
+     * encoders write.
+     */
+    public static byte[] moovAtEnd(final int mdatSize) {
+        byte[] ftyp = box("ftyp", "isom\0\0\0\0isomiso2".getBytes(StandardCharsets.ISO_8859_1));
+        byte[] samples = new byte[mdatSize];
+        for (int i = 0; i < mdatSize; i++) {
+            samples[i] = (byte) i;
+        }
+        return concat(ftyp, box("mdat", samples), moov(ftyp.length + 8, ftyp.length + 8 + 300));
+    }
+}
@@ -1,20 +1,48 @@
 package com.ask.home.videostream.service;
 
 import com.ask.home.videostream.adapter.ContentAdapter;
+import com.ask.home.videostream.cache.ReadAheadTracker;
+import com.ask.home.videostream.catalog.RenditionGroups;
+import com.ask.home.videostream.catalog.SearchIndex;
+import com.ask.home.videostream.delivery.ChunkSizer;
+import com.ask.home.videostream.hls.HlsPlaylistCache;
 import com.ask.home.videostream.model.Content;
+import com.ask.home.videostream.model.ContentPage;
+import com.ask.home.videostream.model.ContentQuery;
+import com.ask.home.videostream.model.ContentRegion;
+import com.ask.home.videostream.model.ContentRequest;
+import com.ask.home.videostream.model.SeekPosition;
+import com.ask.home.videostream.model.Title;
+import com.ask.home.videostream.model.Upload;
+import com.ask.home.videostream.mp4.FragmentedLayout;
+import com.ask.home.videostream.mp4.Mp4Index;
+import com.ask.home.videostream.mp4.Mp4IndexCache;
+import com.ask.home.videostream.mp4.Mp4TestFiles;
+import com.ask.home.videostream.upload.UploadManager;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.Mockito;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.core.io.buffer.DefaultDataBufferFactory;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.ResponseEntity;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
 
-import java.util.Collections;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Arrays;
 import java.util.List;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
 
 @ExtendWith(MockitoExtension.class)
 class VideoServiceTest {
@@ -25,67 +53,415 @@ class VideoServiceTest {
     @Mock
     ContentAdapter videoContentAdapter;
 
+    @Mock
+    ReadAheadTracker readAheadTracker;
+
+    @Mock
+    ChunkSizer chunkSizer;
+
+    @Mock
+    Mp4IndexCache mp4IndexCache;
+
+    @Mock
+    HlsPlaylistCache hlsPlaylistCache;
+
+    @Mock
+    RenditionGroups renditionGroups;
+
+    @Mock
+    SearchIndex searchIndex;
+
+    @Mock
+    UploadManager uploadManager;
+
 
     @Test
     void prepareContentByObjectKeyWithValidObjectKey() {
-        Content content = Content.builder().contentPath("").contentName("toystory.mp4").content(new byte[]{}).build();
-        Mockito.when(videoContentAdapter.getContent(any())).thenReturn(content);
-        Mockito.when(videoContentAdapter.findFileByKey(any())).thenReturn(content);
-        Mockito.when(videoContentAdapter.getContentSize(any())).thenReturn(10L);
+        Content content = Content.builder().contentPath("").contentName("toystory.mp4").data(Flux.empty()).rangeStart(0L).rangeEnd(9L).contentLength(10L).build();
+        Mockito.when(videoContentAdapter.getContent(any())).thenReturn(Mono.just(content));
+        Mockito.when(videoContentAdapter.findFileByKey(any())).thenReturn(Mono.just(content));
+        Mockito.when(videoContentAdapter.getContentSize(any())).thenReturn(Mono.just(10L));
 
-        ResponseEntity<byte[]> responseEntity = videoService.prepareContentByObjectKey("bytes=0-", "test-key");
+        ResponseEntity<ContentRegion> responseEntity = videoService.prepareContentByObjectKey("bytes=0-", "test-key", "client").block();
         assertNotNull(responseEntity);
         assertTrue(responseEntity.getStatusCode().is2xxSuccessful());
     }
 
     @Test
     void prepareContentByObjectKeyWithContentNotFound() {
-        Mockito.when(videoContentAdapter.findFileByKey(any())).thenReturn(null);
+        Mockito.when(videoContentAdapter.findFileByKey(any())).thenReturn(Mono.empty());
 
-        ResponseEntity<byte[]> responseEntity = videoService.prepareContentByObjectKey("bytes=0-", "test-key");
+        ResponseEntity<ContentRegion> responseEntity = videoService.prepareContentByObjectKey("bytes=0-", "test-key", "client").block();
         assertNotNull(responseEntity);
         assertTrue(responseEntity.getStatusCode().is4xxClientError());
     }
 
     @Test
     void prepareContentByFilePath() {
-        Content content = Content.builder().contentPath("").contentName("toystory.mp4").content(new byte[]{}).build();
-        Mockito.when(videoContentAdapter.getContent(any())).thenReturn(content);
-        Mockito.when(videoContentAdapter.getContentSize(any())).thenReturn(10L);
+        Content content = Content.builder().contentPath("").contentName("toystory.mp4").data(Flux.empty()).rangeStart(0L).rangeEnd(9L).contentLength(10L).build();
+        Mockito.when(videoContentAdapter.getContent(any())).thenReturn(Mono.just(content));
+        Mockito.when(videoContentAdapter.getContentSize(any())).thenReturn(Mono.just(10L));
 
-        ResponseEntity<byte[]> responseEntity = videoService.prepareContentByFilePath("bytes=0-", "toystory", "mp4");
+        Mockito.when(videoContentAdapter.findFileByPath(any())).thenReturn(Mono.empty());
+        ResponseEntity<ContentRegion> responseEntity = videoService.prepareContentByFilePath("bytes=0-", "toystory", "mp4", "client").block();
         assertNotNull(responseEntity);
         assertTrue(responseEntity.getStatusCode().is2xxSuccessful());
+        Mockito.verify(videoContentAdapter, Mockito.times(1)).getContentSize(any());
     }
 
     @Test
     void prepareContentByFilePathWithoutRange() {
-        Content content = Content.builder().contentPath("").contentName("toystory.mp4").content(new byte[]{}).build();
-        Mockito.when(videoContentAdapter.getContent(any())).thenReturn(content);
-        Mockito.when(videoContentAdapter.getContentSize(any())).thenReturn(10L);
+        Content content = Content.builder().contentPath("").contentName("toystory.mp4").data(Flux.empty()).rangeStart(0L).rangeEnd(9L).contentLength(10L).build();
+        Mockito.when(videoContentAdapter.getContent(any())).thenReturn(Mono.just(content));
+        Mockito.when(videoContentAdapter.getContentSize(any())).thenReturn(Mono.just(10L));
 
-        ResponseEntity<byte[]> responseEntity = videoService.prepareContentByFilePath(null, "toystory", "mp4");
+        Mockito.when(videoContentAdapter.findFileByPath(any())).thenReturn(Mono.empty());
+        ResponseEntity<ContentRegion> responseEntity = videoService.prepareContentByFilePath(null, "toystory", "mp4", "client").block();
         assertNotNull(responseEntity);
         assertTrue(responseEntity.getStatusCode().is2xxSuccessful());
     }
 
+    @Test
+    void prepareContentByObjectKeySizesOpenEndedRangeForTheClient() {
+        Content content = Content.builder().contentPath("").contentName("toystory.mp4").objectKey("test-key").data(Flux.empty()).rangeStart(1000L).rangeEnd(5000L).contentLength(4001L).build();
+        Mockito.when(videoContentAdapter.findFileByKey(any())).thenReturn(Mono.just(content));
+        Mockito.when(videoContentAdapter.getContentSize(any())).thenReturn(Mono.just(1_000_000L));
+        Mockito.when(videoContentAdapter.getContent(any())).thenReturn(Mono.just(content));
+        Mockito.when(chunkSizer.chunkSize("client")).thenReturn(4000L);
+
+        ResponseEntity<ContentRegion> responseEntity = videoService.prepareContentByObjectKey("bytes=1000-", "test-key", "client").block();
+
+        assertNotNull(responseEntity);
+        assertEquals("client", responseEntity.getBody().getClientId());
+        ArgumentCaptor<ContentRequest> contentRequest = ArgumentCaptor.forClass(ContentRequest.class);
+        Mockito.verify(videoContentAdapter).getContent(contentRequest.capture());
+        assertEquals(1000L, contentRequest.getValue().getRangeStart());
+        assertEquals(5000L, contentRequest.getValue().getRangeEnd());
+    }
+
+    @Test
+    void prepareContentByObjectKeyPrefetchesSequentialPlayback() {
+        Content content = Content.builder().contentPath("").contentName("toystory.mp4").objectKey("test-key").data(Flux.empty()).rangeStart(100L).rangeEnd(199L).contentLength(100L).build();
+        Mockito.when(videoContentAdapter.getContent(any())).thenReturn(Mono.just(content));
+        Mockito.when(videoContentAdapter.findFileByKey(any())).thenReturn(Mono.just(content));
+        Mockito.when(videoContentAdapter.getContentSize(any())).thenReturn(Mono.just(10_000L));
+        Mockito.when(readAheadTracker.record("client", "test-key", 100L, 199L)).thenReturn(3);
+
+        ResponseEntity<ContentRegion> responseEntity = videoService.prepareContentByObjectKey("bytes=100-199", "test-key", "client").block();
+        assertTrue(responseEntity.getStatusCode().is2xxSuccessful());
+        Mockito.verify(videoContentAdapter).prefetch(any(), eq(200L), eq(499L));
+    }
+
+    @Test
+    void prepareContentByObjectKeyStreamsMultipleRangesAsParts() {
+        Content content = Content.builder().contentPath("").contentName("toystory.mp4").contentType("mp4").objectKey("test-key").build();
+        Mockito.when(videoContentAdapter.findFileByKey(any())).thenReturn(Mono.just(content));
+        Mockito.when(videoContentAdapter.getContentSize(any())).thenReturn(Mono.just(10_000L));
+        Mockito.when(videoContentAdapter.getContent(any())).thenAnswer(invocation -> {
+            ContentRequest request = invocation.getArgument(0);
+            String bytes = "<" + request.getRangeStart() + "-" + request.getRangeEnd() + ">";
+            return Mono.just(Content.builder().data(Flux.just(DefaultDataBufferFactory.sharedInstance.wrap(bytes.getBytes(StandardCharsets.US_ASCII)))).build());
+        });
+
+        Mockito.when(chunkSizer.chunkSize("client")).thenReturn(1000L);
+
+        ResponseEntity<ContentRegion> responseEntity = videoService.prepareContentByObjectKey("bytes=9990-, 0-99, 50-199", "test-key", "client").block();
+
+        assertNotNull(responseEntity);
+        assertEquals(206, responseEntity.getStatusCode().value());
+        String contentType = responseEntity.getHeaders().getFirst("Content-Type");
+        assertTrue(contentType.startsWith("multipart/byteranges; boundary="));
+        String boundary = contentType.substring(contentType.indexOf('=') + 1);
+        String body = DataBufferUtils.join(responseEntity.getBody().getData()).map(buffer -> buffer.toString(StandardCharsets.US_ASCII)).block();
+        assertEquals("\r\n--" + boundary + "\r\nContent-Type: video/mp4\r\nContent-Range: bytes 0-199/10000\r\n\r\n<0-199>"
+                + "\r\n--" + boundary + "\r\nContent-Type: video/mp4\r\nContent-Range: bytes 9990-9999/10000\r\n\r\n<9990-9999>"
+                + "\r\n--" + boundary + "--\r\n", body);
+        // the parts stand for 200 and 10 bytes of content.
+        long contentLength = body.length() - "<0-199><9990-9999>".length() + 210;
+        assertEquals(String.valueOf(contentLength), responseEntity.getHeaders().getFirst("Content-Length"));
+        Mockito.verifyNoInteractions(readAheadTracker);
+    }
+
+    @Test
+    void prepareContentByObjectKeyWithUnsatisfiableRange() {
+        Content content = Content.builder().contentPath("").contentName("toystory.mp4").objectKey("test-key").build();
+        Mockito.when(videoContentAdapter.findFileByKey(any())).thenReturn(Mono.just(content));
+        Mockito.when(videoContentAdapter.getContentSize(any())).thenReturn(Mono.just(10_000L));
+
+        ResponseEntity<ContentRegion> responseEntity = videoService.prepareContentByObjectKey("bytes=20000-", "test-key", "client").block();
+
+        assertNotNull(responseEntity);
+        assertEquals(416, responseEntity.getStatusCode().value());
+        assertEquals("bytes */10000", responseEntity.getHeaders().getFirst("Content-Range"));
+        Mockito.verify(videoContentAdapter, Mockito.never()).getContent(any());
+    }
+
+    @Test
+    void prepareContentByObjectKeyAddsValidators() {
+        Content content = catalogued();
+        Mockito.when(videoContentAdapter.findFileByKey(any())).thenReturn(Mono.just(content));
+        Mockito.when(videoContentAdapter.getContentSize(any())).thenReturn(Mono.just(10_000L));
+        Mockito.when(videoContentAdapter.getContent(any())).thenReturn(Mono.just(Content.builder().data(Flux.empty()).rangeStart(0L).rangeEnd(99L).contentLength(100L).build()));
+
+        ResponseEntity<ContentRegion> responseEntity = videoService.prepareContentByObjectKey("bytes=0-99", "test-key", "client", new HttpHeaders()).block();
+
+        assertNotNull(responseEntity);
+        assertEquals(206, responseEntity.getStatusCode().value());
+        assertEquals("\"etag\"", responseEntity.getHeaders().getETag());
+        assertEquals(1_700_000_000_000L, responseEntity.getHeaders().getLastModified());
+    }
+
+    @Test
+    void prepareContentByObjectKeyNotModified() {
+        Mockito.when(videoContentAdapter.findFileByKey(any())).thenReturn(Mono.just(catalogued()));
+        Mockito.when(videoContentAdapter.getContentSize(any())).thenReturn(Mono.just(10_000L));
+        HttpHeaders requestHeaders = new HttpHeaders();
+        requestHeaders.setIfNoneMatch("\"etag\"");
+
+        ResponseEntity<ContentRegion> responseEntity = videoService.prepareContentByObjectKey("bytes=0-99", "test-key", "client", requestHeaders).block();
+
+        assertNotNull(responseEntity);
+        assertEquals(304, responseEntity.getStatusCode().value());
+        assertEquals("\"etag\"", responseEntity.getHeaders().getETag());
+        Mockito.verify(videoContentAdapter, Mockito.never()).getContent(any());
+    }
+
+    @Test
+    void prepareContentByObjectKeySendsWholeContentWithStaleIfRange() {
+        Mockito.when(videoContentAdapter.findFileByKey(any())).thenReturn(Mono.just(catalogued()));
+        Mockito.when(videoContentAdapter.getContentSize(any())).thenReturn(Mono.just(10_000L));
+        Mockito.when(videoContentAdapter.getContent(any())).thenReturn(Mono.just(Content.builder().data(Flux.empty()).rangeStart(0L).rangeEnd(9999L).contentLength(10_000L).build()));
+        HttpHeaders requestHeaders = new HttpHeaders();
+        requestHeaders.set(HttpHeaders.IF_RANGE, "\"older\"");
+
+        ResponseEntity<ContentRegion> responseEntity = videoService.prepareContentByObjectKey("bytes=5000-5999", "test-key", "client", requestHeaders).block();
+
+        ArgumentCaptor<ContentRequest> contentRequest = ArgumentCaptor.forClass(ContentRequest.class);
+        Mockito.verify(videoContentAdapter).getContent(contentRequest.capture());
+        assertEquals(0L, contentRequest.getValue().getRangeStart());
+        assertEquals(9999L, contentRequest.getValue().getRangeEnd());
+        assertEquals(200, responseEntity.getStatusCode().value());
+        assertNull(responseEntity.getHeaders().getFirst(HttpHeaders.CONTENT_RANGE));
+        assertEquals("10000", responseEntity.getHeaders().getFirst(HttpHeaders.CONTENT_LENGTH));
+        Mockito.verifyNoInteractions(chunkSizer);
+    }
+
+    @Test
+    void prepareContentByObjectKeySkipsValidatorsOfAStaleCatalogEntry() {
+        Mockito.when(videoContentAdapter.findFileByKey(any())).thenReturn(Mono.just(catalogued()));
+        // the file grew since it was catalogued.
+        Mockito.when(videoContentAdapter.getContentSize(any())).thenReturn(Mono.just(20_000L));
+        Mockito.when(videoContentAdapter.getContent(any())).thenReturn(Mono.just(Content.builder().data(Flux.empty()).rangeStart(0L).rangeEnd(99L).contentLength(100L).build()));
+        HttpHeaders requestHeaders = new HttpHeaders();
+        requestHeaders.setIfNoneMatch("\"etag\"");
+
+        ResponseEntity<ContentRegion> responseEntity = videoService.prepareContentByObjectKey("bytes=0-99", "test-key", "client", requestHeaders).block();
+
+        assertNotNull(responseEntity);
+        assertEquals(206, responseEntity.getStatusCode().value());
+        assertNull(responseEntity.getHeaders().getETag());
+    }
+
     @Test
     void getAllContentsWithData() {
-        Content content = Content.builder().contentPath("").contentName("toystory.mp4").content(new byte[]{}).build();
-        Mockito.when(videoContentAdapter.findAllContents()).thenReturn(Collections.singletonList(content));
+        Content content = Content.builder().contentPath("").contentName("toystory.mp4").data(Flux.empty()).rangeStart(0L).rangeEnd(9L).contentLength(10L).build();
+        Mockito.when(videoContentAdapter.findAllContents()).thenReturn(Flux.just(content));
 
-        ResponseEntity<List<Content>> responseEntity = videoService.getAllContents();
+        ResponseEntity<List<Content>> responseEntity = videoService.getAllContents().block();
         assertNotNull(responseEntity);
         assertTrue(responseEntity.getStatusCode().is2xxSuccessful());
     }
 
     @Test
     void getAllContentsWithNoData() {
-        Mockito.when(videoContentAdapter.findAllContents()).thenReturn(Collections.emptyList());
+        Mockito.when(videoContentAdapter.findAllContents()).thenReturn(Flux.empty());
 
-        ResponseEntity<List<Content>> responseEntity = videoService.getAllContents();
+        ResponseEntity<List<Content>> responseEntity = videoService.getAllContents().block();
         assertNotNull(responseEntity);
         assertTrue(responseEntity.getStatusCode().is2xxSuccessful());
         assertEquals(204, responseEntity.getStatusCode().value());
     }
-}
\ No newline at end of file
+
+    @Test
+    void seekByObjectKeyAnswersThePrecedingKeyframe() {
+        Mockito.when(videoContentAdapter.findFileByKey("test-key")).thenReturn(Mono.just(catalogued()));
+        Mockito.when(videoContentAdapter.getContentSize(any())).thenReturn(Mono.just(10_000L));
+        Mp4Index index = new Mp4Index(32, 2000, 30_000, new long[]{0, 10_000, 20_000}, new long[]{2032, 5000, 8000});
+        Mockito.when(mp4IndexCache.index(any(), any(), eq(10_000L))).thenReturn(Mono.just(index));
+
+        ResponseEntity<SeekPosition> responseEntity = videoService.seekByObjectKey("test-key", 12.5).block();
+
+        assertNotNull(responseEntity);
+        assertEquals(200, responseEntity.getStatusCode().value());
+        SeekPosition seekPosition = responseEntity.getBody();
+        assertNotNull(seekPosition);
+        assertEquals(12_500, seekPosition.getTime());
+        assertEquals(10_000, seekPosition.getKeyframeTime());
+        assertEquals(5000, seekPosition.getOffset());
+        assertEquals("bytes=5000-", seekPosition.getRange());
+        assertEquals(30_000, seekPosition.getDuration());
+    }
+
+    @Test
+    void seekByObjectKeyRejectsUnindexableContents() {
+        Mockito.when(videoContentAdapter.findFileByKey("test-key")).thenReturn(Mono.just(catalogued()));
+        Mockito.when(videoContentAdapter.getContentSize(any())).thenReturn(Mono.just(10_000L));
+        Mockito.when(mp4IndexCache.index(any(), any(), eq(10_000L))).thenReturn(Mono.error(new IllegalArgumentException("No moov box")));
+
+        assertEquals(422, videoService.seekByObjectKey("test-key", 1).block().getStatusCode().value());
+        assertEquals(400, videoService.seekByObjectKey("test-key", -1).block().getStatusCode().value());
+        assertEquals(400, videoService.seekByObjectKey("test-key", Double.NaN).block().getStatusCode().value());
+    }
+
+    @Test
+    void seekByObjectKeyOnlyIndexesMp4Containers() {
+        Content content = Content.builder().contentPath("").contentName("movie.mkv").contentType("mkv").objectKey("mkv-key").build();
+        Mockito.when(videoContentAdapter.findFileByKey("mkv-key")).thenReturn(Mono.just(content));
+        Mockito.when(videoContentAdapter.findFileByKey("missing")).thenReturn(Mono.empty());
+
+        assertEquals(422, videoService.seekByObjectKey("mkv-key", 1).block().getStatusCode().value());
+        assertEquals(404, videoService.seekByObjectKey("missing", 1).block().getStatusCode().value());
+        Mockito.verifyNoInteractions(mp4IndexCache);
+    }
+
+    @Test
+    void hlsPlaylistByObjectKeyListsTheFragments() {
+        Mockito.when(videoContentAdapter.findFileByKey("test-key")).thenReturn(Mono.just(catalogued()));
+        Mockito.when(videoContentAdapter.getContentSize(any())).thenReturn(Mono.just(10_000L));
+        Mockito.when(hlsPlaylistCache.layout(any(), any(), eq(10_000L))).thenReturn(Mono.just(fragmentedLayout()));
+
+        ResponseEntity<String> responseEntity = videoService.hlsPlaylistByObjectKey("test-key").block();
+
+        assertNotNull(responseEntity);
+        assertEquals(200, responseEntity.getStatusCode().value());
+        assertEquals("application/vnd.apple.mpegurl", responseEntity.getHeaders().getFirst(HttpHeaders.CONTENT_TYPE));
+        assertTrue(responseEntity.getBody().contains("#EXT-X-MAP:URI=\"init.mp4\"\n"));
+        assertTrue(responseEntity.getBody().contains("#EXTINF:1.500,\n1.m4s\n"));
+    }
+
+    @Test
+    void hlsPlaylistByObjectKeyRejectsUnsegmentableContents() {
+        Mockito.when(videoContentAdapter.findFileByKey("test-key")).thenReturn(Mono.just(catalogued()));
+        Mockito.when(videoContentAdapter.findFileByKey("missing")).thenReturn(Mono.empty());
+        Mockito.when(videoContentAdapter.getContentSize(any())).thenReturn(Mono.just(10_000L));
+        Mockito.when(hlsPlaylistCache.layout(any(), any(), eq(10_000L))).thenReturn(Mono.error(new IllegalArgumentException("No keyframes")));
+
+        assertEquals(422, videoService.hlsPlaylistByObjectKey("test-key").block().getStatusCode().value());
+        assertEquals(422, videoService.hlsSegmentByObjectKey("test-key", 0, "client").block().getStatusCode().value());
+        assertEquals(404, videoService.hlsPlaylistByObjectKey("missing").block().getStatusCode().value());
+    }
+
+    @Test
+    void hlsSegmentByObjectKeySendsTheMoofBeforeTheMediaData() {
+        FragmentedLayout layout = fragmentedLayout();
+        byte[] media = new byte[400];
+        Arrays.fill(media, (byte) 7);
+        Mockito.when(videoContentAdapter.findFileByKey("test-key")).thenReturn(Mono.just(catalogued()));
+        Mockito.when(videoContentAdapter.getContentSize(any())).thenReturn(Mono.just(10_000L));
+        Mockito.when(hlsPlaylistCache.layout(any(), any(), eq(10_000L))).thenReturn(Mono.just(layout));
+        Mockito.when(videoContentAdapter.getContent(any())).thenReturn(Mono.just(Content.builder().data(Flux.just(DefaultDataBufferFactory.sharedInstance.wrap(media))).build()));
+
+        ResponseEntity<ContentRegion> responseEntity = videoService.hlsSegmentByObjectKey("test-key", 1, "client").block();
+
+        assertNotNull(responseEntity);
+        assertEquals(200, responseEntity.getStatusCode().value());
+        byte[] header = layout.fragmentHeader(1);
+        assertEquals(String.valueOf(header.length + 400), responseEntity.getHeaders().getFirst(HttpHeaders.CONTENT_LENGTH));
+        assertEquals("\"etag\"", responseEntity.getHeaders().getETag());
+        byte[] body = read(responseEntity.getBody().getData());
+        assertArrayEquals(header, Arrays.copyOf(body, header.length));
+        assertArrayEquals(media, Arrays.copyOfRange(body, header.length, body.length));
+        ArgumentCaptor<ContentRequest> request = ArgumentCaptor.forClass(ContentRequest.class);
+        Mockito.verify(videoContentAdapter).getContent(request.capture());
+        assertEquals(1400, request.getValue().getRangeStart());
+        assertEquals(1799, request.getValue().getRangeEnd());
+        assertEquals("client", request.getValue().getClientId());
+        assertEquals(404, videoService.hlsSegmentByObjectKey("test-key", 2, "client").block().getStatusCode().value());
+    }
+
+    @Test
+    void hlsMasterPlaylistByTitleIdListsTheSegmentableRenditions() {
+        Content hd = catalogued();
+        Content sd = Content.builder().contentPath("").contentName("toystory_480p.mp4").contentType("mp4").objectKey("sd-key").build();
+        Title title = Title.builder().titleId("title").titleName("toystory").contentPath("").renditions(List.of(new Title.Rendition("1080p", hd), new Title.Rendition("480p", sd))).build();
+        Mockito.when(renditionGroups.findByTitleId("title")).thenReturn(title);
+        Mockito.when(videoContentAdapter.getContentSize(any())).thenReturn(Mono.just(10_000L));
+        Mockito.when(hlsPlaylistCache.layout(eq(hd), any(), eq(10_000L))).thenReturn(Mono.just(fragmentedLayout()));
+        Mockito.when(hlsPlaylistCache.layout(eq(sd), any(), eq(10_000L))).thenReturn(Mono.error(new IllegalArgumentException("No keyframes")));
+
+        ResponseEntity<String> responseEntity = videoService.hlsMasterPlaylistByTitleId("title").block();
+
+        assertNotNull(responseEntity);
+        assertEquals(200, responseEntity.getStatusCode().value());
+        assertTrue(responseEntity.getBody().contains("RESOLUTION=1280x720\n../../object-key/test-key/playlist.m3u8\n"));
+        assertFalse(responseEntity.getBody().contains("sd-key"));
+        assertEquals(404, videoService.hlsMasterPlaylistByTitleId("missing").block().getStatusCode().value());
+    }
+
+    private static FragmentedLayout fragmentedLayout() {
+        return new FragmentedLayout(Mp4TestFiles.box("ftyp", "isom\0\0\0\0".getBytes(StandardCharsets.ISO_8859_1)),
+                ByteBuffer.wrap(Mp4TestFiles.moovWithAudio(1000, 1400, 1300, 1700)), Duration.ofSeconds(1));
+    }
+
+    @Test
+    void getContentPageReadsTheCatalog() {
+        Mockito.when(videoContentAdapter.findAllContents()).thenReturn(Flux.just(catalogued()));
+
+        ResponseEntity<ContentPage> responseEntity = videoService.getContentPage(ContentQuery.builder().limit(10).build()).block();
+
+        assertNotNull(responseEntity);
+        assertEquals(List.of(catalogued()), responseEntity.getBody().getContents());
+        assertNull(responseEntity.getBody().getNextCursor());
+        assertEquals(400, videoService.getContentPage(ContentQuery.builder().cursor("???").build()).block().getStatusCode().value());
+        assertEquals(400, videoService.streamContents(ContentQuery.builder().limit(0).build()).block().getStatusCode().value());
+    }
+
+    @Test
+    void searchReturnsTheIndexMatches() {
+        Mockito.when(searchIndex.search("toy", 20)).thenReturn(List.of(catalogued()));
+
+        assertEquals(List.of(catalogued()), videoService.search("toy", 20).block().getBody());
+        assertEquals(400, videoService.search(" ", 20).block().getStatusCode().value());
+        assertEquals(400, videoService.search("toy", 1000).block().getStatusCode().value());
+    }
+
+    @Test
+    void uploadErrorsMapToStatuses() {
+        Upload upload = Upload.builder().uploadId("upload-id").path("toystory.mp4").size(10).build();
+        Mockito.when(uploadManager.create("toystory.mp4", 10)).thenReturn(Mono.just(upload));
+        Mockito.when(uploadManager.create("../toystory.mp4", 10)).thenReturn(Mono.error(new IllegalArgumentException("outside")));
+        Mockito.when(uploadManager.write(eq("upload-id"), eq(0L), any())).thenReturn(Mono.just(upload));
+        Mockito.when(uploadManager.write(eq("unknown"), eq(0L), any())).thenReturn(Mono.empty());
+        Mockito.when(uploadManager.complete("upload-id")).thenReturn(Mono.error(new IllegalStateException("missing")));
+
+        ResponseEntity<Upload> created = videoService.createUpload("toystory.mp4", 10).block();
+        assertEquals(201, created.getStatusCode().value());
+        assertEquals(upload, created.getBody());
+        assertEquals(400, videoService.createUpload("../toystory.mp4", 10).block().getStatusCode().value());
+        assertEquals(200, videoService.uploadPart("upload-id", 0, Flux.empty()).block().getStatusCode().value());
+        assertEquals(404, videoService.uploadPart("unknown", 0, Flux.empty()).block().getStatusCode().value());
+        assertEquals(409, videoService.completeUpload("upload-id").block().getStatusCode().value());
+    }
+
+    @Test
+    void uploadsAreDisabledWithoutAnUploadManager() {
+        VideoService bucketService = new VideoService(videoContentAdapter, readAheadTracker, chunkSizer, mp4IndexCache, hlsPlaylistCache, renditionGroups, searchIndex, null, "");
+
+        assertEquals(501, bucketService.createUpload("toystory.mp4", 10).block().getStatusCode().value());
+        assertEquals(501, bucketService.uploadPart("upload-id", 0, Flux.empty()).block().getStatusCode().value());
+        assertEquals(501, bucketService.getUpload("upload-id").block().getStatusCode().value());
+        assertEquals(501, bucketService.completeUpload("upload-id").block().getStatusCode().value());
+        assertEquals(501, bucketService.abortUpload("upload-id").block().getStatusCode().value());
+    }
+
+    private static byte[] read(final Flux<DataBuffer> data) {
+        DataBuffer buffer = DataBufferUtils.join(data).block();
+        byte[] bytes = new byte[buffer.readableByteCount()];
+        buffer.read(bytes);
+        return bytes;
+    }
+
+    private static Content catalogued() {
+        return Content.builder().contentPath("").contentName("toystory.mp4").contentType("mp4").objectKey("test-key").totalContentSize(10_000L).lastModified(1_700_000_000_000L).etag("\"etag\"").build();
+    }
+}
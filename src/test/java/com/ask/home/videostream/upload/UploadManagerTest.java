@@ -0,0 +1,151 @@
+package com.ask.home.videostream.upload;
+
+import com.ask.home.videostream.adapter.LocalFileContentAdapter;
+import com.ask.home.videostream.model.ByteRange;
+import com.ask.home.videostream.model.Content;
+import com.ask.home.videostream.model.Upload;
+import com.ask.home.videostream.mp4.Mp4TestFiles;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DefaultDataBufferFactory;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+import reactor.test.StepVerifier;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class UploadManagerTest {
+
+    @TempDir
+    Path root;
+
+    LocalFileContentAdapter localFileContentAdapter;
+    UploadManager uploadManager;
+    byte[] video = Mp4TestFiles.moovAtEnd(600);
+
+    @BeforeEach
+    void setup() {
+        localFileContentAdapter = new LocalFileContentAdapter(root.toString());
+        uploadManager = new UploadManager(localFileContentAdapter, 0, Duration.ofHours(1), Schedulers.boundedElastic());
+    }
+
+    @Test
+    void partsWrittenInParallelArePublishedAndCatalogued() throws IOException {
+        Upload upload = uploadManager.create("movies/toystory.mp4", video.length).block();
+        assertNotNull(upload);
+        assertEquals(List.of(new ByteRange(0, video.length - 1)), upload.getMissing());
+
+        int half = video.length / 2;
+        Mono.when(uploadManager.write(upload.getUploadId(), half, body(Arrays.copyOfRange(video, half, video.length))),
+                uploadManager.write(upload.getUploadId(), 0, body(Arrays.copyOfRange(video, 0, 100), Arrays.copyOfRange(video, 100, half)))).block();
+        Upload written = uploadManager.status(upload.getUploadId()).block();
+        assertEquals(video.length, written.getReceived());
+        assertTrue(written.getMissing().isEmpty());
+
+        Content content = uploadManager.complete(upload.getUploadId()).block();
+        assertNotNull(content);
+        assertEquals("/movies", content.getContentPath());
+        assertEquals("toystory.mp4", content.getContentName());
+        assertArrayEquals(video, Files.readAllBytes(root.resolve("movies/toystory.mp4")));
+        assertEquals(content, localFileContentAdapter.getContentCatalog().findByPath("movies/toystory.mp4"));
+        assertEquals(0, uploadManager.size());
+        try (var parts = Files.list(localFileContentAdapter.getUploadFolder())) {
+            assertEquals(0, parts.count());
+        }
+    }
+
+    @Test
+    void interruptedPartResumesFromTheWrittenBytes() {
+        Upload upload = uploadManager.create("movie.mp4", video.length).block();
+        Flux<DataBuffer> interrupted = Flux.concat(body(Arrays.copyOfRange(video, 0, 200)), Mono.delay(Duration.ofMillis(200)).then(Mono.error(new IOException("connection reset"))));
+        StepVerifier.create(uploadManager.write(upload.getUploadId(), 0, interrupted)).expectError(IOException.class).verify();
+
+        Upload status = uploadManager.status(upload.getUploadId()).block();
+        assertEquals(200, status.getReceived());
+        assertEquals(List.of(new ByteRange(200, video.length - 1)), status.getMissing());
+        StepVerifier.create(uploadManager.complete(upload.getUploadId())).expectError(IllegalStateException.class).verify();
+
+        uploadManager.write(upload.getUploadId(), 200, body(Arrays.copyOfRange(video, 200, video.length))).block();
+        assertNotNull(uploadManager.complete(upload.getUploadId()).block());
+    }
+
+    @Test
+    void writeRejectsPartsBeyondTheSize() {
+        Upload upload = uploadManager.create("movie.mp4", 10).block();
+        StepVerifier.create(uploadManager.write(upload.getUploadId(), 5, body(new byte[6]))).expectError(IllegalArgumentException.class).verify();
+        StepVerifier.create(uploadManager.write(upload.getUploadId(), 11, body(new byte[1]))).expectError(IllegalArgumentException.class).verify();
+        StepVerifier.create(uploadManager.write("unknown", 0, body(new byte[1]))).verifyComplete();
+    }
+
+    @Test
+    void createRejectsInvalidOrTakenPaths() throws IOException {
+        Files.write(root.resolve("taken.mp4"), video);
+        StepVerifier.create(uploadManager.create("../outside.mp4", 10)).expectError(IllegalArgumentException.class).verify();
+        StepVerifier.create(uploadManager.create(".uploads/movie.mp4", 10)).expectError(IllegalArgumentException.class).verify();
+        StepVerifier.create(uploadManager.create("movie.mp4", -1)).expectError(IllegalArgumentException.class).verify();
+        StepVerifier.create(uploadManager.create("taken.mp4", 10)).expectError(IllegalStateException.class).verify();
+        uploadManager.create("movie.mp4", 10).block();
+        StepVerifier.create(uploadManager.create("movie.mp4", 10)).expectError(IllegalStateException.class).verify();
+        StepVerifier.create(uploadManager.create("/movie.mp4", 10)).expectError(IllegalStateException.class).verify();
+        StepVerifier.create(uploadManager.create("movies/../movie.mp4", 10)).expectError(IllegalStateException.class).verify();
+    }
+
+    @Test
+    void completeNeverReplacesAFileCopiedInMeanwhile() throws IOException {
+        Upload upload = uploadManager.create("movie.mp4", video.length).block();
+        uploadManager.write(upload.getUploadId(), 0, body(video)).block();
+        byte[] copied = "copied in meanwhile".getBytes();
+        Files.write(root.resolve("movie.mp4"), copied);
+
+        StepVerifier.create(uploadManager.complete(upload.getUploadId())).expectError(IllegalStateException.class).verify();
+        assertArrayEquals(copied, Files.readAllBytes(root.resolve("movie.mp4")));
+    }
+
+    @Test
+    void completeRejectsFilesThatAreNotVideos() {
+        byte[] text = "not a video, only some text".getBytes();
+        Upload upload = uploadManager.create("notes.mp4", text.length).block();
+        uploadManager.write(upload.getUploadId(), 0, body(text)).block();
+
+        StepVerifier.create(uploadManager.complete(upload.getUploadId())).expectError(IllegalArgumentException.class).verify();
+        assertFalse(Files.exists(root.resolve("notes.mp4")));
+        assertTrue(uploadManager.abort(upload.getUploadId()).block());
+        assertEquals(0, uploadManager.size());
+    }
+
+    @Test
+    void idleUploadsExpire() {
+        UploadManager expiring = new UploadManager(localFileContentAdapter, 0, Duration.ZERO, Schedulers.boundedElastic());
+        Upload idle = expiring.create("first.mp4", 10).block();
+        expiring.create("second.mp4", 10).block();
+
+        StepVerifier.create(expiring.status(idle.getUploadId())).verifyComplete();
+        assertEquals(1, expiring.size());
+    }
+
+    @Test
+    void idleUploadsExpireWithoutNewUploads() {
+        UploadManager expiring = new UploadManager(localFileContentAdapter, 0, Duration.ZERO, Schedulers.boundedElastic());
+        expiring.start();
+        try {
+            expiring.create("first.mp4", 10).block();
+            Flux.interval(Duration.ofMillis(50)).filter(_ -> expiring.size() == 0).next().block(Duration.ofSeconds(5));
+        } finally {
+            expiring.close();
+        }
+    }
+
+    private static Flux<DataBuffer> body(byte[]... chunks) {
+        return Flux.fromArray(chunks).map(DefaultDataBufferFactory.sharedInstance::wrap);
+    }
+}
@@ -0,0 +1,63 @@
+package com.ask.home.videostream.util;
+
+import com.ask.home.videostream.model.ByteRange;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ByteRangesTest {
+
+    private static final long SIZE = 10_000;
+
+    @Test
+    void parseSingleRange() {
+        assertEquals(List.of(new ByteRange(0, 99)), ByteRanges.parse("bytes=0-99", SIZE, () -> 1000));
+        assertEquals(List.of(new ByteRange(9_000, 9_999)), ByteRanges.parse("bytes=9000-20000", SIZE, () -> 1000));
+    }
+
+    @Test
+    void parseOpenEndedRangeUsesTheChunkSize() {
+        assertEquals(List.of(new ByteRange(100, 1100)), ByteRanges.parse("bytes=100-", SIZE, () -> 1000));
+        assertEquals(List.of(new ByteRange(9_500, 9_999)), ByteRanges.parse("bytes=9500-", SIZE, () -> 1000));
+    }
+
+    @Test
+    void parseSuffixRange() {
+        assertEquals(List.of(new ByteRange(9_500, 9_999)), ByteRanges.parse("bytes=-500", SIZE, () -> 1000));
+        assertEquals(List.of(new ByteRange(0, 9_999)), ByteRanges.parse("bytes=-20000", SIZE, () -> 1000));
+    }
+
+    @Test
+    void parseMultipleRangesSortedAndCoalesced() {
+        assertEquals(List.of(new ByteRange(0, 99), new ByteRange(5_000, 5_999)), ByteRanges.parse("bytes=5000-5999, 0-99", SIZE, () -> 1000));
+        assertEquals(List.of(new ByteRange(0, 199), new ByteRange(9_900, 9_999)), ByteRanges.parse("bytes=0-99,50-149,150-199,-100", SIZE, () -> 1000));
+    }
+
+    @Test
+    void parseDropsUnsatisfiableRanges() {
+        assertEquals(List.of(new ByteRange(0, 99)), ByteRanges.parse("bytes=0-99,20000-30000", SIZE, () -> 1000));
+        assertTrue(ByteRanges.parse("bytes=20000-30000", SIZE, () -> 1000).isEmpty());
+        assertTrue(ByteRanges.parse("bytes=-0", SIZE, () -> 1000).isEmpty());
+    }
+
+    @Test
+    void parseIgnoresMissingOrInvalidHeader() {
+        List<ByteRange> firstChunk = List.of(new ByteRange(0, 1000));
+        assertEquals(firstChunk, ByteRanges.parse(null, SIZE, () -> 1000));
+        assertEquals(firstChunk, ByteRanges.parse("items=0-99", SIZE, () -> 1000));
+        assertEquals(firstChunk, ByteRanges.parse("bytes=99-0", SIZE, () -> 1000));
+        assertEquals(firstChunk, ByteRanges.parse("bytes=abc", SIZE, () -> 1000));
+        assertEquals(firstChunk, ByteRanges.parse("bytes=0-99,x-1", SIZE, () -> 1000));
+        assertEquals(List.of(new ByteRange(0, 9)), ByteRanges.parse(null, 10, () -> 1000));
+    }
+
+    @Test
+    void parseServesTooManyRangesAsOne() {
+        String header = "bytes=" + IntStream.range(0, ByteRanges.MAX_RANGES + 1).mapToObj(i -> (i * 100) + "-" + (i * 100 + 9)).collect(Collectors.joining(","));
+        assertEquals(List.of(new ByteRange(0, ByteRanges.MAX_RANGES * 100 + 9)), ByteRanges.parse(header, SIZE, () -> 1000));
+    }
+}
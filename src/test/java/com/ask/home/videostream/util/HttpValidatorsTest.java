@@ -0,0 +1,71 @@
+package com.ask.home.videostream.util;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class HttpValidatorsTest {
+
+    private static final long LAST_MODIFIED = 1_700_000_000_123L;
+    private static final String ETAG = HttpValidators.etag("(dev=803,ino=42)", 1000, LAST_MODIFIED);
+
+    @Test
+    void etagChangesWithTheFile() {
+        assertTrue(ETAG.startsWith("\"") && ETAG.endsWith("\""));
+        assertEquals(ETAG, HttpValidators.etag("(dev=803,ino=42)", 1000, LAST_MODIFIED));
+        assertNotEquals(ETAG, HttpValidators.etag("(dev=803,ino=42)", 1001, LAST_MODIFIED));
+        assertNotEquals(ETAG, HttpValidators.etag("(dev=803,ino=42)", 1000, LAST_MODIFIED + 1));
+        assertNotEquals(ETAG, HttpValidators.etag("(dev=803,ino=43)", 1000, LAST_MODIFIED));
+        assertNull(HttpValidators.etag(null, 1000, LAST_MODIFIED));
+    }
+
+    @Test
+    void notModifiedByIfNoneMatch() {
+        assertTrue(HttpValidators.notModified(headers(HttpHeaders.IF_NONE_MATCH, "\"other\", " + ETAG), ETAG, LAST_MODIFIED));
+        assertTrue(HttpValidators.notModified(headers(HttpHeaders.IF_NONE_MATCH, "W/" + ETAG), ETAG, LAST_MODIFIED));
+        assertTrue(HttpValidators.notModified(headers(HttpHeaders.IF_NONE_MATCH, "*"), ETAG, LAST_MODIFIED));
+        assertFalse(HttpValidators.notModified(headers(HttpHeaders.IF_NONE_MATCH, "\"other\""), ETAG, LAST_MODIFIED));
+    }
+
+    @Test
+    void notModifiedByIfModifiedSince() {
+        HttpHeaders headers = new HttpHeaders();
+        headers.setIfModifiedSince(LAST_MODIFIED);
+        assertTrue(HttpValidators.notModified(headers, ETAG, LAST_MODIFIED));
+        headers.setIfModifiedSince(LAST_MODIFIED - 1000);
+        assertFalse(HttpValidators.notModified(headers, ETAG, LAST_MODIFIED));
+        // If-None-Match wins over If-Modified-Since.
+        headers.setIfModifiedSince(LAST_MODIFIED);
+        headers.setIfNoneMatch("\"other\"");
+        assertFalse(HttpValidators.notModified(headers, ETAG, LAST_MODIFIED));
+        assertFalse(HttpValidators.notModified(new HttpHeaders(), ETAG, LAST_MODIFIED));
+    }
+
+    @Test
+    void rangeAppliesWithMatchingIfRange() {
+        assertTrue(HttpValidators.rangeApplies(new HttpHeaders(), ETAG, LAST_MODIFIED));
+        assertTrue(HttpValidators.rangeApplies(headers(HttpHeaders.IF_RANGE, ETAG), ETAG, LAST_MODIFIED));
+        HttpHeaders dated = new HttpHeaders();
+        dated.setDate(HttpHeaders.IF_RANGE, LAST_MODIFIED);
+        assertTrue(HttpValidators.rangeApplies(dated, ETAG, LAST_MODIFIED));
+    }
+
+    @Test
+    void rangeIgnoredWithStaleIfRange() {
+        assertFalse(HttpValidators.rangeApplies(headers(HttpHeaders.IF_RANGE, "\"other\""), ETAG, LAST_MODIFIED));
+        // weak tags never match If-Range.
+        assertFalse(HttpValidators.rangeApplies(headers(HttpHeaders.IF_RANGE, "W/" + ETAG), ETAG, LAST_MODIFIED));
+        HttpHeaders dated = new HttpHeaders();
+        dated.setDate(HttpHeaders.IF_RANGE, LAST_MODIFIED - 5000);
+        assertFalse(HttpValidators.rangeApplies(dated, ETAG, LAST_MODIFIED));
+        assertFalse(HttpValidators.rangeApplies(headers(HttpHeaders.IF_RANGE, "yesterday"), ETAG, LAST_MODIFIED));
+        assertFalse(HttpValidators.rangeApplies(headers(HttpHeaders.IF_RANGE, ETAG), null, null));
+    }
+
+    private static HttpHeaders headers(String name, String value) {
+        HttpHeaders headers = new HttpHeaders();
+        headers.set(name, value);
+        return headers;
+    }
+}
@@ -0,0 +1,125 @@
+package com.ask.home.videostream.util;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class VideoContainerSnifferTest {
+
+    @Test
+    void detectIsoBaseMediaBrands() {
+        assertEquals(Optional.of(VideoContainer.MP4), VideoContainerSniffer.detect(header(box("ftyp", "isom"))));
+        assertEquals(Optional.of(VideoContainer.MOV), VideoContainerSniffer.detect(header(box("ftyp", "qt  "))));
+        assertEquals(Optional.of(VideoContainer.THREE_GP), VideoContainerSniffer.detect(header(box("ftyp", "3gp5"))));
+        assertEquals(Optional.of(VideoContainer.MOV), VideoContainerSniffer.detect(header(box("moov", "mvhd"))));
+    }
+
+    @Test
+    void detectSkipsIsoBaseMediaStillsAndAudio() {
+        assertEquals(Optional.empty(), VideoContainerSniffer.detect(header(box("ftyp", "heic"))));
+        assertEquals(Optional.empty(), VideoContainerSniffer.detect(header(box("ftyp", "avif"))));
+        assertEquals(Optional.empty(), VideoContainerSniffer.detect(header(box("ftyp", "M4A "))));
+        assertEquals(Optional.empty(), VideoContainerSniffer.detect(header(box("ftyp", "M4B "))));
+        // unknown major brand, a video compatible brand.
+        assertEquals(Optional.of(VideoContainer.MP4), VideoContainerSniffer.detect(header(box("ftyp", "abcd"))));
+        assertEquals(Optional.empty(), VideoContainerSniffer.detect(header(concat(new byte[]{0, 0, 0, 20}, "ftypabcd\0\0\0\0wxyz".getBytes(StandardCharsets.US_ASCII)))));
+    }
+
+    @Test
+    void detectMatroskaAndWebm() {
+        byte[] ebml = {0x1A, 0x45, (byte) 0xDF, (byte) 0xA3, (byte) 0x9F, 0x42, (byte) 0x86, (byte) 0x81, 0x01, 0x42, (byte) 0x82, (byte) 0x88};
+        assertEquals(Optional.of(VideoContainer.MKV), VideoContainerSniffer.detect(header(concat(ebml, "matroska".getBytes(StandardCharsets.US_ASCII)))));
+        assertEquals(Optional.of(VideoContainer.WEBM), VideoContainerSniffer.detect(header(concat(ebml, "webm".getBytes(StandardCharsets.US_ASCII)))));
+    }
+
+    @Test
+    void detectTransportStreams() {
+        byte[] ts = new byte[400];
+        ts[0] = 0x47;
+        ts[188] = 0x47;
+        assertEquals(Optional.of(VideoContainer.MPEG_TS), VideoContainerSniffer.detect(header(ts)));
+
+        byte[] m2ts = new byte[400];
+        m2ts[4] = 0x47;
+        m2ts[196] = 0x47;
+        assertEquals(Optional.of(VideoContainer.MPEG_TS), VideoContainerSniffer.detect(header(m2ts)));
+
+        byte[] text = new byte[400];
+        text[0] = 0x47;
+        text[188] = 0x20;
+        assertEquals(Optional.empty(), VideoContainerSniffer.detect(header(text)));
+    }
+
+    @Test
+    void detectOtherContainers() {
+        assertEquals(Optional.of(VideoContainer.AVI), VideoContainerSniffer.detect(header("RIFF\0\0\0\0AVI LIST".getBytes(StandardCharsets.US_ASCII))));
+        assertEquals(Optional.of(VideoContainer.FLV), VideoContainerSniffer.detect(header(new byte[]{'F', 'L', 'V', 1, 5, 0, 0, 0, 9, 0, 0, 0})));
+        assertEquals(Optional.of(VideoContainer.MPEG_PS), VideoContainerSniffer.detect(header(new byte[]{0, 0, 1, (byte) 0xBA, 0x44, 0, 4, 0, 4, 1, 1, (byte) 0x89})));
+        assertEquals(Optional.empty(), VideoContainerSniffer.detect(header("RIFF\0\0\0\0WAVEfmt ".getBytes(StandardCharsets.US_ASCII))));
+        assertEquals(Optional.empty(), VideoContainerSniffer.detect(header("just some text notes".getBytes(StandardCharsets.US_ASCII))));
+    }
+
+    @Test
+    void detectFileFallsBackToExtensionWhenTooShort(@TempDir Path tempDir) throws IOException {
+        Path emptyMkv = Files.createFile(tempDir.resolve("recording.mkv"));
+        Path emptyText = Files.createFile(tempDir.resolve("notes.txt"));
+
+        assertEquals(Optional.of(VideoContainer.MKV), VideoContainerSniffer.detect(emptyMkv, attributes(emptyMkv)));
+        assertEquals(Optional.empty(), VideoContainerSniffer.detect(emptyText, attributes(emptyText)));
+    }
+
+    @Test
+    void detectFileIgnoresExtension(@TempDir Path tempDir) throws IOException {
+        Path mislabelled = Files.write(tempDir.resolve("movie.txt"), box("ftyp", "mp42"));
+        Path notVideo = Files.write(tempDir.resolve("movie.mp4"), "plain text, not a video".getBytes(StandardCharsets.US_ASCII));
+
+        assertEquals(Optional.of(VideoContainer.MP4), VideoContainerSniffer.detect(mislabelled, attributes(mislabelled)));
+        assertEquals(Optional.empty(), VideoContainerSniffer.detect(notVideo, attributes(notVideo)));
+    }
+
+    @Test
+    void detectFileIsCachedByLastModified(@TempDir Path tempDir) throws IOException {
+        Path file = Files.write(tempDir.resolve("clip.bin"), box("ftyp", "isom"));
+        FileTime modified = Files.getLastModifiedTime(file);
+        assertEquals(Optional.of(VideoContainer.MP4), VideoContainerSniffer.detect(file, attributes(file)));
+
+        // same size and mtime, the cached detection is used
+        byte[] other = box("ftyp", "isom");
+        other[4] = 'x';
+        Files.write(file, other);
+        Files.setLastModifiedTime(file, modified);
+        assertEquals(Optional.of(VideoContainer.MP4), VideoContainerSniffer.detect(file, attributes(file)));
+
+        Files.setLastModifiedTime(file, FileTime.fromMillis(modified.toMillis() + 1000));
+        assertEquals(Optional.empty(), VideoContainerSniffer.detect(file, attributes(file)));
+    }
+
+    private static BasicFileAttributes attributes(Path path) throws IOException {
+        return Files.readAttributes(path, BasicFileAttributes.class);
+    }
+
+    private static byte[] box(String type, String payload) {
+        return concat(new byte[]{0, 0, 0, 20}, (type + payload + "\0\0\0\0mp41").getBytes(StandardCharsets.US_ASCII));
+    }
+
+    private static byte[] concat(byte[] first, byte[] second) {
+        byte[] result = new byte[first.length + second.length];
+        System.arraycopy(first, 0, result, 0, first.length);
+        System.arraycopy(second, 0, result, first.length, second.length);
+        return result;
+    }
+
+    private static ByteBuffer header(byte[] bytes) {
+        return ByteBuffer.wrap(bytes);
+    }
+}